@@ -9,6 +9,7 @@ import java.util.HashSet;
 import java.util.Set;
 import java.util.logging.Level;
 
+import mpi.eudico.server.corpora.clomimpl.dobes.EAFBinaryCache;
 import nl.mpi.util.FileUtility;
 
 import static mpi.eudico.client.annotator.util.ClientLogger.LOG;
@@ -26,6 +27,11 @@ public class CachedDataManager implements PreferencesListener {
 	@SuppressWarnings("serial")
 	private static final Set<String> subdirectories = new HashSet<String>() {{
 		add("lexica");
+		add("tscache");
+		add("searchindex");
+		add("peakcache");
+		add("audiocache");
+		add(EAFBinaryCache.CACHE_DIR);
 		//add("CVCACHE");
 	}};
 	
@@ -37,6 +43,7 @@ public class CachedDataManager implements PreferencesListener {
 	private CachedDataManager() {
 		Preferences.addPreferencesListener(null, this);
 		cacheLocation = getCacheLocationFromPreferences();
+		EAFBinaryCache.setCacheDirectory(new File(cacheLocation, EAFBinaryCache.CACHE_DIR));
 	}
 	
 	private String getCacheLocationFromPreferences() {
@@ -73,6 +80,7 @@ public class CachedDataManager implements PreferencesListener {
 		if (!cacheLocation.equals(newCacheLocation)) {
 			moveCache(cacheLocation, newCacheLocation);
 			cacheLocation = newCacheLocation;
+			EAFBinaryCache.setCacheDirectory(new File(cacheLocation, EAFBinaryCache.CACHE_DIR));
 			for(CacheSettingsChangeListener listener : cacheSettingsChangeListeners) {
 				listener.cacheSettingsChanged();
 			}
@@ -84,6 +92,10 @@ public class CachedDataManager implements PreferencesListener {
 		try {
 			for(String subdirectory : subdirectories) {
 				File sourcePath = new File(oldDirectory + File.separator + subdirectory);
+				if (!sourcePath.isDirectory()) {
+					// e.g. the time series cache is only created when needed
+					continue;
+				}
 				File destinationPath = new File(newDirectory + File.separator + subdirectory);
 				FileUtility.moveDirectory(sourcePath.toPath(), destinationPath.toPath(), 
 						(CopyOption[])null);
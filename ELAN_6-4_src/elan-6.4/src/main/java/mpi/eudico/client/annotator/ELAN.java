@@ -72,6 +72,8 @@ public class ELAN {
 
     	initPlatformPreferences();
         readProperties();
+        // sets the folders of the caches, e.g. the one used when opening eaf files
+        CachedDataManager.getInstance();
         updateUIDefaults();
         detectUILabelFont();
 
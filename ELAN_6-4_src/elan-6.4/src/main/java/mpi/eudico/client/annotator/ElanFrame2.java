@@ -137,6 +137,7 @@ import mpi.eudico.server.corpora.clomimpl.abstr.MediaDescriptor;
 import mpi.eudico.server.corpora.clomimpl.abstr.TierImpl;
 import mpi.eudico.server.corpora.clomimpl.abstr.TranscriptionImpl;
 import mpi.eudico.server.corpora.clomimpl.dobes.ACMTranscriptionStore;
+import mpi.eudico.server.corpora.clomimpl.dobes.EAFBinaryCache;
 import mpi.eudico.server.corpora.clomimpl.util.MediaDescriptorUtility;
 import mpi.eudico.util.CVEntry;
 import mpi.eudico.util.ControlledVocabulary;
@@ -467,6 +468,10 @@ public class ElanFrame2 extends JFrame implements ActionListener,
 	
 	            //long before = System.currentTimeMillis();
 	            transcription = new TranscriptionImpl(new File(path).getAbsolutePath());
+	            // a file opened in the editor is opened from a snapshot next time
+	            if (lowerPath.endsWith(".eaf")) {
+	            	EAFBinaryCache.storeInBackground(path);
+	            }
         	} else {
         		transcription = new TranscriptionImpl(fullPath);
         		path = fullPath;
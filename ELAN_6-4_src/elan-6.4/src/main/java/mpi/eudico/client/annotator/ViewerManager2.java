@@ -43,6 +43,7 @@ import mpi.eudico.client.annotator.viewer.TimeSeriesViewer;
 import mpi.eudico.client.annotator.viewer.Viewer;
 import mpi.eudico.client.mediacontrol.Controller;
 import mpi.eudico.client.mediacontrol.ControllerListener;
+import mpi.eudico.client.mediacontrol.FrameClock;
 import mpi.eudico.client.mediacontrol.PeriodicUpdateController;
 import mpi.eudico.client.mediacontrol.TimeEvent;
 import mpi.eudico.client.mediacontrol.TimeLineController;
@@ -2083,8 +2084,13 @@ public class ViewerManager2 {
 			controller = (PeriodicUpdateController) controllers.get(periodKey);
 		}
 		else {
-			// The controller does not exist, create it
-			controller = new PeriodicUpdateController(period);
+			// The controller does not exist, create it. The time based viewers
+			// that follow the playback are updated together, in frames
+			if (period == TIME_LINE_VIEWER_PERIOD) {
+				controller = new FrameClock(period);
+			} else {
+				controller = new PeriodicUpdateController(period);
+			}
 
 			// connect the controller to the master media player
 			masterMediaPlayer.addController(controller);
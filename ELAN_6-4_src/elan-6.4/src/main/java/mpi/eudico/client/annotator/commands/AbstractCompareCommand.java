@@ -3,7 +3,6 @@ package mpi.eudico.client.annotator.commands;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
@@ -16,17 +15,17 @@ import mpi.eudico.client.annotator.interannotator.multi.CompareCombiMulti;
 
 import static mpi.eudico.client.annotator.util.ClientLogger.LOG;
 import mpi.eudico.server.corpora.clom.AnnotationCore;
-import mpi.eudico.server.corpora.clom.Tier;
-import mpi.eudico.server.corpora.clom.Transcription;
-import mpi.eudico.server.corpora.clomimpl.abstr.AbstractAnnotation;
 import mpi.eudico.server.corpora.clomimpl.abstr.AnnotationCoreImpl;
-import mpi.eudico.server.corpora.clomimpl.abstr.TierImpl;
 import mpi.eudico.server.corpora.clomimpl.abstr.TranscriptionImpl;
-import mpi.eudico.util.ControlledVocabulary;
+import mpi.eudico.server.corpora.clomimpl.util.ParallelTranscriptionLoader;
+import mpi.eudico.server.corpora.clomimpl.util.TierSnapshot;
+import mpi.eudico.server.corpora.clomimpl.util.TranscriptionSnapshot;
 
 /**
  * Abstract class for inter-rater agreement calculation. In this abstract class the preparatory work
  * is implemented which is necessary for most(?) actual implementations. 
+ * The segments are extracted from snapshots of the transcriptions, files are not loaded as
+ * complete transcriptions.
  */
 public abstract class AbstractCompareCommand extends AbstractProgressCommand {
 	protected Map<Object, Object> compareProperties;
@@ -152,14 +151,15 @@ public abstract class AbstractCompareCommand extends AbstractProgressCommand {
 					return;
 				}
 				
-				extractSegments(transcription, tierName1, tierName2);
+				extractSegments(TranscriptionSnapshot.create(transcription), tierName1, tierName2);
 			} else if (tierMatching == CompareConstants.MATCHING.PREFIX || tierMatching == CompareConstants.MATCHING.SUFFIX) {
 				if (selTierNames == null || selTierNames.size() == 0) {
 					progressInterrupt("There are no tiers selected for comparing based on affix");
 					
 					return;
 				}
-				extractSegments(transcription, selTierNames, tierMatching, tierNameSeparators);
+				extractSegments(TranscriptionSnapshot.create(transcription), selTierNames, tierMatching,
+						tierNameSeparators);
 			} else if (tierMatching == CompareConstants.MATCHING.SAME_NAME) {
 				progressInterrupt("Cannot compare tiers with the same name in the same document");
 				
@@ -284,16 +284,16 @@ public abstract class AbstractCompareCommand extends AbstractProgressCommand {
 	 * Extracts the segments from the two tiers in the specified transcription.
 	 * Assumes necessary checks have been performed.
 	 * 
-	 * @param transcription the transcription, not null
+	 * @param transcription the snapshot of the transcription, not null
 	 * @param tierName1 first tier
 	 * @param tierName2 second tier
 	 * 
 	 * @return a list of size 1 with the segments of the two tiers, or null if something is wrong
 	 */
-	private void extractSegments(TranscriptionImpl transcription, 
+	private void extractSegments(TranscriptionSnapshot transcription, 
 			String tierName1, String tierName2) {
-		TierImpl t1 = transcription.getTierWithId(tierName1); 
-		TierImpl t2 = transcription.getTierWithId(tierName2);
+		TierSnapshot t1 = transcription.getTierWithId(tierName1); 
+		TierSnapshot t2 = transcription.getTierWithId(tierName2);
 		if (t1 == null) {
 			// log or report?
 			String message = String.format("The tier \"%s\" is not found in the transcription.", tierName1);
@@ -335,13 +335,13 @@ public abstract class AbstractCompareCommand extends AbstractProgressCommand {
 		} else {
 			CompareCombiMulti ccm = new CompareCombiMulti(cu1, cu2);
 			compareSegments.add(ccm);
-			String cvName = t1.getLinguisticType().getControlledVocabularyName();
+			String cvName = t1.getControlledVocabularyName();
 			if (cvName != null) {
 				ccm.setCVName(cvName);
 			}
 			ccm.addValues(getValues(t1));
 			
-			cvName = t2.getLinguisticType().getControlledVocabularyName();
+			cvName = t2.getControlledVocabularyName();
 			if (cvName != null) {
 				ccm.setCVName(cvName);
 			}
@@ -353,19 +353,19 @@ public abstract class AbstractCompareCommand extends AbstractProgressCommand {
 	 * Combines tiers within a transcription based on the tier matching (prefix or suffix).
 	 * Assumes necessary checks have been performed.
 	 * 
-	 * @param transcription the transcription, not null
+	 * @param transcription the snapshot of the transcription, not null
 	 * @param selTierNames the selected tiers, not null
 	 * @param tierMatching prefix or suffix matching
 	 * @param tierNameSeparators, custom separators can be null
 	 * 
 	 * @return a list of compare combinations, one combination (or more?) per selected tier name
 	 */
-	private void extractSegments(TranscriptionImpl transcription, List<String> selTierNames, 
+	private void extractSegments(TranscriptionSnapshot transcription, List<String> selTierNames, 
 			CompareConstants.MATCHING tierMatching, String tierNameSeparators) {	
 		// get a map of tier combinations
 		List<String> allTierNames = new ArrayList<String>();
-		List<TierImpl> tiers = transcription.getTiers();
-		Tier t = null;
+		List<TierSnapshot> tiers = transcription.getTiers();
+		TierSnapshot t = null;
 		for (int i = 0; i < tiers.size(); i++) {
 			t = tiers.get(i);
 			allTierNames.add(t.getName());
@@ -385,12 +385,12 @@ public abstract class AbstractCompareCommand extends AbstractProgressCommand {
 		for (List<String> curMatches : tierMatches) {
 			if (!groupWiseCompare) {
 				for (int i = 0; i < curMatches.size(); i++) {// first loop
-					TierImpl t1 = transcription.getTierWithId(curMatches.get(i));
+					TierSnapshot t1 = transcription.getTierWithId(curMatches.get(i));
 					List<AnnotationCore> segments1 = null;
 					if (t1 != null) {
 						segments1 = getAnnotationCores(t1);
 						for (int j = i + 1; j < curMatches.size(); j++) {//second loop
-							TierImpl t2 = transcription.getTierWithId(curMatches.get(j));
+							TierSnapshot t2 = transcription.getTierWithId(curMatches.get(j));
 							if (t2 != null) {
 								List<AnnotationCore> segments2 = getAnnotationCores(t2);
 								if (! (segments1.isEmpty() && segments2.isEmpty()) ) {
@@ -423,7 +423,7 @@ public abstract class AbstractCompareCommand extends AbstractProgressCommand {
 				List<CompareUnit> compUnits = new ArrayList<CompareUnit>(curMatches.size());
 				
 				for (int i = 0; i < curMatches.size(); i++) {
-					TierImpl t1 = transcription.getTierWithId(curMatches.get(i));
+					TierSnapshot t1 = transcription.getTierWithId(curMatches.get(i));
 					if (t1 != null) {
 						List<AnnotationCore> segments1 = getAnnotationCores(t1);
 						if (!segments1.isEmpty()) {
@@ -479,28 +479,34 @@ public abstract class AbstractCompareCommand extends AbstractProgressCommand {
 			// each file in the list should contain both tier1 and tier2
 			progressUpdate((int) curProgress, "Extracting segments from each file...");
 			float perFile = 28f / selFiles.size();
-			for (File f : selFiles) {
-				if (f.isDirectory()) {
-					curProgress += perFile;
-					continue; // log
-				}
-				// create a Transcription of the file and check tiers
-				TranscriptionImpl t1 = createTranscription(f);
-				if (t1 != null) {					
-					TierImpl tier1 = t1.getTierWithId(tierName1);
-					TierImpl tier2 = t1.getTierWithId(tierName2);
+			ParallelTranscriptionLoader loader = createLoader(selFiles);
+			try {
+				for (File f : selFiles) {
+					ParallelTranscriptionLoader.Result loaded = loader.next();
+					if (f.isDirectory()) {
+						curProgress += perFile;
+						continue; // log
+					}
+					// create a snapshot of the file and check tiers
+					TranscriptionSnapshot t1 = createSnapshot(loaded);
+					if (t1 != null) {					
+						TierSnapshot tier1 = t1.getTierWithId(tierName1);
+						TierSnapshot tier2 = t1.getTierWithId(tierName2);
 					
-					CompareCombi cc= createCompareCombi(tier1, tier2);
-					if (cc != null) {
-						compareSegments.add(cc);
+						CompareCombi cc= createCompareCombi(tier1, tier2);
+						if (cc != null) {
+							compareSegments.add(cc);
+						}
+					} else {
+						LOG.warning(String.format(
+								"A transcription could not be loaded from file \"%s\"", 
+								f.getAbsolutePath()));
 					}
-				} else {
-					LOG.warning(String.format(
-							"A transcription could not be loaded from file \"%s\"", 
-							f.getAbsolutePath()));
+					curProgress += perFile;
+					progressUpdate((int) curProgress, null);
 				}
-				curProgress += perFile;
-				progressUpdate((int) curProgress, null);
+			} finally {
+				loader.close();
 			}
 		} else {			
 			progressUpdate((int) curProgress, "Extracting segments from file pairs...");
@@ -513,14 +519,14 @@ public abstract class AbstractCompareCommand extends AbstractProgressCommand {
 			curProgress = 4;
 			progressUpdate((int) curProgress, String.format("Found %d pairs of matching files...", matchingFiles.size()) );
 			// loop over matches, find right tiers in all combinations of files
-			TranscriptionImpl t1 = null;
-			TranscriptionImpl t2 = null;
+			TranscriptionSnapshot t1 = null;
+			TranscriptionSnapshot t2 = null;
 			float perMatch = 25f / matchingFiles.size();
 			for (List<File> matchList : matchingFiles) {
 				// convert to list of transcriptions first (to avoid loading the same file more than once)? 
 				// In most cases there will only be two files
 				for (int i = 0; i < matchList.size(); i++) {
-					t1 = createTranscription(matchList.get(i));
+					t1 = createSnapshot(matchList.get(i));
 					if (t1 == null) {
 						LOG.info(String.format(
 								"A transcription could not be loaded from file (t1) \"%s\"", 
@@ -528,7 +534,7 @@ public abstract class AbstractCompareCommand extends AbstractProgressCommand {
 						continue;
 					}
 					for (int j = i + 1; j < matchList.size(); j++) {
-						t2 = createTranscription(matchList.get(j));
+						t2 = createSnapshot(matchList.get(j));
 						if (t2 == null) {
 							LOG.info(String.format(
 									"A transcription could not be loaded from file (t2) \"%s\"", 
@@ -567,40 +573,46 @@ public abstract class AbstractCompareCommand extends AbstractProgressCommand {
 			// each file in the list should contain all tier names
 			progressUpdate((int) curProgress, "Extracting segments from each file...");
 			float perFile = 28f / selFiles.size();
-			for (File f : selFiles) {
-				if (f.isDirectory()) {
-					curProgress += perFile;
-					continue; // log
-				}
-				// create a Transcription of the file and check tiers
-				TranscriptionImpl t1 = createTranscription(f);
-				if (t1 != null) {
-					List<TierImpl> tiers = new ArrayList<TierImpl>(tierNames.size());
-					for (String name : tierNames) {
-						TierImpl tier = t1.getTierWithId(name); 
-						// remove test for the number of annotations?	
-						if (tier != null && tier.getNumberOfAnnotations() > 0) {
-							tiers.add(tier);
+			ParallelTranscriptionLoader loader = createLoader(selFiles);
+			try {
+				for (File f : selFiles) {
+					ParallelTranscriptionLoader.Result loaded = loader.next();
+					if (f.isDirectory()) {
+						curProgress += perFile;
+						continue; // log
+					}
+					// create a snapshot of the file and check tiers
+					TranscriptionSnapshot t1 = createSnapshot(loaded);
+					if (t1 != null) {
+						List<TierSnapshot> tiers = new ArrayList<TierSnapshot>(tierNames.size());
+						for (String name : tierNames) {
+							TierSnapshot tier = t1.getTierWithId(name); 
+							// remove test for the number of annotations?	
+							if (tier != null && tier.getNumberOfAnnotations() > 0) {
+								tiers.add(tier);
+							} else {
+								// log...
+							}
+						}
+						if (tiers.size() >= 2) {
+							CompareCombiMulti ccm = createCompareCombi(tiers);
+							if (ccm != null) {
+								compareSegments.add(ccm);
+							}
 						} else {
 							// log...
 						}
-					}
-					if (tiers.size() >= 2) {
-						CompareCombiMulti ccm = createCompareCombi(tiers);
-						if (ccm != null) {
-							compareSegments.add(ccm);
-						}
+
 					} else {
-						// log...
+						LOG.warning(String.format(
+								"A transcription could not be loaded from file \"%s\"", 
+								f.getAbsolutePath()));
 					}
-
-				} else {
-					LOG.warning(String.format(
-							"A transcription could not be loaded from file \"%s\"", 
-							f.getAbsolutePath()));
+					curProgress += perFile;
+					progressUpdate((int) curProgress, null);
 				}
-				curProgress += perFile;
-				progressUpdate((int) curProgress, null);
+			} finally {
+				loader.close();
 			}
 		} else {			
 			progressUpdate((int) curProgress, "Extracting segments from file pairs...");
@@ -614,7 +626,7 @@ public abstract class AbstractCompareCommand extends AbstractProgressCommand {
 			progressUpdate((int) curProgress, String.format("Found %d pairs of matching files...", matchingFiles.size()) );
 			// loop over matches, find right tiers in all combinations of files
 			// hier... adapt
-			List<TranscriptionImpl> transList = new ArrayList<TranscriptionImpl>();
+			List<TranscriptionSnapshot> transList = new ArrayList<TranscriptionSnapshot>();
 			//TranscriptionImpl t1 = null;
 			//TranscriptionImpl t2 = null;
 			float perMatch = 25f / matchingFiles.size();
@@ -622,7 +634,7 @@ public abstract class AbstractCompareCommand extends AbstractProgressCommand {
 				transList.clear();
 
 				for (int i = 0; i < matchList.size(); i++) {
-					TranscriptionImpl t1 = createTranscription(matchList.get(i));
+					TranscriptionSnapshot t1 = createSnapshot(matchList.get(i));
 					if (t1 == null) {
 						LOG.info(String.format(
 								"A transcription could not be loaded from file (t1) \"%s\"", 
@@ -632,7 +644,7 @@ public abstract class AbstractCompareCommand extends AbstractProgressCommand {
 					transList.add(t1);
 					/*
 					for (int j = i + 1; j < matchList.size(); j++) {
-						t2 = createTranscription(matchList.get(j));
+						t2 = createSnapshot(matchList.get(j));
 						if (t2 == null) {
 							LOG.info(String.format(
 									"A transcription could not be loaded from file (t2) \"%s\"", 
@@ -711,41 +723,47 @@ public abstract class AbstractCompareCommand extends AbstractProgressCommand {
 			progressUpdate((int) curProgress, "Extracting segments from each file...");
 			float perFile = 26f / selFiles.size();
 			
-			for (File f : selFiles) {
-				if (f.isDirectory()) {
-					curProgress += perFile;
-					continue; // log
-				}
-				// create a Transcription of the file and check tiers
-				TranscriptionImpl t1 = createTranscription(f);
-				if (t1 != null) {
-					// loop over all matched tiers (in most cases probably two tiers)
-					for (List<String> tierMatch : matchingTiers) {
-						if (!groupWiseCompare) {
-							for (int i = 0; i < tierMatch.size(); i++) {
-								String tName1 = tierMatch.get(i);
-								for (int j = i + 1; j < tierMatch.size(); j++) {
-									String tName2 = tierMatch.get(j);
+			ParallelTranscriptionLoader loader = createLoader(selFiles);
+			try {
+				for (File f : selFiles) {
+					ParallelTranscriptionLoader.Result loaded = loader.next();
+					if (f.isDirectory()) {
+						curProgress += perFile;
+						continue; // log
+					}
+					// create a snapshot of the file and check tiers
+					TranscriptionSnapshot t1 = createSnapshot(loaded);
+					if (t1 != null) {
+						// loop over all matched tiers (in most cases probably two tiers)
+						for (List<String> tierMatch : matchingTiers) {
+							if (!groupWiseCompare) {
+								for (int i = 0; i < tierMatch.size(); i++) {
+									String tName1 = tierMatch.get(i);
+									for (int j = i + 1; j < tierMatch.size(); j++) {
+										String tName2 = tierMatch.get(j);
 									
-									TierImpl tier1 = t1.getTierWithId(tName1);
-									TierImpl tier2 = t1.getTierWithId(tName2);
+										TierSnapshot tier1 = t1.getTierWithId(tName1);
+										TierSnapshot tier2 = t1.getTierWithId(tName2);
 									
-									CompareCombi cc= createCompareCombi(tier1, tier2);
-									if (cc != null) {
-										compareSegments.add(cc);
+										CompareCombi cc= createCompareCombi(tier1, tier2);
+										if (cc != null) {
+											compareSegments.add(cc);
+										}
 									}
 								}
+							} else {// group wise compare
+								CompareCombiMulti ccm = getCompareCombinationMulti(t1, tierMatch);
+								if (ccm != null) {
+									compareSegments.add(ccm);
+								}
 							}
-						} else {// group wise compare
-							CompareCombiMulti ccm = getCompareCombinationMulti(t1, tierMatch);
-							if (ccm != null) {
-								compareSegments.add(ccm);
-							}
-						}
-					}				
-				} //else log?
-				curProgress += perFile;
-				progressUpdate((int) curProgress, null);
+						}				
+					} //else log?
+					curProgress += perFile;
+					progressUpdate((int) curProgress, null);
+				}
+			} finally {
+				loader.close();
 			}
 			
 		} else {// tiers in different files
@@ -753,7 +771,7 @@ public abstract class AbstractCompareCommand extends AbstractProgressCommand {
 			float perMatch = 28f / matchingFiles.size();
 			
 			for (List<File> fileMatch : matchingFiles) {
-				List<TranscriptionImpl> transMatch = createTranscriptions(fileMatch);
+				List<TranscriptionSnapshot> transMatch = createSnapshots(fileMatch);
 				if (transMatch.size() <= 1) {
 					// log the files that cannot be processed
 					curProgress += perMatch;
@@ -785,8 +803,8 @@ public abstract class AbstractCompareCommand extends AbstractProgressCommand {
 					continue;
 				}
 				// what follows is pair wise comparison
-				TranscriptionImpl ti1 = null;
-				TranscriptionImpl ti2 = null;
+				TranscriptionSnapshot ti1 = null;
+				TranscriptionSnapshot ti2 = null;
 				
 				for (int i = 0; i < transMatch.size() - 1; i++) {
 					ti1 = transMatch.get(i);
@@ -795,8 +813,8 @@ public abstract class AbstractCompareCommand extends AbstractProgressCommand {
 						// we have two transcriptions now, loop over selected tiers or tier combinations
 						
 						if (matchingTiers == null) {// tiers of the same name in different files
-							TierImpl tier1 = null;
-							TierImpl tier2 = null;
+							TierSnapshot tier1 = null;
+							TierSnapshot tier2 = null;
 							
 							for (String tierName : selTierNames) {
 								tier1 = ti1.getTierWithId(tierName);
@@ -850,24 +868,18 @@ public abstract class AbstractCompareCommand extends AbstractProgressCommand {
 	 * @param t the tier
 	 * @return a list of annotation core objects
 	 */
-	private List<AnnotationCore> getAnnotationCores(TierImpl t) {
+	private List<AnnotationCore> getAnnotationCores(TierSnapshot t) {
 		List<AnnotationCore> acs = new ArrayList<AnnotationCore>();
 		
 		if (t != null) {
-			List<AbstractAnnotation> anns = t.getAnnotations();
+			int numAnns = t.getNumberOfAnnotations();
 
-			if (anns != null) {
-				for (int i = 0; i < anns.size(); i++) {
-					AnnotationCore ac = anns.get(i);
-					acs.add(new AnnotationCoreImpl(ac.getValue(), ac.getBeginTimeBoundary(), ac.getEndTimeBoundary()));
-				}
-				if (anns.isEmpty()) {
-					LOG.warning(String.format(
-						"There are no annotations on tier \"%s\", cannot retrieve segments.", t.getName()));
-				}
-			} else {
+			for (int i = 0; i < numAnns; i++) {
+				acs.add(new AnnotationCoreImpl(t.getValue(i), t.getBeginTime(i), t.getEndTime(i)));
+			}
+			if (numAnns == 0) {
 				LOG.warning(String.format(
-					"There are no annotations on tier \"%s\", cannot retrieve segments.", t.getName()));				
+					"There are no annotations on tier \"%s\", cannot retrieve segments.", t.getName()));
 			}
 		} else {			
 			LOG.warning("The tier is null, cannot retrieve segments.");
@@ -876,7 +888,7 @@ public abstract class AbstractCompareCommand extends AbstractProgressCommand {
 		return acs;
 	}
 	
-	private CompareCombi createCompareCombi(TierImpl t1, TierImpl t2) {
+	private CompareCombi createCompareCombi(TierSnapshot t1, TierSnapshot t2) {
 		if (t1 == null || t2 == null) {
 			LOG.warning(String.format(
 					"Cannot compare tiers: t1 is \"%s\", t2 is \"%s\".", (t1 == null ? "null" : t1.getName()),
@@ -900,7 +912,7 @@ public abstract class AbstractCompareCommand extends AbstractProgressCommand {
 		return new CompareCombi(cu1, cu2);
 	}
 	
-	private CompareCombiMulti createCompareCombi(List<TierImpl> tierList) {
+	private CompareCombiMulti createCompareCombi(List<TierSnapshot> tierList) {
 		if (tierList == null) {
 			LOG.warning("Cannot compare tiers, the list is null or empty");
 			return null;
@@ -908,14 +920,14 @@ public abstract class AbstractCompareCommand extends AbstractProgressCommand {
 		List<CompareUnit> cuList = new ArrayList<CompareUnit>(tierList.size());
 		CompareCombiMulti ccm = new CompareCombiMulti(cuList);
 		
-		for (TierImpl t : tierList) {
+		for (TierSnapshot t : tierList) {
 			List<AnnotationCore> segments = getAnnotationCores(t);
 			
 			//if (!segments.isEmpty()) {// include or exclude empty tiers?
 				CompareUnit cu = new CompareUnit(t.getTranscription().getFullPath(), t.getName(), t.getAnnotator());
 				cu.annotations = segments;
 				cuList.add(cu);
-				String cvName = t.getLinguisticType().getControlledVocabularyName();
+				String cvName = t.getControlledVocabularyName();
 				if (cvName != null) {
 					ccm.setCVName(cvName);
 				}
@@ -936,17 +948,17 @@ public abstract class AbstractCompareCommand extends AbstractProgressCommand {
 	}
 	
 	/**
-	 * Returns a transcription object for a  file or null
+	 * Returns a snapshot of the transcription in a file or null
 	 * 
 	 * @param f the file
-	 * @return a transcription object or null
+	 * @return a snapshot or null
 	 */
-	private TranscriptionImpl createTranscription(File f) {
+	private TranscriptionSnapshot createSnapshot(File f) {
 		if (f == null || f.isDirectory()) {
 			return null;
 		}
 		try {
-			return new TranscriptionImpl(f.getAbsolutePath());
+			return TranscriptionSnapshot.load(f.getAbsolutePath());
 		} catch (Throwable t) {// catch any
 			// log
 			LOG.warning("Could not load a transcription from file: " + f.getName());
@@ -955,21 +967,55 @@ public abstract class AbstractCompareCommand extends AbstractProgressCommand {
 	}
 	
 	/**
-	 * Creates a list of transcriptions based on the list of files.
+	 * Returns the snapshot delivered by a loader or null
+	 * 
+	 * @param loaded the result of loading a file
+	 * @return a snapshot or null
+	 */
+	private TranscriptionSnapshot createSnapshot(ParallelTranscriptionLoader.Result loaded) {
+		try {
+			return loaded.getSnapshot();
+		} catch (Throwable t) {// catch any
+			// log
+			LOG.warning("Could not load a transcription from file: " + loaded.getPath());
+		}
+		return null;
+	}
+	
+	/**
+	 * Creates a loader which loads snapshots of the files in parallel, in the
+	 * order of the list. Directories result in a failed load.
 	 * 
 	 * @param files the list of files to load, not null
-	 * @return a list of transcriptions
+	 * @return the loader
 	 */
-	private List<TranscriptionImpl> createTranscriptions(List<File> files) {
-		List<TranscriptionImpl> transList = new ArrayList<TranscriptionImpl>(files.size());
-		
+	private ParallelTranscriptionLoader createLoader(List<File> files) {
+		List<String> paths = new ArrayList<String>(files.size());
 		for (File f : files) {
-			//long st = System.currentTimeMillis();
-			TranscriptionImpl ti = createTranscription(f);
-			//System.out.println("Complete: " + f.getName() + ": " + (System.currentTimeMillis() - st));
-			if (ti != null) {
-				transList.add(ti);
+			paths.add(f != null ? f.getAbsolutePath() : null);
+		}
+		return new ParallelTranscriptionLoader(paths, true);
+	}
+	
+	/**
+	 * Creates a list of snapshots based on the list of files.
+	 * 
+	 * @param files the list of files to load, not null
+	 * @return a list of snapshots
+	 */
+	private List<TranscriptionSnapshot> createSnapshots(List<File> files) {
+		List<TranscriptionSnapshot> transList = new ArrayList<TranscriptionSnapshot>(files.size());
+		ParallelTranscriptionLoader loader = createLoader(files);
+		
+		try {
+			for (int i = 0; i < files.size(); i++) {
+				TranscriptionSnapshot ti = createSnapshot(loader.next());
+				if (ti != null) {
+					transList.add(ti);
+				}
 			}
+		} finally {
+			loader.close();
 		}
 		return transList;
 	}
@@ -984,7 +1030,7 @@ public abstract class AbstractCompareCommand extends AbstractProgressCommand {
 	 * 
 	 * @return a list of CompareCombi objects
 	 */
-	private List<CompareCombi> getCompareCombinations(TranscriptionImpl t1, TranscriptionImpl t2, 
+	private List<CompareCombi> getCompareCombinations(TranscriptionSnapshot t1, TranscriptionSnapshot t2, 
 			String tierName1, String tierName2) {
 		List<CompareCombi> combinations= new ArrayList<CompareCombi>();
 		if (t1 == null || t2 == null) {
@@ -994,8 +1040,8 @@ public abstract class AbstractCompareCommand extends AbstractProgressCommand {
 					(t1 == null ? "null" : t1.getName()), (t2 == null ? "null" : t2.getName())));
 			return combinations;
 		}
-		TierImpl tier1 = null;
-		TierImpl tier2 = null;
+		TierSnapshot tier1 = null;
+		TierSnapshot tier2 = null;
 		
 		tier1 = t1.getTierWithId(tierName1);
 		tier2 = t2.getTierWithId(tierName2);
@@ -1038,7 +1084,7 @@ public abstract class AbstractCompareCommand extends AbstractProgressCommand {
 	 * 
 	 * @return a list of {@code CompareCombiMulti} instances or {@code null}
 	 */
-	private List<? extends CompareCombi> getCompareCombinationsMulti(List<TranscriptionImpl> transList, 
+	private List<? extends CompareCombi> getCompareCombinationsMulti(List<TranscriptionSnapshot> transList, 
 			List<String> tierNames) {
 		List<CompareCombiMulti> combiList = new ArrayList<CompareCombiMulti>();
 		
@@ -1046,8 +1092,8 @@ public abstract class AbstractCompareCommand extends AbstractProgressCommand {
 			List<CompareUnit> cuList = new ArrayList<CompareUnit>();
 			CompareCombiMulti ccm = new CompareCombiMulti(cuList);
 			
-			for (TranscriptionImpl tr : transList) {
-				TierImpl t = tr.getTierWithId(name);
+			for (TranscriptionSnapshot tr : transList) {
+				TierSnapshot t = tr.getTierWithId(name);
 				if (t != null) {
 					CompareUnit cu1 = new CompareUnit(tr.getFullPath(), t.getName(), t.getAnnotator());
 					cu1.annotations = getAnnotationCores(t);
@@ -1055,7 +1101,7 @@ public abstract class AbstractCompareCommand extends AbstractProgressCommand {
 						cuList.add(cu1);
 						// the tiers are or should be linked to the same CV, if any,
 						// the following probably only needs to be done once
-						String cvName = t.getLinguisticType().getControlledVocabularyName();
+						String cvName = t.getControlledVocabularyName();
 						if (cvName != null) {
 							ccm.setCVName(cvName);
 						}
@@ -1081,18 +1127,18 @@ public abstract class AbstractCompareCommand extends AbstractProgressCommand {
 	 * @param tierNames the selected or matched tier names
 	 * @return a compare combination or {@code null}
 	 */
-	private CompareCombiMulti getCompareCombinationMulti(TranscriptionImpl tr, List<String> tierNames) {
+	private CompareCombiMulti getCompareCombinationMulti(TranscriptionSnapshot tr, List<String> tierNames) {
 		// checks
 		List<CompareUnit> cuList = new ArrayList<CompareUnit>(tierNames.size());
 		CompareCombiMulti ccm = new CompareCombiMulti(cuList);
 		
 		for (String name : tierNames) {
-			TierImpl t = tr.getTierWithId(name);
+			TierSnapshot t = tr.getTierWithId(name);
 			CompareUnit cu = new CompareUnit(tr.getFullPath(), name, t.getAnnotator());
 			cu.annotations = getAnnotationCores(t);
 			//if (cu.annotations.size() > 0) { // skip empty tiers, or include to maintain the correct number of raters
 				cuList.add(cu);
-				String cvName = t.getLinguisticType().getControlledVocabularyName();
+				String cvName = t.getControlledVocabularyName();
 				if (cvName != null) {
 					ccm.setCVName(cvName);
 				}
@@ -1133,7 +1179,7 @@ public abstract class AbstractCompareCommand extends AbstractProgressCommand {
 	 * 
 	 * @return a single compare combination or {@code null}
 	 */
-	private CompareCombiMulti getCompareCombinationMulti(List<TranscriptionImpl> transList, 
+	private CompareCombiMulti getCompareCombinationMulti(List<TranscriptionSnapshot> transList, 
 			List<String> tierNames) {
 		if (transList.size() != tierNames.size()) {
 			LOG.warning(String.format("The list of transcriptions and the list of tiers are not of the same size (%d and %d)", 
@@ -1141,20 +1187,20 @@ public abstract class AbstractCompareCommand extends AbstractProgressCommand {
 		}
 		List<CompareUnit> cuList = new ArrayList<CompareUnit>(transList.size());
 		CompareCombiMulti ccm = new CompareCombiMulti(cuList);
-		List<TranscriptionImpl> usedTrans = new ArrayList<TranscriptionImpl>(transList.size());
+		List<TranscriptionSnapshot> usedTrans = new ArrayList<TranscriptionSnapshot>(transList.size());
 		
 		for (String name : tierNames) {
-			for (TranscriptionImpl tr : transList) {
+			for (TranscriptionSnapshot tr : transList) {
 				if (usedTrans.contains(tr)) {
 					continue;
 				}
-				TierImpl tier = (TierImpl) tr.getTierWithId(name);
+				TierSnapshot tier = tr.getTierWithId(name);
 				// remove the test for 0 annotations?
 				if (tier != null /*&& tier.getNumberOfAnnotations() > 0*/) {
 					CompareUnit cu = new CompareUnit(tr.getFullPath(), tier.getName(), tier.getAnnotator());
 					cu.annotations = getAnnotationCores(tier);
 					cuList.add(cu);
-					String cvName = tier.getLinguisticType().getControlledVocabularyName();
+					String cvName = tier.getControlledVocabularyName();
 					if (cvName != null) {
 						ccm.setCVName(cvName);
 					}
@@ -1183,20 +1229,19 @@ public abstract class AbstractCompareCommand extends AbstractProgressCommand {
 	 * 
 	 * @return a list of available or used values or categories
 	 */
-	private List<String> getValues(Tier tier) {
+	private List<String> getValues(TierSnapshot tier) {
 		List<String> values = new ArrayList<String>();
-		if (tier.getLinguisticType().isUsingControlledVocabulary()) {
-			ControlledVocabulary cv = tier.getTranscription().getControlledVocabulary(
-					tier.getLinguisticType().getControlledVocabularyName());
-			
-			Iterator<String> vIter = cv.getValuesIterable(cv.getDefaultLanguageIndex()).iterator();
-			while (vIter.hasNext()) {
-				values.add(vIter.next());
-			}
-
+		String cvName = tier.getControlledVocabularyName();
+		List<String> cvValues = null;
+		if (cvName != null && cvName.length() > 0) {
+			cvValues = tier.getTranscription().getControlledVocabularyValues(cvName);
+		}
+		
+		if (cvValues != null) {
+			values.addAll(cvValues);
 		} else {
-			for (AnnotationCore ac : tier.getAnnotations()) {
-				String v = ac.getValue().strip();
+			for (int i = 0; i < tier.getNumberOfAnnotations(); i++) {
+				String v = tier.getValue(i).strip();
 				if (!values.contains(v)) {
 					values.add(v);
 				}
@@ -1206,9 +1251,9 @@ public abstract class AbstractCompareCommand extends AbstractProgressCommand {
 		return values;
 	}
 	
-	protected String getNames(List<TranscriptionImpl> trList) {
+	protected String getNames(List<TranscriptionSnapshot> trList) {
 		StringBuffer sb = new StringBuffer();
-		for (TranscriptionImpl tr : trList) {
+		for (TranscriptionSnapshot tr : trList) {
 			sb.append(tr.getName());
 			sb.append(", ");
 		}
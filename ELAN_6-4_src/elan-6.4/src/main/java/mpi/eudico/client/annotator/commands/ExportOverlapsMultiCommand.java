@@ -10,6 +10,7 @@ import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
 import java.util.List;
 
+import mpi.eudico.client.annotator.util.BackgroundTaskScheduler;
 import mpi.eudico.client.annotator.util.ProgressListener;
 
 /**
@@ -59,7 +60,8 @@ public class ExportOverlapsMultiCommand implements Command {
 			encoding = "UTF-8";
 		}
 		
-		new ExportRunner(fileList, refTier, compTiers, filePath, encoding).start();
+		BackgroundTaskScheduler.getInstance().submit(BackgroundTaskScheduler.Pool.CPU, name,
+				new ExportRunner(fileList, refTier, compTiers, filePath, encoding), this, listeners, null);
 		
 	}
 
@@ -139,11 +141,11 @@ public class ExportOverlapsMultiCommand implements Command {
     }
     
     /**
-     * A thread for the execution of the command.
+     * A task for the execution of the command.
      * 
      * @author Han Sloetjes
      */
-    private class ExportRunner extends Thread {
+    private class ExportRunner implements Runnable {
 		private List<String> fileList;
 		private String refTier;
 		private List<String> compTiers;
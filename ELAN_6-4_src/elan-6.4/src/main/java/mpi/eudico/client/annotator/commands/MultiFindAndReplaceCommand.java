@@ -3,16 +3,20 @@ package mpi.eudico.client.annotator.commands;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.regex.PatternSyntaxException;
 
 import mpi.eudico.client.annotator.SaveAs27Preferences;
 import mpi.eudico.client.annotator.search.model.EAFType;
 import mpi.eudico.client.annotator.search.model.ElanSearchEngine;
 import mpi.eudico.client.annotator.search.result.model.Replace;
+import mpi.eudico.client.annotator.util.BackgroundTask;
+import mpi.eudico.client.annotator.util.BackgroundTaskScheduler;
 import mpi.eudico.client.annotator.util.ProgressListener;
 import mpi.eudico.server.corpora.clomimpl.abstr.TierImpl;
 import mpi.eudico.server.corpora.clomimpl.abstr.TranscriptionImpl;
 import mpi.eudico.server.corpora.clomimpl.dobes.ACMTranscriptionStore;
+import mpi.eudico.server.corpora.clomimpl.util.ParallelTranscriptionLoader;
 import mpi.eudico.server.corpora.util.ProcessReport;
 import mpi.eudico.server.corpora.util.ProcessReporter;
 import mpi.search.content.query.model.AnchorConstraint;
@@ -37,7 +41,8 @@ public class MultiFindAndReplaceCommand implements Command, ProcessReporter {
     private String replPattern;
     private boolean regExp;
     private boolean caseSens;
-    private ReplaceThread frThread = null;
+    private ReplaceRunner frRunner = null;
+    private BackgroundTask frTask = null;
     private ProcessReport report;
 
     /**
@@ -103,10 +108,11 @@ public class MultiFindAndReplaceCommand implements Command, ProcessReporter {
         report("Case sensitive:  " + caseSens);
         report("\n");
         // checks??
-        frThread = new ReplaceThread(MultiFindAndReplaceCommand.this.getName());
+        frRunner = new ReplaceRunner();
 
         try {
-            frThread.start();
+            frTask = BackgroundTaskScheduler.getInstance().submit(BackgroundTaskScheduler.Pool.CPU,
+                    getName(), frRunner, this, listeners, report);
         } catch (Exception exc) {
             // any exception
             report("An exception occurred: " + exc.getMessage());
@@ -119,8 +125,12 @@ public class MultiFindAndReplaceCommand implements Command, ProcessReporter {
      * current ongoing operation how long it will take before execution stops.
      */
     public void interrupt() {
-        if (frThread != null) {
-            frThread.interrupt();
+        if (frRunner != null) {
+            frRunner.interrupt();
+        }
+
+        if (frTask != null) {
+            frTask.cancel();
         }
     }
 
@@ -232,41 +242,31 @@ public class MultiFindAndReplaceCommand implements Command, ProcessReporter {
     }
 
     /**
-     * The actual find and replace is performed in a separate thread.
+     * The actual find and replace is performed by a background task.
      *
      * @author Han Sloetjes
      */
-    private class ReplaceThread extends Thread {
-        private boolean interruptRequested = false;
+    private class ReplaceRunner implements Runnable {
+        private volatile boolean interruptRequested = false;
 
         /**
-         * Creates a new thread to find and replace in multiple files.
+         * Creates a new runner to find and replace in multiple files.
          */
-        public ReplaceThread() {
+        public ReplaceRunner() {
             super();
         }
 
-        /**
-         * Creates a new thread to find and replace in multiple files.
-         *
-         * @param name the name of the thread
-         */
-        public ReplaceThread(String name) {
-            super(name);
-        }
-
         /**
          * Sets the flag that an interrupt request was received. The current
          * find  and replace action will stop if it is not just writing a
          * changed transcription. This methods returns immediately.
          */
-        @Override
-		public void interrupt() {
+        public void interrupt() {
             interruptRequested = true;
         }
 
         /**
-         * The actual action of this thread.
+         * The actual action of this task.
          *
          * @see java.lang.Runnable#run()
          */
@@ -296,172 +296,186 @@ public class MultiFindAndReplaceCommand implements Command, ProcessReporter {
             constraint.setUnit(Constraint.IS_INSIDE);
 
             EAFType type = new EAFType();
+            // the next files are loaded while the current one is processed
+            List<String> loadPaths = new ArrayList<String>(searchFiles.length);
 
-            for (int i = 0; i < searchFiles.length; i++) {
-                // stop is there the operation is interrupted
-                if (interruptRequested) {
-                    // update report
-                    //super.interrupt();//just break the loop
-                    report("Search loop interrupted at index:  " + i);
-                    finalReport(numInspected, numChanged, numFailed);
-                    progressInterrupt("Operation interrupted...");
-
-                    break;
-                }
-
-                f = searchFiles[i];
-
-                if (!f.exists() || f.isDirectory()) {
-                    numFailed++;
-                    report("Skipping file: " + f.getAbsolutePath());
-                    progressUpdate((int) (i * perFileProg),
-                        ("Skipping file: " + f.getAbsolutePath()));
+            for (File sf : searchFiles) {
+                loadPaths.add(new File(sf.getAbsolutePath().replace('\\', '/')).getAbsolutePath());
+            }
 
-                    continue;
-                }
+            ParallelTranscriptionLoader loader = new ParallelTranscriptionLoader(loadPaths);
 
-                path = f.getAbsolutePath();
-                path = path.replace('\\', '/');
-
-                try {
-                    trans = new TranscriptionImpl(new File(path).getAbsolutePath());
-                    trans.setUnchanged();
-                    trans.setNotifying(false);
-                } catch (Exception ex) {
-                    numFailed++;
-                    // any exception 
-                    report("Can not load file: " + f.getAbsolutePath());
-                    report("Cause: " +
-                        ((ex.getMessage() != null) ? ex.getMessage()
-                                                   : "Unknown file loading or parsing error..."));
-                    progressUpdate((int) (i * perFileProg),
-                        ("Can not load file: " + f.getAbsolutePath()));
-
-                    continue;
-                }
+            try {
+                for (int i = 0; i < searchFiles.length; i++) {
+                    // stop is there the operation is interrupted
+                    if (interruptRequested) {
+                        // update report
+                        //super.interrupt();//just break the loop
+                        report("Search loop interrupted at index:  " + i);
+                        finalReport(numInspected, numChanged, numFailed);
+                        progressInterrupt("Operation interrupted...");
 
-                if (interruptRequested) {
-                    // update report
-                    //super.interrupt();//just break the loop
-                    report("Search loop interrupted at index:  " + i);
-                    finalReport(numInspected, numChanged, numFailed);
-                    progressInterrupt("Operation interrupted...");
+                        break;
+                    }
 
-                    break;
-                }
+                    // don't wait for the next file if the operation is interrupted
+                    ParallelTranscriptionLoader.Result loaded = loader.next();
+                    f = searchFiles[i];
 
-                engine = new ElanSearchEngine(null, trans); // or pass a listener??
-                query = new ContentQuery(constraint, type);
-                // HS 16 March 2010 adjust the Query object such, that only the names of tiers
-                // that are present in the transcription are in the tier name array
-                if (selectedTiers[0] != Constraint.ALL_TIERS) {
-                	ArrayList<String> validNames = new ArrayList<String>(selectedTiers.length);
-                	for (String n : selectedTiers) {
-                		if (trans.getTierWithId(n) != null) {
-                			validNames.add(n);
-                		}
-                	}
-                	if (validNames.size() == 0) {
-                		// none of the tiers are in the file
-                		numInspected++;
-                        report("None of the selected tiers found " + 
-                        		"\nin file: " + f.getAbsolutePath());
-                        //finalReport(numInspected, numChanged, numFailed);
+                    if (!f.exists() || f.isDirectory()) {
+                        numFailed++;
+                        report("Skipping file: " + f.getAbsolutePath());
                         progressUpdate((int) (i * perFileProg),
-                            ("None of the tiers in file: " +
-                            f.getAbsolutePath()));
-                		continue;// next file
-                	}
-                	constraint.setTierNames(validNames.toArray(new String[]{}));
-                }
-                
-                try {
-                    engine.performSearch(query);
-                    result = (ContentResult) query.getResult();
+                            ("Skipping file: " + f.getAbsolutePath()));
 
-                    int numHits = result.getRealSize(); //log or report
-                    numInspected++;
-                    report("Number of hits in " + f.getAbsolutePath() + " :  " +
-                        numHits);
+                        continue;
+                    }
 
-                    if (numHits == 0) {
+                    path = f.getAbsolutePath();
+                    path = path.replace('\\', '/');
+
+                    try {
+                        trans = loaded.getTranscription();
+                        trans.setUnchanged();
+                        trans.setNotifying(false);
+                    } catch (Exception ex) {
+                        numFailed++;
+                        // any exception 
+                        report("Can not load file: " + f.getAbsolutePath());
+                        report("Cause: " +
+                            ((ex.getMessage() != null) ? ex.getMessage()
+                                                       : "Unknown file loading or parsing error..."));
                         progressUpdate((int) (i * perFileProg),
-                            ("No hits in file: " + f.getAbsolutePath()));
+                            ("Can not load file: " + f.getAbsolutePath()));
 
                         continue;
                     }
 
-                    // create a backup of the file??
-                    Replace.execute(result, replPattern, trans);
+                    if (interruptRequested) {
+                        // update report
+                        //super.interrupt();//just break the loop
+                        report("Search loop interrupted at index:  " + i);
+                        finalReport(numInspected, numChanged, numFailed);
+                        progressInterrupt("Operation interrupted...");
 
-                    // save the file
-                    if (!interruptRequested) {
-                        // save
-        				int saveAsType = SaveAs27Preferences.saveAsTypeWithCheck(trans);
+                        break;
+                    }
 
-                        try {
-                            ACMTranscriptionStore.getCurrentTranscriptionStore()
-                                                 .storeTranscription(trans,
-                                null, new ArrayList<TierImpl>(0), saveAsType);
-                            numChanged++;
+                    engine = new ElanSearchEngine(null, trans); // or pass a listener??
+                    query = new ContentQuery(constraint, type);
+                    // HS 16 March 2010 adjust the Query object such, that only the names of tiers
+                    // that are present in the transcription are in the tier name array
+                    if (selectedTiers[0] != Constraint.ALL_TIERS) {
+                    	ArrayList<String> validNames = new ArrayList<String>(selectedTiers.length);
+                    	for (String n : selectedTiers) {
+                    		if (trans.getTierWithId(n) != null) {
+                    			validNames.add(n);
+                    		}
+                    	}
+                    	if (validNames.size() == 0) {
+                    		// none of the tiers are in the file
+                    		numInspected++;
+                            report("None of the selected tiers found " + 
+                            		"\nin file: " + f.getAbsolutePath());
+                            //finalReport(numInspected, numChanged, numFailed);
                             progressUpdate((int) (i * perFileProg),
-                                ("Processed succesfully: " +
+                                ("None of the tiers in file: " +
                                 f.getAbsolutePath()));
-                            report("Saved file successfully: " + f.getAbsolutePath());
-                        } catch (IOException ioe) {
-                            numFailed++;
-                            report("Could not save the file: " +
-                                f.getAbsolutePath());
-                            report("because: " +
-                                ((ioe.getMessage() != null) ? ioe.getMessage()
-                                                            : "unknown cause..."));
+                    		continue;// next file
+                    	}
+                    	constraint.setTierNames(validNames.toArray(new String[]{}));
+                    }
+                
+                    try {
+                        engine.performSearch(query);
+                        result = (ContentResult) query.getResult();
+
+                        int numHits = result.getRealSize(); //log or report
+                        numInspected++;
+                        report("Number of hits in " + f.getAbsolutePath() + " :  " +
+                            numHits);
+
+                        if (numHits == 0) {
+                            progressUpdate((int) (i * perFileProg),
+                                ("No hits in file: " + f.getAbsolutePath()));
+
+                            continue;
                         }
 
-                        // progress update
-                    } else {
-                        // update report
-                        report("Search loop interrupted at index:  " + i);
+                        // create a backup of the file??
+                        Replace.execute(result, replPattern, trans);
+
+                        // save the file
+                        if (!interruptRequested) {
+                            // save
+            				int saveAsType = SaveAs27Preferences.saveAsTypeWithCheck(trans);
+
+                            try {
+                                ACMTranscriptionStore.getCurrentTranscriptionStore()
+                                                     .storeTranscription(trans,
+                                    null, new ArrayList<TierImpl>(0), saveAsType);
+                                numChanged++;
+                                progressUpdate((int) (i * perFileProg),
+                                    ("Processed succesfully: " +
+                                    f.getAbsolutePath()));
+                                report("Saved file successfully: " + f.getAbsolutePath());
+                            } catch (IOException ioe) {
+                                numFailed++;
+                                report("Could not save the file: " +
+                                    f.getAbsolutePath());
+                                report("because: " +
+                                    ((ioe.getMessage() != null) ? ioe.getMessage()
+                                                                : "unknown cause..."));
+                            }
+
+                            // progress update
+                        } else {
+                            // update report
+                            report("Search loop interrupted at index:  " + i);
+                            finalReport(numInspected, numChanged, numFailed);
+                            progressInterrupt("Operation interrupted...");
+
+                            break;
+                        }
+                    } catch (PatternSyntaxException pse) {
+                        numFailed++;
+                        numInspected++;
+                        report("Pattern exception: " + pse.getDescription());
+                        // we can stop here because the same pattern is used in each iteration
                         finalReport(numInspected, numChanged, numFailed);
-                        progressInterrupt("Operation interrupted...");
+                        progressUpdate((int) (i * perFileProg),
+                            ("Cannot perform search in file: " +
+                            f.getAbsolutePath()));
+                        progressInterrupt("Illegal search pattern, exiting...");
 
                         break;
+                    } catch (QueryFormulationException qfe) {
+                        numFailed++;
+                        numInspected++;
+                        report("Query formulation exception: " + qfe.getMessage() + 
+                        		"\nin file: " + f.getAbsolutePath());
+                        //finalReport(numInspected, numChanged, numFailed);
+                        progressUpdate((int) (i * perFileProg),
+                            ("Cannot perform search in file: " +
+                            f.getAbsolutePath()));
+                        //progressInterrupt("Wrong query formulation, exiting...");
+
+                        //break;
+                        // do not stop: a query formulation exception is thrown when (amongst
+                        // other situations) a specified tier cannot not be found, i.e. a tier 
+                        // is not present in a certain file 
+                    } catch (Exception ex) {
+                        numFailed++;
+                        numInspected++;
+                        report("Exception while executing query: " +
+                            ex.getMessage() + "\nin file: " + f.getAbsolutePath());
+                        progressUpdate((int) (i * perFileProg),
+                            ("Cannot perform search in file: " +
+                            f.getAbsolutePath()));
                     }
-                } catch (PatternSyntaxException pse) {
-                    numFailed++;
-                    numInspected++;
-                    report("Pattern exception: " + pse.getDescription());
-                    // we can stop here because the same pattern is used in each iteration
-                    finalReport(numInspected, numChanged, numFailed);
-                    progressUpdate((int) (i * perFileProg),
-                        ("Cannot perform search in file: " +
-                        f.getAbsolutePath()));
-                    progressInterrupt("Illegal search pattern, exiting...");
-
-                    break;
-                } catch (QueryFormulationException qfe) {
-                    numFailed++;
-                    numInspected++;
-                    report("Query formulation exception: " + qfe.getMessage() + 
-                    		"\nin file: " + f.getAbsolutePath());
-                    //finalReport(numInspected, numChanged, numFailed);
-                    progressUpdate((int) (i * perFileProg),
-                        ("Cannot perform search in file: " +
-                        f.getAbsolutePath()));
-                    //progressInterrupt("Wrong query formulation, exiting...");
-
-                    //break;
-                    // do not stop: a query formulation exception is thrown when (amongst
-                    // other situations) a specified tier cannot not be found, i.e. a tier 
-                    // is not present in a certain file 
-                } catch (Exception ex) {
-                    numFailed++;
-                    numInspected++;
-                    report("Exception while executing query: " +
-                        ex.getMessage() + "\nin file: " + f.getAbsolutePath());
-                    progressUpdate((int) (i * perFileProg),
-                        ("Cannot perform search in file: " +
-                        f.getAbsolutePath()));
                 }
+            } finally {
+                loader.close();
             }
 
             // report...
@@ -2,15 +2,16 @@ package mpi.eudico.client.annotator.commands;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import mpi.eudico.client.annotator.multiplefilesedit.statistics.StatisticsAnnotationsMF;
 import mpi.eudico.client.annotator.multiplefilesedit.statistics.StatisticsCollectionMF;
+import mpi.eudico.client.annotator.util.BackgroundTaskScheduler;
 import mpi.eudico.client.annotator.util.ProgressListener;
-import mpi.eudico.server.corpora.clomimpl.abstr.AbstractAnnotation;
-import mpi.eudico.server.corpora.clomimpl.abstr.TierImpl;
-import mpi.eudico.server.corpora.clomimpl.abstr.TranscriptionImpl;
-import mpi.eudico.server.corpora.clomimpl.type.LinguisticType;
+import mpi.eudico.server.corpora.clomimpl.util.ParallelTranscriptionLoader;
+import mpi.eudico.server.corpora.clomimpl.util.TierSnapshot;
+import mpi.eudico.server.corpora.clomimpl.util.TranscriptionSnapshot;
 import mpi.eudico.server.corpora.util.ProcessReport;
 import mpi.eudico.server.corpora.util.ProcessReporter;
 
@@ -28,7 +29,7 @@ public class MultipleFileStatisticsCommand implements Command, ProcessReporter {
     private boolean loadAll = false;
     private StatisticsCollectionMF statsColl;
     private ProcessReport report;
-    private StatisticsThread statsThread;
+    private StatisticsRunner statsRunner;
     
 	/**
 	 * @param commandName the name of the command
@@ -81,10 +82,11 @@ public class MultipleFileStatisticsCommand implements Command, ProcessReporter {
             return;
         }
         
-        statsThread = new StatisticsThread(commandName);
+        statsRunner = new StatisticsRunner();
         
         try {
-        	statsThread.start();
+        	BackgroundTaskScheduler.getInstance().submit(BackgroundTaskScheduler.Pool.CPU,
+        			commandName, statsRunner, this, listeners, report);
         } catch(Exception exc) {
             report("An exception occurred while starting the statistics calculation process: " + exc.getMessage());
             progressInterrupt("An exception occurred: " + exc.getMessage());
@@ -197,16 +199,12 @@ public class MultipleFileStatisticsCommand implements Command, ProcessReporter {
     }
     
 //############################################################################
-    private class StatisticsThread extends Thread {
+    private class StatisticsRunner implements Runnable {
     	
-    	public StatisticsThread() {
+    	public StatisticsRunner() {
     		super();
     	}
     	
-    	public StatisticsThread(String name) {
-    		super(name);
-    	}
-    	
     	@Override
 		public void run() {
             float perFileProg = 100 / (float) selectedFiles.length;
@@ -217,138 +215,142 @@ public class MultipleFileStatisticsCommand implements Command, ProcessReporter {
             
             String path;
             File f;
-            TranscriptionImpl trans = null;
-            TierImpl tier = null;
-            AbstractAnnotation aa = null;
+            TranscriptionSnapshot trans = null;
+            TierSnapshot tier = null;
+            // the next files are loaded while the current one is processed,
+            // only the tiers and the annotation times and values are needed
+            ParallelTranscriptionLoader loader = new ParallelTranscriptionLoader(
+            		Arrays.asList(selectedFiles), true);
             
-            for (int i = 0; i < selectedFiles.length; i++) {
-            	path = selectedFiles[i];
-            	f = new File(path);
-            	numInspected++;
+            try {
+                for (int i = 0; i < selectedFiles.length; i++) {
+                	ParallelTranscriptionLoader.Result loaded = loader.next();
+                	path = selectedFiles[i];
+                	f = new File(path);
+                	numInspected++;
             	
-                if (!f.exists() || f.isDirectory()) {
-                    numFailed++;
-                    report("Skipping file: " + f.getAbsolutePath());
-                    progressUpdate((int) (i * perFileProg),
-                        ("Skipping file: " + f.getAbsolutePath()));
+                    if (!f.exists() || f.isDirectory()) {
+                        numFailed++;
+                        report("Skipping file: " + f.getAbsolutePath());
+                        progressUpdate((int) (i * perFileProg),
+                            ("Skipping file: " + f.getAbsolutePath()));
 
-                    continue;
-                }
+                        continue;
+                    }
                 
-                // change path \ to / ?
-                try {
-                	trans = new TranscriptionImpl(path);
+                    // change path \ to / ?
+                    try {
+                    	trans = loaded.getSnapshot();
                 	
-                	// check tiers...
-                	List<TierImpl> tiers = trans.getTiers();
-                	List<Long> durations = null;
-                	// following three only used if everything has to be loaded
-                	List<String> typeNames = null;
-//                	List<String> partNames = null;
-//                	List<String> annotNames = null;
-                	int numProcessedTiers = 0;
+                    	// check tiers...
+                    	List<TierSnapshot> tiers = trans.getTiers();
+                    	List<Long> durations = null;
+                    	// following three only used if everything has to be loaded
+                    	List<String> typeNames = null;
+    //                	List<String> partNames = null;
+    //                	List<String> annotNames = null;
+                    	int numProcessedTiers = 0;
                 	
-                	if (loadAll) {
-                		typeNames = new ArrayList<String>();
-//                		partNames = new ArrayList<String>();
-//                		annotNames = new ArrayList<String>();
-                	}
+                    	if (loadAll) {
+                    		typeNames = new ArrayList<String>();
+    //                		partNames = new ArrayList<String>();
+    //                		annotNames = new ArrayList<String>();
+                    	}
                 	
-                	for (int j = 0; j < tiers.size(); j++) {
-                		tier = tiers.get(j);
-                		if (loadAll || selectedTierList.contains(tier.getName())) {
-                        	long bt, et, curDur;
-                        	long minDur = Long.MAX_VALUE; 
-                        	long maxDur = 0, totalDur = 0;
-                        	long latency = Long.MAX_VALUE;
-                        	durations = new ArrayList<Long>();
+                    	for (int j = 0; j < tiers.size(); j++) {
+                    		tier = tiers.get(j);
+                    		if (loadAll || selectedTierList.contains(tier.getName())) {
+                            	long bt, et, curDur;
+                            	long minDur = Long.MAX_VALUE; 
+                            	long maxDur = 0, totalDur = 0;
+                            	long latency = Long.MAX_VALUE;
+                            	durations = new ArrayList<Long>();
                         	
-                        	List<AbstractAnnotation> annotations = tier.getAnnotations();
+                            	int numAnnotations = tier.getNumberOfAnnotations();
                         	
-                        	for (int k = 0; k < annotations.size(); k++) {
-                        		aa = annotations.get(k);
-                        		bt = aa.getBeginTimeBoundary();
-                        		et = aa.getEndTimeBoundary();
-                        		curDur = et - bt;
-                        		if (curDur < minDur) {
-                        			minDur = curDur;
-                        		}
-                        		if (curDur > maxDur) {
-                        			maxDur = curDur;
-                        		}
-                        		if (bt < latency) {
-                        			latency = bt;// normally the first annotations should have the lowest begin time
-                        		}
-                        		totalDur += curDur;
-                        		durations.add(curDur);
-                        	}
+                            	for (int k = 0; k < numAnnotations; k++) {
+                            		bt = tier.getBeginTime(k);
+                            		et = tier.getEndTime(k);
+                            		curDur = et - bt;
+                            		if (curDur < minDur) {
+                            			minDur = curDur;
+                            		}
+                            		if (curDur > maxDur) {
+                            			maxDur = curDur;
+                            		}
+                            		if (bt < latency) {
+                            			latency = bt;// normally the first annotations should have the lowest begin time
+                            		}
+                            		totalDur += curDur;
+                            		durations.add(curDur);
+                            	}
                         	
-                        	statsColl.addTier(path, tier, annotations.size(), 
-                        			minDur, maxDur, totalDur, latency, durations);
-                        	StatisticsAnnotationsMF annMF = statsColl.getAnnotationStats(tier.getName());
-                        	if (annMF == null) {
-                        		annMF = new StatisticsAnnotationsMF(tier);
-                        		statsColl.addAnnotations(path, tier.getName(), annMF);
-                        	} else {
-                        		annMF.addTier(tier);
-                        	}
+                            	statsColl.addTier(path, tier, numAnnotations, 
+                            			minDur, maxDur, totalDur, latency, durations);
+                            	StatisticsAnnotationsMF annMF = statsColl.getAnnotationStats(tier.getName());
+                            	if (annMF == null) {
+                            		annMF = new StatisticsAnnotationsMF(tier);
+                            		statsColl.addAnnotations(path, tier.getName(), annMF);
+                            	} else {
+                            		annMF.addTier(tier);
+                            	}
                         	
-                        	if (loadAll) {
-                        		String key = tier.getLinguisticType().getLinguisticTypeName();
-                        		if (!typeNames.contains(key)) {
-                        			typeNames.add(key);
-                        		}
-//                        		key = tier.getParticipant(); 
-//                        		if (key != null && key.length() > 0) {
-//                        			if (!partNames.contains(key)) {
-//                        				partNames.add(key);
-//                        			}
-//                        		} else {
-//                        			if (!partNames.contains(StatisticsCollectionMF.UNSPECIFIED)) {
-//                        				partNames.add(StatisticsCollectionMF.UNSPECIFIED);
-//                        			}
-//                        		}
-//                        		key = tier.getAnnotator();
-//                        		if (key != null && key.length() > 0) {
-//                        			if (!annotNames.contains(key)) {
-//                        				annotNames.add(key);
-//                        			}
-//                        		} else {
-//                        			if (!annotNames.contains(StatisticsCollectionMF.UNSPECIFIED)) {
-//                        				annotations.contains(StatisticsCollectionMF.UNSPECIFIED);
-//                        			}
-//                        		}
-                        	}
-                        	numProcessedTiers++;
-                		}
-                	}
+                            	if (loadAll) {
+                            		String key = tier.getLinguisticTypeName();
+                            		if (!typeNames.contains(key)) {
+                            			typeNames.add(key);
+                            		}
+    //                        		key = tier.getParticipant(); 
+    //                        		if (key != null && key.length() > 0) {
+    //                        			if (!partNames.contains(key)) {
+    //                        				partNames.add(key);
+    //                        			}
+    //                        		} else {
+    //                        			if (!partNames.contains(StatisticsCollectionMF.UNSPECIFIED)) {
+    //                        				partNames.add(StatisticsCollectionMF.UNSPECIFIED);
+    //                        			}
+    //                        		}
+    //                        		key = tier.getAnnotator();
+    //                        		if (key != null && key.length() > 0) {
+    //                        			if (!annotNames.contains(key)) {
+    //                        				annotNames.add(key);
+    //                        			}
+    //                        		} else {
+    //                        			if (!annotNames.contains(StatisticsCollectionMF.UNSPECIFIED)) {
+    //                        				annotations.contains(StatisticsCollectionMF.UNSPECIFIED);
+    //                        			}
+    //                        		}
+                            	}
+                            	numProcessedTiers++;
+                    		}
+                    	}
                 	
-                	// after processing tiers check if remaining unused types need to be added
-                	if (loadAll) {
-                		List<LinguisticType> types = trans.getLinguisticTypes();
-                		LinguisticType lt;
-                		for (int t = 0; t < types.size(); t++) {
-                			lt = types.get(t);
-                			if (!typeNames.contains(lt.getLinguisticTypeName())) {
-                				statsColl.addEmptyLinguisticType(path, lt.getLinguisticTypeName());
-                			}
-                		}
-                	}
-                	report("Processed " + numProcessedTiers + " tiers from file: " + path);
-                    progressUpdate((int) ((i + 1) * perFileProg - 1),
-                            ("Processed file: " + path));
-                } catch (Exception ex) { // any exception 
-                    numFailed++;
-                    // any exception 
-                    report("Can not load file: " + f.getAbsolutePath());
-                    report("Cause: " +
-                        ((ex.getMessage() != null) ? ex.getMessage()
-                                                   : "Unknown file loading or parsing error..."));
-                    progressUpdate((int) ((i + 1) * perFileProg - 1),
-                        ("Can not load file: " + f.getAbsolutePath()));
+                    	// after processing tiers check if remaining unused types need to be added
+                    	if (loadAll) {
+                    		for (String typeName : trans.getLinguisticTypeNames()) {
+                    			if (!typeNames.contains(typeName)) {
+                    				statsColl.addEmptyLinguisticType(path, typeName);
+                    			}
+                    		}
+                    	}
+                    	report("Processed " + numProcessedTiers + " tiers from file: " + path);
+                        progressUpdate((int) ((i + 1) * perFileProg - 1),
+                                ("Processed file: " + path));
+                    } catch (Exception ex) { // any exception 
+                        numFailed++;
+                        // any exception 
+                        report("Can not load file: " + f.getAbsolutePath());
+                        report("Cause: " +
+                            ((ex.getMessage() != null) ? ex.getMessage()
+                                                       : "Unknown file loading or parsing error..."));
+                        progressUpdate((int) ((i + 1) * perFileProg - 1),
+                            ("Can not load file: " + f.getAbsolutePath()));
 
-                    continue;
+                        continue;
+                    }
                 }
+            } finally {
+                loader.close();
             }
             
             report("Processing files completed: ");
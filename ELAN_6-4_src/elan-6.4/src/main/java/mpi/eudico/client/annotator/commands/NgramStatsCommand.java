@@ -3,15 +3,16 @@ package mpi.eudico.client.annotator.commands;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.util.Collections;
 import java.util.List;
 
 import mpi.eudico.client.annotator.ElanLocale;
 import mpi.eudico.client.annotator.ngramstats.NgramStatsResult;
+import mpi.eudico.client.annotator.util.BackgroundTaskScheduler;
 import mpi.eudico.client.annotator.util.ProgressListener;
 import mpi.eudico.client.annotator.util.SquelchOutput;
-import mpi.eudico.server.corpora.clomimpl.abstr.AbstractAnnotation;
-import mpi.eudico.server.corpora.clomimpl.abstr.TierImpl;
-import mpi.eudico.server.corpora.clomimpl.abstr.TranscriptionImpl;
+import mpi.eudico.server.corpora.clomimpl.util.ParallelTranscriptionLoader;
+import mpi.eudico.server.corpora.clomimpl.util.TierSnapshot;
 import mpi.eudico.server.corpora.util.ProcessReport;
 import mpi.eudico.server.corpora.util.SimpleReport;
 
@@ -26,7 +27,7 @@ public class NgramStatsCommand implements Command {
     private ProgressListener listener;
     private List<String> selectedFiles;
     private NgramStatsResult ngramsResult;
-    private NgramsThread ngramsThread;
+    private NgramsRunner ngramsRunner;
     private SimpleReport report = new SimpleReport(ElanLocale.getString("ProcessReport"));
 
 	public NgramStatsCommand(String commandName) {
@@ -39,10 +40,12 @@ public class NgramStatsCommand implements Command {
 		selectedFiles = (List<String>) arguments[0];
 		ngramsResult = (NgramStatsResult) arguments[1];
         
-        ngramsThread = new NgramsThread(commandName);
+        ngramsRunner = new NgramsRunner();
         
         try {
-        	ngramsThread.start();
+        	BackgroundTaskScheduler.getInstance().submit(BackgroundTaskScheduler.Pool.CPU,
+        			commandName, ngramsRunner, this,
+        			listener != null ? Collections.singletonList(listener) : null, report);
         } catch(Exception ex) {
         	report.append("Error in executing analysis: " + ex.getMessage());
         }
@@ -91,10 +94,7 @@ public class NgramStatsCommand implements Command {
     }
     
 //############################################################################
-    private class NgramsThread extends Thread {
-    	public NgramsThread(String name) {
-    		super(name);
-    	}
+    private class NgramsRunner implements Runnable {
 
     	@Override
     	public void run() {
@@ -120,33 +120,42 @@ public class NgramStatsCommand implements Command {
             	return;
             }
             
-            for (int i = 0; i < selectedFiles.size(); i++) {
-                try {
-                	TranscriptionImpl trans = new TranscriptionImpl( selectedFiles.get(i) );
-                	TierImpl tier = trans.getTierWithId(ngramsResult.getTier());
+            // the next files are loaded while the current one is processed,
+            // only the annotation times and values are needed
+            ParallelTranscriptionLoader loader = new ParallelTranscriptionLoader(selectedFiles, true);
+            
+            try {
+                for (int i = 0; i < selectedFiles.size(); i++) {
+                	ParallelTranscriptionLoader.Result loaded = loader.next();
+                    try {
+                    	TierSnapshot tier = loaded.getSnapshot().getTierWithId(ngramsResult.getTier());
                 	
-                	if (tier != null) {
-	                	// Loop through the annotations and add them to the result
-	                	List<AbstractAnnotation> annotations = tier.getAnnotations();
-	                	if ( annotations.size() > 0 ) {
-	                		ngramsResult.startFile(selectedFiles.get(i));
-	                    	for (int ann = 0; ann < annotations.size(); ann++) {
-	                    		ngramsResult.addAnnotation(annotations.get(ann));
-	                    	}
-	                    	ngramsResult.endFile();
-	                	}
-                	} else {
-                		report.append("Selected tier(" + ngramsResult.getTier() + ") not present in file: " + selectedFiles.get(i));
-                	}
+                    	if (tier != null) {
+    	                	// Loop through the annotations and add them to the result
+    	                	int numAnnotations = tier.getNumberOfAnnotations();
+    	                	if ( numAnnotations > 0 ) {
+    	                		ngramsResult.startFile(selectedFiles.get(i));
+    	                    	for (int ann = 0; ann < numAnnotations; ann++) {
+    	                    		ngramsResult.addAnnotation(tier.getValue(ann), tier.getBeginTime(ann),
+    	                    				tier.getEndTime(ann));
+    	                    	}
+    	                    	ngramsResult.endFile();
+    	                	}
+                    	} else {
+                    		report.append("Selected tier(" + ngramsResult.getTier() + ") not present in file: " + selectedFiles.get(i));
+                    	}
 
-                    progressUpdate( (int)((i + 1) * perFileProg - 1), "Processed file: " + selectedFiles.get(i));
-                } catch (Exception ex) {
-                	report.append("Error parsing file(" + selectedFiles.get(i) + "): " + ex.getMessage());
+                        progressUpdate( (int)((i + 1) * perFileProg - 1), "Processed file: " + selectedFiles.get(i));
+                    } catch (Exception ex) {
+                    	report.append("Error parsing file(" + selectedFiles.get(i) + "): " + ex.getMessage());
                 	
-                	numFailed++;
-                    progressUpdate( (int)((i + 1) * perFileProg - 1), "Unable to load file(" + selectedFiles.get(i) + "): " + ex.getMessage());
-                    continue;
+                    	numFailed++;
+                        progressUpdate( (int)((i + 1) * perFileProg - 1), "Unable to load file(" + selectedFiles.get(i) + "): " + ex.getMessage());
+                        continue;
+                    }
                 }
+            } finally {
+                loader.close();
             }
             
             // restore the output handlers
@@ -3,12 +3,15 @@ package mpi.eudico.client.annotator.commands;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import mpi.eudico.client.annotator.Preferences;
 import mpi.eudico.client.annotator.imports.MergeUtil;
+import mpi.eudico.client.annotator.util.BackgroundTask;
+import mpi.eudico.client.annotator.util.BackgroundTaskScheduler;
 import mpi.eudico.client.annotator.util.ProgressListener;
 import mpi.eudico.server.corpora.clom.TranscriptionStore;
 import mpi.eudico.server.corpora.clomimpl.abstr.LicenseRecord;
@@ -17,6 +20,7 @@ import mpi.eudico.server.corpora.clomimpl.abstr.TranscriptionImpl;
 import mpi.eudico.server.corpora.clomimpl.dobes.ACMTranscriptionStore;
 import mpi.eudico.server.corpora.clomimpl.type.ConstraintImpl;
 import mpi.eudico.server.corpora.clomimpl.type.LinguisticType;
+import mpi.eudico.server.corpora.clomimpl.util.ParallelTranscriptionLoader;
 import mpi.eudico.server.corpora.clomimpl.util.TranscriptionCompare;
 import mpi.eudico.server.corpora.util.ProcessReport;
 import mpi.eudico.server.corpora.util.ProcessReporter;
@@ -48,8 +52,8 @@ public class UpdateTranscriptionsWithTemplateCommand implements
 	private Boolean dryRunFlag;
 	private Boolean forceCVReplacement = false;
 	
-	private UpdateThread updateThread;
-	private boolean cancelled = false;
+	private BackgroundTask updateTask;
+	private volatile boolean cancelled = false;
 	
 	/**
 	 * Constructor.
@@ -110,8 +114,9 @@ public class UpdateTranscriptionsWithTemplateCommand implements
 		
 		templatePrefs = Preferences.loadPreferencesForFile(templateTrans.getFullPath());
 		
-		updateThread = new UpdateThread();
-		updateThread.start();
+		updateTask = BackgroundTaskScheduler.getInstance().submit(BackgroundTaskScheduler.Pool.CPU,
+				name, new UpdateRunner(), this,
+				listener != null ? Collections.singletonList(listener) : null, reporter);
 	}
 
 	/**
@@ -161,6 +166,9 @@ public class UpdateTranscriptionsWithTemplateCommand implements
 	 */
 	public void setCancelled(boolean cancelled) {
 		this.cancelled = cancelled;
+		if (cancelled && updateTask != null) {
+			updateTask.cancel();
+		}
 	}
 
 	/**
@@ -201,10 +209,10 @@ public class UpdateTranscriptionsWithTemplateCommand implements
 	}
 	
 	/**
-	 * The actual work is performed in a separate thread.
+	 * The actual work is performed by a background task.
 	 * 
 	 */
-	private class UpdateThread extends Thread {
+	private class UpdateRunner implements Runnable {
 		private MergeUtil mergeUtil;
 	
 		private final String	NEW_TIERS = "nw_tiers";
@@ -229,73 +237,85 @@ public class UpdateTranscriptionsWithTemplateCommand implements
 				perFilePercentage = 100.0f / fileList.size();
 			}
 			
+			// the next files are loaded while the current one is processed
+			List<String> paths = new ArrayList<String>(fileList.size());
 			for (File f : fileList) {
-				report("\nFILE:  " + f.getAbsolutePath());
-				// load transcription for f
-				TranscriptionImpl trans = null;
-				try {
-					trans = new TranscriptionImpl(f.getAbsolutePath());
-					trans.setNotifying(false);
-					trans.setUnchanged();
-				} catch (Throwable t) {
-					// catch any IO or Parse exception
-					report("Unable to load: " + t.getMessage());
-					curProg += perFilePercentage;
-					setProgress(curProg, "Error - skipping file: " + f.getName());
-					continue;
-				}
-				// clear the map for each file
-				changeMap.clear();
+				paths.add(f.getAbsolutePath());
+			}
+			ParallelTranscriptionLoader loader = new ParallelTranscriptionLoader(paths);
+			
+			try {
+				for (File f : fileList) {
+					ParallelTranscriptionLoader.Result loaded = loader.next();
+					report("\nFILE:  " + f.getAbsolutePath());
+					// load transcription for f
+					TranscriptionImpl trans = null;
+					try {
+						trans = loaded.getTranscription();
+						trans.setNotifying(false);
+						trans.setUnchanged();
+					} catch (Throwable t) {
+						// catch any IO or Parse exception
+						report("Unable to load: " + t.getMessage());
+						curProg += perFilePercentage;
+						setProgress(curProg, "Error - skipping file: " + f.getName());
+						continue;
+					}
+					// clear the map for each file
+					changeMap.clear();
 				
-				// check the differences with the template
-				reportDifferences(templateTrans, trans);
-				// report, update progress and continue if dry run flag is true
-				if (dryRunFlag != null && dryRunFlag.booleanValue()) {
+					// check the differences with the template
+					reportDifferences(templateTrans, trans);
+					// report, update progress and continue if dry run flag is true
+					if (dryRunFlag != null && dryRunFlag.booleanValue()) {
+						curProg += perFilePercentage;
+						setProgress(Math.min(99.0f, curProg), "Processed file: " + f.getName());
+						if (cancelled) {
+							report(String.format("The process was cancelled after %f%% of the files was processed", curProg));
+							break;
+						}
+						continue;
+					}
+				
+					// update transcription and save
+					// update in reverse order: licenses, CV's, types, tiers, all including external references
+					if (mergeUtil == null) {
+						mergeUtil = new MergeUtil();
+					}
+					report("Updating file:");
+					updateDifferences(templateTrans, trans, mergeUtil);
+				
+					// if the transcription changed, save it and update preferences
+					if (trans.isChanged()) {
+						try {
+							ACMTranscriptionStore.getCurrentTranscriptionStore().storeTranscription(trans, 
+									null, null, TranscriptionStore.EAF);
+							mergeUtil.updatePreferences(trans, templatePrefs, 
+									// the preferences to copy
+									Preferences.CV_PREFS, "TierColors",
+									"TierHighlightColors", "TierFonts",
+									"MultiTierViewer.TierOrder", "MultiTierViewer.TierSortingMode",
+									"MultiTierViewer.HiddenTiers"//??
+									);
+						} catch (IOException ioe) {
+							report(String.format("Could not save the file: %s, cause: %s", f.getName(), 
+									ioe.getMessage()));
+						} catch (Throwable t) {
+							report(String.format("Could not save the file: %s, cause: %s", f.getName(), 
+									t.getMessage()));						
+						}
+					}
+				
+					// update progress
 					curProg += perFilePercentage;
 					setProgress(Math.min(99.0f, curProg), "Processed file: " + f.getName());
 					if (cancelled) {
 						report(String.format("The process was cancelled after %f%% of the files was processed", curProg));
 						break;
 					}
-					continue;
-				}
-				
-				// update transcription and save
-				// update in reverse order: licenses, CV's, types, tiers, all including external references
-				if (mergeUtil == null) {
-					mergeUtil = new MergeUtil();
-				}
-				report("Updating file:");
-				updateDifferences(templateTrans, trans, mergeUtil);
-				
-				// if the transcription changed, save it and update preferences
-				if (trans.isChanged()) {
-					try {
-						ACMTranscriptionStore.getCurrentTranscriptionStore().storeTranscription(trans, 
-								null, null, TranscriptionStore.EAF);
-						mergeUtil.updatePreferences(trans, templatePrefs, 
-								// the preferences to copy
-								Preferences.CV_PREFS, "TierColors",
-								"TierHighlightColors", "TierFonts",
-								"MultiTierViewer.TierOrder", "MultiTierViewer.TierSortingMode",
-								"MultiTierViewer.HiddenTiers"//??
-								);
-					} catch (IOException ioe) {
-						report(String.format("Could not save the file: %s, cause: %s", f.getName(), 
-								ioe.getMessage()));
-					} catch (Throwable t) {
-						report(String.format("Could not save the file: %s, cause: %s", f.getName(), 
-								t.getMessage()));						
-					}
-				}
-				
-				// update progress
-				curProg += perFilePercentage;
-				setProgress(Math.min(99.0f, curProg), "Processed file: " + f.getName());
-				if (cancelled) {
-					report(String.format("The process was cancelled after %f%% of the files was processed", curProg));
-					break;
 				}
+			} finally {
+				loader.close();
 			}
 			
 			if (cancelled) {
@@ -14,6 +14,7 @@ import java.util.Map;
 import javax.swing.JLabel;
 import javax.swing.JOptionPane;
 import javax.swing.ProgressMonitor;
+import javax.swing.SwingUtilities;
 
 import mpi.eudico.client.annotator.ElanFrame2;
 import mpi.eudico.client.annotator.ElanLocale;
@@ -21,6 +22,7 @@ import mpi.eudico.client.annotator.commands.ClipMediaCommand;
 import mpi.eudico.client.annotator.commands.ClipMediaMultiCommand;
 import mpi.eudico.client.annotator.gui.FileChooser;
 import mpi.eudico.client.annotator.gui.ReportDialog;
+import mpi.eudico.client.annotator.util.BackgroundTaskScheduler;
 import mpi.eudico.client.annotator.util.ClipWithScriptUtil;
 import mpi.eudico.server.corpora.clom.AnnotationCore;
 import mpi.eudico.server.corpora.clom.Transcription;
@@ -180,9 +182,11 @@ public class ClipMediaMultiMA extends FrameMenuAction {
 					return;
 				}
 				
-				ClippingProgressThread progressMonitor = new ClippingProgressThread(executable, paramLine, 
+				ClippingProgressRunner progressMonitor = new ClippingProgressRunner(executable, paramLine, 
 						outputFolder.getAbsolutePath(), groupedSegments, report);
-				progressMonitor.start();
+				// the clipping mainly waits for the external clipping processes
+				BackgroundTaskScheduler.getInstance().submit(BackgroundTaskScheduler.Pool.IO,
+						"Clip media", progressMonitor, this, null, report);
 				
 			} catch (FileNotFoundException fnfe) {
 				showWarningMessage("The selected file is not found.");
@@ -238,11 +242,11 @@ public class ClipMediaMultiMA extends FrameMenuAction {
 	}
 	
 	/**
-	 * A thread for monitored progress of the clipping.
+	 * A task for monitored progress of the clipping.
 	 * 
 	 * @author Han Sloetjes
 	 */
-	class ClippingProgressThread extends Thread {
+	class ClippingProgressRunner implements Runnable {
 		private ProgressMonitor monitor;
 		private Map<String, List<AnnotationCore>> groupedSegments;
 		private ProcessReport report;
@@ -254,7 +258,7 @@ public class ClipMediaMultiMA extends FrameMenuAction {
 		/**
 		 * Constructor
 		 */
-		ClippingProgressThread(String executable, String paramLine, String outputPath,
+		ClippingProgressRunner(String executable, String paramLine, String outputPath,
 				Map<String, List<AnnotationCore>> groupedSegments, ProcessReport report) {
 			this.executable = executable;
 			this.paramLine = paramLine;
@@ -320,9 +324,15 @@ public class ClipMediaMultiMA extends FrameMenuAction {
 			}
 			monitor.setProgress(monitor.getMaximum());// ensure the monitor disappears
 			
-			// show report
-			ReportDialog repDialog = new ReportDialog(frame, report);
-			repDialog.setVisible(true);
+			// show report, on the event dispatch thread so that the modal
+			// dialog doesn't block the background task thread
+			SwingUtilities.invokeLater(new Runnable() {
+				@Override
+				public void run() {
+					ReportDialog repDialog = new ReportDialog(frame, report);
+					repDialog.setVisible(true);
+				}
+			});
 		}
 	}
 }
@@ -12,6 +12,7 @@ import mpi.eudico.client.annotator.gui.multistep.StepPane;
 
 import static mpi.eudico.client.annotator.util.ClientLogger.LOG;
 import mpi.eudico.server.corpora.clomimpl.abstr.TranscriptionImpl;
+import mpi.eudico.server.corpora.clomimpl.util.ParallelTranscriptionLoader;
 
 /**
  * Abstract Step Pane. This is the final step and 
@@ -212,99 +213,106 @@ public abstract class AbstractMultiFileExportProgessStepPane extends ProgressSte
 			String fileName;
 			String newfileName;
 			TranscriptionImpl transImpl;
+			// the next files are loaded while the current one is exported
+			ParallelTranscriptionLoader loader = new ParallelTranscriptionLoader(files);
 			//walk through all transcriptions
-			for( int f=0; f < files.size(); f++ ){
-				newfileName = null;
-				fileName =  files.get(f);
+			try {
+				for( int f=0; f < files.size(); f++ ){
+					ParallelTranscriptionLoader.Result loaded = loader.next();
+					newfileName = null;
+					fileName =  files.get(f);
 				
-				if (fileName == null) {
-					continue;
-		        }
+					if (fileName == null) {
+						continue;
+			        }
 							      
-		        try {
-		        	 transImpl = new TranscriptionImpl(fileName);	
-		        	 //Try to save the transcription
-		        	 String path = getDirectoryToSave( fileName );	
-		        	 if (path.charAt(path.length() - 1) != File.separatorChar) {
-		        		 path += File.separatorChar;
-		        	 }
-		        	 newfileName = path + getFileName( path, transImpl);
-		        	 String directoryToSave = newfileName;
+			        try {
+			        	 transImpl = loaded.getTranscription();
+			        	 //Try to save the transcription
+			        	 String path = getDirectoryToSave( fileName );	
+			        	 if (path.charAt(path.length() - 1) != File.separatorChar) {
+			        		 path += File.separatorChar;
+			        	 }
+			        	 newfileName = path + getFileName( path, transImpl);
+			        	 String directoryToSave = newfileName;
 		        	
-		        	 //if directory does not exist, then create it
-		        	 boolean directoryExists = createDirectory(path);
-		        	 boolean saveThisFile = true;
-		        	 boolean fileExists = new File(directoryToSave).exists();
+			        	 //if directory does not exist, then create it
+			        	 boolean directoryExists = createDirectory(path);
+			        	 boolean saveThisFile = true;
+			        	 boolean fileExists = new File(directoryToSave).exists();
 					
-		        	 if( fileExists && skipForever )
-		        		 saveThisFile = false;
+			        	 if( fileExists && skipForever )
+			        		 saveThisFile = false;
 					
-		        	 //overwrite files is not selected, then check if file exists and ask for overwriting
-		        	 if( !skipForever && !saveForever  && fileExists ){
-		        		 //show dialog to ask if existing file should be overwritten
-		        		 Object[] possibleValues = { "Yes To All", "Yes", "No", "No To All" };
+			        	 //overwrite files is not selected, then check if file exists and ask for overwriting
+			        	 if( !skipForever && !saveForever  && fileExists ){
+			        		 //show dialog to ask if existing file should be overwritten
+			        		 Object[] possibleValues = { "Yes To All", "Yes", "No", "No To All" };
 						
-		        		 int choice = JOptionPane.showOptionDialog( null, 
-								ElanLocale.getString("ExportTiersDialog.Message.OverwriteMessage.Description1") + " " + newfileName + " " + ElanLocale.getString("ExportTiersDialog.Message.OverwriteMessage.Description2") + "\n\n" +
-								ElanLocale.getString("ExportTiersDialog.Message.OverwriteMessage.Description3") + "\t " + directoryToSave + "\n\n" +
-								ElanLocale.getString("ExportTiersDialog.Message.OverwriteMessage.Description4") + "\n", ElanLocale.getString("ExportTiersDialog.Message.OverwriteMessage.Title"), 
-										JOptionPane.DEFAULT_OPTION, JOptionPane.WARNING_MESSAGE, null, possibleValues, possibleValues[2]);
+			        		 int choice = JOptionPane.showOptionDialog( null, 
+									ElanLocale.getString("ExportTiersDialog.Message.OverwriteMessage.Description1") + " " + newfileName + " " + ElanLocale.getString("ExportTiersDialog.Message.OverwriteMessage.Description2") + "\n\n" +
+									ElanLocale.getString("ExportTiersDialog.Message.OverwriteMessage.Description3") + "\t " + directoryToSave + "\n\n" +
+									ElanLocale.getString("ExportTiersDialog.Message.OverwriteMessage.Description4") + "\n", ElanLocale.getString("ExportTiersDialog.Message.OverwriteMessage.Title"), 
+											JOptionPane.DEFAULT_OPTION, JOptionPane.WARNING_MESSAGE, null, possibleValues, possibleValues[2]);
 						
-		        		 switch( choice ){
-								case YES:
-									saveThisFile = true;
-									break;
+			        		 switch( choice ){
+									case YES:
+										saveThisFile = true;
+										break;
 							
-								case YES_TO_ALL:
-									saveForever = true;
-									break;
+									case YES_TO_ALL:
+										saveForever = true;
+										break;
 								
-								case NO_TO_ALL:
-									skipForever = true;
-									saveThisFile = false;
-									break;
+									case NO_TO_ALL:
+										skipForever = true;
+										saveThisFile = false;
+										break;
 								
-								default: //NO and other
-									saveThisFile = false;
-		        		 }
+									default: //NO and other
+										saveThisFile = false;
+			        		 }
 							
-		        	 }
+			        	 }
 					
-		        	 //save files
-		        	 if( directoryExists ){
-		        		 //if all files need to be saved OR this file need to be saved
-		        		 boolean exported = false;
-		        		 if( saveForever || saveThisFile ){		        		
-		        			 if( !dontExportFilesWithoutTiers ){
-		        				 exported = doExport(transImpl, newfileName);
-		        			 } else{
-		        				 if( transImpl.getTiers().size() > 0 ){
-		        					 exported = doExport(transImpl, newfileName);
-		        				 } else
-		        					 emptyFiles++;
-		        			 }
-		        		 } else{
-		        			 refusedExports++;
-		        		 }
-		        		 if(!exported){
-						  	failedExports++;
-						 }
-		        	 } else{
-		        		 failedExports++;
-		        	 }
-		         } catch (Exception ex) {
-		                // catch any exception that could occur and continue
-		        	 failedExports++;
-		                LOG.warning("Could not handle file: " +
-		                    fileName);
-		         }
+			        	 //save files
+			        	 if( directoryExists ){
+			        		 //if all files need to be saved OR this file need to be saved
+			        		 boolean exported = false;
+			        		 if( saveForever || saveThisFile ){		        		
+			        			 if( !dontExportFilesWithoutTiers ){
+			        				 exported = doExport(transImpl, newfileName);
+			        			 } else{
+			        				 if( transImpl.getTiers().size() > 0 ){
+			        					 exported = doExport(transImpl, newfileName);
+			        				 } else
+			        					 emptyFiles++;
+			        			 }
+			        		 } else{
+			        			 refusedExports++;
+			        		 }
+			        		 if(!exported){
+							  	failedExports++;
+							 }
+			        	 } else{
+			        		 failedExports++;
+			        	 }
+			         } catch (Exception ex) {
+			                // catch any exception that could occur and continue
+			        	 failedExports++;
+			                LOG.warning("Could not handle file: " +
+			                    fileName);
+			         }
 		        
 		        
 				
-		         //update progress bar
-		        if((f+1) < files.size()){
-		         progressUpdated(AbstractMultiFileExportProgessStepPane.this, Math.round(100 * (f+1)/(float)files.size()), null );
-		        }		         
+			         //update progress bar
+			        if((f+1) < files.size()){
+			         progressUpdated(AbstractMultiFileExportProgessStepPane.this, Math.round(100 * (f+1)/(float)files.size()), null );
+			        }		         
+				}
+			} finally {
+				loader.close();
 			}
 			
 			//show information on the export process
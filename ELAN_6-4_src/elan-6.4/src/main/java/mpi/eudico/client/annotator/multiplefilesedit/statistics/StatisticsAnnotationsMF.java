@@ -10,8 +10,7 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 
-import mpi.eudico.server.corpora.clomimpl.abstr.AbstractAnnotation;
-import mpi.eudico.server.corpora.clomimpl.abstr.TierImpl;
+import mpi.eudico.server.corpora.clomimpl.util.TierSnapshot;
 
 /**
  * Annotation statistics for multiple files.
@@ -41,7 +40,7 @@ public class StatisticsAnnotationsMF {
 	 * 
 	 * @param tier the tier to create annotation statistics for
 	 */
-	public StatisticsAnnotationsMF(TierImpl tier) {
+	public StatisticsAnnotationsMF(TierSnapshot tier) {
 		super();
 		tierName = tier.getName();
 		annotationStats = new HashMap<String, AnStats>();
@@ -62,7 +61,7 @@ public class StatisticsAnnotationsMF {
 	 * 
 	 * @param tier the input tier
 	 */
-	public void addTier(TierImpl tier) {
+	public void addTier(TierSnapshot tier) {
 		if (tier != null) {
 			if (tierName == null) {
 				tierName = tier.getName();
@@ -80,56 +79,54 @@ public class StatisticsAnnotationsMF {
 	 * 
 	 * @param tier the input tier
 	 */
-	private void extractAnnotations(TierImpl tier) {
+	private void extractAnnotations(TierSnapshot tier) {
 		if (tier == null) {
 			return;
 		}
-		List<AbstractAnnotation> annotations = tier.getAnnotations();
-		if (annotations.size() == 0) {
+		int numAnn = tier.getNumberOfAnnotations();
+		if (numAnn == 0) {
 			return;
 		}
 		
-        if ((annotations != null) && !annotations.isEmpty()) {
-
-            for (AbstractAnnotation ann : annotations) {
-                long bt = ann.getBeginTimeBoundary();
-                long et = ann.getEndTimeBoundary();
-                long dur = et - bt;
-        		AnStats stats;
-                
-                if ((ann.getValue() != null) && (ann.getValue().length() > 0)) {
-                    stats = annotationStats.get(ann.getValue());
-                    if (stats == null) {
-                    	stats = new AnStats(ann.getValue());
-                    	annotationStats.put(ann.getValue(), stats);
-                    	stats.minDur = dur;
-                    	stats.maxDur = dur;
-                    	stats.latency = bt;
-                    }
-                    
-                } else {
-                    stats = annotationStats.get(EMPTY);
-                    if (stats == null) {
-                    	stats = new AnStats(EMPTY);
-                    	annotationStats.put(EMPTY, stats);
-                    	stats.minDur = dur;
-                    	stats.maxDur = dur;
-                    	stats.latency = bt;
-                    }                	
+        for (int i = 0; i < numAnn; i++) {
+            long bt = tier.getBeginTime(i);
+            long et = tier.getEndTime(i);
+            long dur = et - bt;
+            String value = tier.getValue(i);
+            AnStats stats;
+            
+            if (value.length() > 0) {
+                stats = annotationStats.get(value);
+                if (stats == null) {
+                	stats = new AnStats(value);
+                	annotationStats.put(value, stats);
+                	stats.minDur = dur;
+                	stats.maxDur = dur;
+                	stats.latency = bt;
                 }
                 
-                stats.numOccur++;
-                stats.durations.add(dur);
-                stats.totalDur += dur;
-                if (dur < stats.minDur) {
+            } else {
+                stats = annotationStats.get(EMPTY);
+                if (stats == null) {
+                	stats = new AnStats(EMPTY);
+                	annotationStats.put(EMPTY, stats);
                 	stats.minDur = dur;
-                }
-                if (dur > stats.maxDur) {
                 	stats.maxDur = dur;
-                }
-                if (bt < stats.latency) {
                 	stats.latency = bt;
-                }
+                }                	
+            }
+            
+            stats.numOccur++;
+            stats.durations.add(dur);
+            stats.totalDur += dur;
+            if (dur < stats.minDur) {
+            	stats.minDur = dur;
+            }
+            if (dur > stats.maxDur) {
+            	stats.maxDur = dur;
+            }
+            if (bt < stats.latency) {
+            	stats.latency = bt;
             }
         }
 		
@@ -10,7 +10,7 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.TreeMap;
 
-import mpi.eudico.server.corpora.clomimpl.abstr.TierImpl;
+import mpi.eudico.server.corpora.clomimpl.util.TierSnapshot;
 
 /**
  * A class in which statistics for annotations, tiers, types, participants and
@@ -64,7 +64,7 @@ public class StatisticsCollectionMF {
 	 * @param latency the onset or first occurrence of an annotation
 	 * @param curDurations a list of all annotation durations 
 	 */
-	public void addTier(String file, TierImpl tier, int numAnnotations, long minDur, 
+	public void addTier(String file, TierSnapshot tier, int numAnnotations, long minDur, 
 			long maxDur, long totalDur, long latency, List<Long> curDurations) {
 		if (tier == null) {
 			return;
@@ -103,7 +103,7 @@ public class StatisticsCollectionMF {
 		}
 		// type
 		boolean typeFound = false;
-		String typeName = tier.getLinguisticType().getLinguisticTypeName();
+		String typeName = tier.getLinguisticTypeName();
 		for (TierAttributeBasedStats tys : typeStatsMF) {
 			if (tys.getAttributeValue().equals(typeName)) {
 				typeFound = true;
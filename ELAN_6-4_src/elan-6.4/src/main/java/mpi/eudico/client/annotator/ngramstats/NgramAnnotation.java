@@ -24,9 +24,20 @@ public class NgramAnnotation {
 	 * @param ann the source annotation
 	 */
 	public NgramAnnotation(AbstractAnnotation ann) {
-		value = ann.getValue();
-		beginTime = ann.getBeginTimeBoundary();
-		endTime = ann.getEndTimeBoundary();
+		this(ann.getValue(), ann.getBeginTimeBoundary(), ann.getEndTimeBoundary());
+	}
+
+	/**
+	 * Constructor for annotations that are not objects, e.g. of a tier snapshot.
+	 * 
+	 * @param value the annotation value
+	 * @param beginTime the begin time of the annotation
+	 * @param endTime the end time of the annotation
+	 */
+	public NgramAnnotation(String value, long beginTime, long endTime) {
+		this.value = value;
+		this.beginTime = beginTime;
+		this.endTime = endTime;
 	}
 
 	@Override
@@ -145,12 +145,23 @@ public class NgramStatsResult {
 	 * @throws Exception If startFile(path) is not called before
 	 */
 	public void addAnnotation(AbstractAnnotation aa) throws Exception {
+		addAnnotation(aa.getValue(), aa.getBeginTimeBoundary(), aa.getEndTimeBoundary());
+	}
+
+	/**
+	 * Adds an annotation to our collection while a file is being parsed
+	 * @param value the annotation value
+	 * @param beginTime the begin time of the annotation
+	 * @param endTime the end time of the annotation
+	 * @throws Exception If startFile(path) is not called before
+	 */
+	public void addAnnotation(String value, long beginTime, long endTime) throws Exception {
 		if (curFile == null) {
 			throw new Exception("Call startFile(path) first");
 		}
-		// convert the AbstractAnnotation into our internal NgramAnnotation format
+		// convert the annotation into our internal NgramAnnotation format
 		// so we can fix overlapped annotations, argh!!!!
-		currentAnnotations.add(new NgramAnnotation(aa));
+		currentAnnotations.add(new NgramAnnotation(value, beginTime, endTime));
 			
 		numAnnotations++;
 	}
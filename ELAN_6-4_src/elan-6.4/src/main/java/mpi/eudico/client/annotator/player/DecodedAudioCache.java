@@ -0,0 +1,282 @@
+package mpi.eudico.client.annotator.player;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import mpi.eudico.client.annotator.CachedDataManager;
+import mpi.eudico.client.annotator.util.BackgroundTaskScheduler;
+import mpi.eudico.client.util.MappedWAVSampler;
+import mpi.eudico.client.util.WAVFromOtherSampler;
+import nl.mpi.media.UnsupportedMediaException;
+import nl.mpi.util.FileUtility;
+
+/**
+ * Manages {@code .wav} files with the decoded audio of local media files
+ * which are not supported by the {@link MappedWAVSampler}, e.g. the audio
+ * track of video files. The files are stored in the {@link #CACHE_DIR}
+ * folder of the {@link CachedDataManager}.
+ * <p>
+ * When a {@link WAVFromOtherSampler} is attached, an existing file for its
+ * media is opened immediately; otherwise the audio is decoded by a task of
+ * the IO pool of the {@link BackgroundTaskScheduler}, using a separate
+ * decoder. Until the file is available the sampler reads from the native
+ * decoder, afterwards all reads are served from the memory mapped file.
+ * <p>
+ * A cache file is identified by the path, size and modification time of the
+ * media file. Files that have not been used for a number of days are
+ * removed, as are the least recently used files if the total size exceeds
+ * the maximum. The limits can be set with the system properties
+ * {@code AudioExtractor.DecodedCacheMaxMB} (default 4096) and
+ * {@code AudioExtractor.DecodedCacheMaxDays} (default 30).
+ *
+ * @version Oct 2026
+ */
+public class DecodedAudioCache {
+	private final static Logger LOG = Logger.getLogger("ClientLogger");
+	/** the name of the cache folder */
+	public static final String CACHE_DIR = "audiocache";
+	private static final String CACHE_EXT = ".wav";
+	private static final long MAX_BYTES;
+	private static final long MAX_AGE_MS;
+	/** the samplers waiting for a cache file that is being created */
+	private static final Map<File, List<WAVFromOtherSampler>> building =
+			new HashMap<File, List<WAVFromOtherSampler>>();
+
+	static {
+		MAX_BYTES = getLongProperty("AudioExtractor.DecodedCacheMaxMB", 4096) * 1024 * 1024;
+		MAX_AGE_MS = getLongProperty("AudioExtractor.DecodedCacheMaxDays", 30) * 24 * 60 * 60 * 1000;
+	}
+
+	/**
+	 * Private constructor, all methods are static.
+	 */
+	private DecodedAudioCache() {
+	}
+
+	private static long getLongProperty(String name, long defValue) {
+		String prop = System.getProperty(name);
+		if (prop != null) {
+			try {
+				return Math.max(0, Long.parseLong(prop));
+			} catch (NumberFormatException nfe) {
+				if (LOG.isLoggable(Level.WARNING)) {
+					LOG.log(Level.WARNING, "Invalid value for " + name + ": " + prop);
+				}
+			}
+		}
+		return defValue;
+	}
+
+	/**
+	 * Lets a sampler read from the decoded audio of its media file, now if
+	 * the cache file exists or later, after decoding in the background.
+	 * Remote files are not cached.
+	 *
+	 * @param sampler the sampler to attach, not {@code null}
+	 * @param mediaPath the local path of the media file of the sampler
+	 * @param prefFramework the framework to use for decoding, the same as
+	 * the one used by the sampler
+	 */
+	public static void attach(WAVFromOtherSampler sampler, String mediaPath,
+			final String prefFramework) {
+		if (mediaPath == null || FileUtility.isRemoteFile(mediaPath)) {
+			return;
+		}
+		final File mediaFile = new File(mediaPath);
+		if (!mediaFile.isFile()) {
+			return;
+		}
+		final File cacheFile = getCacheFile(mediaFile);
+
+		synchronized (building) {
+			List<WAVFromOtherSampler> waiting = building.get(cacheFile);
+			if (waiting != null) {
+				waiting.add(sampler);
+				return;
+			}
+			if (cacheFile.isFile() && open(sampler, cacheFile)) {
+				// mark as recently used
+				cacheFile.setLastModified(System.currentTimeMillis());
+				return;
+			}
+			waiting = new ArrayList<WAVFromOtherSampler>();
+			waiting.add(sampler);
+			building.put(cacheFile, waiting);
+		}
+
+		BackgroundTaskScheduler.getInstance().submit(BackgroundTaskScheduler.Pool.IO,
+				"Decode audio " + mediaFile.getName(), new Runnable() {
+					@Override
+					public void run() {
+						boolean decoded = decode(mediaFile, cacheFile, prefFramework);
+						List<WAVFromOtherSampler> waiting;
+						synchronized (building) {
+							waiting = building.remove(cacheFile);
+						}
+						if (decoded) {
+							for (WAVFromOtherSampler s : waiting) {
+								open(s, cacheFile);
+							}
+							evict(cacheFile);
+						}
+					}
+				});
+	}
+
+	/**
+	 * Decodes the audio to a temporary file in the cache folder and renames
+	 * it to the cache file when complete.
+	 *
+	 * @return {@code true} if the cache file has been created
+	 */
+	private static boolean decode(File mediaFile, File cacheFile, String prefFramework) {
+		File dir = cacheFile.getParentFile();
+		if (!dir.isDirectory() && !dir.mkdirs()) {
+			if (LOG.isLoggable(Level.WARNING)) {
+				LOG.log(Level.WARNING, "Could not create the decoded audio cache folder: " + dir);
+			}
+			return false;
+		}
+		long start = System.currentTimeMillis();
+		WAVFromOtherSampler decoder = null;
+		File tempFile = null;
+
+		try {
+			decoder = new WAVFromOtherSampler(mediaFile.getAbsolutePath(), prefFramework);
+			tempFile = File.createTempFile(getSourcePrefix(mediaFile), ".tmp", dir);
+			decoder.decodeToWAV(tempFile);
+			deleteOldFiles(mediaFile, cacheFile);
+			if (!tempFile.renameTo(cacheFile)) {
+				throw new IOException("Could not rename the temporary file to " + cacheFile.getName());
+			}
+			if (LOG.isLoggable(Level.INFO)) {
+				LOG.log(Level.INFO, String.format("Decoded the audio of %s in %d ms",
+						mediaFile.getName(), System.currentTimeMillis() - start));
+			}
+			return true;
+		} catch (IOException | UnsupportedMediaException ex) {
+			if (LOG.isLoggable(Level.WARNING)) {
+				LOG.log(Level.WARNING, "Could not decode the audio of " + mediaFile.getName() +
+						": " + ex.getMessage());
+			}
+		} catch (Throwable t) {
+			// e.g. a failure in the native decoder
+			if (LOG.isLoggable(Level.WARNING)) {
+				LOG.log(Level.WARNING, "Could not decode the audio of " + mediaFile.getName() +
+						": " + t);
+			}
+		} finally {
+			if (decoder != null) {
+				decoder.close();
+			}
+			if (tempFile != null && tempFile.exists() && !tempFile.delete()) {
+				tempFile.deleteOnExit();
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Opens the cache file and sets it as the decoded sampler.
+	 *
+	 * @return {@code true} if successful
+	 */
+	private static boolean open(WAVFromOtherSampler sampler, File cacheFile) {
+		try {
+			MappedWAVSampler mapped = new MappedWAVSampler(cacheFile.getAbsolutePath());
+			if (mapped.getNumberOfChannels() != sampler.getNumberOfChannels() ||
+					mapped.getSampleFrequency() != sampler.getSampleFrequency()) {
+				mapped.close();
+				throw new IOException("The format of the cache file differs from the media");
+			}
+			sampler.setDecodedSampler(mapped);
+			return true;
+		} catch (IOException ioe) {
+			if (LOG.isLoggable(Level.WARNING)) {
+				LOG.log(Level.WARNING, "Could not open the decoded audio file " +
+						cacheFile.getName() + ": " + ioe.getMessage());
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Deletes the cache files of previous versions of the media file.
+	 */
+	private static void deleteOldFiles(File mediaFile, File cacheFile) {
+		final String prefix = getSourcePrefix(mediaFile);
+		File[] files = cacheFile.getParentFile().listFiles();
+		if (files == null) {
+			return;
+		}
+		for (File f : files) {
+			if (f.getName().startsWith(prefix) && f.getName().endsWith(CACHE_EXT) &&
+					!f.equals(cacheFile) && !f.delete()) {
+				// can fail on some platforms if the file is still mapped
+				LOG.fine("Could not delete old cache file: " + f.getName());
+			}
+		}
+	}
+
+	/**
+	 * Removes the files that are too old and the least recently used files
+	 * if the cache is too large.
+	 *
+	 * @param current the file that has just been created, it is not removed
+	 */
+	private static void evict(File current) {
+		File[] files = current.getParentFile().listFiles();
+		if (files == null) {
+			return;
+		}
+		long now = System.currentTimeMillis();
+		long total = 0;
+		List<File> cacheFiles = new ArrayList<File>();
+
+		for (File f : files) {
+			if (!f.getName().endsWith(CACHE_EXT) || f.equals(current)) {
+				continue;
+			}
+			if (now - f.lastModified() > MAX_AGE_MS && f.delete()) {
+				continue;
+			}
+			cacheFiles.add(f);
+			total += f.length();
+		}
+		total += current.length();
+
+		File[] sorted = cacheFiles.toArray(new File[0]);
+		Arrays.sort(sorted, new Comparator<File>() {
+			@Override
+			public int compare(File f1, File f2) {
+				return Long.compare(f1.lastModified(), f2.lastModified());
+			}
+		});
+		for (int i = 0; i < sorted.length && total > MAX_BYTES; i++) {
+			long length = sorted[i].length();
+			if (sorted[i].delete()) {
+				total -= length;
+			}
+		}
+	}
+
+	private static String getSourcePrefix(File mediaFile) {
+		return mediaFile.getName() + "_" +
+				Integer.toHexString(mediaFile.getAbsolutePath().hashCode()) + "_";
+	}
+
+	private static File getCacheFile(File mediaFile) {
+		String key = mediaFile.getAbsolutePath() + '|' + mediaFile.length() + '|' +
+				mediaFile.lastModified();
+		return new File(new File(CachedDataManager.getInstance().getCacheLocation(), CACHE_DIR),
+				getSourcePrefix(mediaFile) + Integer.toHexString(key.hashCode()) + CACHE_EXT);
+	}
+}
@@ -6,9 +6,9 @@ import java.util.logging.Logger;
 
 import mpi.eudico.client.annotator.Preferences;
 import mpi.eudico.client.annotator.util.SystemReporting;
+import mpi.eudico.client.util.MappedWAVSampler;
 import mpi.eudico.client.util.WAVFromOtherSampler;
 import mpi.eudico.client.util.WAVHeader;
-import mpi.eudico.client.util.WAVSampler;
 import mpi.eudico.client.util.WAVSamplesProvider;
 import mpi.eudico.server.corpora.clomimpl.abstr.MediaDescriptor;
 import nl.mpi.media.UnsupportedMediaException;
@@ -20,7 +20,8 @@ import nl.mpi.util.FileUtility;
  * a {@code WAVSampler} instance was created.
  * Visualization of a waveform for the audio track of a video file or of a 
  * different type of audio file, may now be possible by using a native media
- * framework's functionality.  
+ * framework's functionality. The decoded audio of local files can be
+ * cached in a {@code .wav} file, see {@link DecodedAudioCache}.
  * 
  * @author Han Sloetjes
  * @version Jan 2021
@@ -28,6 +29,7 @@ import nl.mpi.util.FileUtility;
 public class WAVSamplerFactory {
 	private final static Logger LOG = Logger.getLogger("ClientLogger");
 	private static boolean useNativeAudioExtractor = true;
+	private static boolean useDecodedAudioCache = true;
 	
 	static {
 		// could consider a preference setting too
@@ -35,7 +37,10 @@ public class WAVSamplerFactory {
 		if (prop != null) {
 			useNativeAudioExtractor = Boolean.parseBoolean(prop);
 		}
-		
+		prop = System.getProperty("AudioExtractor.UseDecodedCache");
+		if (prop != null) {
+			useDecodedAudioCache = Boolean.parseBoolean(prop);
+		}
 	}
 	
 	/**
@@ -54,10 +59,21 @@ public class WAVSamplerFactory {
 	public static void setUseNativeExtractor(boolean useNativeExtractor) {
 		useNativeAudioExtractor = useNativeExtractor;
 	}
+	
+	/**
+	 * Sets whether the audio of local files that are read by a native
+	 * audio extractor should be decoded once into a {@link DecodedAudioCache}
+	 * file, after which the samples are read from that file.
+	 * 
+	 * @param useDecodedCache the value for this flag
+	 */
+	public static void setUseDecodedAudioCache(boolean useDecodedCache) {
+		useDecodedAudioCache = useDecodedCache;
+	}
 
 	/**
 	 * Tries to create a sampler for the specified file. 
-	 * The default for local {@code .wav} files still is the {@code WAVSampler},
+	 * The default for local {@code .wav} files is the {@code MappedWAVSampler},
 	 * for other files a native framework is tried. 
 	 *  
 	 * @param mediaPath the location of a media file
@@ -77,7 +93,7 @@ public class WAVSamplerFactory {
 		String lcExt = FileUtility.getExtension(mediaPath, "wav").toLowerCase();
 		if (isLocal && (lcExt.equals("wav") || lcExt.equals("wave"))) {
 			
-			// try the RandomAccessFile based WAVSampler, if the compression type
+			// try the memory mapped WAV sampler, if the compression type
 			// is supported and the number of channels is < 3				
 			WAVHeader header = new WAVHeader(mediaPath);
 			int compression = header.getCompressionCode();
@@ -86,7 +102,7 @@ public class WAVSamplerFactory {
 					compression == WAVHeader.WAVE_FORMAT_IEEE_FLOAT) {
 				if (header.getNumberOfChannels() < 3) {
 					try {
-						return new WAVSampler(mediaPath);
+						return new MappedWAVSampler(mediaPath);
 					} catch (IOException ioe) {
 						if (LOG.isLoggable(Level.WARNING)) {
 							LOG.log(Level.WARNING, ioe.getMessage());
@@ -108,7 +124,7 @@ public class WAVSamplerFactory {
 		}
 
 		try {
-			return new WAVFromOtherSampler(mediaPath, prefFrameWork);
+			return createOtherSampler(isLocal ? mediaPath : null, mediaPath, prefFrameWork);
 		} catch (UnsupportedMediaException ume) {
 			if (LOG.isLoggable(Level.WARNING)) {
 				LOG.log(Level.WARNING, ume.getMessage());
@@ -125,7 +141,7 @@ public class WAVSamplerFactory {
 	/**
 	 * Tries to create a sampler for the media file identified by the 
 	 * specified media descriptor. 
-	 * The default for local {@code .wav} files still is the {@code WAVSampler},
+	 * The default for local {@code .wav} files is the {@code MappedWAVSampler},
 	 * for other files a native framework is tried. 
 	 *  
 	 * @param medDescriptor the media descriptor containing the location of a 
@@ -148,7 +164,7 @@ public class WAVSamplerFactory {
 		if (MediaDescriptor.WAV_MIME_TYPE.equals(medDescriptor.mimeType)) {
 			
 			if (isLocal) {
-				// try the RandomAccessFile based WAVSampler, if the compression type
+				// try the memory mapped WAV sampler, if the compression type
 				// is supported and the number of channels is < 3				
 				WAVHeader header = new WAVHeader(medPath);
 				int compression = header.getCompressionCode();
@@ -157,7 +173,7 @@ public class WAVSamplerFactory {
 						compression == WAVHeader.WAVE_FORMAT_IEEE_FLOAT) {
 					if (header.getNumberOfChannels() < 3) {
 						try {
-							return new WAVSampler(medPath);
+							return new MappedWAVSampler(medPath);
 						} catch (IOException ioe) {
 							if (LOG.isLoggable(Level.WARNING)) {
 								LOG.log(Level.WARNING, ioe.getMessage());
@@ -180,7 +196,7 @@ public class WAVSamplerFactory {
 		}
 		
 		try {
-			return new WAVFromOtherSampler(medPath, prefFrameWork);
+			return createOtherSampler(isLocal ? medPath : null, medPath, prefFrameWork);
 		} catch (UnsupportedMediaException ume) {// unsupported exception
 			if (LOG.isLoggable(Level.WARNING)) {
 				LOG.log(Level.WARNING, ume.getMessage());
@@ -194,6 +210,26 @@ public class WAVSamplerFactory {
 		return null;
 	}
 	
+	/**
+	 * Creates a sampler based on a native audio extractor and, if enabled, 
+	 * attaches it to the cache of decoded audio.
+	 * 
+	 * @param localPath the local path of the file, {@code null} for remote files
+	 * @param mediaPath the location of the file
+	 * @param prefFrameWork the preferred framework for audio extraction
+	 * @return the sampler
+	 * @throws IOException any I/O related exception
+	 * @throws UnsupportedMediaException if the media is not supported
+	 */
+	private static WAVFromOtherSampler createOtherSampler(String localPath, String mediaPath, 
+			String prefFrameWork) throws IOException, UnsupportedMediaException {
+		WAVFromOtherSampler sampler = new WAVFromOtherSampler(mediaPath, prefFrameWork);
+		if (useDecodedAudioCache && localPath != null) {
+			DecodedAudioCache.attach(sampler, localPath, prefFrameWork);
+		}
+		return sampler;
+	}
+	
 	private static String getPreferredProvider() {
 		String stringPref = Preferences.getString("AudioExtractionFramework", null);
 		// check
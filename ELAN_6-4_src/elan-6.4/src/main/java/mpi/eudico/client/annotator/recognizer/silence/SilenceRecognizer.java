@@ -18,8 +18,8 @@ import mpi.eudico.client.annotator.recognizer.data.MediaDescriptor;
 import mpi.eudico.client.annotator.recognizer.data.RSelection;
 import mpi.eudico.client.annotator.recognizer.data.Segment;
 import mpi.eudico.client.annotator.recognizer.data.Segmentation;
+import mpi.eudico.client.util.MappedWAVSampler;
 import mpi.eudico.client.util.WAVSamplesProvider;
-import mpi.eudico.client.util.WAVSampler;
 
 /**
  * A recognizer which creates a silence/non-silence segmentation for a wave
@@ -46,14 +46,12 @@ public class SilenceRecognizer implements Recognizer {
 	private RecognizerHost host;
 	private SilenceRecognizerPanel controlPanel;	
 	private String currentMediaFilePath;
-	private WAVSamplesProvider sampler;
+	private MappedWAVSampler sampler;
 	private int nrOfChannels;
 	private int sampleFrequency;
 	//private long nrOfSamples;
 	private float duration;
 	boolean canHandleMedia;
-	private long sampleBufferBeginTime;
-	private int sampleBufferDuration;
 	private boolean keepRunning;
 	private float[] averageEnergy1;
 	private int[] samples1;
@@ -147,28 +145,13 @@ public class SilenceRecognizer implements Recognizer {
 	 */
 	private void getSamples(long from, long to, int channel, int[] samples) {
 		try {
-			// check if the requested samples are in the buffer
-			long sampleBufferEndTime = sampleBufferBeginTime + sampleBufferDuration;
-			if (from < sampleBufferBeginTime || from >= sampleBufferEndTime || 
-			                                    to < sampleBufferBeginTime || to >= sampleBufferEndTime) {
-				sampleBufferDuration = 10000;
-				while (to - from > sampleBufferDuration) {
-					sampleBufferDuration += 1000;
-				}
-				int nSamples = (sampleBufferDuration * sampleFrequency) / 1000;
-				sampleBufferBeginTime = from;
-				sampler.seekTime(sampleBufferBeginTime);
-				sampler.readInterval(nSamples, nrOfChannels);
-			}
-			
+			// read directly from the mapped file into the samples array
 			Arrays.fill(samples, 0);
-			int srcPos = (int) (((from - sampleBufferBeginTime) * sampleFrequency) / 1000);
+			long fromSample = (from * sampleFrequency) / 1000;
 			int length = (int) (((to - from) * sampleFrequency) / 1000);
-			if (channel == 1) {
-				System.arraycopy(sampler.getChannelArray(0), srcPos, samples, 0, length);
-			} else {
-				System.arraycopy(sampler.getChannelArray(1), srcPos, samples, 0, length);
-			}
+			// channels 1 and 2 are channel index 0 and 1
+			sampler.readChannel(fromSample, Math.min(length, samples.length), channel == 1 ? 0 : 1,
+					samples, 0);
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
@@ -296,15 +279,13 @@ public class SilenceRecognizer implements Recognizer {
 		averageEnergy2 = null;
 		
 		try {
-			sampler = new WAVSampler(currentMediaFilePath);
+			sampler = new MappedWAVSampler(currentMediaFilePath);
 			nrOfChannels = sampler.getNumberOfChannels();
 			//System.out.println("Nr. of channels: " + nrOfChannels);
 			sampleFrequency = sampler.getSampleFrequency();
 			//nrOfSamples = sampler.getNrOfSamples();
 			duration = sampler.getDuration();
 			nSteps = (int) (duration / stepDuration);
-			sampleBufferBeginTime = -1;
-			sampleBufferDuration = 0;
 			canHandleMedia = true;
 		} catch (Exception e) {
 			//e.printStackTrace();
@@ -590,7 +571,7 @@ public class SilenceRecognizer implements Recognizer {
 		}
 		
 		try {
-			WAVSamplesProvider wavs = new WAVSampler(mediaFilePath);
+			WAVSamplesProvider wavs = new MappedWAVSampler(mediaFilePath);
 			int nc = wavs.getNumberOfChannels();
 			if (nc == 0) {
 				return false;
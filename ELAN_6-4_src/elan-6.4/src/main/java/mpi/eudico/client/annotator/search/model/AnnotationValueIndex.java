@@ -0,0 +1,690 @@
+package mpi.eudico.client.annotator.search.model;
+
+import static mpi.eudico.client.annotator.util.ClientLogger.LOG;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.SoftReference;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+
+import mpi.eudico.client.annotator.CachedDataManager;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * A persistent index of the annotation values of EAF files, used by the
+ * multiple file search engines to skip files that cannot contain a match
+ * for a query without parsing them.
+ * <p>
+ * For each EAF file the index contains the distinct annotation values. The
+ * index is only a filter, the matches themselves, with their tier, time
+ * span and context, are produced by parsing the files that may contain a
+ * match. An index segment is stored per EAF file in the
+ * {@link #INDEX_DIR} folder of the {@link CachedDataManager} location and
+ * is kept in memory as long as memory allows. A segment is only used if it
+ * has been created for the current size and modification time of the EAF
+ * file, otherwise the file is indexed again the next time it is searched.
+ * A search indexes a file while parsing it for matches, with an
+ * {@link IndexingHandler}, so that a file is parsed only once; a file that
+ * a search does not need to parse can be indexed on a low priority
+ * background thread with {@link #indexInBackground(File)}. Segments of
+ * files that have been deleted, renamed or changed are removed from the
+ * index folder.
+ * <p>
+ * Since the distinct values of a file are much fewer and shorter than the
+ * file itself, testing a pattern against the values of the index is much
+ * faster than parsing the file. Only files that contain at least one
+ * matching value need to be parsed to produce the actual matches.
+ * <p>
+ * The index can be switched off with {@code -DELAN.Search.Index=false}.
+ * <p>
+ * File layout: magic number, version, the path, size and modification
+ * time of the EAF file, the number of distinct values and the values.
+ * Strings are stored as length and UTF-8 bytes.
+ */
+public class AnnotationValueIndex {
+    /** the name of the index subfolder */
+    public static final String INDEX_DIR = "searchindex";
+
+    private static final String INDEX_EXT = ".avi";
+    private static final int MAGIC = 0x45415649; // "EAVI"
+    private static final int VERSION = 2;
+    private static final int BUFFER_SIZE = 1 << 16;
+    /** the age after which a left over temporary file is deleted */
+    private static final long TEMP_FILE_AGE = TimeUnit.HOURS.toMillis(1);
+
+    private static final AnnotationValueIndex index = new AnnotationValueIndex();
+
+    /** the segments in memory, they can be reclaimed when memory is low */
+    private final Map<String, SoftReference<Segment>> segments;
+    /** the files waiting to be indexed in the background */
+    private final Set<File> pendingFiles;
+    private ThreadPoolExecutor indexExecutor;
+    /** the parser of the background indexing thread */
+    private SAXParser parser;
+
+    /**
+     * Private constructor.
+     */
+    private AnnotationValueIndex() {
+        segments = new ConcurrentHashMap<String, SoftReference<Segment>>();
+        pendingFiles = new HashSet<File>();
+
+        Thread purgeThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                purge();
+            }
+        }, "Search-Index-Purge");
+        purgeThread.setDaemon(true);
+        purgeThread.setPriority(Thread.MIN_PRIORITY);
+        purgeThread.start();
+    }
+
+    /**
+     * Returns the single instance.
+     *
+     * @return the single instance of the index
+     */
+    public static AnnotationValueIndex getInstance() {
+        return index;
+    }
+
+    /**
+     * Returns whether the index should be used by the search engines.
+     *
+     * @return {@code false} if the index has been switched off
+     */
+    public static boolean isEnabled() {
+        return Boolean.parseBoolean(System.getProperty("ELAN.Search.Index", "true"));
+    }
+
+    /**
+     * Returns whether a file might contain an annotation value that is
+     * matched by the pattern, i.e. whether the pattern finds a match in at
+     * least one of the values in the index of the file. The file is not
+     * parsed if there is no up-to-date segment for it, the caller can index
+     * it while searching it, see {@link #isIndexed(File)}.
+     *
+     * @param file the EAF file
+     * @param pattern the search pattern, applied with {@link Matcher#find()}
+     *
+     * @return {@code false} if the file certainly does not contain a
+     * matching value, {@code true} if it does or if the file has not been
+     * indexed
+     */
+    public boolean mayContainMatch(File file, Pattern pattern) {
+        Segment segment = getStoredSegment(file);
+
+        if (segment == null) {
+            return true;
+        }
+
+        Matcher matcher = pattern.matcher("");
+
+        for (String value : segment.values) {
+            if (matcher.reset(value).find()) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns whether there is an up-to-date segment in memory for a file.
+     * Segments are loaded into memory by {@link #mayContainMatch(File, Pattern)},
+     * if this returns {@code false} afterwards the file should be parsed with
+     * an {@link IndexingHandler}.
+     *
+     * @param file the EAF file
+     *
+     * @return {@code true} if the file is indexed
+     */
+    public boolean isIndexed(File file) {
+        SoftReference<Segment> ref = segments.get(file.getAbsolutePath());
+        Segment segment = (ref != null) ? ref.get() : null;
+
+        return (segment != null) && segment.isValidFor(file.length(), file.lastModified());
+    }
+
+    /**
+     * Creates a handler that indexes a file while the file is parsed for
+     * another purpose, e.g. for searching. The size and modification time
+     * of the file are taken before parsing.
+     *
+     * @param file the EAF file that is going to be parsed
+     * @param delegate the handler that receives all parser events as well,
+     * can be {@code null}
+     *
+     * @return the indexing handler, to be passed to {@link #store(IndexingHandler)}
+     * after the file has been parsed successfully
+     */
+    IndexingHandler createIndexingHandler(File file, DefaultHandler delegate) {
+        return new IndexingHandler(file, delegate);
+    }
+
+    /**
+     * Stores the segment created by a handler after a successful parse.
+     * Nothing is stored if the file has changed since the handler has been
+     * created.
+     *
+     * @param handler the handler that has processed a complete file
+     */
+    void store(IndexingHandler handler) {
+        File file = handler.file;
+
+        if ((file.length() != handler.length) || (file.lastModified() != handler.lastModified)) {
+            return;
+        }
+
+        String path = file.getAbsolutePath();
+        Segment segment = handler.createSegment(handler.length, handler.lastModified);
+        writeSegment(getIndexFile(file), path, segment);
+        segments.put(path, new SoftReference<Segment>(segment));
+    }
+
+    /**
+     * Indexes a file on a low priority background thread, if it has not
+     * been indexed yet. This is meant for files a search has skipped without
+     * parsing them, e.g. after a full text test, so that the search itself
+     * does not parse them only for the index.
+     *
+     * @param file the EAF file
+     */
+    void indexInBackground(final File file) {
+        synchronized (pendingFiles) {
+            if (!pendingFiles.add(file)) {
+                return;
+            }
+        }
+
+        getIndexExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (pendingFiles) {
+                    pendingFiles.remove(file);
+                }
+
+                if (getStoredSegment(file) == null) {
+                    index(file);
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns the up-to-date segment of a file from memory or from the index
+     * folder, without parsing the file. A segment that does not match the
+     * file, or the file no longer exists, is removed.
+     *
+     * @param file the EAF file
+     *
+     * @return the segment or {@code null} if there is no up-to-date segment
+     */
+    private Segment getStoredSegment(File file) {
+        String path = file.getAbsolutePath();
+        long length = file.length();
+        long lastModified = file.lastModified();
+        File indexFile = getIndexFile(file);
+
+        if (lastModified == 0L) {
+            // the file does not exist or cannot be accessed
+            segments.remove(path);
+            indexFile.delete();
+
+            return null;
+        }
+
+        SoftReference<Segment> ref = segments.get(path);
+        Segment segment = (ref != null) ? ref.get() : null;
+
+        if ((segment != null) && segment.isValidFor(length, lastModified)) {
+            return segment;
+        }
+
+        segments.remove(path);
+        segment = readSegment(indexFile, path);
+
+        if (segment == null) {
+            return null;
+        }
+
+        if (!segment.isValidFor(length, lastModified)) {
+            indexFile.delete();
+
+            return null;
+        }
+
+        segments.put(path, new SoftReference<Segment>(segment));
+
+        return segment;
+    }
+
+    /**
+     * Removes the segments of files that no longer exist or have changed
+     * since they have been indexed, e.g. files that have been deleted or
+     * renamed, and temporary files left behind by an interrupted write.
+     */
+    void purge() {
+        File dir = new File(CachedDataManager.getInstance().getCacheLocation(), INDEX_DIR);
+        File[] indexFiles = dir.listFiles();
+
+        if (indexFiles == null) {
+            return;
+        }
+
+        int numRemoved = 0;
+
+        for (File indexFile : indexFiles) {
+            String name = indexFile.getName();
+
+            if (name.endsWith(INDEX_EXT)) {
+                if (!isCurrentSegment(indexFile) && indexFile.delete()) {
+                    numRemoved++;
+                }
+            } else if (name.endsWith(".tmp") &&
+                    (System.currentTimeMillis() - indexFile.lastModified() > TEMP_FILE_AGE)) {
+                indexFile.delete();
+            }
+        }
+
+        for (String path : segments.keySet()) {
+            if (!new File(path).exists()) {
+                segments.remove(path);
+            }
+        }
+
+        if (numRemoved > 0) {
+            LOG.info("Removed " + numRemoved + " outdated search index files");
+        }
+    }
+
+    /**
+     * Reads the header of a segment and checks it against the EAF file it
+     * has been created for.
+     *
+     * @return {@code true} if the EAF file exists and has the size and
+     * modification time stored in the segment
+     */
+    private boolean isCurrentSegment(File indexFile) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                    new FileInputStream(indexFile)))) {
+            if ((in.readInt() != MAGIC) || (in.readInt() != VERSION)) {
+                return false;
+            }
+
+            File file = new File(readString(in));
+            long length = in.readLong();
+            long lastModified = in.readLong();
+
+            return (file.lastModified() == lastModified) && (file.length() == length);
+        } catch (IOException ioe) {
+            return false;
+        } catch (RuntimeException re) {
+            return false;
+        }
+    }
+
+    /**
+     * Parses the EAF file and stores its segment, on the background indexing
+     * thread.
+     */
+    private void index(File file) {
+        IndexingHandler handler = new IndexingHandler(file, null);
+
+        try (InputStream is = new FileInputStream(file)) {
+            if (parser == null) {
+                SAXParserFactory parserFactory = SAXParserFactory.newInstance();
+                parserFactory.setValidating(false);
+                parserFactory.setNamespaceAware(false);
+                parser = parserFactory.newSAXParser();
+            }
+
+            parser.parse(new InputSource(is), handler);
+        } catch (SAXException se) {
+            LOG.fine("Could not index file " + file.getName() + ": " + se.getMessage());
+
+            return;
+        } catch (IOException ioe) {
+            LOG.fine("Could not index file " + file.getName() + ": " + ioe.getMessage());
+
+            return;
+        } catch (ParserConfigurationException pce) {
+            LOG.warning("Could not create a parser for indexing: " + pce.getMessage());
+
+            return;
+        }
+
+        store(handler);
+    }
+
+    private synchronized ThreadPoolExecutor getIndexExecutor() {
+        if (indexExecutor == null) {
+            indexExecutor = new ThreadPoolExecutor(1, 1, 30L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r, "Search-Index-Writer");
+                        t.setDaemon(true);
+                        t.setPriority(Thread.MIN_PRIORITY);
+
+                        return t;
+                    }
+                });
+            indexExecutor.allowCoreThreadTimeOut(true);
+        }
+
+        return indexExecutor;
+    }
+
+    /**
+     * Reads a segment from the index folder.
+     *
+     * @return the segment or {@code null} if there is no valid segment for
+     * the path
+     */
+    private Segment readSegment(File indexFile, String path) {
+        if (!indexFile.isFile()) {
+            return null;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                    new FileInputStream(indexFile), BUFFER_SIZE))) {
+            if ((in.readInt() != MAGIC) || (in.readInt() != VERSION)) {
+                return null;
+            }
+
+            if (!path.equals(readString(in))) {
+                // a different file with the same hash code
+                return null;
+            }
+
+            Segment segment = new Segment();
+            segment.length = in.readLong();
+            segment.lastModified = in.readLong();
+
+            segment.values = new String[in.readInt()];
+
+            for (int i = 0; i < segment.values.length; i++) {
+                segment.values[i] = readString(in);
+            }
+
+            return segment;
+        } catch (IOException ioe) {
+            // includes the end of file of a truncated segment
+            LOG.fine("Could not read index file " + indexFile.getName() + ": " + ioe.getMessage());
+        } catch (RuntimeException re) {
+            // e.g. a negative array size in a corrupt segment
+            LOG.fine("Invalid index file " + indexFile.getName() + ": " + re.getMessage());
+        }
+
+        return null;
+    }
+
+    /**
+     * Writes a segment to a temporary file and replaces the previous
+     * segment of the file, if any.
+     */
+    private void writeSegment(File indexFile, String path, Segment segment) {
+        File dir = indexFile.getParentFile();
+
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            LOG.warning("Could not create the search index folder: " + dir);
+
+            return;
+        }
+
+        File tempFile = null;
+
+        try {
+            tempFile = File.createTempFile(indexFile.getName(), ".tmp", dir);
+
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                        new FileOutputStream(tempFile), BUFFER_SIZE))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                writeString(out, path);
+                out.writeLong(segment.length);
+                out.writeLong(segment.lastModified);
+                out.writeInt(segment.values.length);
+
+                for (String value : segment.values) {
+                    writeString(out, value);
+                }
+            }
+
+            Files.move(tempFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            tempFile = null;
+        } catch (IOException ioe) {
+            LOG.warning("Could not write search index file " + indexFile.getName() + ": " +
+                ioe.getMessage());
+        } finally {
+            if (tempFile != null) {
+                tempFile.delete();
+            }
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes a string as length and UTF-8 bytes; unlike
+     * {@link DataOutputStream#writeUTF(String)} this has no length limit.
+     */
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = (s != null ? s : "").getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private File getIndexFile(File file) {
+        return new File(new File(CachedDataManager.getInstance().getCacheLocation(), INDEX_DIR),
+            file.getName() + "_" + Integer.toHexString(file.getAbsolutePath().hashCode()) +
+            INDEX_EXT);
+    }
+
+    /**
+     * The index of a single file, the distinct annotation values.
+     */
+    private static class Segment {
+        long length;
+        long lastModified;
+        String[] values;
+
+        boolean isValidFor(long fileLength, long fileLastModified) {
+            return (length == fileLength) && (lastModified == fileLastModified);
+        }
+    }
+
+    /**
+     * A content handler that collects the distinct annotation values of an
+     * EAF file. All events are passed on to the delegate handler, if there
+     * is one, so that a file can be searched and indexed in a single parse.
+     */
+    static final class IndexingHandler extends DefaultHandler {
+        private final File file;
+        private final long length;
+        private final long lastModified;
+        private DefaultHandler delegate;
+        private final Set<String> values = new LinkedHashSet<String>();
+        private StringBuilder textBuffer;
+
+        /**
+         * Constructor.
+         *
+         * @param file the file that is going to be parsed
+         * @param delegate the handler to pass the events on to, can be {@code null}
+         */
+        IndexingHandler(File file, DefaultHandler delegate) {
+            this.file = file;
+            this.delegate = delegate;
+            length = file.length();
+            lastModified = file.lastModified();
+        }
+
+        /**
+         * Sets the handler to pass the events on to, before parsing.
+         *
+         * @param delegate the delegate handler, can be {@code null}
+         */
+        void setDelegate(DefaultHandler delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void setDocumentLocator(Locator locator) {
+            if (delegate != null) {
+                delegate.setDocumentLocator(locator);
+            }
+        }
+
+        @Override
+        public void startDocument() throws SAXException {
+            if (delegate != null) {
+                delegate.startDocument();
+            }
+        }
+
+        @Override
+        public void endDocument() throws SAXException {
+            if (delegate != null) {
+                delegate.endDocument();
+            }
+        }
+
+        @Override
+        public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException {
+            if (delegate != null) {
+                delegate.ignorableWhitespace(ch, start, length);
+            }
+        }
+
+        @Override
+        public void processingInstruction(String target, String data) throws SAXException {
+            if (delegate != null) {
+                delegate.processingInstruction(target, data);
+            }
+        }
+
+        @Override
+        public InputSource resolveEntity(String publicId, String systemId)
+            throws IOException, SAXException {
+            if (delegate != null) {
+                return delegate.resolveEntity(publicId, systemId);
+            }
+
+            return super.resolveEntity(publicId, systemId);
+        }
+
+        @Override
+        public void warning(SAXParseException e) throws SAXException {
+            if (delegate != null) {
+                delegate.warning(e);
+            }
+        }
+
+        @Override
+        public void error(SAXParseException e) throws SAXException {
+            if (delegate != null) {
+                delegate.error(e);
+            }
+        }
+
+        @Override
+        public void fatalError(SAXParseException e) throws SAXException {
+            if (delegate != null) {
+                delegate.fatalError(e);
+            } else {
+                super.fatalError(e);
+            }
+        }
+
+        @Override
+        public void startElement(String namespaceURI, String sName, String qName,
+            Attributes attrs) throws SAXException {
+            if (delegate != null) {
+                delegate.startElement(namespaceURI, sName, qName, attrs);
+            }
+
+            if (qName.equals("ANNOTATION_VALUE")) {
+                textBuffer = new StringBuilder();
+            }
+        }
+
+        @Override
+        public void endElement(String namespaceURI, String sName, String qName)
+            throws SAXException {
+            if (delegate != null) {
+                delegate.endElement(namespaceURI, sName, qName);
+            }
+
+            if (qName.equals("ANNOTATION_VALUE") && (textBuffer != null)) {
+                values.add(textBuffer.toString());
+                textBuffer = null;
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) throws SAXException {
+            if (delegate != null) {
+                delegate.characters(ch, start, length);
+            }
+
+            if (textBuffer != null) {
+                textBuffer.append(ch, start, length);
+            }
+        }
+
+        /**
+         * Creates the segment of the collected values.
+         *
+         * @param length the size of the file
+         * @param lastModified the modification time of the file
+         *
+         * @return the segment
+         */
+        Segment createSegment(long length, long lastModified) {
+            Segment segment = new Segment();
+            segment.length = length;
+            segment.lastModified = lastModified;
+            segment.values = values.toArray(new String[values.size()]);
+
+            return segment;
+        }
+    }
+}
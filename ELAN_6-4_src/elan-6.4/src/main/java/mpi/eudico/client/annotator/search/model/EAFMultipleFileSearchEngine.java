@@ -6,15 +6,27 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.ConcurrentModificationException;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
+import java.util.regex.Pattern;
 
+import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
 
 import mpi.eudico.client.annotator.ElanLocale;
+import mpi.eudico.client.annotator.search.result.model.EAFMultipleFileMatch;
 import static mpi.eudico.client.annotator.util.ClientLogger.LOG;
 import mpi.search.content.query.model.AnchorConstraint;
 import mpi.search.content.query.model.ContentQuery;
+import mpi.search.content.query.model.Utilities;
+import mpi.search.content.result.model.ContentResult;
 import mpi.search.model.ProgressListener;
 import mpi.search.model.SearchEngine;
 import mpi.search.query.model.Query;
@@ -28,17 +40,49 @@ import org.xml.sax.SAXException;
  * 
  * @version Jan 2018 replaced File as the input for SAXParser by FileInputSource 
  * (because of problems with diacritical marks in file paths)
+ * @version Oct 2026 files are searched in parallel by multiple threads
+ * @version Oct 2026 files without matching annotation values are skipped using
+ * the {@link AnnotationValueIndex}
  */
 public class EAFMultipleFileSearchEngine implements SearchEngine {
     private final ProgressListener progressListener;
+    private final int numThreads;
 
     /**
-     * Creates a new EAFMultipleFileSearchEngine object.
+     * Creates a new EAFMultipleFileSearchEngine object. The number of threads
+     * used for searching is the number of available processors, unless
+     * specified otherwise with the {@code ELAN.Search.NumThreads} property.
      *
      * @param progressListener monitor of progress
      */
     public EAFMultipleFileSearchEngine(ProgressListener progressListener) {
+        this(progressListener, getDefaultNumThreads());
+    }
+
+    /**
+     * Creates a new EAFMultipleFileSearchEngine object.
+     *
+     * @param progressListener monitor of progress
+     * @param numThreads the maximum number of files that are searched in
+     * parallel, 1 or less to search one file after the other
+     */
+    public EAFMultipleFileSearchEngine(ProgressListener progressListener, int numThreads) {
         this.progressListener = progressListener;
+        this.numThreads = numThreads;
+    }
+
+    private static int getDefaultNumThreads() {
+        String prop = System.getProperty("ELAN.Search.NumThreads");
+
+        if (prop != null) {
+            try {
+                return Integer.parseInt(prop);
+            } catch (NumberFormatException nfe) {
+                LOG.warning("Invalid number of search threads: " + prop);
+            }
+        }
+
+        return Runtime.getRuntime().availableProcessors();
     }
 
     /**
@@ -61,54 +105,24 @@ public class EAFMultipleFileSearchEngine implements SearchEngine {
     }
 
     /**
-     * Executes the query in all files that are part of the ContentQuery
+     * Executes the query in all files that are part of the ContentQuery.
+     * If more than one thread is to be used, the files are searched in
+     * parallel, the matches are added to the result in the order of the
+     * files. The search stops when the executing thread is interrupted.
      *
      * @param query contains the content query and the files to search
      *
      * @throws Exception exceptions are caught and packed in one ParseException
      */
     public void executeThread(ContentQuery query) throws Exception {
-        EAFMultipleFileSearchHandler handler = new EAFMultipleFileSearchHandler(query);
-        SAXParserFactory factory = SAXParserFactory.newInstance();
-        factory.setValidating(false);
-        factory.setNamespaceAware(false);
-
         File[] files = query.getFiles();
         List<File> failedFiles = new ArrayList<File>();
-        try {
-        	SAXParser saxParser = factory.newSAXParser();
-        	
-            // iterate over the EAF Files to do the searching stuff
-            for (int i = 0; i < files.length; i++) {
-                File file = files[i];
-            	FileInputStream fis = null;
-                handler.newFile(file);
-                
-                try {
-                	fis = new FileInputStream(file);
-    				InputSource source = new InputSource(fis);
-    				saxParser.parse(source, handler);
-                } catch (SAXException e) {
-//                    throw new SAXException(file.toString() + ":\n" +
-//                        e.getMessage());
-                	failedFiles.add(file);
-                } catch (IOException e) {
-//    	            System.out.println("IO error: " + e.getMessage());
-//    	            throw new SAXException(file.toString() + ":\n" +
-//                            e.getMessage());
-                	failedFiles.add(file);
-    	        } finally {
-    				try {
-    					if (fis != null) {
-    						fis.close();
-    					}
-    				} catch (IOException e) {
-    				}
-    	        }
 
-                if (progressListener != null) {
-                    progressListener.setProgress((int) (((i + 1) * 100.0) / files.length));
-                }
+        try {
+            if ((numThreads > 1) && (files.length > 1)) {
+                executeParallel(query, files, failedFiles);
+            } else {
+                executeSequential(query, files, failedFiles);
             }
         }
         // stop of thread can cause ConcurrentModificationException
@@ -134,6 +148,120 @@ public class EAFMultipleFileSearchEngine implements SearchEngine {
         }
     }
 
+    /**
+     * Searches the files one after the other, with a single parser.
+     *
+     * @param query the query
+     * @param files the files to search
+     * @param failedFiles the list to add files to that could not be parsed
+     *
+     * @throws ParserConfigurationException if a parser cannot be created
+     * @throws SAXException if a parser cannot be created
+     */
+    private void executeSequential(ContentQuery query, File[] files, List<File> failedFiles)
+        throws ParserConfigurationException, SAXException {
+        ContentResult result = (ContentResult) query.getResult();
+        FileSearcher searcher = new FileSearcher(query);
+
+        // iterate over the EAF Files to do the searching stuff
+        for (int i = 0; i < files.length; i++) {
+            if (Thread.currentThread().isInterrupted()) {
+                break;
+            }
+
+            if (!searcher.search(files[i])) {
+                if (Thread.currentThread().isInterrupted()) {
+                    break;
+                }
+
+                failedFiles.add(files[i]);
+            }
+
+            for (EAFMultipleFileMatch match : searcher.getMatches()) {
+                result.addMatch(match);
+            }
+
+            if (progressListener != null) {
+                progressListener.setProgress((int) (((i + 1) * 100.0) / files.length));
+            }
+        }
+    }
+
+    /**
+     * Searches the files in parallel by a bounded number of threads, each
+     * with its own parser and handler. The results of the files are
+     * collected and added to the result in the order of the files.
+     *
+     * @param query the query
+     * @param files the files to search
+     * @param failedFiles the list to add files to that could not be parsed
+     */
+    private void executeParallel(final ContentQuery query, File[] files, List<File> failedFiles) {
+        ContentResult result = (ContentResult) query.getResult();
+        ExecutorService executor = Executors.newFixedThreadPool(
+                Math.min(numThreads, files.length), new SearchThreadFactory());
+        // one searcher per thread, they are discarded with the threads
+        final ThreadLocal<FileSearcher> searchers = new ThreadLocal<FileSearcher>();
+        List<Future<FileResult>> futures = new ArrayList<Future<FileResult>>(files.length);
+
+        try {
+            for (final File file : files) {
+                futures.add(executor.submit(new Callable<FileResult>() {
+                        @Override
+                        public FileResult call() throws Exception {
+                            FileSearcher searcher = searchers.get();
+
+                            if (searcher == null) {
+                                searcher = new FileSearcher(query);
+                                searchers.set(searcher);
+                            }
+
+                            boolean success = searcher.search(file);
+
+                            return new FileResult(success,
+                                new ArrayList<EAFMultipleFileMatch>(searcher.getMatches()));
+                        }
+                    }));
+            }
+
+            // merge in file order
+            for (int i = 0; i < futures.size(); i++) {
+                FileResult fileResult = null;
+
+                try {
+                    fileResult = futures.get(i).get();
+                } catch (ExecutionException ee) {
+                    if (LOG.isLoggable(Level.WARNING)) {
+                        LOG.warning("Error while searching " + files[i].getName() + ": " +
+                            ee.getCause());
+                    }
+                }
+
+                if ((fileResult == null) || !fileResult.success) {
+                    failedFiles.add(files[i]);
+                }
+
+                if (fileResult != null) {
+                    for (EAFMultipleFileMatch match : fileResult.matches) {
+                        result.addMatch(match);
+                    }
+                }
+
+                if (progressListener != null) {
+                    progressListener.setProgress((int) (((i + 1) * 100.0) / files.length));
+                }
+            }
+        } catch (InterruptedException ie) {
+            // the search has been stopped
+            for (Future<FileResult> future : futures) {
+                future.cancel(true);
+            }
+
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
 
     /**
      * Executes the query.
@@ -146,4 +274,111 @@ public class EAFMultipleFileSearchEngine implements SearchEngine {
 	public void performSearch(Query query) throws Exception {
         executeThread((ContentQuery) query);
     }
+
+    /**
+     * Searches files with its own parser and handler.
+     */
+    private static class FileSearcher {
+        private final SAXParser saxParser;
+        private final EAFMultipleFileSearchHandler handler;
+        private final Pattern pattern;
+        private final AnnotationValueIndex index;
+
+        FileSearcher(ContentQuery query) throws ParserConfigurationException, SAXException {
+            SAXParserFactory factory = SAXParserFactory.newInstance();
+            factory.setValidating(false);
+            factory.setNamespaceAware(false);
+            saxParser = factory.newSAXParser();
+            handler = new EAFMultipleFileSearchHandler(query);
+            // the same pattern as used by the handler
+            pattern = Utilities.getPattern(query.getAnchorConstraint(), new EAFType());
+            index = AnnotationValueIndex.isEnabled() ? AnnotationValueIndex.getInstance() : null;
+        }
+
+        /**
+         * Searches a file. The file is not parsed if the index shows that
+         * none of its annotation values matches. A file that has not been
+         * indexed yet is indexed while it is searched.
+         *
+         * @param file the file to search
+         * @return {@code false} if the file could not be parsed, the
+         * matches found before the error are still available
+         */
+        boolean search(File file) {
+            FileInputStream fis = null;
+            handler.newFile(file);
+
+            AnnotationValueIndex.IndexingHandler indexingHandler = null;
+
+            if (index != null) {
+                if (!index.mayContainMatch(file, pattern)) {
+                    return true;
+                }
+
+                if (!index.isIndexed(file)) {
+                    indexingHandler = index.createIndexingHandler(file, handler);
+                }
+            }
+
+            try {
+                fis = new FileInputStream(file);
+                InputSource source = new InputSource(fis);
+
+                if (indexingHandler != null) {
+                    saxParser.parse(source, indexingHandler);
+                    index.store(indexingHandler);
+                } else {
+                    saxParser.parse(source, handler);
+                }
+
+                return true;
+            } catch (SAXException e) {
+                return false;
+            } catch (IOException e) {
+                return false;
+            } finally {
+                try {
+                    if (fis != null) {
+                        fis.close();
+                    }
+                } catch (IOException e) {
+                }
+            }
+        }
+
+        /**
+         * @return the matches found in the last searched file
+         */
+        List<EAFMultipleFileMatch> getMatches() {
+            return handler.getFileMatches();
+        }
+    }
+
+    /**
+     * The outcome of searching a single file.
+     */
+    private static class FileResult {
+        final boolean success;
+        final List<EAFMultipleFileMatch> matches;
+
+        FileResult(boolean success, List<EAFMultipleFileMatch> matches) {
+            this.success = success;
+            this.matches = matches;
+        }
+    }
+
+    /**
+     * Creates daemon threads for searching.
+     */
+    private static class SearchThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "EAF-Search-" + count.incrementAndGet());
+            t.setDaemon(true);
+
+            return t;
+        }
+    }
 }
@@ -37,6 +37,9 @@ class EAFMultipleFileSearchHandler extends DefaultHandler {
 
     final private List<String> tierNames;
 
+    /** the matches found in the current file */
+    final private List<EAFMultipleFileMatch> fileMatches;
+
     private boolean doAppend;
 
     private boolean processAfter;
@@ -74,6 +77,7 @@ class EAFMultipleFileSearchHandler extends DefaultHandler {
         this.result = (ContentResult) query.getResult();
         pattern = Utilities.getPattern(query.getAnchorConstraint(), new EAFType());
         tierNames = new ArrayList<String>();
+        fileMatches = new ArrayList<EAFMultipleFileMatch>();
         timeSlots = new HashMap<String, String>();
         ref1 = new HashMap<String, String>();
         ref2 = new HashMap<String, String>();
@@ -95,6 +99,21 @@ class EAFMultipleFileSearchHandler extends DefaultHandler {
         timeUnsolvedMatches.clear();
 		unalignedAlignablesIds.clear();
 		unalignedAlignableMatches.clear();
+		lastAlignedBTS = null;
+		fileMatches.clear();
+    }
+
+    /**
+     * Returns the matches found in the current file, in the order in which
+     * they have been found. The matches are not added to the result by the
+     * handler, so that files can be searched by multiple handlers in
+     * parallel and the matches can be added to the result in the order of
+     * the files.
+     * 
+     * @return the matches in the current file
+     */
+    public List<EAFMultipleFileMatch> getFileMatches() {
+        return fileMatches;
     }
 
     /**
@@ -118,6 +137,11 @@ class EAFMultipleFileSearchHandler extends DefaultHandler {
     @Override
 	public void startElement(String namespaceURI, String sName, String qName,
             Attributes attrs) throws SAXException {
+        // stop parsing when the search has been cancelled
+        if (Thread.currentThread().isInterrupted()) {
+            throw new SAXException("The search has been interrupted");
+        }
+
         doAppend = false;
 
         if (qName.equals("TIER")) {
@@ -296,7 +320,7 @@ class EAFMultipleFileSearchHandler extends DefaultHandler {
                 //match.setEndTimeBoundary(match.getBeginTimeBoundary()+ 1l);
             }
         }
-        result.addMatch(match);
+        fileMatches.add(match);
     }
 
     @Override
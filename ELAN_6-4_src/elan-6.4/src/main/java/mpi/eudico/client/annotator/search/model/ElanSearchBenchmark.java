@@ -0,0 +1,197 @@
+package mpi.eudico.client.annotator.search.model;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+
+import mpi.eudico.server.corpora.clomimpl.abstr.TranscriptionImpl;
+import mpi.search.content.query.model.AnchorConstraint;
+import mpi.search.content.query.model.Constraint;
+import mpi.search.content.query.model.ContentQuery;
+import mpi.search.content.query.model.DependentConstraint;
+
+/**
+ * A simple regression benchmark for the {@link ElanSearchEngine}. A
+ * synthetic transcription is created with a "words" tier, a symbolically
+ * associated "gloss" tier and an independent "gesture" tier, by default
+ * with 200,000 annotations in total. A number of queries with temporal and
+ * structural dependent constraints are executed a number of times; the
+ * number of matches and the average time per query are reported.
+ * <p>
+ * Usage: {@code ElanSearchBenchmark [number of annotations] [number of iterations]}
+ */
+public class ElanSearchBenchmark {
+    private static final String[] GLOSSES = { "N", "V", "ADJ", "ADV", "DET" };
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args optionally the total number of annotations and the
+     * number of iterations
+     * @throws Exception if a query fails
+     */
+    public static void main(String[] args) throws Exception {
+        int numAnnotations = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+
+        long start = System.nanoTime();
+        TranscriptionImpl transcription = createTranscription(numAnnotations);
+        System.out.println(String.format("Created transcription with %d annotations in %.0f ms",
+                numAnnotations, (System.nanoTime() - start) / 1000000.0));
+
+        run("temporal overlap", transcription, temporalQuery(Constraint.OVERLAP, 0L), iterations);
+        run("temporal right overlap", transcription,
+                temporalQuery(Constraint.RIGHT_OVERLAP, 0L), iterations);
+        run("temporal within distance", transcription,
+                temporalQuery(Constraint.WITHIN_OVERALL_DISTANCE, 500L), iterations);
+        run("temporal no overlap (none)", transcription, noneQuery(), iterations);
+        run("structural", transcription, structuralQuery(), iterations);
+    }
+
+    /**
+     * Creates the transcription: 2/5 of the annotations on the words tier,
+     * each with a gloss, and 1/5 on the gesture tier. The annotations are
+     * written to a temporary EAF file which is then loaded, creating them
+     * one by one via the tier takes quadratic time.
+     */
+    private static TranscriptionImpl createTranscription(int numAnnotations) throws IOException {
+        int numWords = (numAnnotations * 2) / 5;
+        int numGestures = numAnnotations - (2 * numWords);
+        // gestures spread over the same time span, with a different rhythm,
+        // starting 50 ms after the start of the step
+        long gestureStep = numGestures > 0 ? (numWords * 400L) / numGestures : 0;
+
+        File eafFile = File.createTempFile("elan-search-bench", ".eaf");
+        eafFile.deleteOnExit();
+
+        try (PrintWriter writer = new PrintWriter(new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(eafFile), StandardCharsets.UTF_8)))) {
+            writer.println("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+            writer.println("<ANNOTATION_DOCUMENT AUTHOR=\"\" DATE=\"2026-10-01T00:00:00+01:00\" "
+                    + "FORMAT=\"3.0\" VERSION=\"3.0\">");
+            writer.println("<HEADER MEDIA_FILE=\"\" TIME_UNITS=\"milliseconds\"/>");
+            writer.println("<TIME_ORDER>");
+
+            for (int i = 0; i < numWords; i++) {
+                // 300 ms words with a pause of 100 ms
+                writer.println("<TIME_SLOT TIME_SLOT_ID=\"tw" + (2 * i) + "\" TIME_VALUE=\""
+                        + (i * 400L) + "\"/>");
+                writer.println("<TIME_SLOT TIME_SLOT_ID=\"tw" + (2 * i + 1) + "\" TIME_VALUE=\""
+                        + ((i * 400L) + 300) + "\"/>");
+            }
+
+            for (int i = 0; i < numGestures; i++) {
+                writer.println("<TIME_SLOT TIME_SLOT_ID=\"tg" + (2 * i) + "\" TIME_VALUE=\""
+                        + ((i * gestureStep) + 50) + "\"/>");
+                writer.println("<TIME_SLOT TIME_SLOT_ID=\"tg" + (2 * i + 1) + "\" TIME_VALUE=\""
+                        + ((i * gestureStep) + 600) + "\"/>");
+            }
+
+            writer.println("</TIME_ORDER>");
+            writer.println("<TIER LINGUISTIC_TYPE_REF=\"aligned\" TIER_ID=\"words\">");
+
+            for (int i = 0; i < numWords; i++) {
+                writer.println("<ANNOTATION><ALIGNABLE_ANNOTATION ANNOTATION_ID=\"w" + i
+                        + "\" TIME_SLOT_REF1=\"tw" + (2 * i) + "\" TIME_SLOT_REF2=\"tw" + (2 * i + 1)
+                        + "\"><ANNOTATION_VALUE>w" + i + "</ANNOTATION_VALUE></ALIGNABLE_ANNOTATION></ANNOTATION>");
+            }
+
+            writer.println("</TIER>");
+            writer.println("<TIER LINGUISTIC_TYPE_REF=\"association\" PARENT_REF=\"words\" TIER_ID=\"gloss\">");
+
+            for (int i = 0; i < numWords; i++) {
+                writer.println("<ANNOTATION><REF_ANNOTATION ANNOTATION_ID=\"gl" + i
+                        + "\" ANNOTATION_REF=\"w" + i + "\"><ANNOTATION_VALUE>"
+                        + GLOSSES[i % GLOSSES.length] + "</ANNOTATION_VALUE></REF_ANNOTATION></ANNOTATION>");
+            }
+
+            writer.println("</TIER>");
+            writer.println("<TIER LINGUISTIC_TYPE_REF=\"aligned\" TIER_ID=\"gesture\">");
+
+            for (int i = 0; i < numGestures; i++) {
+                writer.println("<ANNOTATION><ALIGNABLE_ANNOTATION ANNOTATION_ID=\"g" + i
+                        + "\" TIME_SLOT_REF1=\"tg" + (2 * i) + "\" TIME_SLOT_REF2=\"tg" + (2 * i + 1)
+                        + "\"><ANNOTATION_VALUE>" + (i % 3 == 0 ? "point" : "beat")
+                        + "</ANNOTATION_VALUE></ALIGNABLE_ANNOTATION></ANNOTATION>");
+            }
+
+            writer.println("</TIER>");
+            writer.println("<LINGUISTIC_TYPE LINGUISTIC_TYPE_ID=\"aligned\" TIME_ALIGNABLE=\"true\"/>");
+            writer.println("<LINGUISTIC_TYPE CONSTRAINTS=\"Symbolic_Association\" "
+                    + "LINGUISTIC_TYPE_ID=\"association\" TIME_ALIGNABLE=\"false\"/>");
+            writer.println("<CONSTRAINT DESCRIPTION=\"1-1 association with a parent annotation\" "
+                    + "STEREOTYPE=\"Symbolic_Association\"/>");
+            writer.println("</ANNOTATION_DOCUMENT>");
+        }
+
+        // the xs:key checks of the schema validation take quadratic time for
+        // files of this size
+        System.setProperty("ELAN.EAF.Validate", "false");
+
+        return new TranscriptionImpl(eafFile.getAbsolutePath());
+    }
+
+    /**
+     * Words starting with "w1" that have a "point" gesture in the specified
+     * relation.
+     */
+    private static AnchorConstraint temporalQuery(String relation, long distance) {
+        AnchorConstraint ac = new AnchorConstraint("words", "w1.*", 0L, Long.MAX_VALUE,
+                Constraint.IS_INSIDE, true, false, null);
+        ac.insert(new DependentConstraint(Constraint.ANY, "gesture", "point",
+                Constraint.TEMPORAL, 0L, distance, relation, false, false,
+                new HashMap<Object, Object>()), 0);
+        return ac;
+    }
+
+    /**
+     * Words "w1" to "w1999" that don't have any gesture that does not
+     * overlap them, a query that tests the whole gesture tier for every word.
+     */
+    private static AnchorConstraint noneQuery() {
+        AnchorConstraint ac = new AnchorConstraint("words", "^w1\\d{0,3}$", 0L, Long.MAX_VALUE,
+                Constraint.IS_INSIDE, true, false, null);
+        ac.insert(new DependentConstraint(Constraint.NONE, "gesture", "nothing",
+                Constraint.TEMPORAL, 0L, 0L, Constraint.NO_OVERLAP, false, false,
+                new HashMap<Object, Object>()), 0);
+        return ac;
+    }
+
+    /**
+     * Words starting with "w1" that have a noun gloss within one word.
+     */
+    private static AnchorConstraint structuralQuery() {
+        AnchorConstraint ac = new AnchorConstraint("words", "w1.*", 0L, Long.MAX_VALUE,
+                Constraint.IS_INSIDE, true, false, null);
+        ac.insert(new DependentConstraint(Constraint.ANY, "gloss", "N",
+                Constraint.STRUCTURAL, -1L, 1L, "words annotation", false, true,
+                new HashMap<Object, Object>()), 0);
+        return ac;
+    }
+
+    private static void run(String name, TranscriptionImpl transcription,
+            AnchorConstraint anchor, int iterations) throws Exception {
+        ElanSearchEngine engine = new ElanSearchEngine(null, transcription);
+        ElanType type = new ElanType(transcription);
+        int numMatches = 0;
+        // a warm up run
+        ContentQuery query = new ContentQuery(anchor, type);
+        engine.executeThread(query);
+
+        long start = System.nanoTime();
+
+        for (int i = 0; i < iterations; i++) {
+            query = new ContentQuery(anchor, type);
+            engine.executeThread(query);
+            numMatches = query.getResult().getRealSize();
+        }
+
+        System.out.println(String.format("%-28s %8d matches %10.1f ms/query", name, numMatches,
+                (System.nanoTime() - start) / (iterations * 1000000.0)));
+    }
+}
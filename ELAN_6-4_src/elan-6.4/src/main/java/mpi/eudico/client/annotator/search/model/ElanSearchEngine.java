@@ -37,10 +37,13 @@ import mpi.search.query.model.Query;
  *
  * @author Alexander Klassmann
  * @version Aug 2005 Identity removed
+ * @version Oct 2026 the times of the annotations of each tier are collected
+ * once per query, scopes are resolved by binary search
  */
 public class ElanSearchEngine implements SearchEngine {
     private static final Logger logger = Logger.getLogger(ElanSearchEngine.class.getName());
-    private Map<String, List<? extends Annotation>> annotationHash = new HashMap<String, List<? extends Annotation>>();
+    /** the annotations of the tiers involved in the query, with their times */
+    private Map<String, TierScopeIndex> annotationHash = new HashMap<String, TierScopeIndex>();
     private Map<Constraint, Pattern> patternHash = new HashMap<Constraint, Pattern>();
     private Map<Constraint, Tier[]> relationshipHash = new HashMap<Constraint, Tier[]>();
     private Map<Constraint, TierImpl> unitTierHash = new HashMap<Constraint, TierImpl>();
@@ -83,18 +86,18 @@ public class ElanSearchEngine implements SearchEngine {
         }
 
         for (String tierName : tierNames) {
-        	List<? extends Annotation> anchorAnnotations = annotationHash.get(tierName);
+        	TierScopeIndex anchorIndex = annotationHash.get(tierName);
             List<ElanMatch> anchorMatches;
 
             if (!(anchorConstraint instanceof RestrictedAnchorConstraint)) {
-                int[] range = getAnnotationIndicesInScope(anchorAnnotations,
+                int[] range = getAnnotationIndicesInScope(anchorIndex,
                         anchorConstraint.getLowerBoundary(),
                         anchorConstraint.getUpperBoundary(),
                         anchorConstraint.getUnit());
 
                 anchorMatches = getMatches(null,
                         patternHash.get(anchorConstraint),
-                        anchorConstraint.getId(), anchorAnnotations, range);
+                        anchorConstraint.getId(), anchorIndex.getAnnotations(), range);
             } else {
                 anchorMatches =
                 		(List)	// FIXME TYPE This is an unsafe type conversion!
@@ -130,25 +133,27 @@ public class ElanSearchEngine implements SearchEngine {
      * Returns the annotation indices without a specified scope.
      * This is the same as getAnnotationIndicesInScope(...) with distance 0.
      *
-     * @param annotationList the list of annotations to search
+     * @param tierIndex the annotations to search
      * @param intervalBegin start time of the interval, of the scope
      * @param intervalEnd the end time of the interval, of the scope
      * @param timeComparisonMode the compare method
      *
      * @return int[] an array of indices of annotation within scope (meeting the constraints)
      */
-    private static int[] getAnnotationIndicesInScope(List<? extends Annotation> annotationList,
+    private static int[] getAnnotationIndicesInScope(TierScopeIndex tierIndex,
         long intervalBegin, long intervalEnd, String timeComparisonMode) {
-        return getAnnotationIndicesInScope(annotationList, intervalBegin,
+        return getAnnotationIndicesInScope(tierIndex, intervalBegin,
             intervalEnd, 0L, timeComparisonMode);
     }
 
     /**
      * Returns indices of annotations that fulfill the time constraints, 
      * determined by the parameter {@code distance} and the {@code timeComparisonMode}.
-     * The {@code distance} is used only for particular comparison modes 
+     * The {@code distance} is used only for particular comparison modes.
+     * Only the annotations in the range that can fulfill the constraint,
+     * found by binary search, are tested.
      *
-     * @param annotationList the list of annotations to search
+     * @param tierIndex the annotations to search
      * @param intervalBegin the interval begin time
      * @param intervalEnd the interval end time
      * @param distance the distance in milliseconds
@@ -157,13 +162,16 @@ public class ElanSearchEngine implements SearchEngine {
      *
      * @return int[] an array of indices of annotation within scope
      */
-    private static int[] getAnnotationIndicesInScope(List<? extends Annotation> annotationList,
+    private static int[] getAnnotationIndicesInScope(TierScopeIndex tierIndex,
         long intervalBegin, long intervalEnd, long distance,
         String timeComparisonMode) {
-        int[] annotationsInInterval = new int[annotationList.size()];
+        List<? extends Annotation> annotationList = tierIndex.getAnnotations();
+        int[] candidates = tierIndex.getCandidateRange(intervalBegin, intervalEnd,
+                distance, timeComparisonMode);
+        int[] annotationsInInterval = new int[candidates[1] - candidates[0]];
         int index = 0;
 
-        for (int i = 0; i < annotationList.size(); i++) {
+        for (int i = candidates[0]; i < candidates[1]; i++) {
             Annotation annotation = annotationList.get(i);
             boolean constraintFulfilled = false;
 
@@ -225,7 +233,7 @@ public class ElanSearchEngine implements SearchEngine {
      * @param lowerBoundary the start time boundary 
      * @param upperBoundary the end time boundary 
      * @param unitTier the unit tier
-     * @param unitAnnotations the unit annotations
+     * @param unitIndex the unit annotations
      * @param relationship the related tiers
      * @param centralAnnotation the central or reference annotation
      *
@@ -234,10 +242,11 @@ public class ElanSearchEngine implements SearchEngine {
      * @throws NullPointerException any null pointer that might occur
      */
     private static List<Annotation> getAnnotationsInScope(long lowerBoundary,
-        long upperBoundary, TierImpl unitTier, List<? extends Annotation> unitAnnotations,
+        long upperBoundary, TierImpl unitTier, TierScopeIndex unitIndex,
         Tier[] relationship, Annotation centralAnnotation)
         throws NullPointerException {
         List<Annotation> annotationsInScope = new ArrayList<Annotation>();
+        List<? extends Annotation> unitAnnotations = unitIndex.getAnnotations();
         Annotation centralUnitAnnotation = centralAnnotation;
 
         while ((centralUnitAnnotation.getTier() != unitTier) &&
@@ -249,7 +258,7 @@ public class ElanSearchEngine implements SearchEngine {
             throw new NullPointerException();
         }
 
-        int unitAnnotationIndex = unitAnnotations.indexOf(centralUnitAnnotation);
+        int unitAnnotationIndex = unitIndex.indexOf(centralUnitAnnotation);
 
         int[] unitAnnotationIndicesInScope = getRangeForTier(unitTier,
                 lowerBoundary, upperBoundary, unitAnnotationIndex);
@@ -479,8 +488,8 @@ public class ElanSearchEngine implements SearchEngine {
     private List<ElanMatch> getChildMatches(ElanMatch match, Constraint constraint)
         throws NullPointerException {
         TierImpl unitTier = null;
-        List<? extends Annotation> unitAnnotations = null;
-        List<? extends Annotation> constraintAnnotations = null;
+        TierScopeIndex unitIndex = null;
+        TierScopeIndex constraintIndex = null;
         Tier[] relShip = null;
 
         long lowerBoundary = constraint.getLowerBoundary();
@@ -496,12 +505,12 @@ public class ElanSearchEngine implements SearchEngine {
         List<ElanMatch> allMatches = new ArrayList<ElanMatch>();
         
         for (String name : tierNames) {      
-	        constraintAnnotations = annotationHash.get(name);
+	        constraintIndex = annotationHash.get(name);
 	
 	        if (Constraint.STRUCTURAL.equals(constraint.getMode())) {
 	            unitTier = unitTierHash.get(constraint);
 	
-	            unitAnnotations = annotationHash.get(unitTier.getName());
+	            unitIndex = annotationHash.get(unitTier.getName());
 	
 	            relShip = relationshipHash.get(constraint);
 	        }
@@ -511,19 +520,19 @@ public class ElanSearchEngine implements SearchEngine {
 	        Annotation annotation = match.getAnnotation();
 	
 	        if (Constraint.TEMPORAL.equals(constraint.getMode())) {
-	            annotationIndicesInScope = getAnnotationIndicesInScope(constraintAnnotations,
+	            annotationIndicesInScope = getAnnotationIndicesInScope(constraintIndex,
 	                    annotation.getBeginTimeBoundary(),
 	                    annotation.getEndTimeBoundary(), upperBoundary,
 	                    constraint.getUnit());
 	        } else {
 	            annotationsInScope = getAnnotationsInScope(lowerBoundary,
-	                    upperBoundary, unitTier, unitAnnotations, relShip,
+	                    upperBoundary, unitTier, unitIndex, relShip,
 	                    annotation);
 	
 	            annotationIndicesInScope = new int[annotationsInScope.size()];
 	
 	            for (int j = 0; j < annotationsInScope.size(); j++) {
-	                annotationIndicesInScope[j] = constraintAnnotations.indexOf(annotationsInScope.get(
+	                annotationIndicesInScope[j] = constraintIndex.indexOf(annotationsInScope.get(
 	                            j));
 	                logger.log(Level.FINE,
 	                    "Constraint annotation: " +
@@ -532,7 +541,7 @@ public class ElanSearchEngine implements SearchEngine {
 	        }
 	
 	        List<ElanMatch> matches = getMatches(match, pattern, constraint.getId(),
-	                constraintAnnotations, annotationIndicesInScope);
+	                constraintIndex.getAnnotations(), annotationIndicesInScope);
 	
 	        filterDependentConstraints(matches, constraint);
 	        allMatches.addAll(matches);
@@ -563,7 +572,10 @@ public class ElanSearchEngine implements SearchEngine {
         }
 
         for (TierImpl tier : tiers) {
-            annotationHash.put(tier.getName(), tier.getAnnotations());
+            // the annotations don't change during the query
+            if (!annotationHash.containsKey(tier.getName())) {
+                annotationHash.put(tier.getName(), new TierScopeIndex(tier.getAnnotations()));
+            }
         }
 
         //find unit tiers for dependent constraints
@@ -583,8 +595,7 @@ public class ElanSearchEngine implements SearchEngine {
             relationshipHash.put(constraint, getRelationship(unitTier, tiers[0]));
 
             if (!annotationHash.containsKey(tierName)) {
-                List<? extends Annotation> annotations = unitTier.getAnnotations();
-                annotationHash.put(tierName, annotations);
+                annotationHash.put(tierName, new TierScopeIndex(unitTier.getAnnotations()));
             }
         }
     }
@@ -11,12 +11,15 @@ import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
 
 import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
 
+import mpi.eudico.client.annotator.search.result.model.EAFMultipleFileMatch;
 import mpi.search.content.query.model.AnchorConstraint;
 import mpi.search.content.query.model.ContentQuery;
+import mpi.search.content.query.model.Utilities;
 import mpi.search.model.ProgressListener;
 import mpi.search.model.SearchEngine;
 import mpi.search.query.model.Query;
@@ -117,6 +120,8 @@ public class FASTSearchEngine implements SearchEngine {
     	
     	// Get the search pattern to use ( method calls are expensive in a loop... )
     	AnchorConstraint search = ((ContentQuery)query).getAnchorConstraint();
+    	// the index is consulted with the same pattern as used by the handler
+    	Pattern pattern = AnnotationValueIndex.isEnabled() ? Utilities.getPattern(search, new EAFType()) : null;
 
     	// We need to keep track of our tasks
     	AtomicInteger pendingTasks = new AtomicInteger();
@@ -128,7 +133,7 @@ public class FASTSearchEngine implements SearchEngine {
                 
                 // hand it off to our parsing threads!
                 pendingTasks.incrementAndGet();
-                threadPool.execute(new xmlParserTask(file, search, pendingTasks));
+                threadPool.execute(new xmlParserTask(file, search, pattern, pendingTasks));
 
                	// don't set to 100% yet if we're on the last file! ( have to wait for tasks to complete )
                	if ( progressListener != null && files.length != (i + 1) ) {
@@ -157,12 +162,14 @@ public class FASTSearchEngine implements SearchEngine {
     	private final File file;
     	private final AtomicInteger pendingTasks;
     	private final AnchorConstraint search;
+    	private final Pattern pattern;
     	private SAXParser saxParser;
     	private FASTSearchHandler handler;
     	
-    	public xmlParserTask( File f, AnchorConstraint s, AtomicInteger c ) {
+    	public xmlParserTask( File f, AnchorConstraint s, Pattern p, AtomicInteger c ) {
     		file = f;
     		search = s;
+    		pattern = p;
     		pendingTasks = c;
     	}
     	
@@ -180,6 +187,22 @@ public class FASTSearchEngine implements SearchEngine {
 		public void run() {
     		// Catch any exceptions, we don't want it to bubble up!
     		try {
+    			// skip the file if the index shows none of its annotation values matches,
+    			// a file that has not been indexed yet is indexed in the same parse or,
+    			// if it is not parsed, in the background
+    			AnnotationValueIndex index = AnnotationValueIndex.getInstance();
+    			AnnotationValueIndex.IndexingHandler indexingHandler = null;
+    			if ( pattern != null ) {
+    				if ( ! index.mayContainMatch(file, pattern) ) {
+    					pendingTasks.decrementAndGet();
+    					return;
+    				}
+    				if ( ! index.isIndexed(file) ) {
+    					// created before reading the file, it takes the file's size and modification time
+    					indexingHandler = index.createIndexingHandler(file, null);
+    				}
+    			}
+
     			// prefetch the file into memory, this is much better than letting
     			// the SAX parser load it due to our threadpool design
     			byte[] fileContents = preFetch(file);
@@ -187,7 +210,24 @@ public class FASTSearchEngine implements SearchEngine {
     			// execute a fulltext search on the file to see if we can skip the XML parser
     			if ( fullTextSearch(fileContents, search) == true ) {
     				handler.newFile(file);
-                    saxParser.parse(new ByteArrayInputStream(fileContents), handler);
+    				try {
+    					if ( indexingHandler != null ) {
+    						indexingHandler.setDelegate(handler);
+    						saxParser.parse(new ByteArrayInputStream(fileContents), indexingHandler);
+    						index.store(indexingHandler);
+    					} else {
+    						saxParser.parse(new ByteArrayInputStream(fileContents), handler);
+    					}
+    				} finally {
+    					// the handler collects the matches per file, also add the
+    					// matches found before a parse error
+    					for (EAFMultipleFileMatch match : handler.getFileMatches()) {
+    						handler.getResult().addMatch(match);
+    					}
+    				}
+    			} else if ( indexingHandler != null ) {
+    				// there can be no match, the file is indexed later so that the search is not slowed down
+    				index.indexInBackground(file);
     			}
 
                 // decrement the count, we are done parsing!
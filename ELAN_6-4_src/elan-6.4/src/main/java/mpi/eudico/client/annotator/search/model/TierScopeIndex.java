@@ -0,0 +1,241 @@
+package mpi.eudico.client.annotator.search.model;
+
+import java.util.List;
+
+import mpi.eudico.server.corpora.clom.Annotation;
+import mpi.search.content.query.model.Constraint;
+
+/**
+ * The annotations of a tier together with their begin and end times,
+ * created once per query by the {@link ElanSearchEngine}. The arrays allow
+ * to find the position of an annotation in the tier and the range of
+ * annotations that can possibly fulfill a time constraint by means of
+ * binary search, instead of iterating over all annotations of the tier for
+ * every match.
+ * <p>
+ * The ranges are conservative: the annotations in a range still have to be
+ * tested against the constraint, the annotations outside of the range
+ * certainly don't fulfill it. If the annotations are not ordered on their
+ * begin time the range is the whole tier.
+ */
+final class TierScopeIndex {
+    private final List<? extends Annotation> annotations;
+    private final long[] begins;
+    /** maxEnds[i] is the maximum of the end times of annotation 0 to i */
+    private final long[] maxEnds;
+    /** whether the begin times are in ascending order */
+    private final boolean beginsSorted;
+    /** whether no annotation has a begin time after its end time */
+    private final boolean beginsBeforeEnds;
+
+    /**
+     * Creates the index for the annotations of a tier.
+     *
+     * @param annotations the annotations, in the order of the tier
+     */
+    TierScopeIndex(List<? extends Annotation> annotations) {
+        this.annotations = annotations;
+
+        int n = annotations.size();
+        begins = new long[n];
+        maxEnds = new long[n];
+
+        boolean sorted = true;
+        boolean beforeEnds = true;
+        long maxEnd = Long.MIN_VALUE;
+
+        for (int i = 0; i < n; i++) {
+            Annotation annotation = annotations.get(i);
+            begins[i] = annotation.getBeginTimeBoundary();
+
+            long end = annotation.getEndTimeBoundary();
+            maxEnd = Math.max(maxEnd, end);
+            maxEnds[i] = maxEnd;
+
+            if ((i > 0) && (begins[i] < begins[i - 1])) {
+                sorted = false;
+            }
+
+            if (begins[i] > end) {
+                beforeEnds = false;
+            }
+        }
+
+        beginsSorted = sorted;
+        beginsBeforeEnds = beforeEnds;
+    }
+
+    /**
+     * Returns the annotations of the tier.
+     *
+     * @return the annotations
+     */
+    List<? extends Annotation> getAnnotations() {
+        return annotations;
+    }
+
+    /**
+     * Returns the position of an annotation in the tier, the same as
+     * {@code getAnnotations().indexOf(annotation)}.
+     *
+     * @param annotation the annotation
+     *
+     * @return the index of the annotation or -1
+     */
+    int indexOf(Annotation annotation) {
+        if (beginsSorted) {
+            long begin = annotation.getBeginTimeBoundary();
+
+            for (int i = firstBeginAtLeast(begin); (i < begins.length) && (begins[i] == begin); i++) {
+                if (annotations.get(i) == annotation) {
+                    return i;
+                }
+            }
+        }
+
+        return annotations.indexOf(annotation);
+    }
+
+    /**
+     * Returns the range of annotations that can fulfill the time relation
+     * with the interval, as used by
+     * {@link ElanSearchEngine}{@code .getAnnotationIndicesInScope}.
+     * The thresholds are calculated in the same way as in
+     * {@link mpi.eudico.util.TimeRelation}, so that the range is correct
+     * even if the calculation overflows.
+     *
+     * @param intervalBegin the interval begin time
+     * @param intervalEnd the interval end time
+     * @param distance the distance in milliseconds
+     * @param timeComparisonMode the comparison mode, one of the
+     * {@link Constraint} time interval constants
+     *
+     * @return an array containing the first index (inclusive) and the last
+     * index (exclusive) of the range
+     */
+    int[] getCandidateRange(long intervalBegin, long intervalEnd, long distance,
+        String timeComparisonMode) {
+        int n = begins.length;
+
+        if (!beginsSorted) {
+            return new int[] { 0, n };
+        }
+
+        int from = 0;
+        int to = n;
+
+        if (Constraint.OVERLAP.equals(timeComparisonMode)) {
+            from = firstMaxEndAbove(intervalBegin);
+            to = firstBeginAtLeast(intervalEnd);
+        } else if (Constraint.IS_INSIDE.equals(timeComparisonMode)) {
+            from = firstBeginAtLeast(intervalBegin);
+
+            if (beginsBeforeEnds) {
+                to = firstBeginAbove(intervalEnd);
+            }
+        } else if (Constraint.LEFT_OVERLAP.equals(timeComparisonMode)) {
+            from = firstMaxEndAbove(intervalBegin);
+            to = firstBeginAtLeast(intervalBegin);
+        } else if (Constraint.RIGHT_OVERLAP.equals(timeComparisonMode)) {
+            from = Math.max(firstBeginAbove(intervalBegin), firstMaxEndAbove(intervalEnd));
+            to = firstBeginAtLeast(intervalEnd);
+        } else if (Constraint.WITHIN_OVERALL_DISTANCE.equals(timeComparisonMode)) {
+            if (distance != Long.MAX_VALUE) {
+                from = firstBeginAbove(intervalBegin - distance);
+
+                if (beginsBeforeEnds) {
+                    to = firstBeginAbove(intervalEnd + distance);
+                }
+            }
+        } else if (Constraint.WITHIN_DISTANCE_TO_LEFT_BOUNDARY.equals(timeComparisonMode)) {
+            if (distance != Long.MAX_VALUE) {
+                from = firstBeginAbove(intervalBegin - distance);
+
+                if (beginsBeforeEnds) {
+                    to = firstBeginAbove(intervalBegin + distance);
+                }
+            }
+        } else if (Constraint.WITHIN_DISTANCE_TO_RIGHT_BOUNDARY.equals(timeComparisonMode)) {
+            if (distance != Long.MAX_VALUE) {
+                from = firstBeginAbove(intervalEnd - distance);
+
+                if (beginsBeforeEnds) {
+                    to = firstBeginAbove(intervalEnd + distance);
+                }
+            }
+        } else if (Constraint.BEFORE_LEFT_DISTANCE.equals(timeComparisonMode)) {
+            if (beginsBeforeEnds) {
+                to = firstBeginAtLeast(intervalBegin - distance);
+            }
+        } else if (Constraint.AFTER_RIGHT_DISTANCE.equals(timeComparisonMode)) {
+            from = firstBeginAbove(intervalEnd + distance);
+        }
+        // NO_OVERLAP and NOT_INSIDE can be fulfilled by any annotation
+
+        return new int[] { from, Math.max(from, to) };
+    }
+
+    /**
+     * @return the index of the first annotation with a begin time greater
+     * than or equal to the time, or the number of annotations
+     */
+    private int firstBeginAtLeast(long time) {
+        int lo = 0;
+        int hi = begins.length;
+
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+
+            if (begins[mid] < time) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+
+        return lo;
+    }
+
+    /**
+     * @return the index of the first annotation with a begin time greater
+     * than the time, or the number of annotations
+     */
+    private int firstBeginAbove(long time) {
+        int lo = 0;
+        int hi = begins.length;
+
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+
+            if (begins[mid] <= time) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+
+        return lo;
+    }
+
+    /**
+     * @return the index of the first annotation from which on the maximum
+     * end time is greater than the time; all annotations before it end at or
+     * before the time
+     */
+    private int firstMaxEndAbove(long time) {
+        int lo = 0;
+        int hi = maxEnds.length;
+
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+
+            if (maxEnds[mid] <= time) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+
+        return lo;
+    }
+}
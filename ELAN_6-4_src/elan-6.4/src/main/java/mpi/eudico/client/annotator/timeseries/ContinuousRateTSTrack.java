@@ -1,5 +1,6 @@
 package mpi.eudico.client.annotator.timeseries;
 
+import java.nio.FloatBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -8,11 +9,28 @@ import java.util.List;
  * Implementation of a time series data track. Data are stored in a flat list
  * or array of values; in combination with the  (fixed) sample rate it is
  * possible to find a time-value pair.
+ * <p>
+ * The values can also be provided as a {@code FloatBuffer}, e.g. a buffer
+ * mapped from a {@link TSTrackCache} file, in which case they are read
+ * directly from the buffer and not copied to an array.
+ * <p>
+ * The minimum, maximum, sum, average and range of long intervals are
+ * calculated from a {@link TSAggregatePyramid}, in logarithmic time.
  */
 public class ContinuousRateTSTrack extends AbstractTSTrack {
+    /**
+     * Ranges of at least this number of samples are calculated from the
+     * aggregate pyramid, shorter ranges by iterating over the samples.
+     */
+    static final int PYRAMID_MIN_RANGE = 4 * TSAggregatePyramid.BLOCK_SIZE;
+
     private float sampleRate;
     private float msPerSample;
     private float[] data;
+    /** the values, either wrapping the data array or a (mapped) buffer */
+    private FloatBuffer samples;
+    /** aggregates for statistics of long ranges, created when first needed */
+    private TSAggregatePyramid pyramid;
 
     /**
      * Constructor.
@@ -43,37 +61,63 @@ public class ContinuousRateTSTrack extends AbstractTSTrack {
      */
     @Override
 	public int getSampleCount() {
-        if (data == null) {
+        if (samples == null) {
             return 0;
         }
 
-        return data.length;
+        return samples.limit();
     }
 
     /**
-     * Returns an array of floats.
+     * Returns an array of floats. If the data of this track have been set as
+     * a buffer, a copy of the values in the buffer is returned.
      *
      * @see mpi.eudico.client.annotator.timeseries.TimeSeriesTrack#getData()
+     * @see #getDataBuffer()
      */
     @Override
 	public float[] getData() {
+        if (data == null && samples != null) {
+            float[] copy = new float[samples.limit()];
+            samples.duplicate().get(copy);
+
+            return copy;
+        }
+
         return data;
     }
 
+    /**
+     * Returns the values of this track as a buffer, without copying them.
+     * Values should be accessed with absolute get methods, the position of
+     * the buffer should not be changed.
+     *
+     * @return a buffer containing the values or {@code null}
+     */
+    public FloatBuffer getDataBuffer() {
+        return samples;
+    }
+
     /**
      * Sets the data of this tracks. Currently this method only accepts an
-     * array of floats; in any other case  an IllegalArgumentException will be
-     * thrown.
+     * array of floats or a {@code FloatBuffer}; in any other case  an
+     * IllegalArgumentException will be thrown.
      *
-     * @param data an array of floats
+     * @param data an array of floats or a buffer
      *
      * @throws IllegalArgumentException when the data is provided in anything
-     *         else but an array of floats
+     *         else but an array of floats or a buffer
      *
      * @see mpi.eudico.client.annotator.timeseries.TimeSeriesTrack#setData(java.lang.Object)
      */
     @Override
 	public void setData(Object data) {
+        if (data instanceof FloatBuffer) {
+            setData((FloatBuffer) data);
+
+            return;
+        }
+
         if (!(data instanceof float[])) {
             throw new IllegalArgumentException(
                 "This track only accepts an array of floats");
@@ -91,6 +135,39 @@ public class ContinuousRateTSTrack extends AbstractTSTrack {
      */
 	public void setData(float[] data) {
         this.data = (float[]) data;
+        samples = (data != null) ? FloatBuffer.wrap(data) : null;
+        resetAggregatePyramid();
+    }
+
+    /**
+     * Sets the data of this track as a buffer, e.g. a buffer that is mapped
+     * to a file. The values from position 0 to the limit of the buffer are
+     * the samples of the track.
+     *
+     * @param buffer a buffer containing the values
+     */
+    public void setData(FloatBuffer buffer) {
+        data = null;
+        samples = buffer;
+        resetAggregatePyramid();
+    }
+
+    /**
+     * Returns the pyramid of aggregates of the values, it is created on the
+     * first call.
+     *
+     * @return the aggregate pyramid or {@code null} if there are no data
+     */
+    synchronized TSAggregatePyramid getAggregatePyramid() {
+        if ((pyramid == null) && (samples != null)) {
+            pyramid = new TSAggregatePyramid(samples);
+        }
+
+        return pyramid;
+    }
+
+    private synchronized void resetAggregatePyramid() {
+        pyramid = null;
     }
 
     /**
@@ -127,10 +204,10 @@ public class ContinuousRateTSTrack extends AbstractTSTrack {
 
         long time = 0L;
 
-        if (data != null) {
-            if (index >= data.length) {
+        if (samples != null) {
+            if (index >= samples.limit()) {
                 throw new ArrayIndexOutOfBoundsException("Index (" + index +
-                    ") is greater than " + (data.length - 1));
+                    ") is greater than " + (samples.limit() - 1));
             }
 
             time = (long) (index * msPerSample);
@@ -147,7 +224,7 @@ public class ContinuousRateTSTrack extends AbstractTSTrack {
      */
     @Override
 	public float getAverage(long begin, long end) {
-        if (data == null || data.length == 0) {
+        if (samples == null || samples.limit() == 0) {
             return 0; // throw an exception?
         }
 
@@ -170,22 +247,22 @@ public class ContinuousRateTSTrack extends AbstractTSTrack {
         int bi = getIndexForTime(begin);
         int ei = getIndexForTime(end);
         
-        if (bi > data.length - 1) {
+        if (bi > samples.limit() - 1) {
         	return Float.NaN;
         }
-        if (ei > data.length - 1) {
-        	ei = data.length - 1;
+        if (ei > samples.limit() - 1) {
+        	ei = samples.limit() - 1;
         }
         
         if (bi == ei) {
         	long time = getTimeForIndex(bi);
         	if (begin <= time - timeOffset && end >= time - timeOffset) {
-        		return data[bi];
+        		return samples.get(bi);
         	} else {
         		if (time - timeOffset < begin) {
-        			if (bi < data.length - 1) {
-        				if (!Float.isNaN(data[bi]) && !Float.isNaN(data[bi + 1])) {
-        					return (data[bi] + data[bi + 1]) / 2;
+        			if (bi < samples.limit() - 1) {
+        				if (!Float.isNaN(samples.get(bi)) && !Float.isNaN(samples.get(bi + 1))) {
+        					return (samples.get(bi) + samples.get(bi + 1)) / 2;
         				} else {
         					return Float.NaN;
         				}
@@ -194,8 +271,8 @@ public class ContinuousRateTSTrack extends AbstractTSTrack {
         			}
         		} else {// time - timeOffset > end
         			if (bi > 0) {
-        				if (!Float.isNaN(data[bi]) && !Float.isNaN(data[bi - 1])) {
-        					return (data[bi] + data[bi - 1]) / 2;
+        				if (!Float.isNaN(samples.get(bi)) && !Float.isNaN(samples.get(bi - 1))) {
+        					return (samples.get(bi) + samples.get(bi - 1)) / 2;
         				} else {
         					return Float.NaN;
         				}
@@ -206,12 +283,18 @@ public class ContinuousRateTSTrack extends AbstractTSTrack {
         	}
         }
         
+        if (ei - bi >= PYRAMID_MIN_RANGE) {
+            TSAggregatePyramid.Aggregate agg = getAggregatePyramid().getAggregate(bi, ei);
+
+            return (agg.count == 0) ? Float.NaN : (float) (agg.sum / agg.count);
+        }
+
         int count = 0;
         float total = 0f;
 
-        for (int i = bi; (i <= ei) && (i < data.length); i++) {
-        	if (!Float.isNaN(data[i])) {
-        		total += data[i];
+        for (int i = bi; (i <= ei) && (i < samples.limit()); i++) {
+        	if (!Float.isNaN(samples.get(i))) {
+        		total += samples.get(i);
         		count++;
         	}
         }
@@ -230,7 +313,7 @@ public class ContinuousRateTSTrack extends AbstractTSTrack {
      */
     @Override
 	public float getMaximum(long begin, long end) {
-        if (data == null || data.length == 0) {
+        if (samples == null || samples.limit() == 0) {
             return 0; // throw an exception?
         }
 
@@ -252,22 +335,22 @@ public class ContinuousRateTSTrack extends AbstractTSTrack {
         int bi = getIndexForTime(begin);
         int ei = getIndexForTime(end);
         
-        if (bi > data.length - 1) {
+        if (bi > samples.limit() - 1) {
         	return Float.NaN;
         }
-        if (ei > data.length - 1) {
-        	ei = data.length - 1;
+        if (ei > samples.limit() - 1) {
+        	ei = samples.limit() - 1;
         }
         
         if (bi == ei) {
         	long time = getTimeForIndex(bi);
         	if (begin <= time - timeOffset && end >= time - timeOffset) {
-        		return data[bi];
+        		return samples.get(bi);
         	} else {
         		if (time - timeOffset < begin) {
-        			if (bi < data.length - 1) {
-        				if (!Float.isNaN(data[bi]) && !Float.isNaN(data[bi + 1])) {
-        					return data[bi] > data[bi + 1] ? data[bi] : data[bi + 1];
+        			if (bi < samples.limit() - 1) {
+        				if (!Float.isNaN(samples.get(bi)) && !Float.isNaN(samples.get(bi + 1))) {
+        					return samples.get(bi) > samples.get(bi + 1) ? samples.get(bi) : samples.get(bi + 1);
         				} else {
         					return Float.NaN;
         				}
@@ -276,8 +359,8 @@ public class ContinuousRateTSTrack extends AbstractTSTrack {
         			}
         		} else {// time - timeOffset > end
         			if (bi > 0) {
-        				if (!Float.isNaN(data[bi]) && !Float.isNaN(data[bi - 1])) {
-        					return data[bi] > data[bi - 1] ? data[bi] : data[bi - 1];
+        				if (!Float.isNaN(samples.get(bi)) && !Float.isNaN(samples.get(bi - 1))) {
+        					return samples.get(bi) > samples.get(bi - 1) ? samples.get(bi) : samples.get(bi - 1);
         				} else {
         					return Float.NaN;
         				}
@@ -288,13 +371,19 @@ public class ContinuousRateTSTrack extends AbstractTSTrack {
         	}
         }
         
+        if (ei - bi >= PYRAMID_MIN_RANGE) {
+            TSAggregatePyramid.Aggregate agg = getAggregatePyramid().getAggregate(bi, ei);
+
+            return (agg.count == 0) ? Float.NaN : agg.max;
+        }
+
         float max = Integer.MIN_VALUE; //problem with Float.MIN_VALUE
         int count = 0;
 
-        for (int i = bi; (i <= ei) && (i < data.length); i++) {
-            if (!Float.isNaN(data[i])) {
-            	if (data[i] > max) {
-            		max = data[i];
+        for (int i = bi; (i <= ei) && (i < samples.limit()); i++) {
+            if (!Float.isNaN(samples.get(i))) {
+            	if (samples.get(i) > max) {
+            		max = samples.get(i);
             	}
                 count++;
             }
@@ -315,7 +404,7 @@ public class ContinuousRateTSTrack extends AbstractTSTrack {
      */
     @Override
 	public float getMinimum(long begin, long end) {
-        if (data == null || data.length == 0) {
+        if (samples == null || samples.limit() == 0) {
             return 0; // throw an exception?
         }
 
@@ -337,22 +426,22 @@ public class ContinuousRateTSTrack extends AbstractTSTrack {
         int bi = getIndexForTime(begin);
         int ei = getIndexForTime(end);
         
-        if (bi > data.length - 1) {
+        if (bi > samples.limit() - 1) {
         	return Float.NaN;
         }
-        if (ei > data.length - 1) {
-        	ei = data.length - 1;
+        if (ei > samples.limit() - 1) {
+        	ei = samples.limit() - 1;
         }
         
         if (bi == ei) {
         	long time = getTimeForIndex(bi);
         	if (begin <= time - timeOffset && end >= time - timeOffset) {
-        		return data[bi];
+        		return samples.get(bi);
         	} else {
         		if (time - timeOffset < begin) {
-        			if (bi < data.length - 1) {
-        				if (!Float.isNaN(data[bi]) && !Float.isNaN(data[bi + 1])) {
-        					return data[bi] < data[bi + 1] ? data[bi] : data[bi + 1];
+        			if (bi < samples.limit() - 1) {
+        				if (!Float.isNaN(samples.get(bi)) && !Float.isNaN(samples.get(bi + 1))) {
+        					return samples.get(bi) < samples.get(bi + 1) ? samples.get(bi) : samples.get(bi + 1);
         				} else {
         					return Float.NaN;
         				}
@@ -361,8 +450,8 @@ public class ContinuousRateTSTrack extends AbstractTSTrack {
         			}
         		} else {// time - timeOffset > end
         			if (bi > 0) {
-        				if (!Float.isNaN(data[bi]) && !Float.isNaN(data[bi - 1])) {
-        					return data[bi] < data[bi - 1] ? data[bi] : data[bi - 1];
+        				if (!Float.isNaN(samples.get(bi)) && !Float.isNaN(samples.get(bi - 1))) {
+        					return samples.get(bi) < samples.get(bi - 1) ? samples.get(bi) : samples.get(bi - 1);
         				} else {
         					return Float.NaN;
         				}
@@ -373,13 +462,19 @@ public class ContinuousRateTSTrack extends AbstractTSTrack {
         	}
         }
         
+        if (ei - bi >= PYRAMID_MIN_RANGE) {
+            TSAggregatePyramid.Aggregate agg = getAggregatePyramid().getAggregate(bi, ei);
+
+            return (agg.count == 0) ? Float.NaN : agg.min;
+        }
+
         float min = Integer.MAX_VALUE;
         int count = 0;
 
-        for (int i = bi; (i <= ei) && (i < data.length); i++) {
-            if (!Float.isNaN(data[i])) {
-            	if (data[i] < min) {
-            		min = data[i];
+        for (int i = bi; (i <= ei) && (i < samples.limit()); i++) {
+            if (!Float.isNaN(samples.get(i))) {
+            	if (samples.get(i) < min) {
+            		min = samples.get(i);
             	}
                 count++;
             }
@@ -400,7 +495,7 @@ public class ContinuousRateTSTrack extends AbstractTSTrack {
      */
     @Override
 	public float getSum(long begin, long end) {
-    	if (data == null || data.length == 0) {
+    	if (samples == null || samples.limit() == 0) {
             return 0; // throw an exception?
         }
 
@@ -416,22 +511,22 @@ public class ContinuousRateTSTrack extends AbstractTSTrack {
         int bi = getIndexForTime(begin);
         int ei = getIndexForTime(end);
         
-        if (bi > data.length - 1) {
+        if (bi > samples.limit() - 1) {
         	return Float.NaN;
         }
-        if (ei > data.length - 1) {
-        	ei = data.length - 1;
+        if (ei > samples.limit() - 1) {
+        	ei = samples.limit() - 1;
         }
         
         if (bi == ei) {
         	long time = getTimeForIndex(bi);
         	if (begin <= time - timeOffset && end >= time - timeOffset) {
-        		return data[bi];
+        		return samples.get(bi);
         	} else {
         		if (time - timeOffset < begin) {
-        			if (bi < data.length - 1) {
-        				if (!Float.isNaN(data[bi]) && !Float.isNaN(data[bi + 1])) {
-        					return data[bi] + data[bi + 1];
+        			if (bi < samples.limit() - 1) {
+        				if (!Float.isNaN(samples.get(bi)) && !Float.isNaN(samples.get(bi + 1))) {
+        					return samples.get(bi) + samples.get(bi + 1);
         				} else {
         					return Float.NaN;
         				}
@@ -440,8 +535,8 @@ public class ContinuousRateTSTrack extends AbstractTSTrack {
         			}
         		} else {// time - timeOffset > end
         			if (bi > 0) {
-        				if (!Float.isNaN(data[bi]) && !Float.isNaN(data[bi - 1])) {
-        					return data[bi] + data[bi - 1];
+        				if (!Float.isNaN(samples.get(bi)) && !Float.isNaN(samples.get(bi - 1))) {
+        					return samples.get(bi) + samples.get(bi - 1);
         				} else {
         					return Float.NaN;
         				}
@@ -452,12 +547,18 @@ public class ContinuousRateTSTrack extends AbstractTSTrack {
         	}
         }
         
+        if (ei - bi >= PYRAMID_MIN_RANGE) {
+            TSAggregatePyramid.Aggregate agg = getAggregatePyramid().getAggregate(bi, ei);
+
+            return (agg.count == 0) ? Float.NaN : (float) agg.sum;
+        }
+
         float sum = 0;
         int count = 0;
         
-        for (int i = bi; (i <= ei) && (i < data.length); i++) {
-            if (!Float.isNaN(data[i])) {
-            	sum += data[i];
+        for (int i = bi; (i <= ei) && (i < samples.limit()); i++) {
+            if (!Float.isNaN(samples.get(i))) {
+            	sum += samples.get(i);
                 count++;
             }
         }
@@ -477,7 +578,7 @@ public class ContinuousRateTSTrack extends AbstractTSTrack {
      */
 	@Override
 	public float getValueAtBegin(long begin, long end) {
-		if (data == null || data.length == 0) {
+		if (samples == null || samples.limit() == 0) {
             return 0; // throw an exception?
         }
 
@@ -493,22 +594,22 @@ public class ContinuousRateTSTrack extends AbstractTSTrack {
         int bi = getIndexForTime(begin);
         int ei = getIndexForTime(end);
         
-        if (bi > data.length - 1) {
+        if (bi > samples.limit() - 1) {
         	return Float.NaN;
         }
-        if (ei > data.length - 1) {
-        	ei = data.length - 1;
+        if (ei > samples.limit() - 1) {
+        	ei = samples.limit() - 1;
         }
         
         if (bi == ei) {
         	long time = getTimeForIndex(bi);
         	if (begin <= time - timeOffset && end >= time - timeOffset) {
-        		return data[bi];
+        		return samples.get(bi);
         	} else {
         		if (time - timeOffset < begin) {
-        			if (bi < data.length - 1) {
-        				if (!Float.isNaN(data[bi]) && !Float.isNaN(data[bi + 1])) {
-        					return data[bi];
+        			if (bi < samples.limit() - 1) {
+        				if (!Float.isNaN(samples.get(bi)) && !Float.isNaN(samples.get(bi + 1))) {
+        					return samples.get(bi);
         				} else {
         					return Float.NaN;
         				}
@@ -517,8 +618,8 @@ public class ContinuousRateTSTrack extends AbstractTSTrack {
         			}
         		} else {// time - timeOffset > end
         			if (bi > 0) {
-        				if (!Float.isNaN(data[bi]) && !Float.isNaN(data[bi - 1])) {
-        					return data[bi - 1];
+        				if (!Float.isNaN(samples.get(bi)) && !Float.isNaN(samples.get(bi - 1))) {
+        					return samples.get(bi - 1);
         				} else {
         					return Float.NaN;
         				}
@@ -529,7 +630,7 @@ public class ContinuousRateTSTrack extends AbstractTSTrack {
         	}
         }
         
-        return data[bi];
+        return samples.get(bi);
 	}
 
     /**
@@ -540,7 +641,7 @@ public class ContinuousRateTSTrack extends AbstractTSTrack {
      */
 	@Override
 	public float getValueAtEnd(long begin, long end) {
-		if (data == null || data.length == 0) {
+		if (samples == null || samples.limit() == 0) {
             return 0; // throw an exception?
         }
 
@@ -556,22 +657,22 @@ public class ContinuousRateTSTrack extends AbstractTSTrack {
         int bi = getIndexForTime(begin);
         int ei = getIndexForTime(end);
         
-        if (bi > data.length - 1) {
+        if (bi > samples.limit() - 1) {
         	return Float.NaN;
         }
-        if (ei > data.length - 1) {
-        	ei = data.length - 1;
+        if (ei > samples.limit() - 1) {
+        	ei = samples.limit() - 1;
         }
         
         if (bi == ei) {
         	long time = getTimeForIndex(bi);
         	if (begin <= time - timeOffset && end >= time - timeOffset) {
-        		return data[bi];
+        		return samples.get(bi);
         	} else {
         		if (time - timeOffset < begin) {
-        			if (bi < data.length - 1) {
-        				if (!Float.isNaN(data[bi]) && !Float.isNaN(data[bi + 1])) {
-        					return data[bi + 1];
+        			if (bi < samples.limit() - 1) {
+        				if (!Float.isNaN(samples.get(bi)) && !Float.isNaN(samples.get(bi + 1))) {
+        					return samples.get(bi + 1);
         				} else {
         					return Float.NaN;
         				}
@@ -580,8 +681,8 @@ public class ContinuousRateTSTrack extends AbstractTSTrack {
         			}
         		} else {// time - timeOffset > end
         			if (bi > 0) {
-        				if (!Float.isNaN(data[bi]) && !Float.isNaN(data[bi - 1])) {
-        					return data[bi];
+        				if (!Float.isNaN(samples.get(bi)) && !Float.isNaN(samples.get(bi - 1))) {
+        					return samples.get(bi);
         				} else {
         					return Float.NaN;
         				}
@@ -592,7 +693,7 @@ public class ContinuousRateTSTrack extends AbstractTSTrack {
         	}
         }
         
-        return data[ei];
+        return samples.get(ei);
 	}
 
     /**
@@ -603,7 +704,7 @@ public class ContinuousRateTSTrack extends AbstractTSTrack {
      */
 	@Override
 	public float getMedian(long begin, long end) {
-        if (data == null || data.length == 0) {
+        if (samples == null || samples.limit() == 0) {
             return 0; // throw an exception?
         }
 
@@ -626,22 +727,22 @@ public class ContinuousRateTSTrack extends AbstractTSTrack {
         int bi = getIndexForTime(begin);
         int ei = getIndexForTime(end);
         
-        if (bi > data.length - 1) {
+        if (bi > samples.limit() - 1) {
         	return Float.NaN;
         }
-        if (ei > data.length - 1) {
-        	ei = data.length - 1;
+        if (ei > samples.limit() - 1) {
+        	ei = samples.limit() - 1;
         }
         // in case of one index for begin and end, the implementation is the same as for average
         if (bi == ei) {
         	long time = getTimeForIndex(bi);
         	if (begin <= time - timeOffset && end >= time - timeOffset) {
-        		return data[bi];
+        		return samples.get(bi);
         	} else {
         		if (time - timeOffset < begin) {
-        			if (bi < data.length - 1) {
-        				if (!Float.isNaN(data[bi]) && !Float.isNaN(data[bi + 1])) {
-        					return (data[bi] + data[bi + 1]) / 2;
+        			if (bi < samples.limit() - 1) {
+        				if (!Float.isNaN(samples.get(bi)) && !Float.isNaN(samples.get(bi + 1))) {
+        					return (samples.get(bi) + samples.get(bi + 1)) / 2;
         				} else {
         					return Float.NaN;
         				}
@@ -650,8 +751,8 @@ public class ContinuousRateTSTrack extends AbstractTSTrack {
         			}
         		} else {// time - timeOffset > end
         			if (bi > 0) {
-        				if (!Float.isNaN(data[bi]) && !Float.isNaN(data[bi - 1])) {
-        					return (data[bi] + data[bi - 1]) / 2;
+        				if (!Float.isNaN(samples.get(bi)) && !Float.isNaN(samples.get(bi - 1))) {
+        					return (samples.get(bi) + samples.get(bi - 1)) / 2;
         				} else {
         					return Float.NaN;
         				}
@@ -663,10 +764,10 @@ public class ContinuousRateTSTrack extends AbstractTSTrack {
         }
         
         List<Float> valList = new ArrayList<Float>();
-        for (int i = bi; (i <= ei) && (i < data.length); i++) {
+        for (int i = bi; (i <= ei) && (i < samples.limit()); i++) {
         	// only store real values (or?)
-        	if (!Float.isNaN(data[i])) {
-        		valList.add(Float.valueOf(data[i]));// Float.valueOf(data[i]) ?
+        	if (!Float.isNaN(samples.get(i))) {
+        		valList.add(Float.valueOf(samples.get(i)));// Float.valueOf(samples.get(i)) ?
         	}
         }
         
@@ -699,7 +800,7 @@ public class ContinuousRateTSTrack extends AbstractTSTrack {
      */
 	@Override
 	public float getRange(long begin, long end) {
-        if (data == null || data.length == 0) {
+        if (samples == null || samples.limit() == 0) {
             return 0; // throw an exception?
         }
 
@@ -721,11 +822,11 @@ public class ContinuousRateTSTrack extends AbstractTSTrack {
         int bi = getIndexForTime(begin);
         int ei = getIndexForTime(end);
         
-        if (bi > data.length - 1) {
+        if (bi > samples.limit() - 1) {
         	return Float.NaN;
         }
-        if (ei > data.length - 1) {
-        	ei = data.length - 1;
+        if (ei > samples.limit() - 1) {
+        	ei = samples.limit() - 1;
         }
         
         if (bi == ei) {
@@ -737,17 +838,23 @@ public class ContinuousRateTSTrack extends AbstractTSTrack {
         	}
         }
         
+        if (ei - bi >= PYRAMID_MIN_RANGE) {
+            TSAggregatePyramid.Aggregate agg = getAggregatePyramid().getAggregate(bi, ei);
+
+            return (agg.count == 0) ? Float.NaN : agg.max - agg.min;
+        }
+
         float max = Integer.MIN_VALUE; //problem with Float.MIN_VALUE
         float min = Integer.MAX_VALUE;
         int count = 0;
 
-        for (int i = bi; (i <= ei) && (i < data.length); i++) {
-            if (!Float.isNaN(data[i])) {
-            	if (data[i] > max) {
-            		max = data[i];
+        for (int i = bi; (i <= ei) && (i < samples.limit()); i++) {
+            if (!Float.isNaN(samples.get(i))) {
+            	if (samples.get(i) > max) {
+            		max = samples.get(i);
             	}
-            	if (data[i] < min) {
-            		min = data[i];
+            	if (samples.get(i) < min) {
+            		min = samples.get(i);
             	}
                 count++;
             }
@@ -767,8 +874,8 @@ public class ContinuousRateTSTrack extends AbstractTSTrack {
 	 */
 	@Override
 	public long getDataDuration() {
-		if (data != null && data.length > 0) {
-			return (long) ((data.length - 1) * msPerSample);
+		if (samples != null && samples.limit() > 0) {
+			return (long) ((samples.limit() - 1) * msPerSample);
 		}
 		
 		return super.getDataDuration();
@@ -0,0 +1,176 @@
+package mpi.eudico.client.annotator.timeseries;
+
+import java.nio.FloatBuffer;
+
+/**
+ * A multi-resolution summary of the values of a continuous rate track. The
+ * first level stores the minimum, maximum, sum and number of valid (non NaN)
+ * values of each block of {@link #BLOCK_SIZE} samples, each next level
+ * combines {@link #BLOCK_SIZE} elements of the previous level, until a
+ * single element remains.
+ * <p>
+ * The aggregates of any range of samples can then be calculated by combining
+ * at most {@code 2 * BLOCK_SIZE} elements per level, instead of visiting
+ * every sample in the range. The memory needed is less than one byte per
+ * sample.
+ */
+final class TSAggregatePyramid {
+    /** the number of elements combined into one element of the next level */
+    static final int BLOCK_SIZE = 32;
+
+    private final FloatBuffer samples;
+    private final float[][] mins;
+    private final float[][] maxs;
+    private final double[][] sums;
+    private final int[][] counts;
+
+    /**
+     * Creates the pyramid for the values in the buffer, from index 0 up to
+     * the limit of the buffer.
+     *
+     * @param samples the values, the buffer should not be modified after
+     * creation of the pyramid
+     */
+    TSAggregatePyramid(FloatBuffer samples) {
+        this.samples = samples;
+
+        int numLevels = 0;
+
+        for (int n = samples.limit(); n > 1; n = (n + BLOCK_SIZE - 1) / BLOCK_SIZE) {
+            numLevels++;
+        }
+
+        mins = new float[numLevels][];
+        maxs = new float[numLevels][];
+        sums = new double[numLevels][];
+        counts = new int[numLevels][];
+
+        int prevSize = samples.limit();
+
+        for (int level = 0; level < numLevels; level++) {
+            int size = (prevSize + BLOCK_SIZE - 1) / BLOCK_SIZE;
+            mins[level] = new float[size];
+            maxs[level] = new float[size];
+            sums[level] = new double[size];
+            counts[level] = new int[size];
+
+            for (int i = 0; i < size; i++) {
+                Aggregate agg = new Aggregate();
+                int from = i * BLOCK_SIZE;
+                int to = Math.min(from + BLOCK_SIZE, prevSize);
+
+                if (level == 0) {
+                    addSamples(from, to, agg);
+                } else {
+                    addElements(level - 1, from, to, agg);
+                }
+
+                mins[level][i] = agg.min;
+                maxs[level][i] = agg.max;
+                sums[level][i] = agg.sum;
+                counts[level][i] = agg.count;
+            }
+
+            prevSize = size;
+        }
+    }
+
+    /**
+     * Calculates the aggregates of a range of samples.
+     *
+     * @param fromIndex the first sample index, inclusive
+     * @param toIndex the last sample index, inclusive
+     *
+     * @return the minimum, maximum, sum and number of the valid values in the
+     * range; if there are no valid values the count is 0
+     */
+    Aggregate getAggregate(int fromIndex, int toIndex) {
+        Aggregate agg = new Aggregate();
+        // half open range [lo, hi) at the current level, -1 is the samples level
+        int lo = Math.max(0, fromIndex);
+        int hi = Math.min(toIndex + 1, samples.limit());
+        int level = -1;
+
+        while (lo < hi) {
+            if ((hi - lo < 2 * BLOCK_SIZE) || (level == mins.length - 1)) {
+                addRange(level, lo, hi, agg);
+
+                break;
+            }
+
+            // the partial blocks at both ends, the rest in the next level
+            int loUp = ((lo + BLOCK_SIZE - 1) / BLOCK_SIZE) * BLOCK_SIZE;
+            int hiDown = (hi / BLOCK_SIZE) * BLOCK_SIZE;
+            addRange(level, lo, loUp, agg);
+            addRange(level, hiDown, hi, agg);
+            lo = loUp / BLOCK_SIZE;
+            hi = hiDown / BLOCK_SIZE;
+            level++;
+        }
+
+        return agg;
+    }
+
+    private void addRange(int level, int from, int to, Aggregate agg) {
+        if (level < 0) {
+            addSamples(from, to, agg);
+        } else {
+            addElements(level, from, to, agg);
+        }
+    }
+
+    private void addSamples(int from, int to, Aggregate agg) {
+        for (int i = from; i < to; i++) {
+            float v = samples.get(i);
+
+            if (!Float.isNaN(v)) {
+                if (v < agg.min) {
+                    agg.min = v;
+                }
+
+                if (v > agg.max) {
+                    agg.max = v;
+                }
+
+                agg.sum += v;
+                agg.count++;
+            }
+        }
+    }
+
+    private void addElements(int level, int from, int to, Aggregate agg) {
+        float[] levelMins = mins[level];
+        float[] levelMaxs = maxs[level];
+        double[] levelSums = sums[level];
+        int[] levelCounts = counts[level];
+
+        for (int i = from; i < to; i++) {
+            if (levelCounts[i] > 0) {
+                if (levelMins[i] < agg.min) {
+                    agg.min = levelMins[i];
+                }
+
+                if (levelMaxs[i] > agg.max) {
+                    agg.max = levelMaxs[i];
+                }
+
+                agg.sum += levelSums[i];
+                agg.count += levelCounts[i];
+            }
+        }
+    }
+
+    /**
+     * The aggregates of the valid values of a range.
+     */
+    static final class Aggregate {
+        /** the minimum, positive infinity if count is 0 */
+        float min = Float.POSITIVE_INFINITY;
+        /** the maximum, negative infinity if count is 0 */
+        float max = Float.NEGATIVE_INFINITY;
+        /** the sum */
+        double sum;
+        /** the number of valid values */
+        int count;
+    }
+}
@@ -0,0 +1,402 @@
+package mpi.eudico.client.annotator.timeseries;
+
+import static mpi.eudico.client.annotator.util.ClientLogger.LOG;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import mpi.eudico.client.annotator.CachedDataManager;
+
+/**
+ * A binary cache for the data of the tracks of a time series source file.
+ * When the tracks of a (large) text file have been parsed, the values are
+ * stored track by track in a file in the {@link #CACHE_DIR} folder of the
+ * {@link CachedDataManager} location. Next time the tracks are loaded, the
+ * file is memory mapped; the values of continuous rate tracks are then read
+ * directly from the mapped buffer, without copying them to the heap.
+ * <p>
+ * A cache file is only used if it was created for the same source file path,
+ * size and modification time and for the same configuration description,
+ * a string created by the service provider, describing everything that
+ * influences the values of the tracks (columns, derivative levels etc.).
+ * <p>
+ * Caching can be switched off with {@code -DELAN.TimeSeries.Cache=false}.
+ * <p>
+ * File layout (little endian): magic number, version, header length, length
+ * and UTF-8 bytes of the key, sample rate, number of tracks, for each track a
+ * type byte and the number of values, padding to a multiple of 8 bytes,
+ * followed by the data of each track: the float values of a continuous rate
+ * track or the long time values followed by the float values of a non
+ * continuous rate track.
+ */
+public class TSTrackCache {
+    /** the name of the cache subfolder */
+    public static final String CACHE_DIR = "tscache";
+
+    /** the extension of cache files */
+    private static final String CACHE_EXT = ".tsc";
+    private static final int MAGIC = 0x43535445; // "ETSC" in little endian
+    private static final int VERSION = 1;
+    private static final byte CONTINUOUS = 0;
+    private static final byte NON_CONTINUOUS = 1;
+
+    /** source files smaller than this are not cached, parsing them is fast enough */
+    private static final long MIN_SOURCE_SIZE = 1024 * 1024;
+    private static final int WRITE_BUFFER_SIZE = 1 << 16;
+
+    private final File sourceFile;
+    private final String key;
+    private float sampleRate;
+    private List<Object> trackData;
+
+    /**
+     * Creates a cache object for a source file and configuration.
+     *
+     * @param source the path or file URL of the source file
+     * @param configDescription a description of the configuration of the
+     * tracks, any change in the configuration that leads to different values
+     * should lead to a different description
+     */
+    public TSTrackCache(String source, String configDescription) {
+        if (source.startsWith("file:")) {
+            source = source.substring(5);
+        }
+
+        sourceFile = new File(source);
+        key = sourceFile.getAbsolutePath() + '|' + sourceFile.length() + '|' +
+            sourceFile.lastModified() + '|' + configDescription;
+    }
+
+    /**
+     * Returns whether caching is enabled and the source file is large
+     * enough to be worth caching.
+     *
+     * @return {@code true} if the data of the source can be cached
+     */
+    public boolean isCacheable() {
+        if (!Boolean.parseBoolean(System.getProperty("ELAN.TimeSeries.Cache", "true"))) {
+            return false;
+        }
+
+        return sourceFile.isFile() && (sourceFile.length() >= MIN_SOURCE_SIZE);
+    }
+
+    /**
+     * Tries to load the track data from a cache file.
+     *
+     * @return {@code true} if a valid cache file was found and mapped, the
+     * data can then be retrieved with {@link #getTrackData()}
+     */
+    public boolean load() {
+        if (!isCacheable()) {
+            return false;
+        }
+
+        File cacheFile = getCacheFile();
+
+        if (!cacheFile.isFile()) {
+            return false;
+        }
+
+        long start = System.currentTimeMillis();
+
+        try (FileChannel channel = FileChannel.open(cacheFile.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer pre = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, pre, 0);
+
+            if ((pre.getInt(0) != MAGIC) || (pre.getInt(4) != VERSION)) {
+                return false;
+            }
+
+            int headerLength = pre.getInt(8);
+
+            if ((headerLength < 12) || (headerLength > channel.size())) {
+                return false;
+            }
+
+            ByteBuffer header = ByteBuffer.allocate(headerLength).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, header, 0);
+            header.position(12);
+
+            byte[] keyBytes = new byte[header.getInt()];
+            header.get(keyBytes);
+
+            if (!key.equals(new String(keyBytes, StandardCharsets.UTF_8))) {
+                return false;
+            }
+
+            float rate = header.getFloat();
+            int numTracks = header.getInt();
+            byte[] types = new byte[numTracks];
+            int[] counts = new int[numTracks];
+            long expectedSize = headerLength;
+
+            for (int i = 0; i < numTracks; i++) {
+                types[i] = header.get();
+                counts[i] = header.getInt();
+                expectedSize += (types[i] == CONTINUOUS ? 4L : 12L) * counts[i];
+            }
+
+            // never map beyond the end of an incomplete file
+            if (expectedSize != channel.size()) {
+                LOG.warning("Incomplete time series cache file: " + cacheFile.getName());
+
+                return false;
+            }
+
+            List<Object> data = new ArrayList<Object>(numTracks);
+            long offset = headerLength;
+
+            for (int i = 0; i < numTracks; i++) {
+                byte type = types[i];
+                int count = counts[i];
+
+                if (type == CONTINUOUS) {
+                    data.add(channel.map(FileChannel.MapMode.READ_ONLY, offset, 4L * count)
+                        .order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer());
+                    offset += (4L * count);
+                } else {
+                    LongBuffer times = channel.map(FileChannel.MapMode.READ_ONLY, offset, 8L * count)
+                        .order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+                    offset += (8L * count);
+
+                    FloatBuffer values = channel.map(FileChannel.MapMode.READ_ONLY, offset, 4L * count)
+                        .order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+                    offset += (4L * count);
+
+                    List<TimeValue> tvList = new ArrayList<TimeValue>(count);
+
+                    for (int j = 0; j < count; j++) {
+                        tvList.add(new TimeValue(times.get(j), values.get(j)));
+                    }
+
+                    data.add(tvList);
+                }
+            }
+
+            sampleRate = rate;
+            trackData = data;
+            LOG.info("Loaded " + numTracks + " tracks from cache file " + cacheFile.getName() +
+                " in " + (System.currentTimeMillis() - start) + " ms");
+
+            return true;
+        } catch (IOException ioe) {
+            LOG.warning("Could not read time series cache file " + cacheFile.getName() + ": " +
+                ioe.getMessage());
+        } catch (RuntimeException re) {
+            // e.g. a truncated file
+            LOG.warning("Invalid time series cache file " + cacheFile.getName() + ": " +
+                re.getMessage());
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns the sample rate loaded from the cache.
+     *
+     * @return the sample rate, 0 for non continuous rate data
+     */
+    public float getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * Returns the data of the tracks, after a successful {@link #load()}.
+     *
+     * @return a list containing for each track a {@code FloatBuffer} (for
+     * continuous rate tracks) or a {@code List<TimeValue>} (for non continuous
+     * rate tracks), or {@code null}
+     */
+    public List<Object> getTrackData() {
+        return trackData;
+    }
+
+    /**
+     * Writes the track data to a cache file, if the source is cacheable.
+     * Older cache files of the same source are deleted. Failure to write
+     * the file is logged, but otherwise ignored.
+     *
+     * @param rate the sample rate of the tracks, if they are continuous rate
+     * tracks
+     * @param tracks a list containing for each track either a
+     * {@code float[]} or a {@code List<TimeValue>}
+     */
+    public void store(float rate, List<?> tracks) {
+        if (!isCacheable() || (tracks == null)) {
+            return;
+        }
+
+        File dir = new File(CachedDataManager.getInstance().getCacheLocation(), CACHE_DIR);
+
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            LOG.warning("Could not create the time series cache folder: " + dir);
+
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        File cacheFile = getCacheFile();
+        File tempFile = null;
+
+        try {
+            tempFile = File.createTempFile(getSourcePrefix(), ".tmp", dir);
+
+            try (FileChannel channel = FileChannel.open(tempFile.toPath(),
+                        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                writeHeader(channel, rate, tracks);
+
+                ByteBuffer buf = ByteBuffer.allocate(WRITE_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+                for (Object track : tracks) {
+                    if (track instanceof float[]) {
+                        float[] values = (float[]) track;
+                        int index = 0;
+
+                        while (index < values.length) {
+                            ensureRemaining(channel, buf, 4);
+                            int n = Math.min(values.length - index, buf.remaining() / 4);
+                            buf.asFloatBuffer().put(values, index, n);
+                            buf.position(buf.position() + (4 * n));
+                            index += n;
+                        }
+                    } else {
+                        @SuppressWarnings("unchecked")
+                        List<TimeValue> tvList = (List<TimeValue>) track;
+
+                        for (TimeValue tv : tvList) {
+                            ensureRemaining(channel, buf, 8);
+                            buf.putLong(tv.time);
+                        }
+
+                        for (TimeValue tv : tvList) {
+                            ensureRemaining(channel, buf, 4);
+                            buf.putFloat(tv.value);
+                        }
+                    }
+                }
+
+                buf.flip();
+                writeFully(channel, buf);
+            }
+
+            Files.move(tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            tempFile = null;
+            deleteStaleFiles(dir, cacheFile);
+            LOG.info("Stored " + tracks.size() + " tracks in cache file " + cacheFile.getName() +
+                " in " + (System.currentTimeMillis() - start) + " ms");
+        } catch (IOException ioe) {
+            LOG.warning("Could not write time series cache file " + cacheFile.getName() + ": " +
+                ioe.getMessage());
+        } catch (ClassCastException cce) {
+            LOG.warning("Unsupported track data, not cached: " + cce.getMessage());
+        } finally {
+            if (tempFile != null) {
+                tempFile.delete();
+            }
+        }
+    }
+
+    /**
+     * Writes the header, including the table of tracks.
+     */
+    private void writeHeader(FileChannel channel, float rate, List<?> tracks) throws IOException {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        int length = 12 + 4 + keyBytes.length + 4 + 4 + (5 * tracks.size());
+        // align the data
+        length = (length + 7) & ~7;
+
+        ByteBuffer header = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC);
+        header.putInt(VERSION);
+        header.putInt(length);
+        header.putInt(keyBytes.length);
+        header.put(keyBytes);
+        header.putFloat(rate);
+        header.putInt(tracks.size());
+
+        for (Object track : tracks) {
+            if (track instanceof float[]) {
+                header.put(CONTINUOUS);
+                header.putInt(((float[]) track).length);
+            } else {
+                header.put(NON_CONTINUOUS);
+                header.putInt(((List<?>) track).size());
+            }
+        }
+
+        // including the padding
+        header.position(0);
+        writeFully(channel, header);
+    }
+
+    /**
+     * Writes the content of the buffer if there is not enough space left.
+     */
+    private void ensureRemaining(FileChannel channel, ByteBuffer buf, int numBytes)
+        throws IOException {
+        if (buf.remaining() < numBytes) {
+            buf.flip();
+            writeFully(channel, buf);
+            buf.clear();
+        }
+    }
+
+    private void writeFully(FileChannel channel, ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining()) {
+            channel.write(buf);
+        }
+    }
+
+    private void readFully(FileChannel channel, ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) {
+            if (channel.read(buf, position + buf.position()) < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+        }
+    }
+
+    /**
+     * Removes other cache files of the same source file, they have been
+     * created for a previous version of the source or another configuration.
+     */
+    private void deleteStaleFiles(File dir, File current) {
+        String prefix = getSourcePrefix();
+        File[] files = dir.listFiles();
+
+        if (files == null) {
+            return;
+        }
+
+        for (File f : files) {
+            if (f.getName().startsWith(prefix) && f.getName().endsWith(CACHE_EXT) &&
+                    !f.equals(current)) {
+                // can fail on some platforms if the file is still mapped
+                if (!f.delete()) {
+                    LOG.fine("Could not delete old cache file: " + f.getName());
+                }
+            }
+        }
+    }
+
+    private String getSourcePrefix() {
+        return sourceFile.getName() + "_" +
+            Integer.toHexString(sourceFile.getAbsolutePath().hashCode()) + "_";
+    }
+
+    private File getCacheFile() {
+        return new File(new File(CachedDataManager.getInstance().getCacheLocation(), CACHE_DIR),
+            getSourcePrefix() + Integer.toHexString(key.hashCode()) + CACHE_EXT);
+    }
+}
@@ -5,6 +5,7 @@ import java.awt.Graphics2D;
 import java.awt.Insets;
 import java.awt.Rectangle;
 //import java.awt.geom.GeneralPath;
+import java.nio.FloatBuffer;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -171,7 +172,18 @@ public class TSTrackPanelImpl implements TSTrackPanel {
 			return;
 		}
 		g2d .setColor(track.getColor());
-		float[] data = (float[]) track.getData();
+		// read the values from the buffer of the track, if possible, to
+		// avoid copying the values of a track that is backed by a mapped file
+		FloatBuffer data;
+		if (track instanceof ContinuousRateTSTrack) {
+			data = ((ContinuousRateTSTrack) track).getDataBuffer();
+		} else {
+			float[] values = (float[]) track.getData();
+			data = values != null ? FloatBuffer.wrap(values) : null;
+		}
+		if (data == null) {
+			return;
+		}
 		float[] range = vertRuler.getRange();
 		float scaleUnit = h / (range[1] - range[0]);
 		long endTime = beginTime + (long)(w * msPerPixel);
@@ -182,7 +194,13 @@ public class TSTrackPanelImpl implements TSTrackPanel {
 
 		int x1 = 0, x2 = -1, y1 = 0, y2 = 0;
 		if (samplesPerPixel > 1) {
-			// per pixel calculation
+			// per pixel calculation, when zoomed out far enough the sum of the
+			// samples of a pixel is taken from the aggregates of the track
+			TSAggregatePyramid pyramid = null;
+			if (track instanceof ContinuousRateTSTrack &&
+					samplesPerPixel >= ContinuousRateTSTrack.PYRAMID_MIN_RANGE) {
+				pyramid = ((ContinuousRateTSTrack) track).getAggregatePyramid();
+			}
 			int index1 = beginIndex;
 			int index2 = index1;
 			for (int i = 0; i <= w; i++) {
@@ -193,13 +211,19 @@ public class TSTrackPanelImpl implements TSTrackPanel {
 				if (index1 < 0 || index2 < 0 || index1 == index2) {
 					continue;
 				}
-				if (index2 >= data.length) {
+				if (index2 >= data.limit()) {
 					break;
 				}
-				for (int j = index1; j < index2; j++) {
-					if (!Float.isNaN(data[j])) {
-						val += data[j];
-						validPix = true;
+				if (pyramid != null && index2 - index1 >= ContinuousRateTSTrack.PYRAMID_MIN_RANGE) {
+					TSAggregatePyramid.Aggregate agg = pyramid.getAggregate(index1, index2 - 1);
+					val = (float) agg.sum;
+					validPix = agg.count > 0;
+				} else {
+					for (int j = index1; j < index2; j++) {
+						if (!Float.isNaN(data.get(j))) {
+							val += data.get(j);
+							validPix = true;
+						}
 					}
 				}
 				// calculate average
@@ -231,11 +255,11 @@ public class TSTrackPanelImpl implements TSTrackPanel {
 			// per sample calculation
 			float pixelPerSample = 1 / samplesPerPixel;
 			
-			for (int i = beginIndex; i <= endIndex && i < data.length; i++) {
+			for (int i = beginIndex; i <= endIndex && i < data.limit(); i++) {
 				if (i < 0) {
 					continue;
 				}
-				float v = data[i];
+				float v = data.get(i);
 				if (x2 == -1) {
 					// first point
 					x2 = (int)(i * pixelPerSample) - xShift;
@@ -5,6 +5,7 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.regex.Pattern;
@@ -477,38 +478,6 @@ public class CSVReader {
         return t;
     }
 
-    /**
-     * Returns a TimeValue object holding the time in ms. as well as the  value
-     * of the data sample as a float.
-     *
-     * @param line the line to parse
-     * @param timeCol the index of the time column
-     * @param dataCol the index of the data column
-     * @param pattern the pattern containing the delimiter
-     *
-     * @return a TimeValue object or null
-     */
-    private TimeValue getTimeValue(String line, int timeCol, int dataCol,
-        Pattern pattern) {
-        if ((line == null) || (line.length() == 0)) {
-            return null;
-        }
-
-        long t = 0;
-        float v = 0;
-        String[] row = pattern.split(line);
-
-        if (row.length > timeCol) {
-            t = TimeFormatter.toMilliSeconds(row[timeCol], lastDetectedTimeFormat);
-        }
-
-        if (row.length > dataCol) {
-            v = toFloat(row[dataCol]);
-        }
-
-        return new TimeValue(t, v);
-    }
-
     private float toFloat(String val) {
         try {
             return Float.parseFloat(val);
@@ -538,16 +507,80 @@ public class CSVReader {
      * are less than 0
      */
     private Object readTrack(int timeCol, int dataCol, int derLevel,
+        boolean continuousRate) throws IOException {
+        List<Object> tracks = readTracks(timeCol, new int[] { dataCol },
+                new int[] { derLevel }, continuousRate);
+
+        if (tracks == null) {
+            return null;
+        }
+
+        return tracks.get(0);
+    }
+
+    /**
+     * Reads the data of any number of tracks in a single pass over the file.
+     * The time column and each of the distinct data columns are parsed once,
+     * into primitive arrays, after which the tracks are created, while
+     * applying derivation calculations, from these arrays.
+     *
+     * @param timeCol the column containing the time values, zero based
+     * @param dataCols the column indices of the tracks, zero based
+     * @param derLevels for each track the level of derivation (in time), 0
+     *        means the raw values, the same length as {@code dataCols}
+     * @param continuousRate if true the tracks are continuous rate tracks
+     *        (must match the file)
+     *
+     * @return a list containing for each track either a float[] (if
+     *         continuousRate) or a {@code List<TimeValue>} (if
+     *         !continuousRate), in the order of the columns array
+     *
+     * @throws IOException any IO related exception
+     * @throws IllegalArgumentException if any of the columns is less than 0
+     * or if the number of derivative levels does not match the number of
+     * columns
+     */
+    private List<Object> readTracks(int timeCol, int[] dataCols, int[] derLevels,
         boolean continuousRate) throws IOException {
         if (!isValidFile()) {
             return null;
         }
 
-        if ((timeCol < 0) || (dataCol < 0)) {
+        if (dataCols.length != derLevels.length) {
+            throw new IllegalArgumentException(
+                "The number of columns and of derivative levels differ");
+        }
+
+        if (timeCol < 0) {
             throw new IllegalArgumentException(
                 "Time column and data column must be greater than or equal to 0");
         }
 
+        // map the data columns to distinct columns to read
+        int maxCol = timeCol;
+
+        for (int dataCol : dataCols) {
+            if (dataCol < 0) {
+                throw new IllegalArgumentException(
+                    "Time column and data column must be greater than or equal to 0");
+            }
+
+            maxCol = Math.max(maxCol, dataCol);
+        }
+
+        int[] colToIndex = new int[maxCol + 1];
+        Arrays.fill(colToIndex, -1);
+
+        int[] readCols = new int[dataCols.length];
+        int numReadCols = 0;
+
+        for (int dataCol : dataCols) {
+            if (colToIndex[dataCol] == -1) {
+                colToIndex[dataCol] = numReadCols;
+                readCols[numReadCols++] = dataCol;
+            }
+        }
+
         if (timeCol != lastTimeCol) {
         	if (continuousRate) {
         		detectSampleFrequency(timeCol);
@@ -555,23 +588,103 @@ public class CSVReader {
             detectTimeFormat(timeCol);
             lastTimeCol = timeCol;
         }
-        
+
+        // single pass over the file
+        int capacity = 1024;
+        long[] times = new long[capacity];
+        float[][] columns = new float[numReadCols][capacity];
+        int numRows = 0;
+        int[] fieldBounds = new int[2 * (maxCol + 2)];
+        Pattern pat = isLiteralDelimiter() ? null : Pattern.compile(delimiter);
 
         fileRead = new FileReader(sourceFile);
         bufRead = new BufferedReader(fileRead);
 
-        // List of TimeValue and Float objects
-        List<Object> values = new ArrayList<Object>();
-        Pattern pat = Pattern.compile(delimiter);
+        try {
+            String li = null;
+
+            while ((li = bufRead.readLine()) != null) {
+                if (trimLinesBeforeParsing){
+                	li = li.trim();
+                } 
+                if ((li.length() == 0) || li.trim().startsWith("#")) {
+                    continue;
+                }
+
+                if (numRows == capacity) {
+                    capacity += capacity >> 1;
+                    times = Arrays.copyOf(times, capacity);
+
+                    for (int c = 0; c < numReadCols; c++) {
+                        columns[c] = Arrays.copyOf(columns[c], capacity);
+                    }
+                }
+
+                if (pat == null) {
+                    int numFields = splitFields(li, maxCol + 1, fieldBounds);
+                    times[numRows] = numFields > timeCol ? TimeFormatter.toMilliSeconds(
+                            li.substring(fieldBounds[2 * timeCol], fieldBounds[2 * timeCol + 1]),
+                            lastDetectedTimeFormat) : 0L;
+
+                    for (int c = 0; c < numReadCols; c++) {
+                        int col = readCols[c];
+                        columns[c][numRows] = numFields > col ? toFloat(
+                                li.substring(fieldBounds[2 * col], fieldBounds[2 * col + 1])) : 0f;
+                    }
+                } else {
+                    String[] row = pat.split(li);
+                    times[numRows] = row.length > timeCol ? TimeFormatter.toMilliSeconds(
+                            row[timeCol], lastDetectedTimeFormat) : 0L;
+
+                    for (int c = 0; c < numReadCols; c++) {
+                        int col = readCols[c];
+                        columns[c][numRows] = row.length > col ? toFloat(row[col]) : 0f;
+                    }
+                }
+
+                numRows++;
+            }
+        } finally {
+            try {
+                bufRead.close();
+            } catch (IOException ioe) {
+            }
+        }
+
+        List<Object> tracks = new ArrayList<Object>(dataCols.length);
+
+        for (int i = 0; i < dataCols.length; i++) {
+            float[] values = columns[colToIndex[dataCols[i]]];
 
+            if (continuousRate) {
+                tracks.add(createContinuousRateData(times, values, numRows, derLevels[i]));
+            } else {
+                tracks.add(createNonContinuousRateData(times, values, numRows, derLevels[i]));
+            }
+        }
+
+        return tracks;
+    }
+
+    /**
+     * Creates the samples of a continuous rate track from the time and data
+     * values of the rows of the file. Gaps in the time values are filled, the
+     * first sample of a derivative track is the same as the second.
+     *
+     * @param times the time values of the rows
+     * @param values the data values of the rows
+     * @param numRows the number of rows
+     * @param derLevel the level of derivation
+     *
+     * @return the samples
+     */
+    private float[] createContinuousRateData(long[] times, float[] values,
+        int numRows, int derLevel) {
+        float[] samples = new float[Math.max(16, numRows + (numRows >> 4))];
+        int numValues = 0;
+        int sampleCount = 0;
         long curTimeStamp = 0L;
-        long firstTimeStamp = 0L;
         float curSample = 0.0f;
-        int sampleCount = 0;
-
-        //float[] flArray = null;
-        TimeValue tv = null;
-        String li = null;
 
         // two dimensional array for iteration; reused for storage 
         // of previous sample
@@ -581,133 +694,227 @@ public class CSVReader {
             derivArray = new float[derLevel + 1][2];
         }
 
-        while ((li = bufRead.readLine()) != null) {
-            if (trimLinesBeforeParsing){
-            	li = li.trim();
-            } 
-            if ((li.length() == 0) || li.trim().startsWith("#")) {
-                continue;
+        for (int row = 0; row < numRows; row++) {
+            curTimeStamp = times[row];
+            curSample = values[row];
+
+            // if the first time value != 0 and != msPerSample, fill with zeros?
+            if ((sampleCount == 0) &&
+                    (curTimeStamp > (1.5 * msPerSample))) {
+                float fillSample = msPerSample;
+
+                while (fillSample < (curTimeStamp - msPerSample)) {
+                    samples = addSample(samples, numValues++, 0.0f);
+                    fillSample += msPerSample;
+                    sampleCount++;
+                }
             }
 
-            tv = getTimeValue(li, timeCol, dataCol, pat);
-
-            if (tv != null) {
-                curTimeStamp = tv.time;
-                curSample = tv.value;
-
-                if (!continuousRate) {
-                	if (tv.time < 0) {
-                		continue;
-                	}
-                    if (derLevel == 0) {
-                        values.add(tv);
-                    } else {
-                        // before storing calculate derivatives, does this make sense?
-                        if (sampleCount == 0) {
-                            derivArray[0][0] = curSample;
-                            firstTimeStamp = curTimeStamp;
-                        } else if (sampleCount == 1) {
-                            derivArray[0][1] = curSample;
-                            calculateDerivatives(derivArray);
-                            // add the first value twice (instead of adding 0 at index 0
-                            values.add(new TimeValue(firstTimeStamp,
-                                    derivArray[derivArray.length - 1][1]));
-                            values.add(new TimeValue(curTimeStamp,
-                                    derivArray[derivArray.length - 1][1]));
-                        } else {
-                            shiftSamplesInArray(derivArray);
-                            derivArray[0][1] = curSample;
-                            calculateDerivatives(derivArray);
-                            values.add(new TimeValue(curTimeStamp,
-                                    derivArray[derivArray.length - 1][1]));
-                        }
-                    }
-                } else { // continuous rate
-                         // if the first time value != 0 and != msPerSample, fill with zeros?
-
-                    if ((sampleCount == 0) &&
-                            (curTimeStamp > (1.5 * msPerSample))) {
-                        float fillSample = msPerSample;
-
-                        while (fillSample < (curTimeStamp - msPerSample)) {
-                            values.add(Float.valueOf(0.0f));
-                            fillSample += msPerSample;
-                            sampleCount++;
-                        }
-                    }
+            // store sample value, but check if samples have to be filled in  
+            // in order to get a proper fixed rate track
+            // note: this only adds 1 sample max. 
+            if ((curTimeStamp - (sampleCount * msPerSample)) > (msPerSample / 2)) {
+                LOG.info("Adding fill-in at sample: " + sampleCount);
+
+                if (derLevel == 0) {
+                    samples = addSample(samples, numValues++, curSample);
+                } else {
+                    shiftSamplesInArray(derivArray);
+                    derivArray[0][1] = curSample;
+                    calculateDerivatives(derivArray);
+                    samples = addSample(samples, numValues++,
+                            derivArray[derivArray.length - 1][1]);
+                }
 
-                    // store sample value, but check if samples have to be filled in  
-                    // in order to get a proper fixed rate track
-                    // note: this only adds 1 sample max. 
-                    if ((curTimeStamp - (sampleCount * msPerSample)) > (msPerSample / 2)) {
-                        LOG.info("Adding fill-in at sample: " + sampleCount);
-
-                        if (derLevel == 0) {
-                            values.add(Float.valueOf(curSample));
-                        } else {
-                            shiftSamplesInArray(derivArray);
-                            derivArray[0][1] = curSample;
-                            calculateDerivatives(derivArray);
-                            values.add(Float.valueOf(
-                                    derivArray[derivArray.length - 1][1]));
-                        }
-
-                        sampleCount++;
-                    }
+                sampleCount++;
+            }
 
-                    if (derLevel == 0) {
-                        values.add(Float.valueOf(curSample));
-                    } else {
-                        // before storing calculate derivatives
-                        if (sampleCount == 0) {
-                            derivArray[0][0] = curSample;
-                        } else if (sampleCount == 1) {
-                            derivArray[0][1] = curSample;
-                            calculateDerivatives(derivArray);
-                            // add the first value twice (instead of adding 0 at index 0
-                            values.add(Float.valueOf(
-                                    derivArray[derivArray.length - 1][1]));
-                            values.add(Float.valueOf(
-                                    derivArray[derivArray.length - 1][1]));
-                        } else {
-                            shiftSamplesInArray(derivArray);
-                            derivArray[0][1] = curSample;
-                            calculateDerivatives(derivArray);
-                            values.add(Float.valueOf(
-                                    derivArray[derivArray.length - 1][1]));
-                        }
-                    }
+            if (derLevel == 0) {
+                samples = addSample(samples, numValues++, curSample);
+            } else {
+                // before storing calculate derivatives
+                if (sampleCount == 0) {
+                    derivArray[0][0] = curSample;
+                } else if (sampleCount == 1) {
+                    derivArray[0][1] = curSample;
+                    calculateDerivatives(derivArray);
+                    // add the first value twice (instead of adding 0 at index 0
+                    samples = addSample(samples, numValues++,
+                            derivArray[derivArray.length - 1][1]);
+                    samples = addSample(samples, numValues++,
+                            derivArray[derivArray.length - 1][1]);
+                } else {
+                    shiftSamplesInArray(derivArray);
+                    derivArray[0][1] = curSample;
+                    calculateDerivatives(derivArray);
+                    samples = addSample(samples, numValues++,
+                            derivArray[derivArray.length - 1][1]);
                 }
             }
 
             sampleCount++;
-            curSample = 0.0f;
         }
 
         LOG.info("Derivative: " + derLevel + " Number of samples: " +
-            sampleCount + " Last time value: " + tv.time);
+            sampleCount + " Last time value: " + curTimeStamp);
 
-        try {
-            bufRead.close();
-        } catch (IOException ioe) {
+        return Arrays.copyOf(samples, sampleCount);
+    }
+
+    /**
+     * Creates the time-value pairs of a non continuous rate track from the
+     * time and data values of the rows of the file. Rows with a negative time
+     * value are skipped, the first value of a derivative track is the same as
+     * the second.
+     *
+     * @param times the time values of the rows
+     * @param values the data values of the rows
+     * @param numRows the number of rows
+     * @param derLevel the level of derivation
+     *
+     * @return a list of time-value pairs
+     */
+    private List<TimeValue> createNonContinuousRateData(long[] times,
+        float[] values, int numRows, int derLevel) {
+        List<TimeValue> tvList = new ArrayList<TimeValue>(numRows);
+        int sampleCount = 0;
+        long curTimeStamp = 0L;
+        long firstTimeStamp = 0L;
+        float curSample = 0.0f;
+
+        float[][] derivArray = null;
+
+        if (derLevel > 0) {
+            derivArray = new float[derLevel + 1][2];
         }
 
-        if (continuousRate) {
-            float[] result = new float[sampleCount];
+        for (int row = 0; row < numRows; row++) {
+            curTimeStamp = times[row];
+            curSample = values[row];
 
-            Float fl;
+            if (curTimeStamp < 0) {
+                continue;
+            }
 
-            for (int i = 0; i < sampleCount; i++) {
-                fl = (Float) values.get(i);
-                result[i] = fl.floatValue();
+            if (derLevel == 0) {
+                tvList.add(new TimeValue(curTimeStamp, curSample));
+            } else {
+                // before storing calculate derivatives, does this make sense?
+                if (sampleCount == 0) {
+                    derivArray[0][0] = curSample;
+                    firstTimeStamp = curTimeStamp;
+                } else if (sampleCount == 1) {
+                    derivArray[0][1] = curSample;
+                    calculateDerivatives(derivArray);
+                    // add the first value twice (instead of adding 0 at index 0
+                    tvList.add(new TimeValue(firstTimeStamp,
+                            derivArray[derivArray.length - 1][1]));
+                    tvList.add(new TimeValue(curTimeStamp,
+                            derivArray[derivArray.length - 1][1]));
+                } else {
+                    shiftSamplesInArray(derivArray);
+                    derivArray[0][1] = curSample;
+                    calculateDerivatives(derivArray);
+                    tvList.add(new TimeValue(curTimeStamp,
+                            derivArray[derivArray.length - 1][1]));
+                }
             }
 
-            return result;
+            sampleCount++;
         }
 
-        return values;
+        LOG.info("Derivative: " + derLevel + " Number of samples: " +
+            sampleCount + " Last time value: " + curTimeStamp);
+
+        return tvList;
     }
-    
+
+    /**
+     * Stores a sample in the array, growing the array if necessary.
+     *
+     * @param samples the sample array
+     * @param index the index to store the sample at
+     * @param sample the sample value
+     *
+     * @return the array, or a larger copy of it
+     */
+    private float[] addSample(float[] samples, int index, float sample) {
+        if (index >= samples.length) {
+            samples = Arrays.copyOf(samples, Math.max(index + 1, samples.length + (samples.length >> 1)));
+        }
+
+        samples[index] = sample;
+
+        return samples;
+    }
+
+    /**
+     * Returns whether the delimiter is a single character without special
+     * meaning in a regular expression, so that lines can be split without
+     * a {@code Pattern}.
+     *
+     * @return {@code true} if the delimiter is a single literal character
+     */
+    private boolean isLiteralDelimiter() {
+        return (delimiter.length() == 1) &&
+            ("\\[](){}.*+?^$|".indexOf(delimiter.charAt(0)) < 0);
+    }
+
+    /**
+     * Determines the begin and end index of the first {@code maxFields}
+     * fields of a line, with the same result as
+     * {@code Pattern.compile(delimiter).split(line)} would give for those
+     * fields: trailing empty fields are not counted.
+     *
+     * @param line the line to split
+     * @param maxFields the maximum number of fields to determine the bounds of
+     * @param bounds array of at least {@code 2 * maxFields} length, receives
+     *        the begin (inclusive) and end (exclusive) index of each field
+     *
+     * @return the number of fields, the same as the length of the array
+     *         returned by {@code Pattern.split}, but at most {@code maxFields}
+     */
+    private int splitFields(String line, int maxFields, int[] bounds) {
+        char del = delimiter.charAt(0);
+        int numFields = 0;
+        int lastNonEmpty = -1;
+        int begin = 0;
+        int len = line.length();
+
+        while (numFields < maxFields) {
+            int end = line.indexOf(del, begin);
+
+            if (end == -1) {
+                end = len;
+            }
+
+            bounds[2 * numFields] = begin;
+            bounds[2 * numFields + 1] = end;
+
+            if (end > begin) {
+                lastNonEmpty = numFields;
+            }
+
+            numFields++;
+
+            if (end == len) {
+                return lastNonEmpty + 1;
+            }
+
+            begin = end + 1;
+        }
+
+        // there are more fields, if there is a non-empty one all fields
+        // up to and including maxFields - 1 count
+        for (int i = begin; i < len; i++) {
+            if (line.charAt(i) != del) {
+                return numFields;
+            }
+        }
+
+        return lastNonEmpty + 1;
+    }
+
     /**
      * Reads a track from the specified cell while applying derivation
      * calculations.
@@ -749,6 +956,73 @@ public class CSVReader {
     	return (List<TimeValue>) readTrack(timeCol, dataCol, derLevel, false);
     }
 
+    /**
+     * Reads multiple continuous rate tracks in a single pass over the file,
+     * while applying derivation calculations.
+     *
+     * @param timeCol the column containing the time values, zero based
+     * @param dataCols the column indices of the tracks, zero based
+     * @param derLevels for each track the level of derivation (in time), 0
+     *        means the raw values
+     *
+     * @return a list of float[], one for each column in {@code dataCols}, or
+     *         {@code null} if the file is not a valid file
+     *
+     * @throws IOException any IO related exception
+     * @throws IllegalArgumentException if any of the columns is less than 0
+     * or if the arrays have different lengths
+     */
+    public List<float[]> readContinuousRateTracks(int timeCol, int[] dataCols, int[] derLevels)
+    		throws IOException {
+    	List<Object> tracks = readTracks(timeCol, dataCols, derLevels, true);
+
+    	if (tracks == null) {
+    		return null;
+    	}
+
+    	List<float[]> result = new ArrayList<float[]>(tracks.size());
+
+    	for (Object track : tracks) {
+    		result.add((float[]) track);
+    	}
+
+    	return result;
+    }
+
+    /**
+     * Reads multiple non continuous rate tracks in a single pass over the
+     * file, while applying derivation calculations.
+     *
+     * @param timeCol the column containing the time values, zero based
+     * @param dataCols the column indices of the tracks, zero based
+     * @param derLevels for each track the level of derivation (in time), 0
+     *        means the raw values
+     *
+     * @return a list of {@code List<TimeValue>}, one for each column in
+     *         {@code dataCols}, or {@code null} if the file is not a valid file
+     *
+     * @throws IOException any IO related exception
+     * @throws IllegalArgumentException if any of the columns is less than 0
+     * or if the arrays have different lengths
+     */
+    @SuppressWarnings("unchecked")
+	public List<List<TimeValue>> readNonContinuousRateTracks(int timeCol, int[] dataCols,
+			int[] derLevels) throws IOException {
+    	List<Object> tracks = readTracks(timeCol, dataCols, derLevels, false);
+
+    	if (tracks == null) {
+    		return null;
+    	}
+
+    	List<List<TimeValue>> result = new ArrayList<List<TimeValue>>(tracks.size());
+
+    	for (Object track : tracks) {
+    		result.add((List<TimeValue>) track);
+    	}
+
+    	return result;
+    }
+
     /**
      * The parameter is a multidimensional array of unknown length (minimal 2),
      * containing arrays of length 2. The first array in the arrays  contains
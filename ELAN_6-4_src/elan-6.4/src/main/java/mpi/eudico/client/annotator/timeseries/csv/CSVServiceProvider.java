@@ -3,6 +3,7 @@ package mpi.eudico.client.annotator.timeseries.csv;
 import mpi.eudico.client.annotator.timeseries.AbstractTSTrack;
 import mpi.eudico.client.annotator.timeseries.ContinuousRateTSTrack;
 import mpi.eudico.client.annotator.timeseries.NonContinuousRateTSTrack;
+import mpi.eudico.client.annotator.timeseries.TSTrackCache;
 import mpi.eudico.client.annotator.timeseries.TimeSeriesConstants;
 import mpi.eudico.client.annotator.timeseries.TimeSeriesTrack;
 import mpi.eudico.client.annotator.timeseries.config.SamplePosition;
@@ -17,8 +18,10 @@ import java.awt.Color;
 
 import java.io.IOException;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 
 
 /**
@@ -168,48 +171,88 @@ public class CSVServiceProvider implements TSServiceProvider {
 
         Iterator<Object> trIt = config.objectKeySet().iterator();
         int offset = config.getTimeOrigin();
+        // collect the track configurations first, all tracks are read in a single pass
+        List<TSTrackConfiguration> trackConfigs = new ArrayList<TSTrackConfiguration>();
 
         while (trIt.hasNext()) {
             Object key = trIt.next();
             Object val = config.getObject(key);
 
-            if (!(val instanceof TSTrackConfiguration)) {
-                continue;
+            if (val instanceof TSTrackConfiguration) {
+                trackConfigs.add((TSTrackConfiguration) val);
             }
+        }
+
+        if (trackConfigs.isEmpty()) {
+            return;
+        }
 
-            TSTrackConfiguration trconf = (TSTrackConfiguration) val;
+        int[] dataCols = new int[trackConfigs.size()];
+        int[] derLevels = new int[trackConfigs.size()];
 
+        for (int i = 0; i < trackConfigs.size(); i++) {
+            TSTrackConfiguration trconf = trackConfigs.get(i);
             SamplePosition spos = trconf.getSamplePos();
-            int dataCol = spos.getColumns()[0];
-            int derLevel = parseInt(trconf.getProperty(
+            dataCols[i] = spos.getColumns()[0];
+            derLevels[i] = parseInt(trconf.getProperty(
                         TimeSeriesConstants.DERIVATION));
-            AbstractTSTrack track = null;
+        }
+
+        // the values of large files are cached in a binary file that is
+        // memory mapped, instead of parsing the text file again
+        TSTrackCache cache = new TSTrackCache(config.getSource(),
+                getCacheDescription(reader, timeColumn, continRate, dataCols, derLevels));
+        List<?> trackData = null;
+        float sampleRate = 0f;
 
+        if (cache.load()) {
+            trackData = cache.getTrackData();
+            sampleRate = cache.getSampleRate();
+        } else {
             try {
                 if (continRate) {
-                	ContinuousRateTSTrack t = new ContinuousRateTSTrack();
-                    t.setData(reader.readContinuousRateTrack(timeColumn, dataCol,
-                            derLevel));
-                    track = t;
-                    track.setSampleRate(reader.getSampleFrequency());
-                    track.setType(TimeSeriesTrack.VALUES_FLOAT_ARRAY);
+                    trackData = reader.readContinuousRateTracks(timeColumn,
+                            dataCols, derLevels);
                 } else {
-                	NonContinuousRateTSTrack t = new NonContinuousRateTSTrack();
-                    t.setData(reader.readNonContinuousRateTrack(timeColumn, dataCol,
-                            derLevel));
-                    track = t;
-                    track.setType(TimeSeriesTrack.TIME_VALUE_LIST);
+                    trackData = reader.readNonContinuousRateTracks(timeColumn,
+                            dataCols, derLevels);
                 }
             } catch (IOException ioe) {
-                LOG.severe("Could not read track: " + trconf.getTrackName() +
-                    " from: " + config.getSource() + ": " + ioe.getMessage());
+                LOG.severe("Could not read tracks from: " + config.getSource() +
+                    ": " + ioe.getMessage());
 
-                continue;
+                return;
             } catch (Throwable th) {
-                LOG.severe("Could not read track: " + trconf.getTrackName() +
-                        " from: " + config.getSource() + ": " + th.getMessage());
+                LOG.severe("Could not read tracks from: " + config.getSource() +
+                    ": " + th.getMessage());
+
+                return;
+            }
 
-                    continue;
+            sampleRate = reader.getSampleFrequency();
+            // the data are null if the file is not valid
+            if (trackData != null) {
+                cache.store(sampleRate, trackData);
+            }
+        }
+
+        for (int i = 0; i < trackConfigs.size(); i++) {
+            TSTrackConfiguration trconf = trackConfigs.get(i);
+            int derLevel = derLevels[i];
+            AbstractTSTrack track = null;
+
+            if (continRate) {
+                track = new ContinuousRateTSTrack();
+                track.setSampleRate(sampleRate);
+                track.setType(TimeSeriesTrack.VALUES_FLOAT_ARRAY);
+            } else {
+                track = new NonContinuousRateTSTrack();
+                track.setType(TimeSeriesTrack.TIME_VALUE_LIST);
+            }
+
+            // a float[] or a FloatBuffer, or a list of TimeValue objects
+            if (trackData != null) {
+                track.setData(trackData.get(i));
             }
 
             track.setName(trconf.getTrackName());
@@ -249,6 +292,33 @@ public class CSVServiceProvider implements TSServiceProvider {
         }
     }
 
+    /**
+     * Creates a description of everything in the configuration that
+     * influences the values of the tracks, for the track cache.
+     *
+     * @param reader the reader
+     * @param timeColumn the time column
+     * @param continRate whether the tracks are continuous rate tracks
+     * @param dataCols the data columns of the tracks
+     * @param derLevels the derivative levels of the tracks
+     *
+     * @return a description of the configuration
+     */
+    private String getCacheDescription(CSVReader reader, int timeColumn,
+        boolean continRate, int[] dataCols, int[] derLevels) {
+        StringBuilder sb = new StringBuilder(getClass().getName());
+        sb.append(";time=").append(timeColumn);
+        sb.append(";continuous=").append(continRate);
+        sb.append(";trim=").append(reader.isTrimLinesBeforeParsing());
+        sb.append(";tracks=");
+
+        for (int i = 0; i < dataCols.length; i++) {
+            sb.append(dataCols[i]).append(':').append(derLevels[i]).append(',');
+        }
+
+        return sb.toString();
+    }
+
     private Color parseColor(String rgb) {
         if (rgb == null) {
             return Color.GREEN;
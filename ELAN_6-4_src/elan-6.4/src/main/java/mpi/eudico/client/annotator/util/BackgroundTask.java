@@ -0,0 +1,221 @@
+package mpi.eudico.client.annotator.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+import mpi.eudico.client.annotator.util.BackgroundTaskScheduler.Pool;
+import mpi.eudico.server.corpora.util.ProcessReport;
+
+/**
+ * A task that has been submitted to the {@link BackgroundTaskScheduler}.
+ * It can be used to cancel the task, to wait for it and to find out how
+ * long it waited in the queue and how long it took.
+ * <p>
+ * A task that is cancelled before it started will not be executed; the
+ * progress listeners passed to the scheduler are notified of the
+ * interruption and a message is added to the report. A task that is already
+ * running is not interrupted, it is expected to check its own stop flag, as
+ * the multiple file processes do. If the task ends with an exception, the
+ * listeners and the report are notified as well.
+ *
+ * @version Oct 2026
+ */
+public class BackgroundTask extends FutureTask<Void> {
+    private static final int NEW = 0;
+    private static final int STARTED = 1;
+    private static final int SKIPPED = 2;
+
+    private final String name;
+    private final Pool pool;
+    private final TaskCallable callable;
+    private final Object source;
+    private final List<ProgressListener> listeners;
+    private final ProcessReport report;
+    private final long submitTime;
+    private volatile long startTime;
+    private volatile long endTime;
+
+    /**
+     * Creates a new task.
+     *
+     * @param name the name of the task, for logging
+     * @param pool the pool the task is submitted to
+     * @param runnable the actual work
+     * @param source the source for progress notifications, can be null
+     * @param listeners the listeners to notify of a cancellation or failure,
+     * can be null
+     * @param report the report to add a message to in those cases, can be null
+     */
+    BackgroundTask(String name, Pool pool, Runnable runnable, Object source,
+            List<ProgressListener> listeners, ProcessReport report) {
+        this(name, pool, new TaskCallable(runnable), source, listeners, report);
+    }
+
+    private BackgroundTask(String name, Pool pool, TaskCallable callable, Object source,
+            List<ProgressListener> listeners, ProcessReport report) {
+        super(callable);
+        this.name = name;
+        this.pool = pool;
+        this.callable = callable;
+        this.source = source;
+        this.listeners = listeners;
+        this.report = report;
+        submitTime = System.nanoTime();
+    }
+
+    /**
+     * Returns the name of the task.
+     *
+     * @return the name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the pool the task has been submitted to.
+     *
+     * @return the pool
+     */
+    public Pool getPool() {
+        return pool;
+    }
+
+    /**
+     * Cancels the task if it has not been started yet. A running task is not
+     * interrupted.
+     *
+     * @return {@code true} if the task will not be executed
+     */
+    public boolean cancel() {
+        if (callable.state.get() == NEW) {
+            cancel(false);
+        }
+
+        return callable.state.get() == SKIPPED;
+    }
+
+    /**
+     * Returns whether the task has been started.
+     *
+     * @return {@code true} if the work of the task has been started
+     */
+    public boolean isStarted() {
+        return callable.state.get() == STARTED;
+    }
+
+    /**
+     * Returns the time the task waited in the queue of the pool.
+     *
+     * @return the time in milliseconds, up to now if it has not been started
+     * yet
+     */
+    public long getWaitMillis() {
+        long start = startTime;
+
+        return ((start != 0 ? start : System.nanoTime()) - submitTime) / 1000000;
+    }
+
+    /**
+     * Returns the time the task has been running.
+     *
+     * @return the time in milliseconds, 0 if it has not been started yet
+     */
+    public long getRunMillis() {
+        long start = startTime;
+        long end = endTime;
+
+        if (start == 0) {
+            return 0;
+        }
+
+        return ((end != 0 ? end : System.nanoTime()) - start) / 1000000;
+    }
+
+    /**
+     * Called by the pool before the task is executed.
+     */
+    void started() {
+        startTime = System.nanoTime();
+    }
+
+    /**
+     * Called by the pool after the task has been executed.
+     */
+    void finished() {
+        endTime = System.nanoTime();
+    }
+
+    /**
+     * Notifies the listeners if the task was cancelled before it started or
+     * if it ended with an exception.
+     */
+    @Override
+    protected void done() {
+        if (isCancelled()) {
+            if (callable.state.compareAndSet(NEW, SKIPPED)) {
+                notifyInterrupted("Cancelled: " + name);
+            }
+
+            return;
+        }
+
+        try {
+            get();
+        } catch (ExecutionException ee) {
+            Throwable cause = ee.getCause();
+
+            if (ClientLogger.LOG.isLoggable(Level.WARNING)) {
+                ClientLogger.LOG.log(Level.WARNING, "Task \"" + name + "\" failed", cause);
+            }
+
+            notifyInterrupted("An exception occurred: " + cause);
+        } catch (InterruptedException ie) {
+            // cannot happen, the task is done
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void notifyInterrupted(String message) {
+        if (report != null) {
+            report.append(message);
+        }
+
+        if (listeners != null) {
+            for (ProgressListener pl : new ArrayList<ProgressListener>(listeners)) {
+                pl.progressInterrupted(source, message);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+    /**
+     * Runs the work of the task unless the task has been cancelled before.
+     */
+    private static class TaskCallable implements Callable<Void> {
+        private final Runnable runnable;
+        private final AtomicInteger state = new AtomicInteger(NEW);
+
+        TaskCallable(Runnable runnable) {
+            this.runnable = runnable;
+        }
+
+        @Override
+        public Void call() {
+            if (state.compareAndSet(NEW, STARTED)) {
+                runnable.run();
+            }
+
+            return null;
+        }
+    }
+}
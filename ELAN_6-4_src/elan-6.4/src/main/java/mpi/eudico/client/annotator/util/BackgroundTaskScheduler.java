@@ -0,0 +1,312 @@
+package mpi.eudico.client.annotator.util;
+
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+import mpi.eudico.server.corpora.util.ProcessReport;
+
+/**
+ * A central scheduler for background work, like the processing of multiple
+ * files, so that not every action starts its own thread. There are three
+ * pools: one for tasks that mainly compute (e.g. loading and analyzing
+ * transcriptions), bounded to the number of processors, one for tasks
+ * that mainly wait for input/output or for an external process and a small
+ * one for short tasks the user is waiting for while working in a viewer,
+ * which therefore never wait behind the long running tasks of the other
+ * pools. Tasks that are submitted while all threads of a pool are busy wait
+ * in the queue of that pool.
+ * <p>
+ * The number of threads of the pools can be changed with the system
+ * properties {@code ELAN.Tasks.CPUThreads}, {@code ELAN.Tasks.IOThreads}
+ * and {@code ELAN.Tasks.InteractiveThreads}.
+ * Per pool the queue depth, the time the tasks waited in the queue and the
+ * time they took are recorded; every finished task is logged at level FINE.
+ *
+ * @version Oct 2026
+ */
+public class BackgroundTaskScheduler {
+    /** the pools tasks can be submitted to */
+    public enum Pool {
+        /** for tasks that mainly compute */
+        CPU,
+        /** for tasks that mainly read or write files or wait for another process */
+        IO,
+        /** for short tasks that produce what is visible in a viewer, not for long running tasks */
+        INTERACTIVE
+    }
+
+    private static BackgroundTaskScheduler scheduler;
+
+    private final PoolExecutor cpuExecutor;
+    private final PoolExecutor ioExecutor;
+    private final PoolExecutor interactiveExecutor;
+
+    private BackgroundTaskScheduler() {
+        int numProcessors = Runtime.getRuntime().availableProcessors();
+        cpuExecutor = new PoolExecutor(Pool.CPU,
+                getNumThreads("ELAN.Tasks.CPUThreads", numProcessors));
+        ioExecutor = new PoolExecutor(Pool.IO,
+                getNumThreads("ELAN.Tasks.IOThreads", Math.max(4, numProcessors)));
+        interactiveExecutor = new PoolExecutor(Pool.INTERACTIVE,
+                getNumThreads("ELAN.Tasks.InteractiveThreads", Math.max(1, Math.min(4, numProcessors / 2))));
+    }
+
+    /**
+     * Returns the single instance of the scheduler.
+     *
+     * @return the scheduler
+     */
+    public static synchronized BackgroundTaskScheduler getInstance() {
+        if (scheduler == null) {
+            scheduler = new BackgroundTaskScheduler();
+        }
+
+        return scheduler;
+    }
+
+    private static int getNumThreads(String property, int defaultValue) {
+        String prop = System.getProperty(property);
+
+        if (prop != null) {
+            try {
+                int num = Integer.parseInt(prop);
+
+                if (num > 0) {
+                    return num;
+                }
+            } catch (NumberFormatException nfe) {
+                // log below
+            }
+
+            ClientLogger.LOG.warning("Invalid number of threads for " + property + ": " + prop);
+        }
+
+        return defaultValue;
+    }
+
+    /**
+     * Submits a task to one of the pools.
+     *
+     * @param pool the pool
+     * @param name the name of the task, for logging and for the name of the
+     * thread while the task is executed
+     * @param runnable the work to do
+     *
+     * @return the task, which can be used to cancel it or to wait for it
+     */
+    public BackgroundTask submit(Pool pool, String name, Runnable runnable) {
+        return submit(pool, name, runnable, null, null, null);
+    }
+
+    /**
+     * Submits a task to one of the pools. The task itself reports its
+     * progress and its completion to its listeners; the listeners and the
+     * report passed here are notified by the scheduler if the task is
+     * cancelled before it has been started or if it ends with an exception.
+     *
+     * @param pool the pool
+     * @param name the name of the task, for logging and for the name of the
+     * thread while the task is executed
+     * @param runnable the work to do
+     * @param source the source object for the progress notifications, e.g.
+     * the command, can be null
+     * @param listeners the progress listeners of the task, can be null
+     * @param report the process report of the task, can be null
+     *
+     * @return the task, which can be used to cancel it or to wait for it
+     */
+    public BackgroundTask submit(Pool pool, String name, Runnable runnable, Object source,
+            List<ProgressListener> listeners, ProcessReport report) {
+        BackgroundTask task = new BackgroundTask(name, pool, runnable, source, listeners, report);
+        getExecutor(pool).execute(task);
+
+        return task;
+    }
+
+    private PoolExecutor getExecutor(Pool pool) {
+        switch (pool) {
+        case IO:
+            return ioExecutor;
+        case INTERACTIVE:
+            return interactiveExecutor;
+        default:
+            return cpuExecutor;
+        }
+    }
+
+    /**
+     * Returns the number of threads of a pool.
+     *
+     * @param pool the pool
+     *
+     * @return the maximum number of tasks that are executed at the same time
+     */
+    public int getNumThreads(Pool pool) {
+        return getExecutor(pool).getMaximumPoolSize();
+    }
+
+    /**
+     * Returns the number of tasks waiting in the queue of a pool.
+     *
+     * @param pool the pool
+     *
+     * @return the number of tasks that have not been started yet
+     */
+    public int getQueueDepth(Pool pool) {
+        return getExecutor(pool).getQueue().size();
+    }
+
+    /**
+     * Returns the largest number of tasks that have been waiting in the queue
+     * of a pool at the same time.
+     *
+     * @param pool the pool
+     *
+     * @return the maximum queue depth
+     */
+    public int getMaxQueueDepth(Pool pool) {
+        return getExecutor(pool).maxQueueDepth.get();
+    }
+
+    /**
+     * Returns the number of tasks that are being executed by a pool.
+     *
+     * @param pool the pool
+     *
+     * @return the approximate number of running tasks
+     */
+    public int getActiveCount(Pool pool) {
+        return getExecutor(pool).getActiveCount();
+    }
+
+    /**
+     * Returns the number of tasks that have been executed by a pool.
+     *
+     * @param pool the pool
+     *
+     * @return the number of finished tasks, including cancelled ones
+     */
+    public long getFinishedCount(Pool pool) {
+        return getExecutor(pool).numFinished.get();
+    }
+
+    /**
+     * Returns the average time the finished tasks of a pool have waited in
+     * the queue.
+     *
+     * @param pool the pool
+     *
+     * @return the average waiting time in milliseconds
+     */
+    public double getAverageWaitMillis(Pool pool) {
+        PoolExecutor executor = getExecutor(pool);
+        long num = executor.numFinished.get();
+
+        return num == 0 ? 0 : executor.totalWaitMillis.get() / (double) num;
+    }
+
+    /**
+     * Returns the average time the finished tasks of a pool have been
+     * running.
+     *
+     * @param pool the pool
+     *
+     * @return the average execution time in milliseconds
+     */
+    public double getAverageRunMillis(Pool pool) {
+        PoolExecutor executor = getExecutor(pool);
+        long num = executor.numFinished.get();
+
+        return num == 0 ? 0 : executor.totalRunMillis.get() / (double) num;
+    }
+
+    /**
+     * A fixed size pool of daemon threads which records the waiting and
+     * execution times of the tasks.
+     */
+    private static class PoolExecutor extends ThreadPoolExecutor {
+        private final Pool pool;
+        private final AtomicInteger maxQueueDepth = new AtomicInteger();
+        private final AtomicLong numFinished = new AtomicLong();
+        private final AtomicLong totalWaitMillis = new AtomicLong();
+        private final AtomicLong totalRunMillis = new AtomicLong();
+
+        PoolExecutor(Pool pool, int numThreads) {
+            super(numThreads, numThreads, 30L, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new PoolThreadFactory(pool));
+            this.pool = pool;
+            // idle threads terminate after the keep alive time
+            allowCoreThreadTimeOut(true);
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            super.execute(command);
+
+            int depth = getQueue().size();
+            int max;
+
+            while (depth > (max = maxQueueDepth.get())) {
+                if (maxQueueDepth.compareAndSet(max, depth)) {
+                    break;
+                }
+            }
+        }
+
+        @Override
+        protected void beforeExecute(Thread t, Runnable r) {
+            super.beforeExecute(t, r);
+
+            if (r instanceof BackgroundTask) {
+                ((BackgroundTask) r).started();
+                t.setName("ELAN-" + pool + "-" + r);
+            }
+        }
+
+        @Override
+        protected void afterExecute(Runnable r, Throwable t) {
+            super.afterExecute(r, t);
+
+            if (r instanceof BackgroundTask) {
+                BackgroundTask task = (BackgroundTask) r;
+                task.finished();
+                numFinished.incrementAndGet();
+                totalWaitMillis.addAndGet(task.getWaitMillis());
+                totalRunMillis.addAndGet(task.getRunMillis());
+                Thread.currentThread().setName("ELAN-" + pool);
+
+                if (ClientLogger.LOG.isLoggable(Level.FINE)) {
+                    ClientLogger.LOG.fine(String.format(
+                            "Task \"%s\" (%s) waited %d ms, ran %d ms; queue depth %d, active tasks %d",
+                            task.getName(), pool, task.getWaitMillis(), task.getRunMillis(),
+                            getQueue().size(), getActiveCount() - 1));
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates the daemon threads of a pool.
+     */
+    private static class PoolThreadFactory implements ThreadFactory {
+        private final Pool pool;
+
+        PoolThreadFactory(Pool pool) {
+            this.pool = pool;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "ELAN-" + pool);
+            t.setDaemon(true);
+
+            return t;
+        }
+    }
+}
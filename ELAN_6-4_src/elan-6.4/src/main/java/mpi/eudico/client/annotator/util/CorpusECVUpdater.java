@@ -1,8 +1,8 @@
 package mpi.eudico.client.annotator.util;
 
 import java.io.File;
-import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -18,6 +18,7 @@ import mpi.eudico.server.corpora.clomimpl.abstr.TierImpl;
 import mpi.eudico.server.corpora.clomimpl.abstr.TranscriptionImpl;
 import mpi.eudico.server.corpora.clomimpl.dobes.ACMTranscriptionStore;
 import mpi.eudico.server.corpora.clomimpl.type.LinguisticType;
+import mpi.eudico.server.corpora.clomimpl.util.ParallelTranscriptionLoader;
 import mpi.eudico.server.corpora.util.ProcessReporter;
 import mpi.eudico.util.CVEntry;
 import mpi.eudico.util.ControlledVocabulary;
@@ -212,7 +213,9 @@ public class CorpusECVUpdater {
 				outputFolderString = outputFolder.getAbsolutePath().replace('\\', '/');
 			}
 			
-			processFileOrDirectory(inputFolder, true);
+			List<File> files = new ArrayList<File>();
+			processFileOrDirectory(inputFolder, true, files);
+			processFiles(files);
 		} catch (Throwable t) {
 			if(ClientLogger.LOG.isLoggable(Level.WARNING)) {
             	ClientLogger.LOG.warning("Error while processing files (" + t.getMessage() + ")");
@@ -229,33 +232,66 @@ public class CorpusECVUpdater {
 	
 	/**
 	 * A method that checks if the File object represents a folder or a file
-	 * and then delegates to an appropriate method.
+	 * and then collects the files to process.
 	 * 
 	 * @param file a folder or a file
 	 * @param rootFolder whether this is the root folder for processing. Necessary if no recursion is wanted.
+	 * @param files the list to add the files to process to
 	 */
-	private void processFileOrDirectory(File file, Boolean rootFolder) {
+	private void processFileOrDirectory(File file, Boolean rootFolder, List<File> files) {
 		if (file.isDirectory() && (recursive || rootFolder)) {
 			File[] subList = file.listFiles();
 			for (File f : subList) {
 				if(!canceled) {
-					processFileOrDirectory(f, false);
+					processFileOrDirectory(f, false, files);
 				} else {
 					break;
 				}
 			}
 		} else {
-			processFile(file);
+			files.add(file);
 		}
 	}
 	
+	/**
+	 * Processes the collected files one by one, while the next eaf files are
+	 * loaded in parallel.
+	 * 
+	 * @param files the files to process
+	 */
+	private void processFiles(List<File> files) {
+		List<String> paths = new ArrayList<String>(files.size());
+		for (File f : files) {
+			// other files are not loaded
+			paths.add(isEafFile(f) ? f.getAbsolutePath() : null);
+		}
+		ParallelTranscriptionLoader loader = new ParallelTranscriptionLoader(paths);
+		
+		try {
+			for (File f : files) {
+				ParallelTranscriptionLoader.Result loaded = loader.next();
+				if (canceled) {
+					break;
+				}
+				processFile(f, loaded);
+			}
+		} finally {
+			loader.close();
+		}
+	}
+	
+	private boolean isEafFile(File file) {
+		return !file.isDirectory() && file.getName().toLowerCase().endsWith(".eaf");
+	}
+	
 	/**
 	 * Processes the specified file. If it is not an eaf file it is 
 	 * currently ignored.
 	 * 
 	 * @param file the file to update, folders are ignored
+	 * @param loaded the result of loading the file
 	 */
-	private void processFile(File file) {
+	private void processFile(File file, ParallelTranscriptionLoader.Result loaded) {
 		if (file.isDirectory()) {
 			System.out.println("Error: method called with folder as argument");
 		} else {
@@ -265,7 +301,7 @@ public class CorpusECVUpdater {
 						progressListerner.progressUpdated(this, -1, file.getAbsolutePath());
 					}
 					logMessage("\nFILE: " + file.getAbsolutePath());
-					TranscriptionImpl t = new TranscriptionImpl(file.getAbsolutePath());
+					TranscriptionImpl t = loaded.getTranscription();
 					t.setNotifying(false);
 					t.setUnchanged();
 					
@@ -323,8 +359,8 @@ public class CorpusECVUpdater {
 					// Next bit is for avoiding a 'out of memory' error
                     Preferences.removeDocument(t); 
 				}
-			} catch (IOException ioe) {
-				System.out.println("Error while processing file: " + ioe.getMessage());
+			} catch (Exception ex) {
+				System.out.println("Error while processing file: " + ex.getMessage());
 			}
 		}
 	}
@@ -74,10 +74,10 @@ public abstract class AbstractViewer extends JComponent
      */
     /**
      * Notification for a ControllerListener that a media related event happened.
-     * This method is called on a separate thread for each event. Therefore
-     * the actual implementation of this method might need to take care of
-     * problems caused by more than one thread being active in the
-     * controllerUpdate method.
+     * This method is called on a delivery thread of the {@code EventDispatcher},
+     * the events for a viewer are delivered one at a time, in order. Direct
+     * calls from other threads can still lead to more than one thread being 
+     * active in the controllerUpdate method.
      * 
      * @param event the controller event
      */
@@ -63,6 +63,7 @@ import mpi.eudico.client.mediacontrol.ControllerEvent;
 import mpi.eudico.client.mediacontrol.StopEvent;
 import mpi.eudico.client.mediacontrol.TimeEvent;
 import static mpi.eudico.client.annotator.util.ClientLogger.LOG;
+import mpi.eudico.client.util.MappedWAVSampler;
 import mpi.eudico.client.util.WAVCuePoint;
 import mpi.eudico.client.util.WAVHeader;
 import mpi.eudico.client.util.WAVSamplesProvider;
@@ -209,6 +210,9 @@ public class SignalViewer extends TimeScaleBasedViewer
     // END ALBERT
     // some error feedback
     private String errorKey = null;
+    // a summary of the samples for low zoom levels, null if not (yet) available,
+    // set by a background thread
+    private volatile WaveformPeakCache peakCache;
     
     private boolean recalculateInterval = true;
     private int horScrollSpeed = 10;
@@ -381,7 +385,7 @@ public class SignalViewer extends TimeScaleBasedViewer
 
     /**
      * Sets the source for this viewer. This will always create a 
-     * {@link WAVSampler} instance and the source should be a .wav file.
+     * {@link MappedWAVSampler} instance and the source should be a .wav file.
      * 
      * It is synchronized to prevent interference with ControllerUpdates,
      * which run on separate threads and may call various methods which
@@ -409,6 +413,7 @@ public class SignalViewer extends TimeScaleBasedViewer
 		}
 		mediaFilePath = mediaPath;
 		initSampler(mediaPath);
+		initPeakCache();
         initLoad();
         paintBuffer();
 
@@ -474,6 +479,7 @@ public class SignalViewer extends TimeScaleBasedViewer
     			mediaFilePath = mediaFilePath.substring(5);
     		}
     		
+    		initPeakCache();
     		initLoad();
     	}
     	this.mediaDescriptor = mediaDescriptor;
@@ -563,7 +569,7 @@ public class SignalViewer extends TimeScaleBasedViewer
     }
     
     /**
-     * Initializes a <code>WaveSampler</code> for the given URL.
+     * Initializes a <code>MappedWAVSampler</code> for the given URL.
      * The URL should point to a {@code .wav} file, either uncompressed/PCM, or
      * ALAW compressed.
      *
@@ -574,7 +580,7 @@ public class SignalViewer extends TimeScaleBasedViewer
         errorKey = null;
 
         try {
-            samp = new WAVSampler(sourcePath);
+            samp = new MappedWAVSampler(sourcePath);
             
             short compr = samp.getCompressionCode();
 			if (compr != WAVHeader.WAVE_FORMAT_UNCOMPRESSED && 
@@ -600,6 +606,50 @@ public class SignalViewer extends TimeScaleBasedViewer
         }
     }
 
+    /**
+     * Loads the peak cache of the current WAVE file or, if there is none yet,
+     * creates it in the background. When the cache becomes available the
+     * waveform is reloaded, if the media file has not been changed meanwhile.
+     * Only applies to local WAVE files.
+     */
+    private void initPeakCache() {
+        peakCache = null;
+
+        if (!(samp instanceof WAVSampler || samp instanceof MappedWAVSampler) || errorKey != null) {
+            return;
+        }
+
+        final WAVSamplesProvider cacheSampler = samp;
+        final WaveformPeakCache cache = new WaveformPeakCache(samp.getMediaLocation());
+
+        if (!cache.isCacheable()) {
+            return;
+        }
+
+        if (cache.load()) {
+            peakCache = cache;
+            return;
+        }
+
+        cache.buildInBackground(new Runnable() {
+            @Override
+            public void run() {
+                // called on the event dispatch thread, where the wave part is filled and painted
+                synchronized (SignalViewer.this) {
+                    if (samp != cacheSampler) {
+                        return;
+                    }
+
+                    peakCache = cache;
+                    //force to reload data
+                    currentPart.setStartTime(0L);
+                    currentPart.setStopTime(0L);
+                }
+                paintBuffer();
+            }
+        });
+    }
+
     /**
      * Initializes some fields based on the loaded {@code WAVSamplesProvider}
      * and loads a minimal amount of data.
@@ -743,6 +793,45 @@ public class SignalViewer extends TimeScaleBasedViewer
 		return true;
     }
     
+    /**
+     * Fills the current WavePart from the peak cache instead of from the samples,
+     * when zoomed out so far that a pixel covers at least a block of the first
+     * level of the cache. The amount of work depends on the number of pixels,
+     * not on the number of samples in the interval.
+     * 
+     * @param cache the peak cache
+     * @param startPixel the pixel corresponding to the first sample
+     * @param numberOfPixels the amount of pixels to load (extent)
+     * @param imageWidthInPixels the number of pixels in the wave part (size)
+     * @param numberOfChannels 1 or 2, mono or stereo channels
+     */
+    private void loadPeaks(WaveformPeakCache cache, int startPixel, int numberOfPixels, 
+    		int imageWidthInPixels, int numberOfChannels) {
+    	int numPixels = Math.min(numberOfPixels, imageWidthInPixels);
+    	boolean secondChannel = cache.getNumberOfChannels() > 1;
+    	int[] minMax = new int[2];
+
+    	for (int i = 0; i < numPixels; i++) {
+    		int p = startPixel + i;
+    		long fromSample = (long) (p * (double) samplesPerPixel);
+    		long toSample = (long) ((p + 1) * (double) samplesPerPixel);
+
+    		if (!cache.getMinMax(fromSample, toSample, 0, minMax)) {
+    			break;
+    		}
+    		// as when reading samples, the line always includes the 0 line
+    		currentPart.addLineToFirstChannel(p, -Math.max(0, minMax[1]), -Math.min(0, minMax[0]));
+
+    		if (numberOfChannels == 2) {
+    			if (secondChannel && cache.getMinMax(fromSample, toSample, 1, minMax)) {
+    				currentPart.addLineToRightChannel(p, -Math.max(0, minMax[1]), -Math.min(0, minMax[0]));
+    			} else {
+    				currentPart.addLineToRightChannel(p, 0, 0);
+    			}
+    		}
+    	}
+    }
+
     /**
      * Actual loading of data after necessary preparation of the current WavePart,
      * such as resetting, setting the interval, shifting of data etc.
@@ -756,6 +845,11 @@ public class SignalViewer extends TimeScaleBasedViewer
      */
     private void loadSamples(int startPixel, int numberOfPixels, 
     		int imageWidthInPixels, int numberOfChannels, boolean roundingErrors) {
+    	WaveformPeakCache cache = peakCache;
+    	if (cache != null && samplesPerPixel >= WaveformPeakCache.BASE_BLOCK_SIZE) {
+    		loadPeaks(cache, startPixel, numberOfPixels, imageWidthInPixels, numberOfChannels);
+    		return;
+    	}
     	// the first sample to be read
     	long startSample = (long) (startPixel * samplesPerPixel);
     	int samplesPerPixelInt = (int) samplesPerPixel;
@@ -1142,11 +1236,16 @@ public class SignalViewer extends TimeScaleBasedViewer
      * @param big2g the graphics context
      */
     private void drawCuePoints(Graphics2D big2g) {
-    	if (!(samp instanceof WAVSampler)) {
+    	WAVHeader header;
+    	if (samp instanceof MappedWAVSampler) {
+    		header = ((MappedWAVSampler) samp).getWavHeader();
+    	} else if (samp instanceof WAVSampler) {
+    		header = ((WAVSampler) samp).getWavHeader();
+    	} else {
     		return;
 		}
 		
-        WAVCuePoint[] cuePoints = ((WAVSampler) samp).getWavHeader().getCuePoints();
+        WAVCuePoint[] cuePoints = header.getCuePoints();
 
         if (cuePoints.length > 0) {
             big2g.setStroke(new BasicStroke(1.0f, BasicStroke.CAP_SQUARE,
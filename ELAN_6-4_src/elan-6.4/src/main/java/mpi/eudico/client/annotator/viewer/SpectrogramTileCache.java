@@ -0,0 +1,404 @@
+package mpi.eudico.client.annotator.viewer;
+
+import static mpi.eudico.client.annotator.util.ClientLogger.LOG;
+
+import java.awt.EventQueue;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import mpi.eudico.client.annotator.util.BackgroundTask;
+import mpi.eudico.client.annotator.util.BackgroundTaskScheduler;
+import mpi.eudico.client.util.MappedWAVSampler;
+import mpi.eudico.client.util.WAVSamplesProvider;
+import nl.mpi.media.spectrogram.BatchFFT;
+import nl.mpi.media.spectrogram.SpectrogramSettings;
+import nl.mpi.media.spectrogram.WindowFunction;
+
+/**
+ * A cache of the results of the Fourier transform for a spectrogram viewer.
+ * The frequency windows of a media file are grouped in tiles of
+ * {@link #TILE_NUM_WINDOWS} consecutive windows; window {@code i} starts at
+ * sample {@code i * stride}, independent of the visible interval, so that
+ * a tile can be reused when the view is scrolled.
+ * <p>
+ * Missing tiles are computed by tasks of the interactive pool of the
+ * {@link BackgroundTaskScheduler}, in parallel, so that they do not wait
+ * behind long running multiple file processes. The waiting tasks of tiles
+ * that are no longer visible are cancelled at the next request, and a tile
+ * that is no longer visible when its task starts is skipped. When one or more tiles have
+ * been added, the listener is notified on the event dispatch thread, so that
+ * the viewer can paint the image again with the new data.
+ * <p>
+ * The tiles are kept in a least recently used cache, bounded by the number
+ * of frequency values; the maximum size in megabytes can be set with the
+ * system property {@code ELAN.Spectrogram.CacheMB} (default 64).
+ *
+ * @version Oct 2026
+ */
+public class SpectrogramTileCache {
+	/** the number of frequency windows per tile */
+	public static final int TILE_NUM_WINDOWS = 256;
+
+	private final WAVSamplesProvider sampler;
+	private final Runnable tileListener;
+	private final long maxCachedValues;
+	/** the tiles in access order */
+	private final LinkedHashMap<TileKey, double[][]> tiles =
+			new LinkedHashMap<TileKey, double[][]>(64, 0.75f, true);
+	/** the tiles for which a task has been submitted, and their tasks */
+	private final Map<TileKey, BackgroundTask> pending = new HashMap<TileKey, BackgroundTask>();
+	/** the tiles requested by the latest call of getWindows */
+	private Set<TileKey> wanted = new HashSet<TileKey>();
+	private long cachedValues;
+	private boolean notificationPosted;
+	private boolean disposed;
+
+	/**
+	 * Creates a cache for the samples of one media file.
+	 *
+	 * @param sampler the provider of the samples; a {@code MappedWAVSampler}
+	 * is read by multiple tasks at the same time, other samplers are read one
+	 * task at a time, synchronized on the sampler
+	 * @param tileListener called on the event dispatch thread after one or
+	 * more tiles have been added, can be null
+	 */
+	public SpectrogramTileCache(WAVSamplesProvider sampler, Runnable tileListener) {
+		this.sampler = sampler;
+		this.tileListener = tileListener;
+		long maxMB = 64;
+		String prop = System.getProperty("ELAN.Spectrogram.CacheMB");
+
+		if (prop != null) {
+			try {
+				maxMB = Long.parseLong(prop);
+			} catch (NumberFormatException nfe) {
+				LOG.warning("Invalid spectrogram cache size: " + prop);
+			}
+		}
+
+		maxCachedValues = Math.max(1, maxMB) * 1024 * 1024 / 8;
+	}
+
+	/**
+	 * Fills an array with the frequency windows that start at a window index.
+	 * Windows of tiles that are not in the cache are replaced by the
+	 * placeholder and the tiles are submitted for computation; waiting tasks
+	 * for tiles that are not part of this request anymore are cancelled.
+	 *
+	 * @param config the transform parameters
+	 * @param firstWindow the index of the first window, windows with a
+	 * negative index are replaced by the placeholder
+	 * @param dest the array to fill, its length determines the number of
+	 * windows
+	 * @param placeholder the array of frequency bins to use for missing
+	 * windows
+	 *
+	 * @return {@code true} if all windows were available
+	 */
+	public boolean getWindows(TransformConfig config, long firstWindow, double[][] dest,
+			double[] placeholder) {
+		boolean complete = true;
+		Set<TileKey> requested = new HashSet<TileKey>();
+
+		synchronized (this) {
+			if (disposed) {
+				return false;
+			}
+
+			for (int i = 0; i < dest.length; ) {
+				long w = firstWindow + i;
+
+				if (w < 0) {
+					dest[i++] = placeholder;
+					continue;
+				}
+
+				long tileIndex = w / TILE_NUM_WINDOWS;
+				int inTile = (int) (w - (tileIndex * TILE_NUM_WINDOWS));
+				int n = Math.min(dest.length - i, TILE_NUM_WINDOWS - inTile);
+				TileKey key = new TileKey(config, tileIndex);
+				double[][] tile = tiles.get(key);
+				requested.add(key);
+
+				if (tile != null) {
+					System.arraycopy(tile, inTile, dest, i, n);
+				} else {
+					complete = false;
+
+					for (int j = 0; j < n; j++) {
+						dest[i + j] = placeholder;
+					}
+
+					if (!pending.containsKey(key)) {
+						// the task cannot finish before this method releases the lock
+						pending.put(key, submit(key));
+					}
+				}
+
+				i += n;
+			}
+
+			wanted = requested;
+			Iterator<Map.Entry<TileKey, BackgroundTask>> pendingIt = pending.entrySet().iterator();
+
+			while (pendingIt.hasNext()) {
+				Map.Entry<TileKey, BackgroundTask> entry = pendingIt.next();
+
+				if (!requested.contains(entry.getKey()) && entry.getValue().cancel()) {
+					// scrolled out of view before the task started
+					pendingIt.remove();
+				}
+			}
+		}
+
+		return complete;
+	}
+
+	/**
+	 * Removes all tiles and ignores tasks that are still running or waiting,
+	 * e.g. when the viewer's media changes.
+	 */
+	public synchronized void dispose() {
+		disposed = true;
+		tiles.clear();
+
+		for (BackgroundTask task : pending.values()) {
+			task.cancel();
+		}
+
+		pending.clear();
+		wanted.clear();
+		cachedValues = 0;
+	}
+
+	private BackgroundTask submit(final TileKey key) {
+		return BackgroundTaskScheduler.getInstance().submit(BackgroundTaskScheduler.Pool.INTERACTIVE,
+				"Spectrogram tile " + key.tileIndex, new Runnable() {
+					@Override
+					public void run() {
+						computeTile(key);
+					}
+				});
+	}
+
+	private void computeTile(TileKey key) {
+		synchronized (this) {
+			if (disposed || !wanted.contains(key)) {
+				// scrolled away in the mean time
+				pending.remove(key);
+				return;
+			}
+		}
+
+		double[][] windows = null;
+
+		try {
+			windows = transformTile(key);
+		} catch (Throwable t) {
+			LOG.warning("Could not compute spectrogram tile " + key.tileIndex + ": " + t);
+		}
+
+		synchronized (this) {
+			pending.remove(key);
+
+			if (disposed || windows == null) {
+				return;
+			}
+
+			if (tiles.put(key, windows) == null) {
+				cachedValues += numValues(windows);
+			}
+
+			Iterator<Map.Entry<TileKey, double[][]>> entryIt = tiles.entrySet().iterator();
+
+			while (cachedValues > maxCachedValues && entryIt.hasNext()) {
+				Map.Entry<TileKey, double[][]> eldest = entryIt.next();
+
+				if (eldest.getKey().equals(key)) {
+					continue;
+				}
+
+				cachedValues -= numValues(eldest.getValue());
+				entryIt.remove();
+			}
+
+			if (notificationPosted || tileListener == null) {
+				return;
+			}
+
+			notificationPosted = true;
+		}
+
+		EventQueue.invokeLater(new Runnable() {
+			@Override
+			public void run() {
+				synchronized (SpectrogramTileCache.this) {
+					notificationPosted = false;
+
+					if (disposed) {
+						return;
+					}
+				}
+
+				tileListener.run();
+			}
+		});
+	}
+
+	private static long numValues(double[][] windows) {
+		return (long) windows.length * (windows.length > 0 ? windows[0].length : 0);
+	}
+
+	/**
+	 * Reads the samples of a tile and applies the transform to each window.
+	 */
+	private double[][] transformTile(TileKey key) {
+		TransformConfig config = key.config;
+		long fromSample = key.tileIndex * TILE_NUM_WINDOWS * config.samplesPerStride;
+		int numSamples = ((TILE_NUM_WINDOWS - 1) * config.samplesPerStride) + config.samplesPerWindow;
+		int[] samples = new int[numSamples];
+		readSamples(config.channelMode, fromSample, samples);
+
+		double ma = config.normalizedInput ? sampler.getPossibleMaxSample() : 0;
+		double[][] windows = new double[TILE_NUM_WINDOWS][];
+		// tiles are already computed in parallel, the windows of a tile sequentially
+		config.getBatchFFT().transform(samples, 0, config.samplesPerStride, ma, windows, 0,
+				TILE_NUM_WINDOWS);
+
+		return windows;
+	}
+
+	/**
+	 * Reads the samples of the channel(s) for a channel mode, zeros beyond
+	 * the end of the media.
+	 */
+	private void readSamples(SpectrogramSettings.FREQ_CHANNEL channelMode, long fromSample,
+			int[] samples) {
+		boolean multiChannel = sampler.getNumberOfChannels() > 1;
+		boolean merged = multiChannel && channelMode == SpectrogramSettings.FREQ_CHANNEL.CHANNEL_ALL;
+		int channel = (multiChannel && channelMode == SpectrogramSettings.FREQ_CHANNEL.CHANNEL_2) ? 1 : 0;
+
+		if (sampler instanceof MappedWAVSampler) {
+			MappedWAVSampler mws = (MappedWAVSampler) sampler;
+
+			if (merged) {
+				mws.readSamples(fromSample, samples.length, samples, null);
+			} else {
+				mws.readChannel(fromSample, samples.length, channel, samples, 0);
+			}
+
+			return;
+		}
+
+		synchronized (sampler) {
+			sampler.seekSample(fromSample);
+			int numRead = sampler.readInterval(samples.length, merged || !multiChannel ? 1 : 2);
+
+			if (numRead > 0) {
+				System.arraycopy(sampler.getChannelArray(channel), 0, samples, 0,
+						Math.min(numRead, samples.length));
+			}
+		}
+	}
+
+	/**
+	 * The settings that determine the result of the transform. A new
+	 * configuration with other values results in other tiles.
+	 */
+	public static final class TransformConfig {
+		final SpectrogramSettings.FREQ_CHANNEL channelMode;
+		final int samplesPerWindow;
+		final int samplesPerStride;
+		final String windowFunction;
+		final SpectrogramSettings.AMPL_UNIT amplUnit;
+		final boolean normalizedInput;
+		private BatchFFT batchFFT;
+
+		/**
+		 * Creates a configuration from the current settings.
+		 *
+		 * @param settings the spectrogram settings
+		 */
+		public TransformConfig(SpectrogramSettings settings) {
+			channelMode = settings.getChannelMode();
+			samplesPerWindow = settings.getNumSamplesPerWindow();
+			samplesPerStride = settings.getNumSamplesPerStride();
+			windowFunction = settings.getWindowFunction();
+			amplUnit = settings.getAmplUnit();
+			normalizedInput = settings.isNormalizedInputData();
+		}
+
+		/**
+		 * @return the batch transform for these settings, created once
+		 */
+		synchronized BatchFFT getBatchFFT() {
+			if (batchFFT == null) {
+				batchFFT = new BatchFFT(samplesPerWindow, WindowFunction.windowForName(
+						WindowFunction.getWFName(windowFunction), samplesPerWindow),
+						amplUnit == SpectrogramSettings.AMPL_UNIT.POWER,
+						amplUnit == SpectrogramSettings.AMPL_UNIT.ROOT_POWER);
+			}
+
+			return batchFFT;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof TransformConfig)) {
+				return false;
+			}
+			TransformConfig other = (TransformConfig) obj;
+
+			return channelMode == other.channelMode && samplesPerWindow == other.samplesPerWindow &&
+					samplesPerStride == other.samplesPerStride && amplUnit == other.amplUnit &&
+					normalizedInput == other.normalizedInput &&
+					(windowFunction == null ? other.windowFunction == null :
+						windowFunction.equals(other.windowFunction));
+		}
+
+		@Override
+		public int hashCode() {
+			int h = channelMode != null ? channelMode.hashCode() : 0;
+			h = 31 * h + samplesPerWindow;
+			h = 31 * h + samplesPerStride;
+			h = 31 * h + (windowFunction != null ? windowFunction.hashCode() : 0);
+			h = 31 * h + (amplUnit != null ? amplUnit.hashCode() : 0);
+			return 31 * h + (normalizedInput ? 1 : 0);
+		}
+	}
+
+	/**
+	 * The key of a tile, the configuration and the index of the tile.
+	 */
+	private static final class TileKey {
+		final TransformConfig config;
+		final long tileIndex;
+
+		TileKey(TransformConfig config, long tileIndex) {
+			this.config = config;
+			this.tileIndex = tileIndex;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof TileKey)) {
+				return false;
+			}
+			TileKey other = (TileKey) obj;
+
+			return tileIndex == other.tileIndex && config.equals(other.config);
+		}
+
+		@Override
+		public int hashCode() {
+			return (31 * config.hashCode()) + Long.hashCode(tileIndex);
+		}
+	}
+}
@@ -33,10 +33,12 @@ import mpi.eudico.client.annotator.gui.SpectrogramSettingsDialog;
 import mpi.eudico.client.mediacontrol.ControllerEvent;
 import mpi.eudico.client.mediacontrol.StopEvent;
 import mpi.eudico.client.util.WAVHeader;
+import mpi.eudico.client.util.MappedWAVSampler;
 import mpi.eudico.client.util.WAVSampler;
 import mpi.eudico.client.util.WAVSamplesProvider;
 import mpi.eudico.server.corpora.clomimpl.abstr.MediaDescriptor;
 import mpi.eudico.util.TimeFormatter;
+import nl.mpi.media.spectrogram.BatchFFT;
 import nl.mpi.media.spectrogram.FFT;
 import nl.mpi.media.spectrogram.ImageCreator;
 import nl.mpi.media.spectrogram.SpectrogramSettings;
@@ -53,6 +55,10 @@ import nl.mpi.media.spectrogram.WindowFunction;
  * This is a {@link TimeScaleBasedViewer} which currently does not include a 
  * time ruler in its visualization. Several options are available to modify the
  * appearance of the spectrogram. 
+ * <p>
+ * The frequency windows are computed in tiles by background tasks and are
+ * cached in a {@link SpectrogramTileCache}; the image is painted with the
+ * windows that are available and is updated when more tiles arrive.
  *  
  * @author Han Sloetjes
  * @version 1, 01-2022 
@@ -66,11 +72,12 @@ public class SpectrogramViewer extends DefaultTimeScaleBasedViewer implements It
     private WAVSamplesProvider mediaSampler;
     private SpectrogramSettings specSettings;
     
-    private FFT fft;
     private double[] weightingWindow;
     private ImageCreator imgCreator;
     private BufferedImage specImage;
     private IntervalCache curCache = null;
+    private SpectrogramTileCache tileCache;
+    private SpectrogramTileCache.TransformConfig transformConfig;
     private BasicStroke dashLine = new BasicStroke(0.75f, BasicStroke.CAP_BUTT, 
     		BasicStroke.JOIN_BEVEL, 1f, new float[] {8, 10}, 0f);
     // some error feedback
@@ -161,7 +168,7 @@ public class SpectrogramViewer extends DefaultTimeScaleBasedViewer implements It
 	
     /**
      * Sets the source for this viewer. This will always create a 
-     * {@link WAVSampler} instance.
+     * {@link MappedWAVSampler} instance.
      * <p>
      * It is synchronized to prevent interference with ControllerUpdates,
      * which run on separate threads and may call various methods which
@@ -198,6 +205,7 @@ public class SpectrogramViewer extends DefaultTimeScaleBasedViewer implements It
     public synchronized void setMediaSampler(WAVSamplesProvider sampler, MediaDescriptor mediaDescriptor) {
     	if (sampler != null) {
     		mediaSampler = sampler;
+    		initTileCache();
     		mediaFilePath = sampler.getMediaLocation();
     		// treat the path the same as in setMedia(String)?
     		if (mediaFilePath.startsWith("file:")) {
@@ -234,7 +242,7 @@ public class SpectrogramViewer extends DefaultTimeScaleBasedViewer implements It
         errorKey = null;
 
         try {
-        	mediaSampler = new WAVSampler(sourcePath);
+        	mediaSampler = new MappedWAVSampler(sourcePath);
             
             short compr = mediaSampler.getCompressionCode();
 			if (compr != WAVHeader.WAVE_FORMAT_UNCOMPRESSED && 
@@ -253,6 +261,7 @@ public class SpectrogramViewer extends DefaultTimeScaleBasedViewer implements It
             }// else log some header info
 			specSettings.setSampleFrequency(mediaSampler.getSampleFrequency());
 			specSettings.setPossibleMaxFrequency(mediaSampler.getSampleFrequency() / 2d);
+			initTileCache();
 			//System.out.println("Sampler max amplitude: " + mediaSampler.getPossibleMaxSample());
         } catch (IOException ioe) {
         	if (LOG.isLoggable(Level.INFO)) {
@@ -262,6 +271,32 @@ public class SpectrogramViewer extends DefaultTimeScaleBasedViewer implements It
         }
     }
 
+    /**
+     * Replaces the cache of frequency windows by a cache for the current
+     * sampler. When tiles have been added while the image is incomplete, the
+     * image is created again.
+     */
+    private void initTileCache() {
+    	if (tileCache != null) {
+    		tileCache.dispose();
+    	}
+    	curCache = null;
+    	tileCache = new SpectrogramTileCache(mediaSampler, new Runnable() {
+			@Override
+			public void run() {
+				if (curCache == null || curCache.complete) {
+					return;
+				}
+				shiftLoadLock.lock();
+				try {
+					recreateSpectrogramImage();
+				} finally {
+					shiftLoadLock.unlock();
+				}
+			}
+		});
+    }
+
     /**
      * Initializes some fields and utilities.
      */
@@ -273,7 +308,6 @@ public class SpectrogramViewer extends DefaultTimeScaleBasedViewer implements It
         timeScaleConnected = true;
         specSettings = new SpectrogramSettings();// load from preferences
         calcWindowAndStride();
-        fft = new FFT();
         imgCreator = new ImageCreator(specSettings);
        	specSettings.setChannelMode(SpectrogramSettings.FREQ_CHANNEL.CHANNEL_ALL);       
         amplitudeRanges = new double[4][2];
@@ -357,23 +391,24 @@ public class SpectrogramViewer extends DefaultTimeScaleBasedViewer implements It
 	
 	/**
 	 * Performs the steps that are required to create a new spectrogram image.
-	 * It conditionally (re-)loads audio data, (re-)applies the FFT transform
-	 * and (re-)creates the image based on the frequency data.
+	 * It conditionally retrieves the frequency windows for the interval from
+	 * the tile cache and (re-)creates the image based on the frequency data.
+	 * Windows that are not computed yet are painted as background; the image
+	 * is created again when the missing tiles are available.
 	 */
 	private void recreateSpectrogramImage() {
-		if (mediaSampler == null) {
+		if (mediaSampler == null || tileCache == null) {
 			//log
 			return;
 		}
 
-		int[] samples = null;
 		int numToRead = 0;
 		// start with possible changes in settings
 		boolean needNewSamples = specSettings.isNewDataRequired();
 		boolean needNewTransform = specSettings.isNewTransformRequired();
 		boolean needNewImage = specSettings.isNewImageRequired();
 		
-		// check if reloading is required
+		// check if new windows are required
 		if (curCache == null) {
 			needNewSamples = true;
 			needNewTransform = true;
@@ -385,12 +420,19 @@ public class SpectrogramViewer extends DefaultTimeScaleBasedViewer implements It
 				needNewSamples = true;
 			} else if (curCache.endTime < intervalEndTime) {
 				needNewSamples = true;
+			} else if (!curCache.complete) {
+				needNewSamples = true;
 			}
 		}		
+		// check whether new transform is required
+		if (needNewSamples || specSettings.isNewWindowDataRequired()) {
+			needNewTransform = true;
+		}
+		//==== frequency windows ====
+		double[][] freqWindows = null;
 
-		//==== sample loading ====
-		if (needNewSamples) {
-			// read some extra samples
+		if (needNewTransform) {
+			// include some extra samples
 			double samplesPerPixel = (msPerPixel * 0.001) * mediaSampler.getSampleFrequency();
 			double extraSec = 0.0d;
 			if (samplesPerPixel / specSettings.getNumSamplesPerWindow() < 1) {
@@ -404,40 +446,15 @@ public class SpectrogramViewer extends DefaultTimeScaleBasedViewer implements It
 				toTimeSec = mediaSampler.getDurationSeconds();
 			}
 			double fromTimeSec = (intervalBeginTime + mediaTimeOffset) * 0.001d;
-			// push the image a bit to the right? For better alignment with the waveform? 
-//			if (fromTimeSec > specSettings.getActualWindowDurationSec()) {
-//				fromTimeSec -= specSettings.getPixelDurationSec(); 
-//			}
 			double durSec = toTimeSec - fromTimeSec;
 			if (durSec <= 0) {
 				return;
 			}
 			numToRead = (int) Math.ceil(durSec * mediaSampler.getSampleFrequency());
-			samples = loadSamples(fromTimeSec, toTimeSec, numToRead);
-			
+			freqWindows = getCachedFrequencies(fromTimeSec, numToRead);
 	    	if (LOG.isLoggable(Level.FINE)) {
-				LOG.log(Level.FINE, String.format("New samples: from: %d, to %.3f, sample count: %.3f", 
-						(samples == null ? 0 : numToRead), fromTimeSec, toTimeSec));
-			}
-		}	
-		//==== end sample loading ====
-		// check whether new transform is required
-		if (needNewSamples) {
-			needNewTransform = true;
-		}
-		//==== frequency transform ====
-		double[][] freqWindows = null;
-		
-		if (needNewTransform && (samples != null || curCache.loadedSamples != null)) {
-			if (samples == null) {
-				samples = curCache.loadedSamples;
-				numToRead = curCache.samplesUsed;
-			}
-
-			freqWindows = getFrequencies(samples, numToRead);
-	    	if (LOG.isLoggable(Level.FINE)) {
-				LOG.log(Level.FINE, String.format("New frequencies: number of windows: %d, number of bins per window: %d", 
-						(freqWindows == null ? 0 : freqWindows.length), (freqWindows == null ? 0 : freqWindows[0].length)));
+				LOG.log(Level.FINE, String.format("New frequencies: number of windows: %d, complete: %b", 
+						(freqWindows == null ? 0 : freqWindows.length), curCache.complete));
 			}
 		}
 		//==== end frequency transform ====
@@ -470,8 +487,6 @@ public class SpectrogramViewer extends DefaultTimeScaleBasedViewer implements It
 			curCache.endTime = intervalEndTime;
 			if (freqWindows != null)
 				curCache.freqWindows = freqWindows;
-			if (samples != null)
-				curCache.loadedSamples = samples;
 			if (numToRead != 0)
 				curCache.samplesUsed = numToRead;
 			curCache.imgWidth = imageWidth;
@@ -738,43 +753,76 @@ public class SpectrogramViewer extends DefaultTimeScaleBasedViewer implements It
 		boolean power = (specSettings.getAmplUnit() == SpectrogramSettings.AMPL_UNIT.POWER);
 		boolean rootPower = (specSettings.getAmplUnit() == SpectrogramSettings.AMPL_UNIT.ROOT_POWER);
 
-		double ma = (double) mediaSampler.getPossibleMaxSample();
-		for (int ri = 0, w = 0; ri < numSamplesToUse - samplesPerWindow && w < columnArray.length; 
-				ri += samplesPerStride, w++) {
-			double[] ra = new double[samplesPerWindow];
-			// fill array
-			for (int k = 0; k < samplesPerWindow; k++) {
-				// raw values and window applied, change this if normalized input values are required
-				if (weightingWindow != null) {
-					if (specSettings.isNormalizedInputData()) {
-						ra[k] = (samples[k + ri] / ma) * weightingWindow[k];
-					} else {
-						ra[k] = samples[k + ri] * weightingWindow[k];
-					}
-				} else {
-					if (specSettings.isNormalizedInputData()) {
-						ra[k] = samples[k + ri] / ma;
-					} else {
-						ra[k] = samples[k + ri];
-					}
-				}
-			}
-			
-			double[] fa = fft.jFFTLROpt(ra, true, true, true, true, power, rootPower, false);
-			columnArray[w] = fa;
+		double ma = specSettings.isNormalizedInputData() ? (double) mediaSampler.getPossibleMaxSample() : 0;
+		new BatchFFT(samplesPerWindow, weightingWindow, power, rootPower).transformParallel(
+				samples, 0, samplesPerStride, ma, columnArray, 0, numWindows);
+		
+		specSettings.setAdaptiveMinimum(getAdaptiveMinimum());
+		
+		return columnArray;
+	}
+	
+	/**
+	 * Retrieves the frequency windows for an interval from the tile cache.
+	 * The windows are aligned to the stride, the first window is the one 
+	 * nearest to the start time. Windows that are not available yet are 
+	 * replaced by a window with the adaptive minimum in all bins and the
+	 * {@code complete} flag of the interval cache is cleared.
+	 * 
+	 * @param fromTimeSec the start time of the interval in seconds
+	 * @param numSamplesToUse the number of samples in the interval
+	 * @return a two-dimensional array of "frequency bins" or {@code null}
+	 * 
+	 * @see #getFrequencies(int[], int)
+	 */
+	private double[][] getCachedFrequencies(double fromTimeSec, int numSamplesToUse) {
+		if (specSettings.getNumSamplesPerWindow() == 0 || specSettings.getNumSamplesPerStride() == 0) {
+			calcWindowAndStride();
 		}
+	    int samplesPerWindow = specSettings.getNumSamplesPerWindow();
+	    int samplesPerStride = specSettings.getNumSamplesPerStride();
 		
-		if (power) {
-			specSettings.setAdaptiveMinimum(10 * Math.log10(FFT.meps));
-		} else if (rootPower) {
-			specSettings.setAdaptiveMinimum(20 * Math.log10(FFT.meps));
-		} else {
-			specSettings.setAdaptiveMinimum(mediaSampler.getPossibleMinSample());
+		int numWindows = (numSamplesToUse - samplesPerWindow) / samplesPerStride;
+		if (numWindows <= 0) {
+			return null;
+		}
+
+		while (numWindows * samplesPerStride < numSamplesToUse - samplesPerWindow) {
+			numWindows++;
+		}
+		
+		double adaptiveMinimum = getAdaptiveMinimum();
+		double[] placeholder = new double[samplesPerWindow / 2 + 1];
+		Arrays.fill(placeholder, adaptiveMinimum);
+		long firstWindow = Math.round(fromTimeSec * mediaSampler.getSampleFrequency() / samplesPerStride);
+		double[][] columnArray = new double[numWindows][];
+		// reuse an equal configuration, it holds the prepared transform
+		SpectrogramTileCache.TransformConfig config = new SpectrogramTileCache.TransformConfig(specSettings);
+		if (!config.equals(transformConfig)) {
+			transformConfig = config;
 		}
+		curCache.complete = tileCache.getWindows(transformConfig, firstWindow, columnArray, placeholder);
+		specSettings.setAdaptiveMinimum(adaptiveMinimum);
 		
 		return columnArray;
 	}
 	
+	/**
+	 * Returns the lowest value the transform produces for the current 
+	 * amplitude unit. 
+	 * 
+	 * @return the minimum for adaptive contrast
+	 */
+	private double getAdaptiveMinimum() {
+		if (specSettings.getAmplUnit() == SpectrogramSettings.AMPL_UNIT.POWER) {
+			return 10 * Math.log10(FFT.meps);
+		} else if (specSettings.getAmplUnit() == SpectrogramSettings.AMPL_UNIT.ROOT_POWER) {
+			return 20 * Math.log10(FFT.meps);
+		} else {
+			return mediaSampler.getPossibleMinSample();
+		}
+	}
+	
 	/**
 	 * Creates an image based on the provided frequency data and image 
 	 * dimensions. A speed/quality trade off might be made.
@@ -871,7 +919,7 @@ public class SpectrogramViewer extends DefaultTimeScaleBasedViewer implements It
         }
         
         // this method will be only rarely be called simultaneously by separate threads
-        // in most cases this will be one of AWT-EventQueue, EventPoster or a drag-scroll thread
+        // in most cases this will be one of AWT-EventQueue, an event delivery thread or a drag-scroll thread
     	try {
 			if (shiftLoadLock.tryLock(40, TimeUnit.MILLISECONDS)) {
 		        intervalBeginTime = begin;
@@ -1340,6 +1388,7 @@ public class SpectrogramViewer extends DefaultTimeScaleBasedViewer implements It
     	int[] loadedSamples;// the array might be reused by the sampler unless a copy is made
     	int   samplesUsed;// the array can be longer than the used samples
     	double[][] freqWindows;
+    	boolean complete;// false if some windows were not available from the tile cache
     	int imgWidth;
     	int imgHeight;
     	long beginTime;
@@ -0,0 +1,659 @@
+package mpi.eudico.client.annotator.viewer;
+
+import static mpi.eudico.client.annotator.util.ClientLogger.LOG;
+
+import java.awt.EventQueue;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Set;
+
+import mpi.eudico.client.annotator.CachedDataManager;
+import mpi.eudico.client.annotator.util.BackgroundTaskScheduler;
+import mpi.eudico.client.util.MappedWAVSampler;
+import mpi.eudico.client.util.WAVSampler;
+import mpi.eudico.client.util.WAVSamplesProvider;
+
+/**
+ * A persistent, multi-resolution summary of the samples of a WAV file, for
+ * drawing the waveform of long recordings at low zoom levels without reading
+ * all samples in the visible interval. The first level stores the minimum
+ * and maximum sample of each block of {@link #BASE_BLOCK_SIZE} samples per
+ * channel, each next level combines {@link #LEVEL_FACTOR} elements of the
+ * previous level. The minimum and maximum of any range of samples can then
+ * be calculated by combining a few elements per level.
+ * <p>
+ * The summary is created once per media file by a background task and stored
+ * in a file in the {@link #CACHE_DIR} folder of the {@link CachedDataManager}
+ * location; it is memory mapped when it is loaded. A cache file is only used
+ * if it was created for the same source file path, size and modification
+ * time.
+ * <p>
+ * Caching can be switched off with {@code -DELAN.Waveform.PeakCache=false}.
+ * <p>
+ * File layout (little endian): magic number, version, header length, length
+ * and UTF-8 bytes of the key, number of channels, number of samples, base
+ * block size, level factor, number of levels, the number of elements of each
+ * level, padding to a multiple of 8 bytes, followed by the elements of each
+ * level: per element and per channel the minimum and the maximum as integers.
+ *
+ * @version Oct 2026
+ */
+public class WaveformPeakCache {
+    /** the name of the cache subfolder */
+    public static final String CACHE_DIR = "peakcache";
+
+    /** the number of samples summarized by an element of the first level */
+    public static final int BASE_BLOCK_SIZE = 256;
+
+    /** the number of elements combined into one element of the next level */
+    public static final int LEVEL_FACTOR = 4;
+
+    /** the extension of cache files */
+    private static final String CACHE_EXT = ".pk";
+    private static final int MAGIC = 0x4B504C45; // "ELPK" in little endian
+    private static final int VERSION = 1;
+
+    /** source files smaller than this are not cached, reading them is fast enough */
+    private static final long MIN_SOURCE_SIZE = 4 * 1024 * 1024;
+
+    /** the number of samples read at once while building, a multiple of the block size */
+    private static final int READ_NUM_SAMPLES = BASE_BLOCK_SIZE * 4096;
+    private static final int WRITE_BUFFER_SIZE = 1 << 16;
+
+    /** the paths of the sources for which a cache is being built */
+    private static final Set<String> building = new HashSet<String>();
+
+    private final File sourceFile;
+    private final String key;
+    private int numChannels;
+    private long numSamples;
+    private long[] blockSizes;
+    private IntBuffer[] levels;
+
+    /**
+     * Creates a cache object for a WAV file.
+     *
+     * @param source the path or file URL of the WAV file
+     */
+    public WaveformPeakCache(String source) {
+        if (source.startsWith("file:")) {
+            source = source.substring(5);
+        }
+
+        sourceFile = new File(source);
+        key = sourceFile.getAbsolutePath() + '|' + sourceFile.length() + '|' +
+            sourceFile.lastModified() + '|' + BASE_BLOCK_SIZE + '|' + LEVEL_FACTOR;
+    }
+
+    /**
+     * Returns whether caching is enabled and the source file is large
+     * enough to be worth caching.
+     *
+     * @return {@code true} if a summary of the source can be cached
+     */
+    public boolean isCacheable() {
+        if (!Boolean.parseBoolean(System.getProperty("ELAN.Waveform.PeakCache", "true"))) {
+            return false;
+        }
+
+        return sourceFile.isFile() && (sourceFile.length() >= MIN_SOURCE_SIZE);
+    }
+
+    /**
+     * Tries to load the summary from a cache file.
+     *
+     * @return {@code true} if a valid cache file was found and mapped
+     */
+    public boolean load() {
+        if (!isCacheable()) {
+            return false;
+        }
+
+        File cacheFile = getCacheFile();
+
+        if (!cacheFile.isFile()) {
+            return false;
+        }
+
+        try (FileChannel channel = FileChannel.open(cacheFile.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer pre = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, pre, 0);
+
+            if ((pre.getInt(0) != MAGIC) || (pre.getInt(4) != VERSION)) {
+                return false;
+            }
+
+            int headerLength = pre.getInt(8);
+
+            if ((headerLength < 12) || (headerLength > channel.size())) {
+                return false;
+            }
+
+            ByteBuffer header = ByteBuffer.allocate(headerLength).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, header, 0);
+            header.position(12);
+
+            byte[] keyBytes = new byte[header.getInt()];
+            header.get(keyBytes);
+
+            if (!key.equals(new String(keyBytes, StandardCharsets.UTF_8))) {
+                return false;
+            }
+
+            int channels = header.getInt();
+            long samples = header.getLong();
+            int baseBlockSize = header.getInt();
+            int levelFactor = header.getInt();
+            int numLevels = header.getInt();
+
+            if ((baseBlockSize != BASE_BLOCK_SIZE) || (levelFactor != LEVEL_FACTOR) ||
+                    (channels < 1) || (channels > 2) || (numLevels < 1)) {
+                return false;
+            }
+
+            int[] sizes = new int[numLevels];
+            long expectedSize = headerLength;
+
+            for (int i = 0; i < numLevels; i++) {
+                sizes[i] = header.getInt();
+                expectedSize += 8L * channels * sizes[i];
+            }
+
+            // never map beyond the end of an incomplete file
+            if (expectedSize != channel.size()) {
+                LOG.warning("Incomplete waveform peak cache file: " + cacheFile.getName());
+
+                return false;
+            }
+
+            IntBuffer[] data = new IntBuffer[numLevels];
+            long[] bs = new long[numLevels];
+            long offset = headerLength;
+
+            for (int i = 0; i < numLevels; i++) {
+                long length = 8L * channels * sizes[i];
+                data[i] = channel.map(FileChannel.MapMode.READ_ONLY, offset, length)
+                    .order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+                bs[i] = (i == 0) ? BASE_BLOCK_SIZE : (bs[i - 1] * LEVEL_FACTOR);
+                offset += length;
+            }
+
+            numChannels = channels;
+            numSamples = samples;
+            blockSizes = bs;
+            levels = data;
+
+            return true;
+        } catch (IOException ioe) {
+            LOG.warning("Could not read waveform peak cache file " + cacheFile.getName() + ": " +
+                ioe.getMessage());
+        } catch (RuntimeException re) {
+            // e.g. a truncated file
+            LOG.warning("Invalid waveform peak cache file " + cacheFile.getName() + ": " +
+                re.getMessage());
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns whether the summary has been loaded.
+     *
+     * @return {@code true} after a successful {@link #load()}
+     */
+    public boolean isLoaded() {
+        return levels != null;
+    }
+
+    /**
+     * Returns the number of channels in the summary.
+     *
+     * @return 1 or 2, files with more channels are summarized the way the
+     * {@link WAVSampler} reads them as two channels
+     */
+    public int getNumberOfChannels() {
+        return numChannels;
+    }
+
+    /**
+     * Returns the number of samples of the summarized file.
+     *
+     * @return the number of samples (per channel)
+     */
+    public long getNumberOfSamples() {
+        return numSamples;
+    }
+
+    /**
+     * Calculates the minimum and maximum sample of a range of samples, after
+     * a successful {@link #load()}. The range is extended to the boundaries
+     * of the blocks of the first level, i.e. at most {@code BASE_BLOCK_SIZE - 1}
+     * samples on both sides.
+     *
+     * @param fromSample the first sample of the range
+     * @param toSample the end of the range, exclusive
+     * @param channel the channel index, 0 or 1
+     * @param minMax an array of at least two elements, receives the minimum
+     * and maximum sample
+     *
+     * @return {@code false} if the range is empty, the array is then not
+     * changed
+     */
+    public boolean getMinMax(long fromSample, long toSample, int channel, int[] minMax) {
+        fromSample = Math.max(0, fromSample);
+        toSample = Math.min(numSamples, toSample);
+
+        if ((fromSample >= toSample) || (channel < 0) || (channel >= numChannels)) {
+            return false;
+        }
+
+        // start with the coarsest level of which a block fits in the range
+        int level = 0;
+
+        while ((level < (blockSizes.length - 1)) &&
+                (blockSizes[level + 1] <= (toSample - fromSample))) {
+            level++;
+        }
+
+        minMax[0] = Integer.MAX_VALUE;
+        minMax[1] = Integer.MIN_VALUE;
+        addRange(level, fromSample, toSample, channel, minMax);
+
+        return true;
+    }
+
+    /**
+     * Combines the full blocks of a level within the range and leaves the
+     * partial blocks at the edges to the previous level.
+     */
+    private void addRange(int level, long fromSample, long toSample, int channel, int[] minMax) {
+        long bs = blockSizes[level];
+
+        if (level == 0) {
+            addElements(0, fromSample / bs, ((toSample + bs) - 1) / bs, channel, minMax);
+
+            return;
+        }
+
+        long firstFull = ((fromSample + bs) - 1) / bs;
+        long endFull = toSample / bs;
+
+        if (firstFull >= endFull) {
+            addRange(level - 1, fromSample, toSample, channel, minMax);
+
+            return;
+        }
+
+        if (fromSample < (firstFull * bs)) {
+            addRange(level - 1, fromSample, firstFull * bs, channel, minMax);
+        }
+
+        addElements(level, firstFull, endFull, channel, minMax);
+
+        if ((endFull * bs) < toSample) {
+            addRange(level - 1, endFull * bs, toSample, channel, minMax);
+        }
+    }
+
+    private void addElements(int level, long from, long to, int channel, int[] minMax) {
+        IntBuffer data = levels[level];
+        int stride = 2 * numChannels;
+        int end = (int) Math.min(to, data.limit() / stride);
+
+        for (int i = (int) from; i < end; i++) {
+            int index = (i * stride) + (2 * channel);
+            int min = data.get(index);
+            int max = data.get(index + 1);
+
+            if (min < minMax[0]) {
+                minMax[0] = min;
+            }
+
+            if (max > minMax[1]) {
+                minMax[1] = max;
+            }
+        }
+    }
+
+    /**
+     * Reads all samples of the source and writes the summary to a cache
+     * file, if the source is cacheable. Older cache files of the same source
+     * are deleted. Failure to write the file is logged, but otherwise ignored.
+     *
+     * @param sampler a sampler for the source file, which is not used by
+     * other threads during building, not null
+     *
+     * @return {@code true} if the cache file has been written
+     */
+    public boolean build(WAVSamplesProvider sampler) {
+        if (!isCacheable()) {
+            return false;
+        }
+
+        File dir = new File(CachedDataManager.getInstance().getCacheLocation(), CACHE_DIR);
+
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            LOG.warning("Could not create the waveform peak cache folder: " + dir);
+
+            return false;
+        }
+
+        long start = System.currentTimeMillis();
+        int channels = Math.min(2, sampler.getNumberOfChannels());
+        long samples = sampler.getNrOfSamples();
+        int[] sizes = calculateLevelSizes(samples);
+        File cacheFile = getCacheFile();
+        File tempFile = null;
+
+        try {
+            tempFile = File.createTempFile(getSourcePrefix(), ".tmp", dir);
+
+            try (FileChannel channel = FileChannel.open(tempFile.toPath(),
+                        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                writeHeader(channel, channels, samples, sizes);
+
+                int stride = 2 * channels;
+                // the first level is written while reading, the second level
+                // is collected in memory and the next levels are derived from it
+                int[] second = (sizes.length > 1) ? newLevel(sizes[1] * stride) : null;
+                ByteBuffer buf = ByteBuffer.allocate(WRITE_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                int[] element = new int[stride];
+                long block = 0;
+
+                sampler.seekSample(0);
+
+                while (block < sizes[0]) {
+                    int numRead = sampler.readInterval(READ_NUM_SAMPLES, channels);
+
+                    if (numRead <= 0) {
+                        break;
+                    }
+
+                    for (int from = 0; (from < numRead) && (block < sizes[0]);
+                            from += BASE_BLOCK_SIZE, block++) {
+                        int to = Math.min(from + BASE_BLOCK_SIZE, numRead);
+
+                        for (int c = 0; c < channels; c++) {
+                            int[] values = sampler.getChannelArray(c);
+                            int min = Integer.MAX_VALUE;
+                            int max = Integer.MIN_VALUE;
+
+                            for (int s = from; s < to; s++) {
+                                int v = values[s];
+
+                                if (v < min) {
+                                    min = v;
+                                }
+
+                                if (v > max) {
+                                    max = v;
+                                }
+                            }
+
+                            element[2 * c] = min;
+                            element[(2 * c) + 1] = max;
+                        }
+
+                        ensureRemaining(channel, buf, 4 * stride);
+
+                        for (int v : element) {
+                            buf.putInt(v);
+                        }
+
+                        if (second != null) {
+                            combine(second, (int) (block / LEVEL_FACTOR) * stride, element, 0, stride);
+                        }
+                    }
+                }
+
+                if (block < sizes[0]) {
+                    throw new IOException("Could not read all samples, read " +
+                        (block * BASE_BLOCK_SIZE) + " of " + samples);
+                }
+
+                int[] previous = second;
+
+                for (int level = 1; level < sizes.length; level++) {
+                    int[] current;
+
+                    if (level == 1) {
+                        current = second;
+                    } else {
+                        current = newLevel(sizes[level] * stride);
+
+                        for (int i = 0; i < sizes[level - 1]; i++) {
+                            combine(current, (i / LEVEL_FACTOR) * stride, previous, i * stride, stride);
+                        }
+                    }
+
+                    for (int v : current) {
+                        ensureRemaining(channel, buf, 4);
+                        buf.putInt(v);
+                    }
+
+                    previous = current;
+                }
+
+                buf.flip();
+                writeFully(channel, buf);
+            }
+
+            Files.move(tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            tempFile = null;
+            deleteStaleFiles(dir, cacheFile);
+            LOG.info("Stored waveform peaks of " + sourceFile.getName() + " in cache file " +
+                cacheFile.getName() + " in " + (System.currentTimeMillis() - start) + " ms");
+
+            return true;
+        } catch (IOException ioe) {
+            LOG.warning("Could not write waveform peak cache file " + cacheFile.getName() + ": " +
+                ioe.getMessage());
+        } finally {
+            if (tempFile != null) {
+                tempFile.delete();
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Builds the cache file by a task of the input/output pool of the
+     * {@link BackgroundTaskScheduler}, with its own sampler for the source.
+     * Nothing happens if a cache for the same source is being built already.
+     *
+     * @param whenLoaded called on the event dispatch thread (by means of
+     * {@link EventQueue#invokeLater(Runnable)}) when the cache file has been
+     * written and loaded by this object, can be null
+     */
+    public void buildInBackground(final Runnable whenLoaded) {
+        final String path = sourceFile.getAbsolutePath();
+
+        synchronized (building) {
+            if (!building.add(path)) {
+                return;
+            }
+        }
+
+        BackgroundTaskScheduler.getInstance().submit(BackgroundTaskScheduler.Pool.IO,
+            "Waveform peaks " + sourceFile.getName(), new Runnable() {
+                @Override
+                public void run() {
+                    MappedWAVSampler sampler = null;
+                    boolean loaded = false;
+
+                    try {
+                        sampler = new MappedWAVSampler(path);
+                        loaded = build(sampler) && load();
+                    } catch (IOException ioe) {
+                        LOG.warning("Could not read the samples of " + sourceFile.getName() +
+                            ": " + ioe.getMessage());
+                    } finally {
+                        if (sampler != null) {
+                            sampler.close();
+                        }
+
+                        synchronized (building) {
+                            building.remove(path);
+                        }
+                    }
+
+                    if (loaded && (whenLoaded != null)) {
+                        EventQueue.invokeLater(whenLoaded);
+                    }
+                }
+            });
+    }
+
+    /**
+     * Calculates the number of elements per level, up to and including the
+     * first level with less than {@code LEVEL_FACTOR} elements.
+     */
+    private static int[] calculateLevelSizes(long samples) {
+        int numLevels = 1;
+        long size = (samples + BASE_BLOCK_SIZE - 1) / BASE_BLOCK_SIZE;
+
+        for (long n = size; n >= LEVEL_FACTOR; n = (n + LEVEL_FACTOR - 1) / LEVEL_FACTOR) {
+            numLevels++;
+        }
+
+        int[] sizes = new int[numLevels];
+
+        for (int i = 0; i < numLevels; i++) {
+            sizes[i] = (int) size;
+            size = (size + LEVEL_FACTOR - 1) / LEVEL_FACTOR;
+        }
+
+        return sizes;
+    }
+
+    /**
+     * Creates an array for a level, initialized such that every element
+     * can be combined with other elements.
+     */
+    private static int[] newLevel(int length) {
+        int[] level = new int[length];
+
+        for (int i = 0; i < length; i += 2) {
+            level[i] = Integer.MAX_VALUE;
+            level[i + 1] = Integer.MIN_VALUE;
+        }
+
+        return level;
+    }
+
+    /**
+     * Combines the minimum and maximum values of an element into an element
+     * of a coarser level.
+     */
+    private static void combine(int[] dest, int destIndex, int[] src, int srcIndex, int stride) {
+        for (int i = 0; i < stride; i += 2) {
+            if (src[srcIndex + i] < dest[destIndex + i]) {
+                dest[destIndex + i] = src[srcIndex + i];
+            }
+
+            if (src[srcIndex + i + 1] > dest[destIndex + i + 1]) {
+                dest[destIndex + i + 1] = src[srcIndex + i + 1];
+            }
+        }
+    }
+
+    /**
+     * Writes the header, including the sizes of the levels.
+     */
+    private void writeHeader(FileChannel channel, int channels, long samples, int[] sizes)
+        throws IOException {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        int length = 12 + 4 + keyBytes.length + 4 + 8 + 4 + 4 + 4 + (4 * sizes.length);
+        // align the data
+        length = (length + 7) & ~7;
+
+        ByteBuffer header = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC);
+        header.putInt(VERSION);
+        header.putInt(length);
+        header.putInt(keyBytes.length);
+        header.put(keyBytes);
+        header.putInt(channels);
+        header.putLong(samples);
+        header.putInt(BASE_BLOCK_SIZE);
+        header.putInt(LEVEL_FACTOR);
+        header.putInt(sizes.length);
+
+        for (int size : sizes) {
+            header.putInt(size);
+        }
+
+        // including the padding
+        header.position(0);
+        writeFully(channel, header);
+    }
+
+    /**
+     * Writes the content of the buffer if there is not enough space left.
+     */
+    private void ensureRemaining(FileChannel channel, ByteBuffer buf, int numBytes)
+        throws IOException {
+        if (buf.remaining() < numBytes) {
+            buf.flip();
+            writeFully(channel, buf);
+            buf.clear();
+        }
+    }
+
+    private void writeFully(FileChannel channel, ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining()) {
+            channel.write(buf);
+        }
+    }
+
+    private void readFully(FileChannel channel, ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) {
+            if (channel.read(buf, position + buf.position()) < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+        }
+    }
+
+    /**
+     * Removes other cache files of the same source file, they have been
+     * created for a previous version of the source.
+     */
+    private void deleteStaleFiles(File dir, File current) {
+        String prefix = getSourcePrefix();
+        File[] files = dir.listFiles();
+
+        if (files == null) {
+            return;
+        }
+
+        for (File f : files) {
+            if (f.getName().startsWith(prefix) && f.getName().endsWith(CACHE_EXT) &&
+                    !f.equals(current)) {
+                // can fail on some platforms if the file is still mapped
+                if (!f.delete()) {
+                    LOG.fine("Could not delete old cache file: " + f.getName());
+                }
+            }
+        }
+    }
+
+    private String getSourcePrefix() {
+        return sourceFile.getName() + "_" +
+            Integer.toHexString(sourceFile.getAbsolutePath().hashCode()) + "_";
+    }
+
+    private File getCacheFile() {
+        return new File(new File(CachedDataManager.getInstance().getCacheLocation(), CACHE_DIR),
+            getSourcePrefix() + Integer.toHexString(key.hashCode()) + CACHE_EXT);
+    }
+}
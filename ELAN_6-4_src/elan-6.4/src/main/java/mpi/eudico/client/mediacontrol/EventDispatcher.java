@@ -0,0 +1,281 @@
+package mpi.eudico.client.mediacontrol;
+
+import java.util.ArrayDeque;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Delivers ControllerEvents to ControllerListeners on a shared set of
+ * delivery threads, instead of starting a new thread per event.
+ * <p>
+ * Every listener has a mailbox; the events of a mailbox are delivered one
+ * at a time and in the order they were posted, so a slow listener only
+ * delays its own events. A TimeEvent does not contain the media time, the
+ * listener asks the controller for the current time; therefore a TimeEvent
+ * that is still waiting in a mailbox is replaced by a newer TimeEvent of the
+ * same source, which is counted as a coalesced event. Other events are
+ * never skipped.
+ * <p>
+ * A delivery thread is only busy while a mailbox has events, idle threads
+ * are reused and terminate after some time. The number of threads never
+ * exceeds the number of listeners with pending events.
+ *
+ * @version Oct 2026
+ */
+public class EventDispatcher {
+    private final static Logger LOG = Logger.getLogger("ClientLogger");
+    private static final EventDispatcher dispatcher = new EventDispatcher();
+
+    private final ThreadPoolExecutor executor;
+    /** the mailboxes with pending events, guarded by this dispatcher */
+    private final Map<ControllerListener, Mailbox> mailboxes =
+            new IdentityHashMap<ControllerListener, Mailbox>();
+
+    private long numPosted;
+    private long numDelivered;
+    private long numCoalesced;
+    private long numFailed;
+    private long totalLatencyNanos;
+    private long maxLatencyNanos;
+
+    private EventDispatcher() {
+        executor = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 30L, TimeUnit.SECONDS,
+                new SynchronousQueue<Runnable>(), new ThreadFactory() {
+                    private final AtomicInteger count = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r, "EventPoster-" + count.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+    }
+
+    /**
+     * Returns the single instance of the dispatcher.
+     *
+     * @return the dispatcher
+     */
+    public static EventDispatcher getInstance() {
+        return dispatcher;
+    }
+
+    /**
+     * Adds an event to the mailbox of a listener and schedules the delivery
+     * if the mailbox is not being processed yet. The method returns
+     * immediately.
+     *
+     * @param listener the listener to deliver the event to
+     * @param event the event
+     */
+    public void dispatch(ControllerListener listener, ControllerEvent event) {
+        dispatch(listener, event, null);
+    }
+
+    /**
+     * Adds an event to the mailbox of a listener, like
+     * {@link #dispatch(ControllerListener, ControllerEvent)}, and runs a task
+     * on the delivery thread after the listener has processed the event. If
+     * a newer TimeEvent replaces the event, the task runs when the event is
+     * replaced.
+     *
+     * @param listener the listener to deliver the event to
+     * @param event the event
+     * @param whenDelivered the task to run after the delivery, can be
+     *        {@code null}
+     */
+    public void dispatch(ControllerListener listener, ControllerEvent event,
+            Runnable whenDelivered) {
+        Mailbox toSchedule = null;
+        Pending replaced = null;
+
+        synchronized (this) {
+            numPosted++;
+            Mailbox mailbox = mailboxes.get(listener);
+
+            if (mailbox == null) {
+                mailbox = new Mailbox(listener);
+                mailboxes.put(listener, mailbox);
+                toSchedule = mailbox;
+            }
+
+            Pending last = mailbox.pending.peekLast();
+
+            if (event instanceof TimeEvent && last != null && last.event instanceof TimeEvent &&
+                    last.event.getSource() == event.getSource()) {
+                // the listener will only see the latest media time
+                replaced = mailbox.pending.pollLast();
+                numCoalesced++;
+            }
+
+            mailbox.pending.add(new Pending(event, whenDelivered));
+        }
+
+        if (toSchedule != null) {
+            executor.execute(toSchedule);
+        }
+        if (replaced != null) {
+            replaced.delivered();
+        }
+    }
+
+    /**
+     * Returns the number of events posted since the start or the last reset.
+     *
+     * @return the number of posted events
+     */
+    public synchronized long getPostedCount() {
+        return numPosted;
+    }
+
+    /**
+     * Returns the number of events delivered to listeners.
+     *
+     * @return the number of delivered events
+     */
+    public synchronized long getDeliveredCount() {
+        return numDelivered;
+    }
+
+    /**
+     * Returns the number of TimeEvents that were not delivered because a
+     * newer TimeEvent of the same source replaced them.
+     *
+     * @return the number of coalesced events
+     */
+    public synchronized long getCoalescedCount() {
+        return numCoalesced;
+    }
+
+    /**
+     * Returns the number of deliveries for which the listener threw an
+     * exception.
+     *
+     * @return the number of failed deliveries
+     */
+    public synchronized long getFailedCount() {
+        return numFailed;
+    }
+
+    /**
+     * Returns the average time between posting an event and the start of its
+     * delivery to the listener.
+     *
+     * @return the average dispatch latency in milliseconds
+     */
+    public synchronized double getAverageLatencyMillis() {
+        return numDelivered == 0 ? 0 : totalLatencyNanos / (numDelivered * 1000000d);
+    }
+
+    /**
+     * Returns the longest time between posting an event and the start of its
+     * delivery to the listener.
+     *
+     * @return the maximum dispatch latency in milliseconds
+     */
+    public synchronized double getMaxLatencyMillis() {
+        return maxLatencyNanos / 1000000d;
+    }
+
+    /**
+     * Sets all counters to zero.
+     */
+    public synchronized void resetStatistics() {
+        numPosted = 0;
+        numDelivered = 0;
+        numCoalesced = 0;
+        numFailed = 0;
+        totalLatencyNanos = 0;
+        maxLatencyNanos = 0;
+    }
+
+    /**
+     * Takes the next event of a mailbox and updates the statistics, or
+     * removes the mailbox if it is empty.
+     *
+     * @return the next pending event or {@code null}
+     */
+    private synchronized Pending next(Mailbox mailbox) {
+        Pending p = mailbox.pending.poll();
+
+        if (p == null) {
+            mailboxes.remove(mailbox.listener);
+            return null;
+        }
+
+        long latency = System.nanoTime() - p.postNanos;
+        numDelivered++;
+        totalLatencyNanos += latency;
+
+        if (latency > maxLatencyNanos) {
+            maxLatencyNanos = latency;
+        }
+
+        return p;
+    }
+
+    private synchronized void failed() {
+        numFailed++;
+    }
+
+    /**
+     * An event, the time it was posted and the task to run after delivery.
+     */
+    private static class Pending {
+        final ControllerEvent event;
+        final long postNanos;
+        final Runnable whenDelivered;
+
+        Pending(ControllerEvent event, Runnable whenDelivered) {
+            this.event = event;
+            this.whenDelivered = whenDelivered;
+            postNanos = System.nanoTime();
+        }
+
+        void delivered() {
+            if (whenDelivered != null) {
+                whenDelivered.run();
+            }
+        }
+    }
+
+    /**
+     * The pending events of a listener. It is scheduled for execution when
+     * it is created and delivers events until it is empty.
+     */
+    private class Mailbox implements Runnable {
+        final ControllerListener listener;
+        final ArrayDeque<Pending> pending = new ArrayDeque<Pending>(4);
+
+        Mailbox(ControllerListener listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        public void run() {
+            Pending p;
+
+            while ((p = next(this)) != null) {
+                try {
+                    listener.controllerUpdate(p.event);
+                } catch (RuntimeException re) {
+                    failed();
+
+                    if (LOG.isLoggable(Level.WARNING)) {
+                        LOG.log(Level.WARNING, "Exception while delivering a controller event", re);
+                    }
+                } finally {
+                    p.delivered();
+                }
+            }
+        }
+    }
+}
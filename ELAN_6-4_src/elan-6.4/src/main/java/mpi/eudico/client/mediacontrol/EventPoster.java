@@ -7,7 +7,10 @@ package mpi.eudico.client.mediacontrol;
  * @author Hennie Brugman
  * @author Albert Russel
  * @version 09-June-1998
+ * @deprecated events are delivered by the {@link EventDispatcher}, which
+ * does not start a thread per event
  */
+@Deprecated
 public class EventPoster implements Runnable {
     /** The receiver of the event */
     ControllerListener listener;
@@ -2,6 +2,7 @@ package mpi.eudico.client.mediacontrol;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Takes care of administering ControllerListeners and sending events to them.
@@ -56,14 +57,52 @@ public class EventPostingBase {
     }
 
     /**
-     * Posts a ControllerEvent to all registered listeners.
+     * Posts a ControllerEvent to all registered listeners. The events are
+     * delivered by the {@link EventDispatcher}, a TimeEvent that has not been
+     * delivered yet can be replaced by a newer one.
      *
      * @param event the Controller event that has to be posted to all
      *        registered listeners.
      */
     public synchronized void postEvent(ControllerEvent event) {
+        EventDispatcher dispatcher = EventDispatcher.getInstance();
+
+        for (ControllerListener cl : listeners) {
+            dispatcher.dispatch(cl, event);
+        }
+    }
+
+    /**
+     * Posts a ControllerEvent to all registered listeners and runs a task
+     * when all of them have processed it. The task runs on the delivery
+     * thread of the last listener, or immediately if there are no
+     * listeners. A TimeEvent that is replaced by a newer one counts as
+     * processed.
+     *
+     * @param event the Controller event that has to be posted to all
+     *        registered listeners
+     * @param whenDelivered the task to run when all listeners have processed
+     *        the event
+     */
+    protected synchronized void postEvent(ControllerEvent event, final Runnable whenDelivered) {
+        if (listeners.isEmpty()) {
+            whenDelivered.run();
+            return;
+        }
+
+        final AtomicInteger remaining = new AtomicInteger(listeners.size());
+        Runnable countDown = new Runnable() {
+            @Override
+            public void run() {
+                if (remaining.decrementAndGet() == 0) {
+                    whenDelivered.run();
+                }
+            }
+        };
+        EventDispatcher dispatcher = EventDispatcher.getInstance();
+
         for (ControllerListener cl : listeners) {
-            new EventPoster(cl, event);
+            dispatcher.dispatch(cl, event, countDown);
         }
     }
 }
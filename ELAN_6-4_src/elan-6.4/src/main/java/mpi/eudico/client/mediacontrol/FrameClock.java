@@ -0,0 +1,167 @@
+package mpi.eudico.client.mediacontrol;
+
+import java.awt.EventQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A periodic controller that drives the playback updates of the time based
+ * viewers in frames. At every tick the TimeEvent is posted to all connected
+ * listeners through the {@link EventDispatcher}, like the start and stop
+ * events, so each listener receives all events of the clock one at a time 
+ * and in order, and a slow listener only delays its own updates.
+ * <p>
+ * When the last listener has processed the tick, a marker is queued on the
+ * event dispatch thread behind the repaint requests of the listeners; it
+ * runs when the viewers have been painted. Until the marker has run the
+ * frame is still in progress and further ticks are skipped, so a slow
+ * listener or a slow paint pass lowers the frame rate instead of building
+ * up a backlog.
+ * <p>
+ * The target rate can be set with the system property
+ * {@code ELAN.FrameClock.FPS}.
+ *
+ * @version Oct 2026
+ */
+public class FrameClock extends PeriodicUpdateController {
+    private final static Logger LOG = Logger.getLogger("ClientLogger");
+
+    private volatile boolean framePending;
+    private volatile long frameStartNanos;
+    private final Runnable listenersDone;
+
+    private long numTicks;
+    private long numSkipped;
+    private long numFrames;
+    private long totalFrameNanos;
+    private long maxFrameNanos;
+
+    /**
+     * Creates a frame clock with the target rate of the system property,
+     * or with the specified period if the property is not set.
+     *
+     * @param defaultPeriod the period in milliseconds if the target rate is
+     * not configured
+     */
+    public FrameClock(long defaultPeriod) {
+        super(getConfiguredPeriod(defaultPeriod));
+        final Runnable frameDone = new Runnable() {
+            @Override
+            public void run() {
+                long frameNanos = System.nanoTime() - frameStartNanos;
+                framePending = false;
+
+                synchronized (FrameClock.this) {
+                    numFrames++;
+                    totalFrameNanos += frameNanos;
+
+                    if (frameNanos > maxFrameNanos) {
+                        maxFrameNanos = frameNanos;
+                    }
+                }
+            }
+        };
+        listenersDone = new Runnable() {
+            @Override
+            public void run() {
+                EventQueue.invokeLater(frameDone);
+            }
+        };
+    }
+
+    /**
+     * Returns the period corresponding to the {@code ELAN.FrameClock.FPS}
+     * property.
+     *
+     * @param defaultPeriod the period to return if the property is not set
+     * or invalid
+     *
+     * @return the period in milliseconds
+     */
+    public static long getConfiguredPeriod(long defaultPeriod) {
+        String prop = System.getProperty("ELAN.FrameClock.FPS");
+
+        if (prop != null) {
+            try {
+                double fps = Double.parseDouble(prop);
+
+                if (fps > 0) {
+                    return Math.max(1, Math.round(1000 / fps));
+                }
+            } catch (NumberFormatException nfe) {
+            }
+
+            if (LOG.isLoggable(Level.WARNING)) {
+                LOG.log(Level.WARNING, "Invalid frame rate: " + prop);
+            }
+        }
+
+        return defaultPeriod;
+    }
+
+    /**
+     * Posts the event to all listeners, unless the previous frame has not
+     * yet been processed by all listeners and painted.
+     *
+     * @param event the time event
+     */
+    @Override
+    protected void tick(TimeEvent event) {
+        if (framePending) {
+            synchronized (this) {
+                numSkipped++;
+            }
+
+            return;
+        }
+
+        frameStartNanos = System.nanoTime();
+        framePending = true;
+        postEvent(event, listenersDone);
+
+        synchronized (this) {
+            numTicks++;
+        }
+    }
+
+    /**
+     * Returns the number of ticks that have been posted to the listeners.
+     *
+     * @return the number of frames
+     */
+    public synchronized long getTickCount() {
+        return numTicks;
+    }
+
+    /**
+     * Returns the number of ticks that were skipped because the previous
+     * frame had not been processed and painted yet.
+     *
+     * @return the number of skipped ticks
+     */
+    public synchronized long getSkippedCount() {
+        return numSkipped;
+    }
+
+    /**
+     * Returns the average time between posting a frame and the processing
+     * of its marker on the event dispatch thread, after all listeners have
+     * handled the frame.
+     *
+     * @return the average duration of a frame in milliseconds
+     */
+    public synchronized double getAverageFrameMillis() {
+        return numFrames == 0 ? 0 : totalFrameNanos / (numFrames * 1000000d);
+    }
+
+    /**
+     * Returns the longest time between posting a frame and the processing
+     * of its marker on the event dispatch thread, after all listeners have
+     * handled the frame.
+     *
+     * @return the maximum duration of a frame in milliseconds
+     */
+    public synchronized double getMaxFrameMillis() {
+        return maxFrameNanos / 1000000d;
+    }
+}
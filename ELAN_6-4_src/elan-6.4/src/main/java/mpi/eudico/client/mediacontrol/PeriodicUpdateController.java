@@ -1,8 +1,13 @@
 package mpi.eudico.client.mediacontrol;
 
+import java.util.concurrent.TimeUnit;
+
 /**
  * Class that generates periodic TimeEvents. This class must implement the
  * Controller interface in order to be able to be coupled to a Player.
+ * The events are generated at fixed deadlines based on {@code System.nanoTime},
+ * so that the time needed to post an event does not add up to drift; if the
+ * thread falls behind more than one period, missed events are not made up.
  */
 public class PeriodicUpdateController extends EventPostingBase
     implements Controller, Runnable {
@@ -44,26 +49,44 @@ public class PeriodicUpdateController extends EventPostingBase
      */
     @Override
 	public void run() {
-        long n = 0;
+        final long periodNanos = period * 1000000L;
+        long deadline = System.nanoTime();
 
         // the run Thread started so set the state accordingly
         state = STARTED;
 
         while (state == STARTED) {
             // send a TimeEvent to the connected ControllerListeners
-            postEvent(timeEvent);
+            tick(timeEvent);
+
+            deadline += periodNanos;
+            long now = System.nanoTime();
 
-            // sleep period milli seconds
-            if (!Thread.currentThread().isInterrupted()) {
-                // sleep until next event
+            if (now - deadline > periodNanos) {
+                // too far behind, skip the missed ticks
+                deadline = now;
+            }
+
+            // sleep until the next deadline
+            if (!Thread.currentThread().isInterrupted() && deadline - now > 0) {
                 try {
-                    Thread.sleep(period);
+                    TimeUnit.NANOSECONDS.sleep(deadline - now);
                 } catch (InterruptedException e) {
                 }
             }
         }
     }
 
+    /**
+     * Called by the controller thread at every deadline, posts the event to
+     * the connected listeners.
+     *
+     * @param event the time event of this controller
+     */
+    protected void tick(TimeEvent event) {
+        postEvent(event);
+    }
+
     /**
      * Not implemented by this controller.
      */
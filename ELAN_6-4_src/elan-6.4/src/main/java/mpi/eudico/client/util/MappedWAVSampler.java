@@ -0,0 +1,621 @@
+package mpi.eudico.client.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * A class that provides samples from a local WAV file by means of a read-only
+ * memory mapping of the sample data. Samples are decoded directly from the
+ * mapping into {@code int} arrays, there is no intermediate byte buffer and
+ * there are no read or seek system calls per request.
+ * <p>
+ * The mapping of a file is shared by all instances that are created for the
+ * same (unchanged) file, e.g. by a signal viewer and a spectrogram viewer,
+ * and is released when none of these instances uses it anymore. The positional
+ * read methods {@link #readSamples(long, int, int[], int[])} and
+ * {@link #readChannel(long, int, int, int[], int)} decode into arrays
+ * supplied by the caller and can be called by multiple threads at the same
+ * time. The methods of the {@link WAVSamplesProvider} interface that depend on
+ * the sample pointer, {@link #seekSample(long)}, {@link #readInterval(int, int)}
+ * and {@link #getChannelArray(int)}, keep their state per instance and, as in
+ * {@link WAVSampler}, an instance should not be used by multiple threads for
+ * these.
+ * <p>
+ * Supported are 8, 16, 24 and 32 bit integer PCM, 32 bit IEEE float and 8 bit
+ * A-law encoded samples. The values are the same as produced by
+ * {@code WAVSampler}; if one channel is requested from a multi channel file,
+ * the average of the first two channels is returned.
+ *
+ * @version Oct 2026
+ */
+public class MappedWAVSampler implements WAVSamplesProvider {
+    /** the mapped data of the open files, by file and version */
+    private static final Map<String, WeakReference<MappedData>> openFiles =
+            new HashMap<String, WeakReference<MappedData>>();
+
+    private volatile MappedData data;
+    private final String filePath;
+    private final WAVHeader wavHeader;
+    private final int sampleFrequency;
+    private final long nrOfSamples;
+    private final short nrOfChannels;
+    private final short bitsPerSample;
+    private final int possibleMaxSample;
+    private final int possibleMinSample;
+    private final float duration;
+    private final double durationSec;
+    private long samplePointer;
+    private int[] intArrayLeft;
+    private int[] intArrayRight;
+
+    /**
+     * Creates a sampler for a {@code .wav} file, or shares the mapping of a
+     * sampler that has been created for the same file before.
+     *
+     * @param fileName the absolute path of the WAV file
+     *
+     * @throws IOException if the file appears not be a WAV file, or if the
+     * file can not be read or mapped
+     */
+    public MappedWAVSampler(String fileName) throws IOException {
+        if (!fileName.toLowerCase().endsWith(".wav")) {
+            throw new IOException("Unsupported file format");
+        }
+
+        filePath = fileName;
+        data = acquire(new File(fileName));
+        wavHeader = data.header;
+        sampleFrequency = data.header.getFrequency();
+        nrOfSamples = data.nrOfSamples;
+        nrOfChannels = data.nrOfChannels;
+        bitsPerSample = (short) (data.bytesPerSample * 8);
+        possibleMaxSample = data.possibleMaxSample;
+        possibleMinSample = data.possibleMinSample;
+        duration = ((float) 1000 * nrOfSamples) / sampleFrequency;
+        durationSec = nrOfSamples / (double) sampleFrequency;
+    }
+
+    /**
+     * Returns the shared data of a file, mapping the file if it is not open
+     * yet.
+     */
+    private static MappedData acquire(File file) throws IOException {
+        String key = file.getAbsolutePath() + '|' + file.length() + '|' + file.lastModified();
+
+        synchronized (openFiles) {
+            WeakReference<MappedData> ref = openFiles.get(key);
+            MappedData md = ref != null ? ref.get() : null;
+
+            if (md == null) {
+                // remove the entries of mappings that have been collected
+                Iterator<WeakReference<MappedData>> refIt = openFiles.values().iterator();
+
+                while (refIt.hasNext()) {
+                    if (refIt.next().get() == null) {
+                        refIt.remove();
+                    }
+                }
+
+                md = new MappedData(file);
+                openFiles.put(key, new WeakReference<MappedData>(md));
+            }
+
+            return md;
+        }
+    }
+
+    @Override
+    public String getMediaLocation() {
+        return filePath;
+    }
+
+    @Override
+    public float getDuration() {
+        return duration;
+    }
+
+    @Override
+    public double getDurationSeconds() {
+        return durationSec;
+    }
+
+    @Override
+    public int getNumberOfChannels() {
+        return nrOfChannels;
+    }
+
+    @Override
+    public int getBitsPerSample() {
+        return bitsPerSample;
+    }
+
+    @Override
+    public int[] getChannelArray(int channelIndex) {
+        switch (channelIndex) {
+        case 0:
+            return intArrayLeft;
+        case 1:
+            return intArrayRight;
+        default:
+            return null;
+        }
+    }
+
+    /**
+     * Not calculated, as in {@code WAVSampler}.
+     *
+     * @return 0
+     */
+    @Override
+    public int getMaxSample(int channelIndex) {
+        return 0;
+    }
+
+    /**
+     * Not calculated, as in {@code WAVSampler}.
+     *
+     * @return 0
+     */
+    @Override
+    public int getMinSample(int channelIndex) {
+        return 0;
+    }
+
+    @Override
+    public long getNrOfSamples() {
+        return nrOfSamples;
+    }
+
+    @Override
+    public int getPossibleMaxSample() {
+        return possibleMaxSample;
+    }
+
+    @Override
+    public int getPossibleMinSample() {
+        return possibleMinSample;
+    }
+
+    @Override
+    public int getSampleFrequency() {
+        return sampleFrequency;
+    }
+
+    @Override
+    public long getSamplePointer() {
+        return samplePointer;
+    }
+
+    @Override
+    public long getTimeAtSample(long sample) {
+        return (long) (((sample * 1000f) / sampleFrequency) + .5);
+    }
+
+    @Override
+    public float getTimePointer() {
+        return ((float) 1000 * samplePointer) / sampleFrequency;
+    }
+
+    @Override
+    public double getTimePointerSeconds() {
+        return samplePointer / (double) sampleFrequency;
+    }
+
+    /**
+     * Gets the {@code WAVHeader}, e.g. for the cue points of the file.
+     *
+     * @return the header of the file
+     */
+    public WAVHeader getWavHeader() {
+        return wavHeader;
+    }
+
+    /**
+     * Releases this instance's reference to the mapped file. The mapping is
+     * released by the garbage collector when it is no longer referenced.
+     */
+    @Override
+    public void close() {
+        data = MappedData.CLOSED;
+        intArrayLeft = null;
+        intArrayRight = null;
+    }
+
+    /**
+     * Reads the requested number of samples from the current position of the
+     * sample pointer into arrays that are reused by this instance. See
+     * {@link WAVSampler#readInterval(int, int)}.
+     *
+     * @param requestedNrOfSamplesToRead the number of samples to read
+     * @param nrOfChannelsToLoad the number of channels to get, if 2 the
+     * second array is always filled, with 0 values if the file has only one
+     * channel
+     *
+     * @return the number of samples that have been read
+     */
+    @Override
+    public int readInterval(int requestedNrOfSamplesToRead, int nrOfChannelsToLoad) {
+        int toRead = (int) Math.max(0, Math.min(requestedNrOfSamplesToRead, nrOfSamples - samplePointer));
+
+        if ((intArrayLeft == null) || (intArrayLeft.length < toRead)) {
+            intArrayLeft = new int[toRead];
+        }
+
+        if (nrOfChannelsToLoad == 2) {
+            if ((intArrayRight == null) || (intArrayRight.length < toRead)) {
+                intArrayRight = new int[toRead];
+            }
+        } else {
+            intArrayRight = null;
+        }
+
+        int numRead = readSamples(samplePointer, toRead, intArrayLeft, intArrayRight);
+        samplePointer += numRead;
+        // some callers look beyond the number of samples read
+        Arrays.fill(intArrayLeft, numRead, intArrayLeft.length, 0);
+
+        if (intArrayRight != null) {
+            Arrays.fill(intArrayRight, numRead, intArrayRight.length, 0);
+        }
+
+        return numRead;
+    }
+
+    /**
+     * Decodes samples starting at a position into arrays supplied by the
+     * caller. This does not change the sample pointer and is thread safe.
+     *
+     * @param fromSample the index of the first sample
+     * @param numSamples the number of samples to read
+     * @param first the array for the first channel, or for the average of
+     * the first two channels if {@code second} is {@code null}, at least
+     * {@code numSamples} long
+     * @param second the array for the second channel, 0 values if the file
+     * has only one channel, or {@code null}
+     *
+     * @return the number of samples that have been read, less than
+     * {@code numSamples} near the end of the file
+     */
+    public int readSamples(long fromSample, int numSamples, int[] first, int[] second) {
+        MappedData md = data;
+
+        if (second == null && nrOfChannels > 1) {
+            return md.decodeMerged(fromSample, numSamples, first);
+        }
+
+        int numRead = md.decode(fromSample, numSamples, 0, first, 0);
+
+        if (second != null) {
+            if (nrOfChannels > 1) {
+                md.decode(fromSample, numRead, 1, second, 0);
+            } else {
+                Arrays.fill(second, 0, numRead, 0);
+            }
+        }
+
+        return numRead;
+    }
+
+    /**
+     * Decodes the samples of one channel starting at a position into an array
+     * supplied by the caller. This does not change the sample pointer and is
+     * thread safe.
+     *
+     * @param fromSample the index of the first sample
+     * @param numSamples the number of samples to read
+     * @param channel the index of the channel
+     * @param dest the destination array
+     * @param destPos the position in the destination of the first sample
+     *
+     * @return the number of samples that have been read, 0 if the channel
+     * does not exist
+     */
+    public int readChannel(long fromSample, int numSamples, int channel, int[] dest, int destPos) {
+        if (channel < 0 || channel >= nrOfChannels) {
+            return 0;
+        }
+
+        return data.decode(fromSample, numSamples, channel, dest, destPos);
+    }
+
+    @Override
+    public void seekSample(long n) {
+        if ((n >= 0) && (n <= nrOfSamples)) {
+            samplePointer = n;
+        }
+    }
+
+    @Override
+    public void seekTime(float time) {
+        if (time >= 0) {
+            seekSample((long) ((time * sampleFrequency) / 1000));
+        }
+    }
+
+    @Override
+    public void seekTimeSeconds(double timeSec) {
+        if (timeSec >= 0) {
+            seekSample((long) (timeSec * sampleFrequency));
+        }
+    }
+
+    @Override
+    public short getCompressionCode() {
+        return wavHeader.getCompressionCode();
+    }
+
+    @Override
+    public String getCompressionString(short compr) {
+        return wavHeader.getCompressionString(compr);
+    }
+
+    @Override
+    public void setDebugMode(boolean enable) {
+        // stub
+    }
+
+    /**
+     * The mapping and the format of a file, shared by the samplers of that
+     * file. Only absolute get methods are used on the buffers, which makes
+     * concurrent reading safe.
+     */
+    private static final class MappedData {
+        /** a placeholder for closed samplers, which reads nothing */
+        static final MappedData CLOSED = new MappedData();
+
+        private static final int ENC_NONE = 0;
+        private static final int ENC_UNSIGNED_8 = 1;
+        private static final int ENC_ALAW = 2;
+        private static final int ENC_16 = 3;
+        private static final int ENC_24 = 4;
+        private static final int ENC_32 = 5;
+        private static final int ENC_FLOAT = 6;
+
+        final WAVHeader header;
+        final long nrOfSamples;
+        final short nrOfChannels;
+        final int sampleSize;
+        final int bytesPerSample;
+        final int possibleMaxSample;
+        final int possibleMinSample;
+        final int encoding;
+        /** the mapped data, each buffer contains a whole number of samples */
+        final ByteBuffer[] segments;
+        final int segmentSamples;
+
+        private MappedData() {
+            header = null;
+            nrOfSamples = 0;
+            nrOfChannels = 0;
+            sampleSize = 1;
+            bytesPerSample = 1;
+            possibleMaxSample = 0;
+            possibleMinSample = 0;
+            encoding = ENC_NONE;
+            segments = new ByteBuffer[0];
+            segmentSamples = 1;
+        }
+
+        MappedData(File file) throws IOException {
+            try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+                header = new WAVHeader(raf);
+
+                if (header.getHeaderSize() == 0) {
+                    throw new IOException("Invalid wav file format");
+                }
+
+                nrOfChannels = header.getNumberOfChannels();
+                sampleSize = header.getSampleSize();
+
+                if (nrOfChannels < 1 || sampleSize < nrOfChannels) {
+                    throw new IOException("Invalid wav file format");
+                }
+
+                bytesPerSample = sampleSize / nrOfChannels;
+                int bits = bytesPerSample * 8;
+                int max = (int) (-1 + Math.pow(2, bits - 1));
+                int min = (int) (-Math.pow(2, bits - 1));
+                short compr = header.getCompressionCode();
+
+                if (compr == WAVHeader.WAVE_FORMAT_ALAW) {
+                    max *= 64;
+                    min *= 64;
+                }
+
+                possibleMaxSample = max;
+                possibleMinSample = min;
+                encoding = getEncoding(compr, bytesPerSample);
+
+                FileChannel channel = raf.getChannel();
+                long offset = header.getHeaderSize();
+                // the data chunk size of a truncated file can exceed the file size
+                long dataLength = Math.max(0, Math.min(header.getDataLength(), channel.size() - offset));
+                nrOfSamples = dataLength / sampleSize;
+                segmentSamples = Integer.MAX_VALUE / sampleSize;
+
+                int numSegments = (int) ((nrOfSamples + segmentSamples - 1) / segmentSamples);
+                segments = new ByteBuffer[numSegments];
+
+                for (int i = 0; i < numSegments; i++) {
+                    long first = (long) i * segmentSamples;
+                    long length = Math.min(segmentSamples, nrOfSamples - first) * sampleSize;
+                    segments[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+                            offset + (first * sampleSize), length).order(ByteOrder.LITTLE_ENDIAN);
+                }
+            }
+        }
+
+        private static int getEncoding(short compr, int bytesPerSample) {
+            if (compr == WAVHeader.WAVE_FORMAT_IEEE_FLOAT) {
+                return bytesPerSample == 4 ? ENC_FLOAT : ENC_NONE;
+            }
+
+            if (compr == WAVHeader.WAVE_FORMAT_ALAW) {
+                return bytesPerSample == 1 ? ENC_ALAW : ENC_NONE;
+            }
+
+            switch (bytesPerSample) {
+            case 1:
+                return ENC_UNSIGNED_8;
+            case 2:
+                return ENC_16;
+            case 3:
+                return ENC_24;
+            case 4:
+                return ENC_32;
+            default:
+                return ENC_NONE;
+            }
+        }
+
+        /**
+         * Decodes the samples of one channel.
+         *
+         * @return the number of samples decoded
+         */
+        int decode(long fromSample, int numSamples, int channel, int[] dest, int destPos) {
+            if (fromSample < 0 || fromSample >= nrOfSamples || numSamples <= 0) {
+                return 0;
+            }
+
+            int total = (int) Math.min(numSamples, nrOfSamples - fromSample);
+
+            if (encoding == ENC_NONE) {
+                Arrays.fill(dest, destPos, destPos + total, 0);
+
+                return total;
+            }
+
+            int done = 0;
+
+            while (done < total) {
+                long sample = fromSample + done;
+                int segIndex = (int) (sample / segmentSamples);
+                int inSeg = (int) (sample - ((long) segIndex * segmentSamples));
+                int n = Math.min(total - done, segmentSamples - inSeg);
+                decodeSegment(segments[segIndex], (inSeg * sampleSize) + (channel * bytesPerSample),
+                        n, dest, destPos + done);
+                done += n;
+            }
+
+            return total;
+        }
+
+        /**
+         * Decodes the average of the first two channels.
+         *
+         * @return the number of samples decoded
+         */
+        int decodeMerged(long fromSample, int numSamples, int[] dest) {
+            if (fromSample < 0 || fromSample >= nrOfSamples || numSamples <= 0) {
+                return 0;
+            }
+
+            int total = (int) Math.min(numSamples, nrOfSamples - fromSample);
+
+            for (int i = 0; i < total; i++) {
+                long sample = fromSample + i;
+                int segIndex = (int) (sample / segmentSamples);
+                ByteBuffer buf = segments[segIndex];
+                int pos = (int) (sample - ((long) segIndex * segmentSamples)) * sampleSize;
+                dest[i] = (decodeSample(buf, pos) + decodeSample(buf, pos + bytesPerSample)) / 2;
+            }
+
+            return total;
+        }
+
+        /**
+         * Decodes a single sample value.
+         */
+        private int decodeSample(ByteBuffer buf, int pos) {
+            switch (encoding) {
+            case ENC_UNSIGNED_8:
+                return (buf.get(pos) & 0xFF) - 128;
+            case ENC_ALAW:
+                return decodeALaw(buf.get(pos) & 0xFF);
+            case ENC_16:
+                return buf.getShort(pos);
+            case ENC_24:
+                return (buf.get(pos) & 0xFF) | ((buf.get(pos + 1) & 0xFF) << 8) | (buf.get(pos + 2) << 16);
+            case ENC_32:
+                return buf.getInt(pos);
+            case ENC_FLOAT:
+                return (int) (buf.getFloat(pos) * possibleMaxSample);
+            default:
+                return 0;
+            }
+        }
+
+        private void decodeSegment(ByteBuffer buf, int pos, int n, int[] dest, int destPos) {
+            int end = destPos + n;
+
+            switch (encoding) {
+            case ENC_UNSIGNED_8:
+                for (int i = destPos; i < end; i++, pos += sampleSize) {
+                    dest[i] = (buf.get(pos) & 0xFF) - 128;
+                }
+                break;
+            case ENC_ALAW:
+                for (int i = destPos; i < end; i++, pos += sampleSize) {
+                    dest[i] = decodeALaw(buf.get(pos) & 0xFF);
+                }
+                break;
+            case ENC_16:
+                for (int i = destPos; i < end; i++, pos += sampleSize) {
+                    dest[i] = buf.getShort(pos);
+                }
+                break;
+            case ENC_24:
+                for (int i = destPos; i < end; i++, pos += sampleSize) {
+                    dest[i] = (buf.get(pos) & 0xFF) | ((buf.get(pos + 1) & 0xFF) << 8) |
+                            (buf.get(pos + 2) << 16);
+                }
+                break;
+            case ENC_32:
+                for (int i = destPos; i < end; i++, pos += sampleSize) {
+                    dest[i] = buf.getInt(pos);
+                }
+                break;
+            case ENC_FLOAT:
+                for (int i = destPos; i < end; i++, pos += sampleSize) {
+                    dest[i] = (int) (buf.getFloat(pos) * possibleMaxSample);
+                }
+                break;
+            default:
+                Arrays.fill(dest, destPos, end, 0);
+            }
+        }
+
+        /**
+         * Converts an A-law encoded byte, the same way as {@code WAVSampler}.
+         */
+        private static int decodeALaw(int b) {
+            int val = b ^ 0x55;
+            int t = (val & 0xf) << 4;
+            int seg = (val & 0x70) >> 4;
+
+            switch (seg) {
+            case 0:
+                t += 8;
+                break;
+            case 1:
+                t += 0x108;
+                break;
+            default:
+                t += 0x108;
+                t <<= (seg - 1);
+            }
+
+            return ((val & 0x80) != 0) ? t : -t;
+        }
+    }
+}
@@ -1,6 +1,10 @@
 package mpi.eudico.client.util;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.Arrays;
 
 import nl.mpi.media.AudioExtraction;
@@ -15,6 +19,11 @@ import nl.mpi.media.UnsupportedMediaException;
  * type other than (local, uncompressed) {@code .wav} files. 
  * This sampler uses an {@link AudioExtractor} instance which builds on 
  * {@code JNI} to interact with the native decoder.
+ * <p>
+ * The audio track can be decoded once to a {@code .wav} file with 
+ * {@link #decodeToWAV(File)}; when a sampler for such file has been set with
+ * {@link #setDecodedSampler(WAVSamplesProvider)}, all reads are served by
+ * that sampler instead of the native decoder.
  *  
  * @author Han Sloetjes
  */
@@ -29,6 +38,12 @@ public class WAVFromOtherSampler implements WAVSamplesProvider {
     private int[][] intArrayPerChannel;
     
     private double seekTime;
+    private long seekSample;
+    /** a sampler for the decoded audio, if available */
+    private volatile WAVSamplesProvider decodedSampler;
+    private volatile boolean closed;
+    /** the duration of the intervals that are decoded by {@link #decodeToWAV(File)} */
+    private static final double DECODE_INTERVAL_SEC = 10.0d;
 	
     /**
      * Constructs a sampler for the specified media file, if it is supported.
@@ -240,6 +255,10 @@ public class WAVFromOtherSampler implements WAVSamplesProvider {
 
 	@Override
 	public long getSamplePointer() {
+		WAVSamplesProvider decoded = decodedSampler;
+		if (decoded != null) {
+			return decoded.getSamplePointer();
+		}
 		return (long) (audioExtractor.getPositionSec() * audioExtractor.getSampleFrequency());
 	}
 
@@ -251,17 +270,31 @@ public class WAVFromOtherSampler implements WAVSamplesProvider {
 
 	@Override
 	public float getTimePointer() {
+		WAVSamplesProvider decoded = decodedSampler;
+		if (decoded != null) {
+			return decoded.getTimePointer();
+		}
 		// for now return seekTime, it may not be possible to get the position from the decoder?
 		return (float) (audioExtractor.getPositionSec() * 1000);
 	}
 
 	@Override
 	public double getTimePointerSeconds() {
+		WAVSamplesProvider decoded = decodedSampler;
+		if (decoded != null) {
+			return decoded.getTimePointerSeconds();
+		}
 		return audioExtractor.getPositionSec();
 	}
 
 	@Override
 	public void close() {
+		closed = true;
+		WAVSamplesProvider decoded = decodedSampler;
+		if (decoded != null) {
+			decodedSampler = null;
+			decoded.close();
+		}
 		try {
 			audioExtractor.release();
 		} catch (Throwable t) {
@@ -272,6 +305,10 @@ public class WAVFromOtherSampler implements WAVSamplesProvider {
 
 	@Override
 	public int readInterval(int requestedNrOfSamplesToRead, int nrOfChannelsToLoad) {
+		WAVSamplesProvider decoded = decodedSampler;
+		if (decoded != null) {
+			return readDecodedInterval(decoded, requestedNrOfSamplesToRead, nrOfChannelsToLoad);
+		}
 		int actualRead = 0;
         boolean stereoOutput = false;
 
@@ -492,12 +529,33 @@ public class WAVFromOtherSampler implements WAVSamplesProvider {
         return actualRead / sampleSize;
 	}
 
+	/**
+	 * Reads an interval from the sampler of the decoded audio and makes its
+	 * arrays the channel arrays of this sampler.
+	 */
+	private int readDecodedInterval(WAVSamplesProvider decoded, int requestedNrOfSamplesToRead, 
+			int nrOfChannelsToLoad) {
+		decoded.seekSample(seekSample);
+		int numRead = decoded.readInterval(requestedNrOfSamplesToRead, nrOfChannelsToLoad);
+		
+		if (nrOfChannelsToLoad > 1 && getNumberOfChannels() > 1) {
+			intArrayPerChannel = new int[][] {decoded.getChannelArray(0), decoded.getChannelArray(1)};
+		} else {
+			intArrayPerChannel = new int[][] {decoded.getChannelArray(0)};
+		}
+		
+		return numRead;
+	}
+
 	@Override
 	public void seekSample(long n) {
 		// instead of real seeking, the requested sample value could be stored until the next call to readInterval
 		// similarly thread unsafe as in WAVSampler
 		
 		setSeekTime( n / (double) audioExtractor.getSampleFrequency() );
+		if (n >= 0 && seekTime < audioExtractor.getDurationSec()) {
+			seekSample = n;
+		}
 	}
 
 	@Override
@@ -518,7 +576,113 @@ public class WAVFromOtherSampler implements WAVSamplesProvider {
 		} else {
 			seekTime = t;
 		}
-		audioExtractor.setPositionSec(seekTime);
+		seekSample = Math.round(seekTime * audioExtractor.getSampleFrequency());
+		if (decodedSampler == null) {
+			audioExtractor.setPositionSec(seekTime);
+		}
+	}
+	
+	/**
+	 * Sets the sampler for the decoded audio of this sampler's media, e.g. 
+	 * a sampler for a file created by {@link #decodeToWAV(File)}. From then
+	 * on all intervals are read from that sampler. If this sampler has been 
+	 * closed, the decoded sampler is closed too.
+	 * 
+	 * @param decoded the sampler for the decoded audio, not {@code null}
+	 */
+	public void setDecodedSampler(WAVSamplesProvider decoded) {
+		decodedSampler = decoded;
+		if (closed) {
+			decodedSampler = null;
+			decoded.close();
+		}
+	}
+	
+	/**
+	 * Returns whether the intervals are read from a sampler for the decoded
+	 * audio.
+	 * 
+	 * @return {@code true} if a sampler for the decoded audio has been set 
+	 */
+	public boolean isDecoded() {
+		return decodedSampler != null;
+	}
+	
+	/**
+	 * Decodes the complete audio track and writes it to a {@code .wav} file
+	 * with the format produced by the audio extractor (usually PCM, 
+	 * sometimes IEEE float). The audio is decoded in intervals of 
+	 * {@link #DECODE_INTERVAL_SEC} seconds; intervals for which the decoder 
+	 * delivers fewer samples than expected are padded with zeros, to keep 
+	 * the samples aligned with time.
+	 * <p>
+	 * This uses and moves the position of the native decoder; a separate 
+	 * sampler instance should be used for decoding while another instance
+	 * is used for reading intervals.
+	 * 
+	 * @param wavFile the file to write to, an existing file is overwritten
+	 * 
+	 * @throws IOException if writing fails, the decoder fails or if the 
+	 * decoded audio is too large for a {@code .wav} file
+	 */
+	public void decodeToWAV(File wavFile) throws IOException {
+		int numChannels = getNumberOfChannels();
+		int bytesPerSample = getBitsPerSample() / 8;
+		int blockAlign = numChannels * bytesPerSample;
+		int sampleFreq = getSampleFrequency();
+		long numSamples = getNrOfSamples();
+		long dataSize = numSamples * blockAlign;
+		
+		if (blockAlign <= 0 || numSamples <= 0) {
+			throw new IOException("Cannot decode audio of this format: channels " + numChannels + 
+					", bits per sample " + getBitsPerSample());
+		}
+		if (dataSize + 36 > 0xFFFFFFFFL) {
+			throw new IOException("The decoded audio is too large for a WAVE file: " + dataSize);
+		}
+		short formatTag = getCompressionCode();
+		if (formatTag == WAVHeader.WAVE_FORMAT_UNCOMPRESSED) {
+			formatTag = WAVHeader.WAVE_FORMAT_PCM;
+		}
+		
+		ByteBuffer header = ByteBuffer.allocate(44).order(ByteOrder.LITTLE_ENDIAN);
+		header.put(new byte[] {'R', 'I', 'F', 'F'});
+		header.putInt((int) (dataSize + 36));
+		header.put(new byte[] {'W', 'A', 'V', 'E', 'f', 'm', 't', ' '});
+		header.putInt(16);
+		header.putShort(formatTag);
+		header.putShort((short) numChannels);
+		header.putInt(sampleFreq);
+		header.putInt(sampleFreq * blockAlign);
+		header.putShort((short) blockAlign);
+		header.putShort((short) getBitsPerSample());
+		header.put(new byte[] {'d', 'a', 't', 'a'});
+		header.putInt((int) dataSize);
+		
+		long samplesPerInterval = (long) (DECODE_INTERVAL_SEC * sampleFreq);
+		
+		try (RandomAccessFile raf = new RandomAccessFile(wavFile, "rw")) {
+			raf.setLength(0);
+			raf.write(header.array());
+			
+			for (long from = 0; from < numSamples; from += samplesPerInterval) {
+				if (closed) {
+					throw new IOException("The sampler has been closed");
+				}
+				long to = Math.min(from + samplesPerInterval, numSamples);
+				int expected = (int) ((to - from) * blockAlign);
+				byte[] buffer = audioExtractor.getSamples(from / (double) sampleFreq, 
+						to / (double) sampleFreq);
+				int numBytes = buffer == null ? 0 : Math.min(buffer.length, expected);
+				
+				if (numBytes > 0) {
+					raf.write(buffer, 0, numBytes);
+				}
+				if (numBytes < expected) {
+					raf.write(new byte[expected - numBytes]);
+				}
+			}
+		}
 	}
 
 	/**
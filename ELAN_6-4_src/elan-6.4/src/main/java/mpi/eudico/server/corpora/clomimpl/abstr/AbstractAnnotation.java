@@ -101,8 +101,10 @@ public abstract class AbstractAnnotation implements Annotation {
 					System.out.println("Could not retrieve the last used annotation id.");
 				}
 			}
+			String oldId = id;
 			id = "a" + ++lastUsedAnnId;
 			p.setValue(lastUsedAnnId);
+			tr.annotationIdChanged(this, oldId);
     	}
     		
     	return id;
@@ -125,7 +127,11 @@ public abstract class AbstractAnnotation implements Annotation {
      */
     @Override
 	public void setId(String s){
+    	String oldId = id;
     	id = s;
+    	if (tier instanceof TierImpl && ((TierImpl) tier).getTranscription() != null) {
+    		((TierImpl) tier).getTranscription().annotationIdChanged(this, oldId);
+    	}
     }
     
     /**
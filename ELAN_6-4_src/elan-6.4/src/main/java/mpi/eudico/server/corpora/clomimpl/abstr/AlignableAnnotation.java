@@ -265,6 +265,7 @@ public class AlignableAnnotation extends AbstractAnnotation {
         if (beginTime.isTimeAligned()) {
             beginBoundary = beginTime.getTime();
         } else {
+            updateProposedTimes();
             // oct 04: the if part added for performance reasons
             if (((TimeSlotImpl) beginTime).getProposedTime() >= 0) {
                 beginBoundary = ((TimeSlotImpl) beginTime).getProposedTime();
@@ -295,6 +296,7 @@ public class AlignableAnnotation extends AbstractAnnotation {
             //     endBoundary = ((TranscriptionImpl) (((TierImpl) getTier()).getParent())).getTimeOrder()
             //                    .proposeTimeFor(endTime);
             //	endBoundary = ((TierImpl) getTier()).proposeTimeFor(endTime);
+            updateProposedTimes();
             // oct 04: the if part added for performance reasons
             if (((TimeSlotImpl) endTime).getProposedTime() >= 0) {
                 endBoundary = ((TimeSlotImpl) endTime).getProposedTime();
@@ -306,6 +308,19 @@ public class AlignableAnnotation extends AbstractAnnotation {
         return endBoundary;
     }
 
+    /**
+     * Lets the transcription recalculate the virtual times that are out of
+     * date because of modifications in the current batch, before one of them
+     * is used.
+     */
+    private void updateProposedTimes() {
+        TierImpl tier = (TierImpl) getTier();
+
+        if ((tier != null) && (tier.getTranscription() != null)) {
+            tier.getTranscription().updateProposedTimes();
+        }
+    }
+
     /**
      * Returns the begin time if the begin time slot is time aligned or a new
      * proposed time when the slot is unaligned.  Note: Oct. '04 addition
@@ -86,6 +86,18 @@ public class TierImpl implements Tier {
 
 	private String langRef;
 
+	/**
+	 * Counts modifications of the set of annotations, used to detect whether
+	 * the time index is still valid.
+	 */
+	private int annotationsModCount;
+	/** the time index, built on demand when the tier is queried repeatedly */
+	private volatile TierTimeIndex timeIndex;
+	/** the stamps of the last query that was not handled by the time index */
+	private long lastQueryTranscriptionStamp = -1;
+	private int lastQueryModCount = -1;
+	private final Object timeIndexLock = new Object();
+
 	/**
 	 * Constructor. It does not add this tier to the transcription that is 
 	 * passed as a parameter. The type is set for the tier in the constructor.
@@ -263,6 +275,10 @@ public class TierImpl implements Tier {
 		// if theAnnotation has TimeSlots, they are supposed to be inserted in TimeOrder.
 		// Since annotations is a TreeSet, ordering will be on basis of Annotation.compareTo
 		annotations.add(theAnnotation);
+		annotationsChanged();
+		if (transcription != null) {
+			transcription.annotationAdded(this, theAnnotation);
+		}
 
 		// annotation time segments may now overlap. Since DobesTier (in this version) does
 		// not allow overlapping annotations, this should be corrected. In a more generic
@@ -498,6 +514,8 @@ public class TierImpl implements Tier {
 				//handleModification(ann, ACMEditEvent.CHANGE_ANNOTATION_TIME, ann);
 			}
 		}
+		// there is no event for the shifted annotations
+		trans.proposedTimesInvalidated();
 		return annosToShift.size();
 		//handleModification((ACMEditableObject)getParent(), ACMEditEvent.CHANGE_ANNOTATIONS, this);
 	}
@@ -513,6 +531,10 @@ public class TierImpl implements Tier {
 		// if theAnnotation has TimeSlots, they are supposed to be inserted in TimeOrder.
 		// Since annotations is a TreeSet, ordering will be on basis of Annotation.compareTo
 		annotations.add(theAnnotation);
+		annotationsChanged();
+		if (transcription != null && theAnnotation instanceof AbstractAnnotation) {
+			transcription.annotationAdded(this, (AbstractAnnotation) theAnnotation);
+		}
 	}
 	
 	/**
@@ -556,6 +578,55 @@ public class TierImpl implements Tier {
 		List<Annotation> v = new ArrayList<Annotation>(annotations);
 		annotations.clear();
 		annotations.addAll(v);
+		annotationsChanged();
+	}
+
+	/**
+	 * Registers a change in the set of annotations (addition, removal or 
+	 * reordering) so that the time index will be rebuilt when needed.
+	 */
+	private void annotationsChanged() {
+		annotationsModCount++;
+		if (transcription != null) {
+			transcription.timeStructureChanged();
+		}
+	}
+
+	/**
+	 * Returns the time index for the current state of the annotations and 
+	 * time slots or {@code null} if the caller should iterate the annotations.
+	 * The index is only built when the tier is queried a second time without
+	 * modifications in between, so that sequences of edits and queries (e.g.
+	 * in the process of correcting overlaps) don't pay the costs of building 
+	 * the index, while repeated queries (e.g. during playback) are answered 
+	 * by the index.
+	 * 
+	 * @return the current time index or {@code null}
+	 */
+	private TierTimeIndex getTimeIndex() {
+		long transStamp = transcription != null ? transcription.getTimeStructureStamp() : 0;
+		TierTimeIndex index = timeIndex;
+		if (index != null && index.transcriptionStamp == transStamp && 
+				index.tierModCount == annotationsModCount) {
+			return index;
+		}
+		synchronized (timeIndexLock) {
+			index = timeIndex;
+			int modCount = annotationsModCount;
+			if (index != null && index.transcriptionStamp == transStamp && 
+					index.tierModCount == modCount) {
+				return index;
+			}
+			if (lastQueryTranscriptionStamp == transStamp && lastQueryModCount == modCount) {
+				index = new TierTimeIndex(annotations, transStamp, modCount);
+				timeIndex = index;
+				return index;
+			}
+			timeIndex = null;
+			lastQueryTranscriptionStamp = transStamp;
+			lastQueryModCount = modCount;
+			return null;
+		}
 	}
 
 	/**
@@ -691,6 +762,11 @@ public class TierImpl implements Tier {
 		if(id == null) {
 			return null;
 		}
+		if (transcription != null && transcription.containsTier(this)) {
+			// use the transcription's id index
+			Annotation a = transcription.getAnnotationById(id);
+			return (a != null && a.getTier() == this) ? a : null;
+		}
 		for (Annotation a : annotations) {
 			if (id.equals(a.getId())) {
 				return a;
@@ -746,6 +822,10 @@ public class TierImpl implements Tier {
 	 * requested time, or {@code null}
 	 */
 	public Annotation getAnnotationBefore(long time) {
+		TierTimeIndex index = getTimeIndex();
+		if (index != null) {
+			return index.getAnnotationBefore(time);
+		}
 		Annotation previousAnnotation = null;
 		Annotation currentAnnotation = null;
 		Annotation foundAnnotation = null;
@@ -805,6 +885,10 @@ public class TierImpl implements Tier {
 	 * requested time
 	 */
 	public Annotation getAnnotationAfter(long time) {
+		TierTimeIndex index = getTimeIndex();
+		if (index != null) {
+			return index.getAnnotationAfter(time);
+		}
 		Annotation currentAnnotation = null;
 		Annotation resultAnnotation = null;
 
@@ -2120,6 +2204,10 @@ System.out.println("after correction:");
 					c.detachAnnotation(ann, this);
 				}
 				annotations.remove(ann);	// don't call removeAnnotation, to prevent multiple notifications
+				annotationsChanged();
+				if (transcription != null) {
+					transcription.annotationRemoved((AbstractAnnotation) ann);
+				}
 				somethingChanged = true;
 			}
 		}
@@ -2469,6 +2557,10 @@ System.out.println("after correction:");
 		Annotation result = null;
 
 			if (!isTimeAlignable() || !forceRecalculation) {
+				TierTimeIndex index = getTimeIndex();
+				if (index != null) {
+					return index.getAnnotationAtTime(theTime);
+				}
 				Iterator<Annotation> annIter = annotations.iterator();
 				while (annIter.hasNext()) {
 					Annotation ann = annIter.next();
@@ -2629,6 +2721,12 @@ System.out.println("after correction:");
 	public List<Annotation> getOverlappingAnnotations(long t1, long t2) {
 		//return getOverlappingAnnotations(t1, t2, false);
 		//  old implementation... 10-04
+		if (t1 <= t2) {
+			TierTimeIndex index = getTimeIndex();
+			if (index != null) {
+				return index.getOverlappingAnnotations(t1, t2);
+			}
+		}
 		List<Annotation> annots = new ArrayList<Annotation>();
 
 		for (Annotation ann : annotations) {
@@ -3115,6 +3213,8 @@ System.out.println("after correction:");
 
 			if (ann.isMarkedDeleted()) {
 			    annIter.remove();
+			    annotationsChanged();
+			    transcription.annotationRemoved((AbstractAnnotation) ann);
 			    transcription.modified(ACMEditEvent.REMOVE_ANNOTATION, ann);
 			}
 		}
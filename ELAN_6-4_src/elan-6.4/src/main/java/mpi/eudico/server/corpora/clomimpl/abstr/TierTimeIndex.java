@@ -0,0 +1,290 @@
+package mpi.eudico.server.corpora.clomimpl.abstr;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+import mpi.eudico.server.corpora.clom.Annotation;
+
+/**
+ * An immutable snapshot of the begin and end time boundaries of the
+ * annotations of a tier, supporting time based queries in logarithmic time
+ * (plus the number of results) instead of a linear iteration over all
+ * annotations.
+ * <p>
+ * The snapshot stores the annotations in the order of the tier's
+ * {@code TreeSet}, together with their (real or proposed) begin and end time
+ * boundaries, a running maximum of the end times and a max-end segment tree
+ * over the annotations sorted on their lowest time boundary (an implicit
+ * interval tree).
+ * The results of the queries are the same as those of the linear
+ * implementations in {@link TierImpl}, including the order of the returned
+ * annotations.
+ * <p>
+ * The snapshot is not updated when the time slots or the annotations of the
+ * tier change, the tier creates a new snapshot when needed.
+ *
+ * @see TierImpl#getAnnotationAtTime(long)
+ * @see TierImpl#getOverlappingAnnotations(long, long)
+ */
+final class TierTimeIndex {
+	/** the modification stamp of the transcription this index was built for */
+	final long transcriptionStamp;
+	/** the modification count of the tier this index was built for */
+	final int tierModCount;
+
+	/** the annotations in the order of the tier's {@code TreeSet} */
+	private final Annotation[] annots;
+	private final long[] begins;
+	private final long[] ends;
+	/** maxEnds[i] is the maximum of ends[0] to ends[i] */
+	private final long[] maxEnds;
+	/** tree order positions sorted on the lowest of begin and end time */
+	private final int[] byLow;
+	/** the sorted lowest time values, corresponding to byLow */
+	private final long[] lows;
+	/** segment tree of the maximum of the highest of begin and end time */
+	private final long[] highTree;
+	private final int leafOffset;
+
+	/**
+	 * Creates a new index for the annotations.
+	 *
+	 * @param annotations the annotations of a tier in their natural order
+	 * @param transcriptionStamp the modification stamp of the transcription
+	 * @param tierModCount the modification count of the tier
+	 */
+	TierTimeIndex(Collection<Annotation> annotations, long transcriptionStamp, int tierModCount) {
+		this.transcriptionStamp = transcriptionStamp;
+		this.tierModCount = tierModCount;
+
+		int n = annotations.size();
+		annots = annotations.toArray(new Annotation[n]);
+		begins = new long[n];
+		ends = new long[n];
+		maxEnds = new long[n];
+
+		boolean lowSorted = true;
+		long prevLow = Long.MIN_VALUE;
+		long maxEnd = Long.MIN_VALUE;
+		for (int i = 0; i < n; i++) {
+			begins[i] = annots[i].getBeginTimeBoundary();
+			ends[i] = annots[i].getEndTimeBoundary();
+			maxEnd = Math.max(maxEnd, ends[i]);
+			maxEnds[i] = maxEnd;
+			long low = Math.min(begins[i], ends[i]);
+			if (low < prevLow) {
+				lowSorted = false;
+			}
+			prevLow = low;
+		}
+
+		byLow = new int[n];
+		if (lowSorted) {
+			for (int i = 0; i < n; i++) {
+				byLow[i] = i;
+			}
+		} else {
+			// only in case of an inconsistent order of annotations, rare
+			Integer[] positions = new Integer[n];
+			for (int i = 0; i < n; i++) {
+				positions[i] = i;
+			}
+			Arrays.sort(positions, new Comparator<Integer>() {
+				@Override
+				public int compare(Integer o1, Integer o2) {
+					return Long.compare(low(o1), low(o2));
+				}
+			});
+			for (int i = 0; i < n; i++) {
+				byLow[i] = positions[i];
+			}
+		}
+
+		lows = new long[n];
+		int size = 1;
+		while (size < n) {
+			size <<= 1;
+		}
+		leafOffset = size;
+		highTree = new long[2 * size];
+		Arrays.fill(highTree, Long.MIN_VALUE);
+		for (int i = 0; i < n; i++) {
+			int p = byLow[i];
+			lows[i] = low(p);
+			highTree[size + i] = Math.max(begins[p], ends[p]);
+		}
+		for (int i = size - 1; i > 0; i--) {
+			highTree[i] = Math.max(highTree[2 * i], highTree[2 * i + 1]);
+		}
+	}
+
+	private long low(int position) {
+		return Math.min(begins[position], ends[position]);
+	}
+
+	/**
+	 * @return the number of annotations in the index
+	 */
+	int size() {
+		return annots.length;
+	}
+
+	/**
+	 * Returns the first annotation, in tier order, with a begin time less
+	 * than or equal to and an end time greater than the specified time.
+	 *
+	 * @param time the query time
+	 * @return the annotation at the specified time or {@code null}
+	 */
+	Annotation getAnnotationAtTime(long time) {
+		int[] cands = candidates(time, time);
+		int first = -1;
+		for (int i = 1; i <= cands[0]; i++) {
+			int p = cands[i];
+			if (begins[p] <= time && ends[p] > time && (first == -1 || p < first)) {
+				first = p;
+			}
+		}
+
+		return first > -1 ? annots[first] : null;
+	}
+
+	/**
+	 * Returns the annotations, in tier order, overlapping the specified
+	 * interval, using the same criteria as
+	 * {@link TierImpl#getOverlappingAnnotations(long, long)}.
+	 *
+	 * @param t1 the begin time of the interval
+	 * @param t2 the end time of the interval, should not be less than t1
+	 * @return a list of annotations, not {@code null}
+	 */
+	List<Annotation> getOverlappingAnnotations(long t1, long t2) {
+		int[] cands = candidates(t1, t2);
+		int count = 0;
+		for (int i = 1; i <= cands[0]; i++) {
+			int p = cands[i];
+			long b = begins[p];
+			long e = ends[p];
+			if (	((t1 <= b) && (b < t2)) ||
+					((t1 < e) && (e <= t2)) ||
+					((b <= t1) && (t1 < e)) ||
+					((b < t2) && (t2 <= e)) ) {
+				cands[++count] = p;
+			}
+		}
+		if (count == 0) {
+			return new ArrayList<Annotation>(0);
+		}
+		Arrays.sort(cands, 1, count + 1);
+		List<Annotation> result = new ArrayList<Annotation>(count);
+		for (int i = 1; i <= count; i++) {
+			result.add(annots[cands[i]]);
+		}
+
+		return result;
+	}
+
+	/**
+	 * Mirrors the behavior of the linear implementation of
+	 * {@link TierImpl#getAnnotationBefore(long)}.
+	 *
+	 * @param time the query time
+	 * @return the annotation preceding the first annotation with an end time
+	 * greater than the time, or the last annotation if its end time is less
+	 * than the time, or {@code null}
+	 */
+	Annotation getAnnotationBefore(long time) {
+		int n = annots.length;
+		if (n == 0) {
+			return null;
+		}
+		int first = firstEndingAfter(time);
+		if (first < n) {
+			return first > 0 ? annots[first - 1] : null;
+		}
+
+		return ends[n - 1] < time ? annots[n - 1] : null;
+	}
+
+	/**
+	 * @param time the query time
+	 * @return the first annotation, in tier order, with an end time greater
+	 * than the specified time, or {@code null}
+	 */
+	Annotation getAnnotationAfter(long time) {
+		int first = firstEndingAfter(time);
+
+		return first < annots.length ? annots[first] : null;
+	}
+
+	/**
+	 * Binary search in the running maximum of end times.
+	 *
+	 * @param time the query time
+	 * @return the position of the first annotation with an end time greater
+	 * than the time or the number of annotations if there is none
+	 */
+	private int firstEndingAfter(long time) {
+		int lo = 0;
+		int hi = maxEnds.length;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (maxEnds[mid] > time) {
+				hi = mid;
+			} else {
+				lo = mid + 1;
+			}
+		}
+		return lo;
+	}
+
+	/**
+	 * Collects the positions of all annotations of which the lowest time
+	 * boundary is less than or equal to {@code to} and the highest boundary
+	 * is greater than or equal to {@code from}.
+	 *
+	 * @param from the begin of the query interval
+	 * @param to the end of the query interval
+	 * @return an array of which the first element is the number of candidates,
+	 * followed by the tier order positions of the candidates
+	 */
+	private int[] candidates(long from, long to) {
+		// the number of annotations with a low value <= to
+		int lo = 0;
+		int hi = lows.length;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (lows[mid] <= to) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		int[] result = new int[9];
+		if (lo > 0) {
+			result = collect(1, 0, leafOffset, lo, from, result);
+		}
+		return result;
+	}
+
+	private int[] collect(int node, int nodeFrom, int nodeTo, int cut, long from, int[] result) {
+		if (nodeFrom >= cut || highTree[node] < from) {
+			return result;
+		}
+		if (node >= leafOffset) {
+			int count = result[0] + 1;
+			if (count == result.length) {
+				result = Arrays.copyOf(result, result.length * 2);
+			}
+			result[count] = byLow[nodeFrom];
+			result[0] = count;
+			return result;
+		}
+		int mid = (nodeFrom + nodeTo) >>> 1;
+		result = collect(2 * node, nodeFrom, mid, cut, from, result);
+		return collect(2 * node + 1, mid, nodeTo, cut, from, result);
+	}
+}
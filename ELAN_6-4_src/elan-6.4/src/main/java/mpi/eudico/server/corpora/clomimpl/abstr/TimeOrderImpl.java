@@ -15,10 +15,19 @@ import mpi.eudico.server.corpora.clom.TimeSlot;
  * comparing TimeSlots in the TimeSlot's compareTo method. Given a constructed
  * TimeOrder, it is then sufficient to add TimeSlots to a TreeSet, they will
  * be ordered according to the TimeOrder automatically.
+ * <p>
+ * The index values of the slots are strictly increasing in the order of the
+ * slots, but they are not consecutive: there are gaps between the index
+ * values so that a slot can be inserted without renumbering all following
+ * slots. When there is no gap at the insertion point, only the slots in a
+ * small region around it are renumbered. The position of a slot in the list
+ * can be found by a binary search on its index value.
  *
  * @author Hennie Brugman
  */
 public class TimeOrderImpl implements TimeOrder {
+    /** the default distance between index values of consecutive slots */
+    private static final int INDEX_SPACING = 1 << 10;
     private ArrayList<TimeSlot> orderedTimeSlotList; // indeed requires an array
     private TranscriptionImpl transcription;
 
@@ -42,64 +51,152 @@ public class TimeOrderImpl implements TimeOrder {
     @Override
 	public void insertTimeSlot(TimeSlot theTimeSlot) {
         if (theTimeSlot.isTimeAligned()) {
-            int index = 0;
-            long time = theTimeSlot.getTime();
-
-            if (orderedTimeSlotList.size() > 0) {
-                Iterator<TimeSlot> tsIter = orderedTimeSlotList.iterator();
-
-                /*
-                 * Puts the new timeslot just before the one that's later.
-                 * UNALIGNED slots are 0 or -1 or so, so it skips them too.
-                 * It is probably better to put aligned slots of the same time
-                 * all together. I have not checked what other effects that may have.
-                 */
-                while (tsIter.hasNext()) {
-                    if (tsIter.next().getTime() > time) {
-                        break;
-                    }
-
-                    index++;
-                }
-            }
+            /*
+             * Puts the new timeslot just before the first aligned one that's later.
+             * UNALIGNED slots are 0 or -1 or so, so it skips them too.
+             * It is probably better to put aligned slots of the same time
+             * all together. I have not checked what other effects that may have.
+             */
+            int index = firstAlignedSlotAfter(theTimeSlot.getTime());
 
             orderedTimeSlotList.add(index, theTimeSlot);
-            reindex(index);
+            indexInserted(index);
         } else { // not time aligned
             orderedTimeSlotList.add(theTimeSlot); // at end
-            reindex(orderedTimeSlotList.size() - 1);
+            indexInserted(orderedTimeSlotList.size() - 1);
+        }
+    }
+
+    /**
+     * Binary search for the first aligned slot with a time value greater 
+     * than the specified time. Unaligned slots are skipped, it is assumed 
+     * that the aligned slots are ordered by time.
+     * 
+     * @param time the time value
+     * @return the position of the first aligned slot with a greater time 
+     * value, or the size of the list if there is no such slot
+     */
+    private int firstAlignedSlotAfter(long time) {
+        int result = orderedTimeSlotList.size();
+        int lo = 0;
+        int hi = result;
+
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            int m = mid;
+            while (m < hi && !orderedTimeSlotList.get(m).isTimeAligned()) {
+                m++;
+            }
+            if (m == hi) {
+                hi = mid;
+            } else if (orderedTimeSlotList.get(m).getTime() > time) {
+                result = m;
+                hi = mid;
+            } else {
+                lo = m + 1;
+            }
         }
 
-        //reindex();
+        return result;
     }
 
     /**
-     * Assign its sequence number to each timeslot such that
-     * <code>orderedTimeSlotList.get(i).getIndex() == i</code>.
+     * Returns the position of the slot in the list, based on a binary search
+     * for its index value.
+     * 
+     * @param theSlot the slot to find
+     * @return the position of the slot or -1 if it is not in the list
+     */
+    private int positionOf(TimeSlot theSlot) {
+        final int index = theSlot.getIndex();
+        int lo = 0;
+        int hi = orderedTimeSlotList.size() - 1;
+
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            TimeSlot ts = orderedTimeSlotList.get(mid);
+            if (ts.getIndex() < index) {
+                lo = mid + 1;
+            } else if (ts.getIndex() > index) {
+                hi = mid - 1;
+            } else {
+                if (ts == theSlot) {
+                    return mid;
+                }
+                break;
+            }
+        }
+        // the index of the slot is not (or no longer) valid for this order
+        return orderedTimeSlotList.indexOf(theSlot);
+    }
+
+    /**
+     * Renumbers all slots, leaving gaps of equal size between the index values.
      */
     private void reindex() {
-    	reindex(0);
+        final int size = orderedTimeSlotList.size();
+        final long step = Math.max(1, Math.min(INDEX_SPACING, 
+        		(Integer.MAX_VALUE - 1L) / (size + 1)));
+
+        for (int i = 0; i < size; i++) {
+        	orderedTimeSlotList.get(i).setIndex((int) ((i + 1) * step));
+        }
+        timeSlotChanged();
     }
     
     /**
-     * A refined version of reindex: change the index of the slots from a certain
-     * point, e.g. after insertion of a slot at a certain index.
+     * Assigns an index value to the slot that has been inserted at the 
+     * specified position. If there is no room between the index values of
+     * the neighbouring slots, a region around the position is renumbered.
      *  
-     * @param fromIndex the index to start reindexing from
+     * @param position the position of the new slot in the list
      */
-    private void reindex(int fromIndex) {
-    	final int size = orderedTimeSlotList.size();
-		for (int i = fromIndex; i < size; i++) {
-			orderedTimeSlotList.get(i).setIndex(i);
-    	}
-    	/*
-    	System.out.print("Size: " + orderedTimeSlotList.size() + " from: " + fromIndex);
-    	if (orderedTimeSlotList.size() > 0) {
-			System.out.print(" first: " + ((TimeSlot) orderedTimeSlotList.get(0)).getIndex());
-			System.out.println(" last: " + ((TimeSlot) orderedTimeSlotList.get(
-				orderedTimeSlotList.size() - 1)).getIndex());
+    private void indexInserted(int position) {
+        final int size = orderedTimeSlotList.size();
+        long prev = position > 0 ? orderedTimeSlotList.get(position - 1).getIndex() : -1;
+        long next = position < size - 1 ? 
+        		orderedTimeSlotList.get(position + 1).getIndex() : Integer.MAX_VALUE;
+
+        if (next - prev > 1) {
+        	long index = prev + Math.min(INDEX_SPACING, (next - prev) / 2);
+        	orderedTimeSlotList.get(position).setIndex((int) index);
+        	timeSlotChanged();
+        	return;
+        }
+        // no gap, find a surrounding region that is sparse enough
+        int width = 1;
+        while (true) {
+        	int from = Math.max(0, position - width);
+        	int to = Math.min(size - 1, position + width);
+        	long low = from > 0 ? orderedTimeSlotList.get(from - 1).getIndex() : -1;
+        	long high = to < size - 1 ? 
+        			orderedTimeSlotList.get(to + 1).getIndex() : Integer.MAX_VALUE;
+        	long count = to - from + 1;
+
+        	if (high - low - 1 >= 4 * count) {
+        		long step = Math.min(INDEX_SPACING, (high - low) / (count + 1));
+        		for (int i = from; i <= to; i++) {
+        			orderedTimeSlotList.get(i).setIndex((int) (low + (i - from + 1) * step));
+        		}
+        		timeSlotChanged();
+        		return;
+        	}
+        	if (from == 0 && to == size - 1) {
+        		reindex();
+        		return;
+        	}
+        	width *= 2;
+        }
+    }
+
+    /**
+     * Notifies the transcription of a change in the order or in the time
+     * values of the slots.
+     */
+    void timeSlotChanged() {
+    	if (transcription != null) {
+    		transcription.timeStructureChanged();
     	}
-		*/
     }
 
     /**
@@ -117,37 +214,25 @@ public class TimeOrderImpl implements TimeOrder {
         int index = 0;
         boolean positioned = false;
         long time = theTimeSlot.getTime();
+        final int size = orderedTimeSlotList.size();
 
-        // iterate until afterSlot
-        Iterator<TimeSlot> tsIter = orderedTimeSlotList.iterator();
-
-        while (tsIter.hasNext()) {
-            index++;
-
-            if (tsIter.next() == afterSlot) {
-                break;
-            }
-        }
+        // find afterSlot
+        int afterPos = afterSlot != null ? positionOf(afterSlot) : -1;
+        index = afterPos > -1 ? afterPos + 1 : size;
         
-        if (!tsIter.hasNext()) {	// at end of time order
+        if (index >= size) {	// at end of time order
         	positioned = true;
         }
 
         // iterate until time > theTimeSlot's time, or until beforeSlot is reached
-        while (tsIter.hasNext()) {
-            TimeSlot ts = tsIter.next();
+        for (int i = index; i < size; i++) {
+            TimeSlot ts = orderedTimeSlotList.get(i);
 
             if ((ts.isTimeAligned()) && (ts.getTime() > time)) {// must be >= ? test!
                 positioned = true;
-
-                //	if (!theTimeSlot.isTimeAligned() && (beforeSlot == null)) {	// AD HOC !!!???
-                //		index++;
-                //	}
                 break;
             } else {
                 if (!theTimeSlot.isTimeAligned() && (beforeSlot == null)) { // AD HOC !!!???
-
-                    //	    	index++;
                     positioned = true;
 
                     break;
@@ -166,29 +251,27 @@ public class TimeOrderImpl implements TimeOrder {
         }
 
         // insert
-        tsIter = null; // to prevent ConcurrentModificationExceptions
-
         if (positioned) {
             orderedTimeSlotList.add(index, theTimeSlot);
-			reindex(index);
+            indexInserted(index);
         } else {
         	System.out.println("Not positioned...");
-			reindex();
         }
-
-        // reindex
-        //reindex();
     }
 
     /**
-     * Removes a {@link TimeSlot} and triggers re-index. 
+     * Removes a {@link TimeSlot}, the other slots don't need to be renumbered.
      *
      * @param theSlot the {@code TimeSlot} to remove
      */
     @Override
 	public void removeTimeSlot(TimeSlot theSlot) {
-        orderedTimeSlotList.remove(theSlot);
-        reindex();
+        int position = positionOf(theSlot);
+        if (position > -1) {
+        	// the index values of the remaining slots are still in ascending order
+        	orderedTimeSlotList.remove(position);
+        	timeSlotChanged();
+        }
     }
 
     /**
@@ -238,14 +321,13 @@ public class TimeOrderImpl implements TimeOrder {
      */
     @Override
 	public TimeSlot getPredecessorOf(TimeSlot timeSlot) {
-    	int index = timeSlot.getIndex();
+    	int position = positionOf(timeSlot);
 
-    	// Do a quick consistency check if the recorded index seems correct.
-    	if (index > 0 && orderedTimeSlotList.get(index) == timeSlot) {
-    		return orderedTimeSlotList.get(index - 1);
+    	if (position > 0) {
+    		return orderedTimeSlotList.get(position - 1);
     	}
     	
-    	// First timeslot, or index not correct.
+    	// First timeslot, or not in this order.
     	return null;
     }
 
@@ -289,27 +371,22 @@ public class TimeOrderImpl implements TimeOrder {
      */
     @Override
 	public void pruneTimeSlots() {
-        List<TimeSlot> slotsToBeDeleted = new ArrayList<TimeSlot>();
-
         Set<TimeSlot> usedSlots = transcription.getTimeSlotsInUse();
-        TimeSlot ts = null;
-        
-        for (int i = orderedTimeSlotList.size() - 1; i >= 0; i--) {
-        	ts = orderedTimeSlotList.get(i);
+        final int size = orderedTimeSlotList.size();
+        int numKept = 0;
+
+        // compact the list in place, the order of the index values is preserved
+        for (int i = 0; i < size; i++) {
+        	TimeSlot ts = orderedTimeSlotList.get(i);
         	
-        	if (!usedSlots.contains(ts)) {
-        		slotsToBeDeleted.add(ts);
+        	if (usedSlots.contains(ts)) {
+        		orderedTimeSlotList.set(numKept++, ts);
         	}
         }
 
-        if (!slotsToBeDeleted.isEmpty()) {
-	        //System.out.println("num of ts before: " + orderedTimeSlotList.size());
-	        //System.out.println("num of slots to be deleted: " + slotsToBeDeleted.size());		
-	        orderedTimeSlotList.removeAll(slotsToBeDeleted);
-	
-	        //System.out.println("num of ts after: " + orderedTimeSlotList.size());
-	        // re-index
-	        reindex();
+        if (numKept < size) {
+	        orderedTimeSlotList.subList(numKept, size).clear();
+	        timeSlotChanged();
         }
     }
     
@@ -394,7 +471,7 @@ public class TimeOrderImpl implements TimeOrder {
     @Override
 	public void modifyTimeSlot(TimeSlot theSlot, long newTime) {
         // find theSlot
-        int currentIndex = orderedTimeSlotList.indexOf(theSlot);
+        int currentIndex = positionOf(theSlot);
         int newIndex = -1;
 		
         // if newTime > theSlot time, check if to be moved right
@@ -436,7 +513,7 @@ public class TimeOrderImpl implements TimeOrder {
                 orderedTimeSlotList.add(newIndex /* -1 */, theSlot);
             }
 
-            reindex();
+            indexInserted(newIndex);
         }
     }
     
@@ -588,9 +665,14 @@ public class TimeOrderImpl implements TimeOrder {
 	/**
 	 * Add a list of TimeSlots in one operation. <br>
 	 * <b>Note: </b> it is assumed that the TimeSlots in the list are ordered!
-	 * They are appended to any existing TimeSlots, without performing any checks.
+	 * If the TimeOrder is empty the slots are added without performing any 
+	 * checks, otherwise they are merged with the existing slots in a single 
+	 * pass: an aligned slot is inserted after all existing slots with a time
+	 * less than or equal to its time (as in {@link #insertTimeSlot(TimeSlot)}),
+	 * an unaligned slot directly after its predecessor in the list. 
 	 * This method is intended to be used at loading time, i.e. where an .eaf (or other
-	 * source file) is transformed into a Transcription object.
+	 * source file) is transformed into a Transcription object, or for bulk 
+	 * creation of annotations.
 	 *  
  	 * @param slots a collection of ordered Time Slots
 	 */
@@ -599,7 +681,26 @@ public class TimeOrderImpl implements TimeOrder {
 			return;
 		}
 		
-		orderedTimeSlotList.addAll(slots);
+		if (orderedTimeSlotList.isEmpty()) {
+			orderedTimeSlotList.addAll(slots);
+		} else {
+			List<TimeSlot> existing = orderedTimeSlotList;
+			orderedTimeSlotList = new ArrayList<TimeSlot>(existing.size() + slots.size());
+			int i = 0;
+			
+			for (TimeSlot slot : slots) {
+				if (slot.isTimeAligned()) {
+					while (i < existing.size() && (!existing.get(i).isTimeAligned() || 
+							existing.get(i).getTime() <= slot.getTime())) {
+						orderedTimeSlotList.add(existing.get(i++));
+					}
+				}
+				orderedTimeSlotList.add(slot);
+			}
+			while (i < existing.size()) {
+				orderedTimeSlotList.add(existing.get(i++));
+			}
+		}
 		reindex();
 	}
 }
@@ -3,8 +3,10 @@ package mpi.eudico.server.corpora.clomimpl.abstr;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeSet;
 
 import mpi.eudico.server.corpora.clom.Annotation;
@@ -20,10 +22,40 @@ import mpi.eudico.server.corpora.util.ACMEditableObject;
  * time-alignable tier. <br>
  * <b>Note: </b>the virtual times should be calculated and recalculated
  * <i>after</i> (not during) every relevant edit action.
+ * <p>
+ * After the initial calculation for the whole transcription, the virtual 
+ * times are recalculated only for the annotation hierarchies that are 
+ * affected by a modification. The root annotation (the annotation on the
+ * top level tier) of each annotation on a dependent tier is stored for this 
+ * purpose. While the transcription does not notify its listeners (usually
+ * during the execution of a command) the root annotations affected by the
+ * modifications are collected, at the end of such a batch each of these
+ * hierarchies is recalculated once. The whole transcription is recalculated
+ * instead if the batch contained a modification of the tiers or any other 
+ * modification whose effect on the hierarchies is not known. If a virtual
+ * time is requested during the batch, the hierarchies collected so far are 
+ * recalculated first.
  *
  * @author Han Sloetjes
+ * @version Oct 2026 incremental recalculation of the virtual times
  */
 public class TimeProposer {
+    /** whether the virtual times are recalculated only for the modified hierarchies */
+    private final boolean incremental = Boolean.parseBoolean(
+            System.getProperty("ELAN.TimeProposer.Incremental", "true"));
+    /** maps annotations on dependent tiers to the annotation on the top level tier */
+    private final Map<Annotation, AlignableAnnotation> rootAnnotations = 
+            new HashMap<Annotation, AlignableAnnotation>();
+    /** maps root annotations to the annotations stored for them in rootAnnotations */
+    private final Map<AlignableAnnotation, List<Annotation>> hierarchies = 
+            new HashMap<AlignableAnnotation, List<Annotation>>();
+    /** the root annotations affected by the modifications of the current batch */
+    private final Set<AlignableAnnotation> dirtyRoots = new LinkedHashSet<AlignableAnnotation>();
+    /** whether listeners of the transcription are currently not notified */
+    private boolean batching;
+    /** whether all virtual times have to be recalculated at the end of the (next) batch */
+    private boolean recalculateAll;
+
     /**
      * No-arg constructor. There might be a constructor with an Transcription
      * as an argument.
@@ -43,6 +75,15 @@ public class TimeProposer {
         ACMEditableObject source, int operation, Object modification) {
         //System.out.println("TLV::ACMEdited:: operation: " + operation + ", invalidated: " + source);
         //System.out.println("\tmodification: " + modification);
+        // recalculations are postponed to the end of a batch
+        boolean deferred = batching && incremental && 
+                (transcription != null) && !transcription.isNotifying();
+
+        if (!deferred) {
+            // left over from a batch that did not end with a notification
+            recalculateDirtyRoots();
+        }
+
         if ((transcription != null) &&
                 (transcription.getTimeChangePropagationMode() != Transcription.NORMAL)) {
             correctAllProposedTimes(transcription);
@@ -50,6 +91,219 @@ public class TimeProposer {
             return;
         }
 
+        if (!incremental) {
+            correctProposedTimesFully(transcription, operation, modification);
+
+            return;
+        }
+
+        List<AlignableAnnotation> roots = new ArrayList<AlignableAnnotation>(3);
+
+        switch (operation) {
+        case ACMEditEvent.ADD_ANNOTATION_AFTER:
+        case ACMEditEvent.ADD_ANNOTATION_BEFORE:
+        case ACMEditEvent.ADD_ANNOTATION_HERE:
+            if (!(modification instanceof AlignableAnnotation) ||
+                    !((TierImpl) ((Annotation) modification).getTier()).hasParentTier()) {
+                // if this is a root tier there can be no unaligned annotations
+                return;
+            }
+
+            AlignableAnnotation added = (AlignableAnnotation) modification;
+            AlignableAnnotation addedRoot = getRootAnnotation(added);
+
+            if (deferred && (addedRoot != null)) {
+                // the annotation can be removed again before its hierarchy is recalculated
+                storeRootAnnotation(added, addedRoot);
+            }
+
+            roots.add(addedRoot);
+
+            break;
+
+        case ACMEditEvent.REMOVE_ANNOTATION:
+            if (modification == null) {
+                // the removed annotations are unknown
+                correctAllProposedTimes(transcription);
+
+                return;
+            }
+
+            if (!(modification instanceof AlignableAnnotation)) {
+                // only alignable annotations refer to time slots
+                return;
+            }
+
+            AlignableAnnotation removed = (AlignableAnnotation) modification;
+            AlignableAnnotation removedRoot = rootAnnotations.get(removed);
+
+            if (removedRoot != null) {
+                // the recalculation replaces the stored descendants of the root
+                roots.add(removedRoot);
+            } else if ((removed.getTier() != null) &&
+                    !((TierImpl) removed.getTier()).hasParentTier()) {
+                // the hierarchy of a removed root annotation is gone
+                removeHierarchy(removed);
+                dirtyRoots.remove(removed);
+
+                return;
+            } else {
+                // unknown hierarchy
+                roots.add(null);
+            }
+
+            break;
+
+        case ACMEditEvent.CHANGE_ANNOTATION_TIME:
+            if (!(modification instanceof AlignableAnnotation)) {
+                correctAllProposedTimes(transcription);
+
+                return;
+            }
+
+            AlignableAnnotation changed = (AlignableAnnotation) modification;
+            AlignableAnnotation changedRoot = getRootAnnotation(changed);
+            roots.add(changedRoot);
+
+            if (changedRoot == changed) {
+                // overlapping neighbors on the root tier have been shortened
+                TreeSet<Annotation> tierAnnotations = ((TierImpl) changed.getTier()).annotations;
+                Annotation neighbor = tierAnnotations.lower(changed);
+
+                if (neighbor instanceof AlignableAnnotation) {
+                    roots.add((AlignableAnnotation) neighbor);
+                }
+
+                neighbor = tierAnnotations.higher(changed);
+
+                if (neighbor instanceof AlignableAnnotation) {
+                    roots.add((AlignableAnnotation) neighbor);
+                }
+            }
+
+            break;
+
+        case ACMEditEvent.CHANGE_ANNOTATIONS:
+            correctAllProposedTimes(transcription);
+
+            return;
+
+        case ACMEditEvent.CHANGE_ANNOTATION_VALUE:
+        case ACMEditEvent.CHANGE_ANNOTATION_GRAPHICS:
+        case ACMEditEvent.CHANGE_ANNOTATION_EXTERNAL_REFERENCE:
+        case ACMEditEvent.CHANGE_CONTROLLED_VOCABULARY:
+        case ACMEditEvent.ADD_LEXICON_QUERY_BUNDLE:
+        case ACMEditEvent.CHANGE_LEXICON_QUERY_BUNDLE:
+        case ACMEditEvent.DELETE_LEXICON_LINK:
+        case ACMEditEvent.ADD_LEXICON_LINK:
+        case ACMEditEvent.ADD_COMMENT:
+        case ACMEditEvent.REMOVE_COMMENT:
+        case ACMEditEvent.CHANGE_COMMENT:
+        case ACMEditEvent.ADD_REFERENCE_LINK:
+        case ACMEditEvent.REMOVE_REFERENCE_LINK:
+        case ACMEditEvent.CHANGE_REFERENCE_LINK:
+        case ACMEditEvent.ADD_REFERENCE_LINK_SET:
+        case ACMEditEvent.REMOVE_REFERENCE_LINK_SET:
+            // no effect on time slots
+            return;
+
+        default:
+            // modifications of tiers and types, or unknown modifications; 
+            // annotations can have been added or removed without an event of their own
+            invalidateAll();
+
+            return;
+        }
+
+        if (roots.contains(null)) {
+            correctAllProposedTimes(transcription);
+
+            return;
+        }
+
+        if (deferred) {
+            dirtyRoots.addAll(roots);
+
+            return;
+        }
+
+        for (AlignableAnnotation root : roots) {
+            recalculateHierarchy(root);
+        }
+    }
+
+    /**
+     * Recalculates the hierarchies that have been collected in the current
+     * batch. Called at the end of the batch and before a virtual time is 
+     * used during the batch.
+     */
+    void recalculateDirtyRoots() {
+        if (dirtyRoots.isEmpty()) {
+            return;
+        }
+
+        List<AlignableAnnotation> roots = new ArrayList<AlignableAnnotation>(dirtyRoots);
+        dirtyRoots.clear();
+
+        for (AlignableAnnotation root : roots) {
+            if (!root.isMarkedDeleted()) {
+                recalculateHierarchy(root);
+            }
+        }
+    }
+
+    /**
+     * Marks all virtual times as possibly out of date, e.g. after a
+     * modification that did not produce an event. The whole transcription
+     * is recalculated at the end of the current or next batch.
+     */
+    void invalidateAll() {
+        recalculateAll = true;
+    }
+
+    /**
+     * Notifies the proposer of the start of a batch of modifications, the
+     * listeners of the transcription are not notified until the end of the
+     * batch.
+     * 
+     * @see TranscriptionImpl#setNotifying(boolean)
+     */
+    void startBatch() {
+        batching = true;
+    }
+
+    /**
+     * Recalculates the virtual times at the end of a batch of modifications.
+     * Each hierarchy affected by the annotation modifications in the batch
+     * is recalculated once. All virtual times are recalculated if the batch 
+     * (or a modification preceding it) could not be handled incrementally, 
+     * or if no batch was started. 
+     *
+     * @param transcription the Transcription
+     * @see TranscriptionImpl#setNotifying(boolean)
+     */
+    void endBatch(TranscriptionImpl transcription) {
+        if (!batching || !incremental || recalculateAll ||
+                ((transcription != null) &&
+                (transcription.getTimeChangePropagationMode() != Transcription.NORMAL))) {
+            correctAllProposedTimes(transcription);
+        } else {
+            recalculateDirtyRoots();
+        }
+
+        batching = false;
+    }
+
+    /**
+     * The original, non incremental, handling of modifications: all
+     * unaligned slots are recalculated for most types of modifications.
+     *
+     * @param transcription the Transcription
+     * @param operation the type of edit
+     * @param modification the modified or modifying object
+     */
+    private void correctProposedTimesFully(TranscriptionImpl transcription,
+        int operation, Object modification) {
         Annotation modAnnotation;
         TierImpl invalidTier;
 
@@ -123,6 +377,121 @@ public class TimeProposer {
         calculateProposedTimesForPL(rootAnn);
     }
 
+    /**
+     * Returns the annotation on the top level tier the specified annotation
+     * depends on. The stored root annotation is returned if there is one,
+     * otherwise the parent annotations are traversed. 
+     *
+     * @param annotation the annotation
+     *
+     * @return the root annotation, the annotation itself if it is on a top 
+     * level tier, or {@code null} if it could not be determined
+     */
+    private AlignableAnnotation getRootAnnotation(AlignableAnnotation annotation) {
+        Annotation ann = annotation;
+
+        while ((ann != null) && (ann.getTier() != null) &&
+                ((TierImpl) ann.getTier()).hasParentTier()) {
+            AlignableAnnotation root = rootAnnotations.get(ann);
+
+            if ((root != null) && !root.isMarkedDeleted()) {
+                return root;
+            }
+
+            ann = ann.getParentAnnotation();
+        }
+
+        if ((ann instanceof AlignableAnnotation) && (ann.getTier() != null)) {
+            return (AlignableAnnotation) ann;
+        }
+
+        return null;
+    }
+
+    /**
+     * Recalculates the virtual times in the hierarchy of a root annotation 
+     * and stores the root annotation for all annotations in the hierarchy.
+     *
+     * @param rootAnn the annotation on the top level tier
+     */
+    private void recalculateHierarchy(AlignableAnnotation rootAnn) {
+        calculateProposedTimesForPL(rootAnn);
+
+        if (incremental) {
+            // replaces the descendants stored for the root, including removed ones
+            removeHierarchy(rootAnn);
+
+            List<Annotation> descendants = new ArrayList<Annotation>();
+            storeRootAnnotation(rootAnn, rootAnn, descendants);
+
+            if (!descendants.isEmpty()) {
+                hierarchies.put(rootAnn, descendants);
+            }
+        }
+    }
+
+    /**
+     * Stores the root annotation for an annotation that has been added to
+     * its hierarchy, until the hierarchy is recalculated.
+     *
+     * @param annotation the added annotation
+     * @param rootAnn the root annotation
+     */
+    private void storeRootAnnotation(AlignableAnnotation annotation, AlignableAnnotation rootAnn) {
+        if (annotation == rootAnn) {
+            return;
+        }
+
+        List<Annotation> descendants = hierarchies.get(rootAnn);
+
+        if (descendants == null) {
+            descendants = new ArrayList<Annotation>();
+            hierarchies.put(rootAnn, descendants);
+        }
+
+        rootAnnotations.put(annotation, rootAnn);
+        descendants.add(annotation);
+    }
+
+    /**
+     * Removes the stored root annotation of the descendants of a root 
+     * annotation.
+     *
+     * @param rootAnn the root annotation
+     */
+    private void removeHierarchy(AlignableAnnotation rootAnn) {
+        List<Annotation> descendants = hierarchies.remove(rootAnn);
+
+        if (descendants != null) {
+            for (Annotation ann : descendants) {
+                rootAnnotations.remove(ann, rootAnn);
+            }
+        }
+    }
+
+    /**
+     * Stores the root annotation for the alignable descendants of an 
+     * annotation. Recursive.
+     *
+     * @param parent the parent annotation
+     * @param rootAnn the root annotation
+     * @param descendants the list to add the descendants to
+     */
+    private void storeRootAnnotation(AlignableAnnotation parent, AlignableAnnotation rootAnn,
+            List<Annotation> descendants) {
+        List<Annotation> pList = parent.getParentListeners();
+
+        for (int i = 0; i < pList.size(); i++) {
+            Annotation ann = pList.get(i);
+
+            if (ann instanceof AlignableAnnotation) {
+                rootAnnotations.put(ann, rootAnn);
+                descendants.add(ann);
+                storeRootAnnotation((AlignableAnnotation) ann, rootAnn, descendants);
+            }
+        }
+    }
+
     /**
      * Recalculates all unaligned slots of the Transcription.
      *
@@ -133,6 +502,12 @@ public class TimeProposer {
             return;
         }
 
+        rootAnnotations.clear();
+        hierarchies.clear();
+        // all hierarchies are up to date now
+        recalculateAll = false;
+        dirtyRoots.clear();
+
         List<TierImpl> allTiers = null;
         List<TierImpl> allTierCopy = null;
 
@@ -160,7 +535,7 @@ public class TimeProposer {
                     if (aa instanceof AlignableAnnotation) {
                         //calculateProposedTimes(orderedTiers,
                         //    (AlignableAnnotation) aa);
-                    	calculateProposedTimesForPL((AlignableAnnotation) aa);
+                    	recalculateHierarchy((AlignableAnnotation) aa);
                     }
                 }
             }
@@ -0,0 +1,173 @@
+package mpi.eudico.server.corpora.clomimpl.abstr;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import mpi.eudico.server.corpora.event.ACMEditEvent;
+
+/**
+ * A simple benchmark for the recalculation of the virtual times of unaligned
+ * time slots by the {@link TimeProposer} after a modification. For a number
+ * of transcription sizes a file is created with a top level tier, a time
+ * subdivision tier with 4 annotations per top level annotation and a second
+ * time subdivision tier with 3 annotations per annotation on the first
+ * dependent tier. Of a number of annotations on the first dependent tier the
+ * begin time is changed (like dragging a boundary); the average time per
+ * edit is reported, as well as the time needed by the time proposer alone,
+ * with incremental and with full recalculation.
+ * <p>
+ * Usage: {@code TimeProposerBenchmark [number of top level annotations]...}
+ */
+public class TimeProposerBenchmark {
+	private static final int NUM_EDITS = 50;
+
+	/**
+	 * Runs the benchmark.
+	 *
+	 * @param args optionally one or more numbers of top level annotations
+	 * @throws IOException if the creation of a file fails
+	 */
+	public static void main(String[] args) throws IOException {
+		int[] sizes = {500, 1000, 2000, 4000};
+		if (args.length > 0) {
+			sizes = new int[args.length];
+			for (int i = 0; i < args.length; i++) {
+				sizes[i] = Integer.parseInt(args[i]);
+			}
+		}
+		// the xs:key checks of the schema validation take quadratic time for
+		// files of this size (as does the registration of annotations with
+		// their parent while loading, which limits the default sizes)
+		System.setProperty("ELAN.EAF.Validate", "false");
+
+		for (int size : sizes) {
+			TranscriptionImpl transcription = createTranscription(size);
+			List<AbstractAnnotation> words = transcription.getTierWithId("words").getAnnotations();
+			System.out.println(String.format("%d top level annotations, %d annotations in total",
+					size, size * 17));
+
+			long start = System.nanoTime();
+			for (int i = 0; i < NUM_EDITS; i++) {
+				AlignableAnnotation word = getEditedWord(words, size, i);
+				word.updateTimeInterval(word.getBeginTimeBoundary() + 10, word.getEndTimeBoundary());
+			}
+			System.out.println(String.format("  edit, including the time proposer:  %10.3f ms/edit",
+					(System.nanoTime() - start) / (NUM_EDITS * 1000000.0)));
+
+			TimeProposer proposer = new TimeProposer();
+			proposer.correctProposedTimes(transcription, null, ACMEditEvent.CHANGE_ANNOTATIONS, null);
+			System.out.println(String.format("  time proposer, incremental:         %10.3f ms/edit",
+					timeProposer(proposer, transcription, words, size)));
+
+			System.setProperty("ELAN.TimeProposer.Incremental", "false");
+			proposer = new TimeProposer();
+			System.clearProperty("ELAN.TimeProposer.Incremental");
+			System.out.println(String.format("  time proposer, full recalculation:  %10.3f ms/edit",
+					timeProposer(proposer, transcription, words, size)));
+		}
+	}
+
+	/**
+	 * Returns the second word of one of the top level annotations, spread
+	 * evenly over the transcription.
+	 */
+	private static AlignableAnnotation getEditedWord(List<AbstractAnnotation> words, int size, int edit) {
+		int root = ((edit + 1) * size) / (NUM_EDITS + 1);
+		return (AlignableAnnotation) words.get((root * 4) + 1);
+	}
+
+	/**
+	 * Notifies the time proposer of the time change of the edited annotations.
+	 *
+	 * @return the average time in ms per notification
+	 */
+	private static double timeProposer(TimeProposer proposer, TranscriptionImpl transcription,
+			List<AbstractAnnotation> words, int size) {
+		long start = System.nanoTime();
+		for (int i = 0; i < NUM_EDITS; i++) {
+			AlignableAnnotation word = getEditedWord(words, size, i);
+			proposer.correctProposedTimes(transcription, word, ACMEditEvent.CHANGE_ANNOTATION_TIME, word);
+		}
+		return (System.nanoTime() - start) / (NUM_EDITS * 1000000.0);
+	}
+
+	/**
+	 * Writes a file with the specified number of top level annotations to a
+	 * temporary file and loads it. Only the begin and end slot of each top
+	 * level annotation are aligned.
+	 */
+	private static TranscriptionImpl createTranscription(int size) throws IOException {
+		File eafFile = File.createTempFile("time-proposer-bench", ".eaf");
+		eafFile.deleteOnExit();
+
+		try (PrintWriter writer = new PrintWriter(new BufferedWriter(new OutputStreamWriter(
+				new FileOutputStream(eafFile), StandardCharsets.UTF_8)))) {
+			writer.println("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+			writer.println("<ANNOTATION_DOCUMENT AUTHOR=\"\" DATE=\"2026-10-01T00:00:00+01:00\" "
+					+ "FORMAT=\"3.0\" VERSION=\"3.0\">");
+			writer.println("<HEADER MEDIA_FILE=\"\" TIME_UNITS=\"milliseconds\"/>");
+			writer.println("<TIME_ORDER>");
+			for (int r = 0; r < size; r++) {
+				// a root of 1500 ms, 4 words of 3 morphemes: 13 slots
+				for (int s = 0; s <= 12; s++) {
+					writer.print("<TIME_SLOT TIME_SLOT_ID=\"" + slot(r, s) + "\"");
+					if (s == 0) {
+						writer.print(" TIME_VALUE=\"" + (r * 2000L) + "\"");
+					} else if (s == 12) {
+						writer.print(" TIME_VALUE=\"" + ((r * 2000L) + 1500) + "\"");
+					}
+					writer.println("/>");
+				}
+			}
+			writer.println("</TIME_ORDER>");
+
+			writer.println("<TIER LINGUISTIC_TYPE_REF=\"aligned\" TIER_ID=\"utterance\">");
+			for (int r = 0; r < size; r++) {
+				writeAnnotation(writer, "u" + r, slot(r, 0), slot(r, 12), "u" + r);
+			}
+			writer.println("</TIER>");
+
+			writer.println("<TIER LINGUISTIC_TYPE_REF=\"subdivision\" PARENT_REF=\"utterance\" TIER_ID=\"words\">");
+			for (int r = 0; r < size; r++) {
+				for (int w = 0; w < 4; w++) {
+					writeAnnotation(writer, "w" + r + "_" + w, slot(r, w * 3), slot(r, (w + 1) * 3), "w" + w);
+				}
+			}
+			writer.println("</TIER>");
+
+			writer.println("<TIER LINGUISTIC_TYPE_REF=\"subdivision\" PARENT_REF=\"words\" TIER_ID=\"morphemes\">");
+			for (int r = 0; r < size; r++) {
+				for (int m = 0; m < 12; m++) {
+					writeAnnotation(writer, "m" + r + "_" + m, slot(r, m), slot(r, m + 1), "m" + m);
+				}
+			}
+			writer.println("</TIER>");
+
+			writer.println("<LINGUISTIC_TYPE LINGUISTIC_TYPE_ID=\"aligned\" TIME_ALIGNABLE=\"true\"/>");
+			writer.println("<LINGUISTIC_TYPE CONSTRAINTS=\"Time_Subdivision\" "
+					+ "LINGUISTIC_TYPE_ID=\"subdivision\" TIME_ALIGNABLE=\"true\"/>");
+			writer.println("<CONSTRAINT DESCRIPTION=\"Time subdivision of parent annotation's time interval, "
+					+ "no time gaps allowed within this interval\" STEREOTYPE=\"Time_Subdivision\"/>");
+			writer.println("</ANNOTATION_DOCUMENT>");
+		}
+
+		return new TranscriptionImpl(eafFile.getAbsolutePath());
+	}
+
+	private static String slot(int root, int index) {
+		return "ts" + root + "_" + index;
+	}
+
+	private static void writeAnnotation(PrintWriter writer, String id, String slot1, String slot2,
+			String value) {
+		writer.println("<ANNOTATION><ALIGNABLE_ANNOTATION ANNOTATION_ID=\"" + id
+				+ "\" TIME_SLOT_REF1=\"" + slot1 + "\" TIME_SLOT_REF2=\"" + slot2
+				+ "\"><ANNOTATION_VALUE>" + value + "</ANNOTATION_VALUE></ALIGNABLE_ANNOTATION></ANNOTATION>");
+	}
+}
@@ -108,6 +108,16 @@ public class TimeSlotImpl implements TimeSlot {
     @Override
 	public void updateTime(long theTime) {
         time = theTime;
+        timeChanged();
+    }
+
+    /**
+     * Lets the {@code TimeOrder} know the time value of this slot changed.
+     */
+    private void timeChanged() {
+        if (timeOrder instanceof TimeOrderImpl) {
+            ((TimeOrderImpl) timeOrder).timeSlotChanged();
+        }
     }
 
     /**
@@ -161,6 +171,7 @@ public class TimeSlotImpl implements TimeSlot {
 	 */   
 	public void setProposedTime(long proposedTime) {
 		this.proposedTime = proposedTime;
+		timeChanged();
 	}
 
 	/**
@@ -6,12 +6,15 @@ import java.net.URISyntaxException;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeSet;
 import java.util.UUID;
 
@@ -120,6 +123,25 @@ public class TranscriptionImpl implements Transcription {
 	 */
 	protected boolean isNotifying;
 	
+	/**
+	 * A stamp that changes with every change in time slots, proposed times or
+	 * in the annotations of tiers. Used by tiers to check the validity of 
+	 * their time index.
+	 */
+	private volatile long timeStructureStamp;
+	
+	/**
+	 * Index of annotation id to annotation, created on first use and then 
+	 * kept up to date on addition and removal of annotations and tiers and
+	 * on changes of annotation id's.
+	 */
+	private Map<String, Annotation> annotationIdIndex;
+	/** annotations of tiers of this transcription that did not have an id when they were added */
+	private Set<AbstractAnnotation> unindexedAnnotations;
+	/** the tiers in the list of tiers, for a membership test without a scan of the list */
+	private final Set<TierImpl> attachedTiers = Collections.newSetFromMap(new IdentityHashMap<TierImpl, Boolean>());
+	private final Object idIndexLock = new Object();
+	
 	/*
 	 * URN handling.
 	 */
@@ -223,6 +245,7 @@ public class TranscriptionImpl implements Transcription {
 			// jul 2005: make sure the proposed times are precalculated
 			timeProposer.correctProposedTimes(this, null, 
 							ACMEditEvent.CHANGE_ANNOTATIONS, null);
+			timeStructureChanged();
 			String errors = checkConsistency();
 			if (!errors.isEmpty()) {
 				System.err.println("Consistency problems have been detected in the transcription:");
@@ -263,6 +286,7 @@ public class TranscriptionImpl implements Transcription {
 		setChanged();
 		
 		timeProposer.correctProposedTimes(this, source, operation, modification); 
+		timeStructureChanged();
 		
 		if (isNotifying) {
 			notifyListeners(source, operation, modification);
@@ -280,15 +304,58 @@ public class TranscriptionImpl implements Transcription {
 	public void setNotifying(boolean notify) {
 		isNotifying = notify;
 
+		if (!isNotifying) {
+			timeProposer.startBatch();
+		}
 		// If the transcription is known to be unchanged, don't send the event
 		// (which sets changed to true as a side effect).
 		// It would be even better to try to detect if there was a modification since
 		// the call to setNotifying(false).
 		if (isNotifying && changed) {
-			modified(ACMEditEvent.CHANGE_ANNOTATIONS, null);		
+			// the proposed times have been recalculated per modification, they
+			// are only recalculated for all annotations if that was necessary
+			timeProposer.endBatch(this);
+			timeStructureChanged();
+			notifyListeners(this, ACMEditEvent.CHANGE_ANNOTATIONS, null);		
 		}
 	}
 	
+	/**
+	 * Notifies the transcription of a change in the time slots, in the
+	 * proposed times of unaligned slots or in the annotations of a tier.
+	 * Invalidates the time index of all tiers.
+	 */
+	void timeStructureChanged() {
+		timeStructureStamp++;
+	}
+	
+	/**
+	 * Notifies the transcription of a modification of the time slots that
+	 * did not produce an event. All proposed times are recalculated at the
+	 * end of the current or next batch of modifications.
+	 */
+	void proposedTimesInvalidated() {
+		timeProposer.invalidateAll();
+	}
+	
+	/**
+	 * Recalculates the virtual times of the unaligned time slots that are 
+	 * affected by the modifications of the current batch. Called before 
+	 * such a virtual time is used while the transcription does not notify
+	 * its listeners.
+	 */
+	void updateProposedTimes() {
+		timeProposer.recalculateDirtyRoots();
+	}
+	
+	/**
+	 * @return the current time structure modification stamp
+	 * @see #timeStructureChanged()
+	 */
+	long getTimeStructureStamp() {
+		return timeStructureStamp;
+	}
+	
 	/**
 	 * Returns the notifying flag.
 	 * @return true when ACMEditListeners are notified of every modification, 
@@ -375,6 +442,12 @@ public class TranscriptionImpl implements Transcription {
 			return;
 		}
 		tiers.add(theTier);
+		synchronized (idIndexLock) {
+			attachedTiers.add(theTier);
+			if (annotationIdIndex != null) {
+				theTier.getAnnotationsByIdMap(annotationIdIndex);
+			}
+		}
 
 		if (isLoaded()) {
 			modified(ACMEditEvent.ADD_TIER, theTier);
@@ -412,6 +485,16 @@ public class TranscriptionImpl implements Transcription {
 			}
 		}
 		tiers.removeAll(deletedTiers);
+		synchronized (idIndexLock) {
+			attachedTiers.removeAll(deletedTiers);
+			if (annotationIdIndex != null) {
+				for (Tier t : deletedTiers) {
+					for (Annotation a : ((TierImpl) t).getAnnotations()) {
+						removeFromIdIndex((AbstractAnnotation) a);
+					}
+				}
+			}
+		}
 
 		modified(ACMEditEvent.REMOVE_TIER, theTier);
 	}
@@ -780,9 +863,9 @@ public class TranscriptionImpl implements Transcription {
 	}
 
 	/**
-	 * This implementation is very inefficient.
-	 * If you need more than a single lookup, consider using
-	 * getAnnotationsByIdMap().
+	 * Looks up the annotation in an index of annotation id's, which is
+	 * created on the first call and maintained when annotations are added 
+	 * or removed.
 	 * 
 	 * @param id the id of the annotation to find
 	 * @return the annotation or {@code null}  
@@ -792,35 +875,135 @@ public class TranscriptionImpl implements Transcription {
 		if(id == null) {
 			return null;
 		}
-		for (TierImpl t : tiers) {
-			Annotation a = t.getAnnotationById(id);
-			if(a != null) {
-				return a;
-			}
+		synchronized (idIndexLock) {
+			return getAnnotationIdIndex().get(id);
 		}
-		return null;
 	}
 	
 	/**
 	 * Get a Map from annotation Ids to Annotations.
-	 * This is useful if you need to look up more than a handful of ids,
-	 * since each call to getAnnotationById() looks at half the annotations
-	 * on average anyway.
-	 * <p>
-	 * Implementation note: since HashSet and TreeSet are implemented with
-	 * a backing HashMap and TreeMap anyway, there is not much point in
-	 * creating just a Set, even for cases where a Set is sufficient.
+	 * The map is a read-only view of the index that is used by 
+	 * {@link #getAnnotationById(String)}, it reflects later modifications
+	 * of the transcription and should therefore not be used (iterated) 
+	 * while the transcription is being changed.
 	 * 
-	 * @return a map with id's as keys and annotations as values
+	 * @return an unmodifiable map with id's as keys and annotations as values
 	 */
 	public Map<String, Annotation> getAnnotationsByIdMap() {
-		Map<String, Annotation> map = new HashMap<String, Annotation>();
-		
-		for (TierImpl t : tiers) {
-			t.getAnnotationsByIdMap(map);
+		synchronized (idIndexLock) {
+			return Collections.unmodifiableMap(getAnnotationIdIndex());
+		}
+	}
+	
+	/**
+	 * Returns the id index, creating it if necessary. Note that id's are
+	 * created for annotations that don't have one yet.
+	 * The caller should hold the lock of the index.
+	 * 
+	 * @return the id to annotation map
+	 */
+	private Map<String, Annotation> getAnnotationIdIndex() {
+		if (annotationIdIndex == null) {
+			int size = 0;
+			for (TierImpl t : tiers) {
+				size += t.getNumberOfAnnotations();
+			}
+			Map<String, Annotation> map = new HashMap<String, Annotation>(Math.max(16, size * 4 / 3 + 1));
+			for (TierImpl t : tiers) {
+				t.getAnnotationsByIdMap(map);
+			}
+			unindexedAnnotations = new HashSet<AbstractAnnotation>();
+			annotationIdIndex = map;
 		}
 		
-		return map;
+		return annotationIdIndex;
+	}
+	
+	/**
+	 * Returns whether the tier is in the list of tiers of this transcription.
+	 * 
+	 * @param tier the tier to check
+	 * @return {@code true} if the tier has been added and not removed since
+	 */
+	boolean containsTier(TierImpl tier) {
+		synchronized (idIndexLock) {
+			return attachedTiers.contains(tier);
+		}
+	}
+	
+	/**
+	 * Notification of a tier that an annotation has been added to it. 
+	 * Updates the id index if it has been created already.
+	 * 
+	 * @param tier the tier the annotation has been added to
+	 * @param annotation the new annotation
+	 */
+	void annotationAdded(TierImpl tier, AbstractAnnotation annotation) {
+		synchronized (idIndexLock) {
+			if (annotationIdIndex == null || !attachedTiers.contains(tier)) {
+				return;
+			}
+			String id = annotation.getIdLazily();
+			if (id == null || id.isEmpty()) {
+				// the id will be set or created later
+				unindexedAnnotations.add(annotation);
+			} else {
+				annotationIdIndex.put(id, annotation);
+			}
+		}
+	}
+	
+	/**
+	 * Notification of a tier that an annotation has been removed from it.
+	 * 
+	 * @param annotation the removed annotation
+	 */
+	void annotationRemoved(AbstractAnnotation annotation) {
+		synchronized (idIndexLock) {
+			if (annotationIdIndex != null) {
+				removeFromIdIndex(annotation);
+			}
+		}
+	}
+	
+	/**
+	 * Removes the annotation from the index, the caller should hold the lock.
+	 * 
+	 * @param annotation the annotation to remove
+	 */
+	private void removeFromIdIndex(AbstractAnnotation annotation) {
+		String id = annotation.getIdLazily();
+		if (id != null && annotationIdIndex.get(id) == annotation) {
+			annotationIdIndex.remove(id);
+		}
+		unindexedAnnotations.remove(annotation);
+	}
+	
+	/**
+	 * Notification of an annotation that its id has been set or created.
+	 * 
+	 * @param annotation the annotation
+	 * @param oldId the previous id, can be {@code null}
+	 */
+	void annotationIdChanged(AbstractAnnotation annotation, String oldId) {
+		synchronized (idIndexLock) {
+			if (annotationIdIndex == null) {
+				return;
+			}
+			boolean indexed = unindexedAnnotations.remove(annotation);
+			if (oldId != null && annotationIdIndex.get(oldId) == annotation) {
+				annotationIdIndex.remove(oldId);
+				indexed = true;
+			}
+			if (indexed) {
+				String id = annotation.getIdLazily();
+				if (id == null || id.isEmpty()) {
+					unindexedAnnotations.add(annotation);
+				} else {
+					annotationIdIndex.put(id, annotation);
+				}
+			}
+		}
 	}
 	
 	@Override
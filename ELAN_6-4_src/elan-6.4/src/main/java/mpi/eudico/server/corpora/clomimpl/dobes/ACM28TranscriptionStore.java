@@ -1031,7 +1031,6 @@ public class ACM28TranscriptionStore implements TranscriptionStore {
 		// TODO check whether the external CV is actually newer!
 		// HS: moved to the "client" side, this is only necessary when the transcription is loaded
 		// in an editor (ELAN)
-		
     }
     
 	public void concatenateSymbolicAssociations(TranscriptionImpl transcription) {
@@ -1121,9 +1120,13 @@ public class ACM28TranscriptionStore implements TranscriptionStore {
 			parser = ParserFactory.getParser(ParserFactory.CGN);
 		}
 		else {
-			// Have a quick look inside the file to check the version
-			int version = ACMTranscriptionStore.eafFileFormatTaster(filePath);
-			parser = ParserFactory.getParser(version);
+			// a valid snapshot of the file replaces parsing the XML
+			parser = EAFBinaryCache.getCachedParser(filePath);
+			if (parser == null) {
+				// Have a quick look inside the file to check the version
+				int version = ACMTranscriptionStore.eafFileFormatTaster(filePath);
+				parser = ParserFactory.getParser(version);
+			}
 			/*
 			if (version <= ParserFactory.EAF26) {
 				format = TranscriptionStore.EAF_2_7;
@@ -46,7 +46,14 @@ public class ACM30TranscriptionStore extends ACM28TranscriptionStore {
 
 		switch (format) {
 			case TranscriptionStore.EAF:
-				new EAF30Encoder().encodeAndSave(theTranscription, null, tierOrder, path);
+				// the streaming encoder writes while encoding, the DOM based encoder
+				// can still be selected with -DELAN.EAF.StreamEncoder=false
+				if (Boolean.parseBoolean(System.getProperty("ELAN.EAF.StreamEncoder", "true"))) {
+					new EAF30StreamEncoder().encodeAndSave(theTranscription, null, tierOrder, path);
+				} else {
+					new EAF30Encoder().encodeAndSave(theTranscription, null, tierOrder, path);
+				}
+				EAFBinaryCache.storeInBackground(path);
 				break;	
 			case TranscriptionStore.EAF_2_8:
 				new EAF28Encoder().encodeAndSave(theTranscription, null, tierOrder, path);
@@ -12,7 +12,6 @@ import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
 import javax.xml.validation.Schema;
-import javax.xml.validation.SchemaFactory;
 
 import mpi.eudico.server.corpora.clom.TranscriptionStore;
 import mpi.eudico.server.corpora.clomimpl.abstr.Parser;
@@ -122,9 +121,7 @@ public class ACMTranscriptionStore {
 			parserFactory.setNamespaceAware(true);
 			
 			// to get a validating parser, set the schema to the proper xsd schema
-			SchemaFactory schemaFactory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
-			Schema eafSchema = schemaFactory.newSchema(
-					ACMTranscriptionStore.class.getResource(getCurrentEAFSchemaLocal()));
+			Schema eafSchema = EAFSchemaCache.getSchema(getCurrentEAFSchemaLocal());
 			
 			parserFactory.setSchema(eafSchema);
 			//parserFactory.setValidating(false);// has to be false (the default) when a schema is set!
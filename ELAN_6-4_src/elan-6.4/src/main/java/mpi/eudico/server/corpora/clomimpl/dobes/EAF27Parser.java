@@ -12,7 +12,6 @@ import javax.xml.XMLConstants;
 import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
 import javax.xml.validation.Schema;
-import javax.xml.validation.SchemaFactory;
 
 import mpi.eudico.server.corpora.clom.Property;
 import mpi.eudico.server.corpora.clom.TimeSlot;
@@ -21,6 +20,7 @@ import mpi.eudico.server.corpora.clomimpl.abstr.LinkedFileDescriptor;
 import mpi.eudico.server.corpora.clomimpl.abstr.MediaDescriptor;
 import mpi.eudico.server.corpora.clomimpl.abstr.Parser;
 import mpi.eudico.server.corpora.clomimpl.abstr.PropertyImpl;
+import mpi.eudico.util.StringPool;
 
 import org.xml.sax.Attributes;
 import org.xml.sax.ErrorHandler;
@@ -49,6 +49,8 @@ import org.xml.sax.helpers.DefaultHandler;
  */
 public class EAF27Parser extends Parser {
 	private SAXParser parser;
+	/** the schema for validation on a separate thread, null if validating inline or not at all */
+	private Schema backgroundSchema;
 
 	/** stores tier name - tier record pairs */
     private final HashMap<String, TierRecord> tierMap = new HashMap<String, TierRecord>();
@@ -89,7 +91,6 @@ public class EAF27Parser extends Parser {
     private AnnotationRecord currentAnnRecord;
     private String currentCVId;
     private CVEntryRecord currentEntryRecord;
-    private String content = "";
     private String lastParsed = "";
     private String currentFileName;
     private String currentPropertyName;
@@ -101,7 +102,7 @@ public class EAF27Parser extends Parser {
      */
     public EAF27Parser() {
     	try {
-    		boolean validate = Boolean.parseBoolean(System.getProperty("ELAN.EAF.Validate", "true"));
+    		boolean validate = EAFSchemaCache.isValidationEnabled();
         	
 			// first create a parser factory
     		SAXParserFactory parserFactory = SAXParserFactory.newInstance();
@@ -110,11 +111,14 @@ public class EAF27Parser extends Parser {
 			
 			if (validate) {
 				// to get a validating parser, set the schema to the proper xsd schema
-				SchemaFactory schemaFactory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
-				Schema eafSchema = schemaFactory.newSchema(
-						this.getClass().getResource(EAF27.EAF27_SCHEMA_RESOURCE));
+				Schema eafSchema = EAFSchemaCache.getSchema(EAF27.EAF27_SCHEMA_RESOURCE);
 				
-				parserFactory.setSchema(eafSchema);// the validating flag should be false (the default)
+				if (EAFSchemaCache.isBackgroundValidation()) {
+					// the file is validated by another thread while the model is built
+					backgroundSchema = eafSchema;
+				} else {
+					parserFactory.setSchema(eafSchema);// the validating flag should be false (the default)
+				}
 			} else {
 				parserFactory.setValidating(false);// superfluous, false is already the default
 			}
@@ -483,6 +487,9 @@ public class EAF27Parser extends Parser {
         try {
         	InputSource is = ACMTranscriptionStore.toInputSource(fileName);
         	EAFContentHandler contentHandler = new EAFContentHandler();
+        	if (backgroundSchema != null) {
+        		EAFSchemaCache.validateInBackground(backgroundSchema, fileName, contentHandler);
+        	}
         	
         	parser.parse(is, contentHandler);
         } catch (IOException ioe) {
@@ -536,12 +543,16 @@ public class EAF27Parser extends Parser {
      * EAF 2.7 content handler.
      */
     class EAFContentHandler extends DefaultHandler {
+        /** the character data of the current element, reused for all elements */
+        private final StringBuilder content = new StringBuilder();
+        /** removes duplicates of repeated values and id references while loading */
+        private final StringPool stringPool = new StringPool();
 
         @Override
 		public void startElement(String nameSpaceURI, String name,
             String rawName, Attributes attributes) throws SAXException {
             //	System.out.println("startElement called for name:" + name);
-            content = "";
+            content.setLength(0);
 
             if (name.equals("ANNOTATION_DOCUMENT")) {
                 author = attributes.getValue("AUTHOR");
@@ -613,8 +624,9 @@ public class EAF27Parser extends Parser {
                     timeValue = attributes.getValue("TIME_VALUE");
                 }
 
-                timeSlots.put(attributes.getValue("TIME_SLOT_ID"), timeValue);
-                timeOrder.add(attributes.getValue("TIME_SLOT_ID"));
+                String slotId = stringPool.get(attributes.getValue("TIME_SLOT_ID"));
+                timeSlots.put(slotId, timeValue);
+                timeOrder.add(slotId);
             } else if (name.equals("TIER")) {
                 currentTierId = attributes.getValue("TIER_ID");
 
@@ -646,8 +658,8 @@ public class EAF27Parser extends Parser {
                 currentAnnRecord.setAnnotationId(currentAnnotationId);
                 // ignore any attribute SVG_REF, it is not supported any more
                 currentAnnRecord.setAnnotationType(AnnotationRecord.ALIGNABLE);
-				currentAnnRecord.setBeginTimeSlotId(attributes.getValue("TIME_SLOT_REF1"));
-				currentAnnRecord.setEndTimeSlotId(attributes.getValue("TIME_SLOT_REF2"));
+				currentAnnRecord.setBeginTimeSlotId(stringPool.get(attributes.getValue("TIME_SLOT_REF1")));
+				currentAnnRecord.setEndTimeSlotId(stringPool.get(attributes.getValue("TIME_SLOT_REF2")));
 				currentAnnRecord.setExtRefId(attributes.getValue("EXT_REF"));
 				
 				tiers.get(currentTierId).add(currentAnnRecord);
@@ -786,21 +798,21 @@ public class EAF27Parser extends Parser {
 		public void endElement(String nameSpaceURI, String name, String rawName)
             throws SAXException {
             if (name.equals("ANNOTATION_VALUE")) {
-                currentAnnRecord.setValue(content);
+                currentAnnRecord.setValue(stringPool.get(content));
             } else if (name.equals("CV_ENTRY")) {
-            	currentEntryRecord.setValue(content);
+            	currentEntryRecord.setValue(content.toString());
             } else if (name.equals("PROPERTY")) {
             	if (content.length() > 0 && currentPropertyName != null) {
-                	PropertyImpl prop = new PropertyImpl(currentPropertyName, content);
+                	PropertyImpl prop = new PropertyImpl(currentPropertyName, content.toString());
                 	docProperties.add(prop);
             	}
             }
         }
 
         @Override
-		public void characters(char[] ch, int start, int end)
+		public void characters(char[] ch, int start, int length)
             throws SAXException {
-            content += new String(ch, start, end);
+            content.append(ch, start, length);
         }
         
 		@Override
@@ -620,80 +620,93 @@ public class EAF28Encoder implements AnnotationDocEncoder {
             TierImpl t = (TierImpl) tierIter2.next();
 
             for (Annotation ann : t.getAnnotations()) {
-                // Make sure all annotations have an id, by using getId() on each one.
-                // This may change the value of lastUsedAnnIdProp.getValue().
-                @SuppressWarnings("unused")
- 			    String unused = ann.getId();  
-                // may 2008 store and add external reference id refs
-                String extRefId = null;
-                
-				if (ann instanceof AbstractAnnotation) {
-					final List<ExternalReference> extRefs = ((AbstractAnnotation) ann).getExtRefs();
-					
-					if (extRefs != null) {
-	                	for (ExternalReference thisExtRef : extRefs) {
-	                		String tmpExtRefId = getExtRefId(getExtRefIdParams, thisExtRef);
-	                		if (extRefId != null && !extRefId.isEmpty()) {
-	                			extRefId += " " + tmpExtRefId;
-	                		} else {
-	                			extRefId = tmpExtRefId;
-	                		}
-						}
-	                }
-				}
-                
-                Element annElement = eaf28Fact.newAnnotation();
-                tierElements.get(t.getName()).appendChild(annElement);
-
-                Element annSubElement = null;
-
-                String annId = ann.getId();
-
-                if (ann instanceof AlignableAnnotation) {
-                    String beginTsId = timeSlotIds.get(((AlignableAnnotation) ann).getBegin());
-                    String endTsId = timeSlotIds.get(((AlignableAnnotation) ann).getEnd());
-                    // TODO in the following cases an exception should be thrown
-                    if (beginTsId == null) {
-                    	if (LOG.isLoggable(Level.WARNING)) {
-                    		LOG.warning(String.format("The alignable annotation with id \"%s\" has no reference to a begin time slot.", ann.getId()));
-                    	}
-                    }
-                    if (endTsId == null) {
-                    	if (LOG.isLoggable(Level.WARNING)) {
-                    		LOG.warning(String.format("The alignable annotation with id \"%s\" has no reference to an end time slot.", ann.getId()));
-                    	}
-                    }
-
-                   annSubElement = eaf28Fact.newAlignableAnnotation(annId,
-                            beginTsId, endTsId, extRefId, ann.getCVEntryId());
-                } else if (ann instanceof RefAnnotation) {
-                    String refId = null;
-                    String prevId = null;
-                    List<Annotation> refs = ((RefAnnotation) ann).getReferences();
-                    RefAnnotation prev = ((RefAnnotation) ann).getPrevious();
-
-                    // for the moment, take the first, if it exists
-                    if (refs.size() > 0) {
-                        refId = refs.get(0).getId();
-                    }
-
-                    if (prev != null) {
-                        prevId = prev.getId();
-                    }
-
-                    annSubElement = eaf28Fact.newRefAnnotation(annId, refId,
-                            prevId, extRefId, ann.getCVEntryId());
-                }
+                tierElements.get(t.getName()).appendChild(
+                		newAnnotationElement(eaf28Fact, ann, timeSlotIds, getExtRefIdParams));
+            }
+        }
+    }
+    
+    /**
+     * Creates an ANNOTATION element, containing an alignable or reference annotation
+     * element and its value, for a single annotation.
+     * 
+     * @param eaf28Fact the EAF factory
+     * @param ann the annotation
+     * @param timeSlotIds the time slot id's created earlier
+     * @param getExtRefIdParams external references id's
+     * 
+     * @return the new ANNOTATION element
+     */
+    protected Element newAnnotationElement(EAF28 eaf28Fact, Annotation ann, 
+    		Map<TimeSlot, String> timeSlotIds, GetExtRefIdParams getExtRefIdParams) {
+    	// Make sure all annotations have an id, by using getId() on each one.
+    	// This may change the value of lastUsedAnnIdProp.getValue().
+    	String annId = ann.getId();
+    	// may 2008 store and add external reference id refs
+    	String extRefId = null;
+
+    	if (ann instanceof AbstractAnnotation) {
+    		final List<ExternalReference> extRefs = ((AbstractAnnotation) ann).getExtRefs();
+
+    		if (extRefs != null) {
+    			for (ExternalReference thisExtRef : extRefs) {
+    				String tmpExtRefId = getExtRefId(getExtRefIdParams, thisExtRef);
+    				if (extRefId != null && !extRefId.isEmpty()) {
+    					extRefId += " " + tmpExtRefId;
+    				} else {
+    					extRefId = tmpExtRefId;
+    				}
+    			}
+    		}
+    	}
 
-                annElement.appendChild(annSubElement);
+        Element annElement = eaf28Fact.newAnnotation();
+
+        Element annSubElement = null;
+
+        if (ann instanceof AlignableAnnotation) {
+            String beginTsId = timeSlotIds.get(((AlignableAnnotation) ann).getBegin());
+            String endTsId = timeSlotIds.get(((AlignableAnnotation) ann).getEnd());
+            // TODO in the following cases an exception should be thrown
+            if (beginTsId == null) {
+            	if (LOG.isLoggable(Level.WARNING)) {
+            		LOG.warning(String.format("The alignable annotation with id \"%s\" has no reference to a begin time slot.", ann.getId()));
+            	}
+            }
+            if (endTsId == null) {
+            	if (LOG.isLoggable(Level.WARNING)) {
+            		LOG.warning(String.format("The alignable annotation with id \"%s\" has no reference to an end time slot.", ann.getId()));
+            	}
+            }
 
-                // ANNOTATION_VALUE
-                Element valueElement;
-        		valueElement = eaf28Fact.newAnnotationValue(ann.getValue());
+            annSubElement = eaf28Fact.newAlignableAnnotation(annId,
+                    beginTsId, endTsId, extRefId, ann.getCVEntryId());
+        } else if (ann instanceof RefAnnotation) {
+            String refId = null;
+            String prevId = null;
+            List<Annotation> refs = ((RefAnnotation) ann).getReferences();
+            RefAnnotation prev = ((RefAnnotation) ann).getPrevious();
+
+            // for the moment, take the first, if it exists
+            if (refs.size() > 0) {
+                refId = refs.get(0).getId();
+            }
 
-        		annSubElement.appendChild(valueElement);
+            if (prev != null) {
+                prevId = prev.getId();
             }
+
+            annSubElement = eaf28Fact.newRefAnnotation(annId, refId,
+                    prevId, extRefId, ann.getCVEntryId());
         }
+
+        annElement.appendChild(annSubElement);
+
+        // ANNOTATION_VALUE
+        Element valueElement = eaf28Fact.newAnnotationValue(ann.getValue());
+        annSubElement.appendChild(valueElement);
+
+        return annElement;
     }
     
     /**
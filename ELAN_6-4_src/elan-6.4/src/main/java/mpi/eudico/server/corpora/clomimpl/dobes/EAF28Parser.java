@@ -12,7 +12,6 @@ import javax.xml.XMLConstants;
 import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
 import javax.xml.validation.Schema;
-import javax.xml.validation.SchemaFactory;
 
 import mpi.eudico.server.corpora.clom.Property;
 import mpi.eudico.server.corpora.clom.TimeSlot;
@@ -26,6 +25,7 @@ import mpi.eudico.server.corpora.clomimpl.reflink.AbstractRefLinkRecord;
 import mpi.eudico.server.corpora.clomimpl.reflink.CrossRefLinkRecord;
 import mpi.eudico.server.corpora.clomimpl.reflink.GroupRefLinkRecord;
 import mpi.eudico.server.corpora.clomimpl.reflink.RefLinkSetRecord;
+import mpi.eudico.util.StringPool;
 
 import org.xml.sax.Attributes;
 import org.xml.sax.ContentHandler;
@@ -55,6 +55,8 @@ import org.xml.sax.helpers.DefaultHandler;
  */
 public class EAF28Parser extends Parser {
 	private SAXParser parser;
+	/** the schema for validation on a separate thread, null if validating inline or not at all */
+	private Schema backgroundSchema;
 
 	/** stores tier name - tier record pairs */
     private final Map<String, TierRecord> tierMap = new HashMap<String, TierRecord>();
@@ -101,7 +103,6 @@ public class EAF28Parser extends Parser {
     private CVEntryRecord currentEntryRecord;
     private CVEntryRecord currentSubEntryRecord;
 	private CVDescriptionRecord cvDescriptionRecord;
-    private String content = "";
     private String lastParsed = "";
     private String currentFileName;
     private String currentPropertyName;
@@ -115,7 +116,7 @@ public class EAF28Parser extends Parser {
      */
     public EAF28Parser() {
     	try {
-    		boolean validate = Boolean.parseBoolean(System.getProperty("ELAN.EAF.Validate", "true"));
+    		boolean validate = EAFSchemaCache.isValidationEnabled();
         	
 			// first create a parser factory
     		SAXParserFactory parserFactory = SAXParserFactory.newInstance();
@@ -124,11 +125,14 @@ public class EAF28Parser extends Parser {
 			
 			if (validate) {
 				// to get a validating parser, set the schema to the proper xsd schema
-				SchemaFactory schemaFactory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
-				Schema eafSchema = schemaFactory.newSchema(
-						this.getClass().getResource(EAF28.EAF28_SCHEMA_RESOURCE));
+				Schema eafSchema = EAFSchemaCache.getSchema(EAF28.EAF28_SCHEMA_RESOURCE);
 				
-				parserFactory.setSchema(eafSchema);// the validating flag should be false (the default)
+				if (EAFSchemaCache.isBackgroundValidation()) {
+					// the file is validated by another thread while the model is built
+					backgroundSchema = eafSchema;
+				} else {
+					parserFactory.setSchema(eafSchema);// the validating flag should be false (the default)
+				}
 			} else {
 				parserFactory.setValidating(false);// superfluous, false is already the default
 			}
@@ -577,6 +581,9 @@ public class EAF28Parser extends Parser {
         try {
         	InputSource is = ACMTranscriptionStore.toInputSource(fileName);
         	EAFContentHandler contentHandler = new EAFContentHandler();
+        	if (backgroundSchema != null) {
+        		EAFSchemaCache.validateInBackground(backgroundSchema, fileName, contentHandler);
+        	}
         	
         	parser.parse(is, contentHandler);
         } catch (IOException ioe) {
@@ -594,6 +601,10 @@ public class EAF28Parser extends Parser {
      */
     class EAFContentHandler extends DefaultHandler
     						implements ContentHandler, ErrorHandler {
+        /** the character data of the current element, reused for all elements */
+        private final StringBuilder content = new StringBuilder();
+        /** removes duplicates of repeated values and id references while loading */
+        private final StringPool stringPool = new StringPool();
 
         /**
          * ContentHandler method. Extracts properties and creates records 
@@ -610,7 +621,7 @@ public class EAF28Parser extends Parser {
         public void startElement(String nameSpaceURI, String name,
             String rawName, Attributes attributes) throws SAXException {
             //	System.out.println("startElement called for name:" + name);
-            content = "";
+            content.setLength(0);
 
             if (name.equals("ANNOTATION_DOCUMENT")) {
                 author = attributes.getValue("AUTHOR");
@@ -686,8 +697,9 @@ public class EAF28Parser extends Parser {
                     timeValue = attributes.getValue("TIME_VALUE");
                 }
 
-                timeSlots.put(attributes.getValue("TIME_SLOT_ID"), timeValue);
-                timeOrder.add(attributes.getValue("TIME_SLOT_ID"));
+                String slotId = stringPool.get(attributes.getValue("TIME_SLOT_ID"));
+                timeSlots.put(slotId, timeValue);
+                timeOrder.add(slotId);
             } else if (name.equals("TIER")) {
                 currentTierId = attributes.getValue("TIER_ID");
 
@@ -721,10 +733,10 @@ public class EAF28Parser extends Parser {
                 currentAnnRecord.setAnnotationId(currentAnnotationId);
                 // ignore any attribute SVG_REF, it is not supported any more
 			    currentAnnRecord.setAnnotationType(AnnotationRecord.ALIGNABLE);
-				currentAnnRecord.setBeginTimeSlotId(attributes.getValue("TIME_SLOT_REF1"));
-				currentAnnRecord.setEndTimeSlotId(attributes.getValue("TIME_SLOT_REF2"));
+				currentAnnRecord.setBeginTimeSlotId(stringPool.get(attributes.getValue("TIME_SLOT_REF1")));
+				currentAnnRecord.setEndTimeSlotId(stringPool.get(attributes.getValue("TIME_SLOT_REF2")));
 				currentAnnRecord.setExtRefId(attributes.getValue("EXT_REF"));
-    			currentAnnRecord.setCvEntryId(attributes.getValue("CVE_REF"));
+    			currentAnnRecord.setCvEntryId(stringPool.get(attributes.getValue("CVE_REF")));
 				
 				tiers.get(currentTierId).add(currentAnnRecord);
 
@@ -743,7 +755,7 @@ public class EAF28Parser extends Parser {
 				    currentAnnRecord.setPreviousAnnotId("");
 				}
 				currentAnnRecord.setExtRefId(attributes.getValue("EXT_REF"));
-    			currentAnnRecord.setCvEntryId(attributes.getValue("CVE_REF"));
+    			currentAnnRecord.setCvEntryId(stringPool.get(attributes.getValue("CVE_REF")));
 				
 				tiers.get(currentTierId).add(currentAnnRecord);
 
@@ -964,28 +976,28 @@ public class EAF28Parser extends Parser {
         public void endElement(String nameSpaceURI, String name, String rawName)
             throws SAXException {
             if (name.equals("ANNOTATION_VALUE")) {
-                currentAnnRecord.setValue(content);
+                currentAnnRecord.setValue(stringPool.get(content));
             } else if (name.equals("CV_ENTRY")) {
-            	currentEntryRecord.setValue(content);
+            	currentEntryRecord.setValue(content.toString());
             } else if (name.equals("PROPERTY")) {
             	if (content.length() > 0 && currentPropertyName != null) {
-                	PropertyImpl prop = new PropertyImpl(currentPropertyName, content);
+                	PropertyImpl prop = new PropertyImpl(currentPropertyName, content.toString());
                 	docProperties.add(prop);
             	}
             } else if (name.equals("DESCRIPTION")) {	// New for 2.8
             	if (content.length() > 0 && cvDescriptionRecord != null) {
-            		cvDescriptionRecord.setDescription(content);
+            		cvDescriptionRecord.setDescription(content.toString());
             	}
             	cvDescriptionRecord = null;
             } else if (name.equals("CVE_VALUE")) {	// New for 2.8
-                currentSubEntryRecord.setValue(content);
+                currentSubEntryRecord.setValue(content.toString());
             } else if (name.equals("LICENSE")) {	// New for 2.8
-            	String licenseText = content;
+            	String licenseText = content.toString();
             	LicenseRecord lr = licenses.get(licenses.size() - 1);
             	lr.setText(licenseText);
     		} else if (name.equals("CROSS_REF_LINK") ||
     				   name.equals("GROUP_REF_LINK")) {	// new for 3.0
-    			String c = content.trim();
+    			String c = content.toString().trim();
     			if (!c.isEmpty()) {
     				refLinkRecord.setContent(c);
     			}
@@ -993,9 +1005,9 @@ public class EAF28Parser extends Parser {
         }
 
     	@Override
-        public void characters(char[] ch, int start, int end)
+        public void characters(char[] ch, int start, int length)
             throws SAXException {
-            content += new String(ch, start, end);
+            content.append(ch, start, length);
         }
         
         /**
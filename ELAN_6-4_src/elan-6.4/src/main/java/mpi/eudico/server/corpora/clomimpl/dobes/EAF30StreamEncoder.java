@@ -0,0 +1,276 @@
+package mpi.eudico.server.corpora.clomimpl.dobes;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.logging.Level;
+
+import mpi.eudico.server.corpora.clom.Annotation;
+import mpi.eudico.server.corpora.clom.EncoderInfo;
+import mpi.eudico.server.corpora.clom.Property;
+import mpi.eudico.server.corpora.clom.Tier;
+import mpi.eudico.server.corpora.clom.TimeOrder;
+import mpi.eudico.server.corpora.clom.TimeSlot;
+import mpi.eudico.server.corpora.clom.Transcription;
+import mpi.eudico.server.corpora.clomimpl.abstr.PropertyImpl;
+import mpi.eudico.server.corpora.clomimpl.abstr.TierImpl;
+import mpi.eudico.server.corpora.clomimpl.abstr.TranscriptionImpl;
+import mpi.eudico.server.corpora.lexicon.LexiconQueryBundle2;
+import static mpi.eudico.server.corpora.util.ServerLogger.LOG;
+import mpi.eudico.util.ControlledVocabulary;
+import mpi.eudico.util.MutableInt;
+
+import org.w3c.dom.Element;
+
+/**
+ * Encodes a Transcription to EAF 3.0 format and writes it to file while
+ * encoding, instead of first creating a DOM of the entire document.
+ * <p>
+ * The elements are still created by the EAF factory and the per element
+ * methods of the super classes, but each section of the document is written
+ * by an {@link EAFStreamWriter} and discarded as soon as it is complete. Time
+ * slots and annotations, by far the largest part of most documents, are
+ * written one element at a time. The resulting document is the same as the
+ * one produced by {@link EAF30Encoder}.
+ * <p>
+ * The document is written to a temporary file that replaces the existing
+ * file when it is complete, so that a failure while encoding does not leave a
+ * partially written file.
+ * <p>
+ * Templates are still created by the {@link EAF30Encoder} implementation.
+ *
+ * @see EAF30Encoder
+ */
+public class EAF30StreamEncoder extends EAF30Encoder {
+
+	/**
+	 * Constructor.
+	 */
+	public EAF30StreamEncoder() {
+		super();
+	}
+
+	/**
+	 * Encodes the transcription and writes it to the specified path while
+	 * encoding.
+	 *
+	 * @param theTranscription the Transcription to store
+	 * @param encoderInfo additional information for encoding, unused
+	 * @param tierOrder preferred tier ordering, unused
+	 * @param path the output path
+	 *
+	 * @throws IOException any IO exception that can occur
+	 */
+	@Override
+	public void encodeAndSave(Transcription theTranscription,
+			EncoderInfo encoderInfo, List<TierImpl> tierOrder, String path)
+			throws IOException {
+		if (LOG.isLoggable(Level.INFO)) {
+			LOG.info(String.format("%s <---- XML stream output - EAF version: %s\n", path, VERSION));
+		}
+		if (theTranscription == null) {
+			throw new IOException("Unable to save this file (no content).");
+		}
+		if (path == null || path.isEmpty()) {
+			throw new IOException("Unable to save this file (zero length).");
+		}
+		long beginTime = System.currentTimeMillis();
+
+		// write to a temporary file in the same folder first, the existing file
+		// is only replaced when the document has been written completely
+		File file = new File(path).getAbsoluteFile();
+		File tempFile = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+		EAFStreamWriter writer = null;
+		try {
+			writer = new EAFStreamWriter(new BufferedOutputStream(new FileOutputStream(tempFile)));
+			encode(theTranscription, writer);
+			writer.close();
+			writer = null;
+			moveToTarget(tempFile, file);
+		} catch (Exception ex) {
+			throw new IOException("Unable to save this file: " + ex.getMessage(), ex);
+		} finally {
+			if (writer != null) {
+				try {
+					writer.close();
+				} catch (IOException ioe) {
+					// ignore, an exception has been thrown already
+				}
+			}
+			tempFile.delete();
+		}
+
+		if (LOG.isLoggable(Level.FINE)) {
+			LOG.fine(String.format("Encoding and saving file took: %d ms", (System.currentTimeMillis() - beginTime)));
+		}
+	}
+
+	/**
+	 * Replaces the target file by the temporary file, atomically if the file
+	 * system supports it.
+	 *
+	 * @param tempFile the completely written file
+	 * @param file the file to replace
+	 * @throws IOException if the file cannot be moved
+	 */
+	private void moveToTarget(File tempFile, File file) throws IOException {
+		try {
+			Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE,
+					StandardCopyOption.REPLACE_EXISTING);
+		} catch (AtomicMoveNotSupportedException amnse) {
+			Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * Encodes the transcription in the same order as
+	 * {@link EAF28Encoder#createDOM(Transcription, List, String)}, writing
+	 * every part of the document as soon as it has been created.
+	 *
+	 * @param theTranscription the transcription to encode
+	 * @param writer the writer to write to
+	 * @throws IOException if writing fails
+	 */
+	void encode(Transcription theTranscription, EAFStreamWriter writer) throws IOException {
+		TranscriptionImpl attisTr = (TranscriptionImpl) theTranscription;
+		GetExtRefIdParams getExtRefIdParams = new GetExtRefIdParams();
+		Map<String, LexiconQueryBundle2> lexRefs = new HashMap<String, LexiconQueryBundle2>();
+		MutableInt lexRefIndexMut = new MutableInt(1);
+		List<Locale> usedLocales = new ArrayList<Locale>();
+		List<Tier> storeOrder = new ArrayList<Tier>(attisTr.getTiers());
+
+		// the last used annotation id is part of the header, make sure all
+		// annotations have an id before the header is written. The order is
+		// the same as in which ids are assigned when creating a DOM
+		for (Tier t : storeOrder) {
+			for (Annotation ann : ((TierImpl) t).getAnnotations()) {
+				ann.getId();
+			}
+		}
+
+		EAFBase eafFactory = getEAFFactory();
+
+		// ANNOTATION_DOCUMENT, its children are removed after they have been written
+		Element annotDocument = addAnnotationDocument(eafFactory, attisTr);
+		writer.writeStartDocument();
+		writer.writeStartElement(annotDocument);
+
+		// LICENSEs
+		addLicenses(eafFactory, annotDocument, attisTr);
+		writer.writeAndRemoveChildren(annotDocument);
+
+		// HEADER
+		Element headerElement = addHeader(eafFactory, annotDocument);
+		addMediaDescriptors(eafFactory, headerElement, attisTr);
+		addLinkedFilesDescriptors(eafFactory, headerElement, attisTr);
+		Property lastUsedAnnIdProp = addDocProperties(eafFactory, headerElement, attisTr);
+		if (lastUsedAnnIdProp == null) {
+			lastUsedAnnIdProp = new PropertyImpl("lastUsedAnnotationId", Integer.valueOf(0));
+			attisTr.addDocProperty(lastUsedAnnIdProp);
+		}
+		headerElement.appendChild(eafFactory.newProperty("lastUsedAnnotationId",
+				lastUsedAnnIdProp.getValue().toString()));
+		writer.writeAndRemoveChildren(annotDocument);
+
+		// TIME_ORDER
+		Map<TimeSlot, String> timeSlotIds = writeTimeOrderAndSlots(eafFactory, attisTr, writer);
+
+		// TIERS and ANNOTATIONS, the tier elements are removed from the document
+		// and are only used for writing the start tag
+		Map<String, Element> tierElements = addTiers(eafFactory, annotDocument, attisTr, usedLocales);
+		while (annotDocument.getFirstChild() != null) {
+			annotDocument.removeChild(annotDocument.getFirstChild());
+		}
+		EAF28 eaf28Fact = (EAF28) eafFactory;
+
+		for (Tier t : storeOrder) {
+			writer.writeStartElement(tierElements.get(t.getName()));
+
+			for (Annotation ann : ((TierImpl) t).getAnnotations()) {
+				writer.writeElement(newAnnotationElement(eaf28Fact, ann, timeSlotIds, getExtRefIdParams));
+			}
+
+			writer.writeEndElement();
+		}
+		tierElements.clear();
+		timeSlotIds.clear();
+
+		// LINGUISTIC_TYPES
+		addTypes(eafFactory, annotDocument, attisTr, getExtRefIdParams, lexRefs, lexRefIndexMut);
+		// LOCALES
+		addLocales(eafFactory, annotDocument, usedLocales);
+		// <LANGUAGE>s
+		List<ControlledVocabulary> conVocs = attisTr.getControlledVocabularies();
+		addLanguages(storeOrder, eafFactory, annotDocument, conVocs);
+		// CONSTRAINTS
+		addConstraints(eafFactory, annotDocument);
+		writer.writeAndRemoveChildren(annotDocument);
+
+		// <CONTROLLED_VOCABULARY>s
+		addControlledVocabularies(eafFactory, annotDocument, conVocs, getExtRefIdParams);
+		writer.writeAndRemoveChildren(annotDocument);
+
+		// LEXICON SERVICES
+		addLexiconRefs(eafFactory, annotDocument, attisTr, lexRefs, lexRefIndexMut);
+		// REF_LINK_SET
+		addReferenceLinks(eafFactory, annotDocument, attisTr, getExtRefIdParams);
+		// EXTERNAL REFERENCES
+		addExternalRefs(eafFactory, annotDocument, attisTr, getExtRefIdParams);
+		writer.writeAndRemoveChildren(annotDocument);
+
+		writer.writeEndElement();
+	}
+
+	/**
+	 * Writes the time order element and the time slot elements.
+	 *
+	 * @param eafFactory the EAF factory
+	 * @param transcription the transcription
+	 * @param writer the writer
+	 * @return a map containing time slot objects to id strings
+	 * @throws IOException if writing fails
+	 *
+	 * @see EAF28Encoder#addTimeOrderAndSlots(EAFBase, Element, Transcription)
+	 */
+	private Map<TimeSlot, String> writeTimeOrderAndSlots(EAFBase eafFactory,
+			Transcription transcription, EAFStreamWriter writer) throws IOException {
+		TimeOrder timeOrder = transcription.getTimeOrder();
+		// cleanup unused TimeSlots first
+		timeOrder.pruneTimeSlots();
+		Map<TimeSlot, String> timeSlotIds = new HashMap<TimeSlot, String>(
+				Math.max(16, timeOrder.size() * 4 / 3 + 1));
+
+		writer.writeStartElement(eafFactory.newTimeOrder());
+
+		int index = 1;
+		Iterator<TimeSlot> tsElements = timeOrder.iterator();
+
+		while (tsElements.hasNext()) {
+			TimeSlot ts = tsElements.next();
+			String tsId = "ts" + index;
+			timeSlotIds.put(ts, tsId);
+
+			if (ts.getTime() != TimeSlot.TIME_UNALIGNED) {
+				writer.writeElement(eafFactory.newTimeSlot(tsId, ts.getTime()));
+			} else {
+				writer.writeElement(eafFactory.newTimeSlot(tsId));
+			}
+
+			index++;
+		}
+
+		writer.writeEndElement();
+
+		return timeSlotIds;
+	}
+}
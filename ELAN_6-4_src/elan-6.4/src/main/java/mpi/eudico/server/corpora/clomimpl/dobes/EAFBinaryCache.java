@@ -0,0 +1,563 @@
+package mpi.eudico.server.corpora.clomimpl.dobes;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.zip.CRC32;
+import java.util.zip.CRC32C;
+
+import mpi.eudico.server.corpora.clomimpl.abstr.Parser;
+import mpi.eudico.server.corpora.clomimpl.abstr.ParserFactory;
+import mpi.eudico.server.corpora.util.ServerLogger;
+import nl.mpi.util.FileUtility;
+
+/**
+ * A cache of binary snapshots of EAF files, for opening a file that has not
+ * changed since it was last opened or saved without parsing the XML.
+ * <p>
+ * After an EAF file has been opened in an editor, or after it has been
+ * saved, a background thread parses the file and writes the records of the
+ * parser to a snapshot file in the cache folder, unless there already is a
+ * snapshot of the current file. Files that are only loaded by batch
+ * processes are not stored, so that they do not push the snapshots of the
+ * files the user works on out of the cache. When the file is opened again, the
+ * snapshot replaces the XML parser if it is still valid:
+ * <ul>
+ * <li>the header contains the format version of the snapshot, the absolute
+ * path, the length and the modification time of the EAF file and a CRC-32C
+ * checksum of its content; all must match the current file</li>
+ * <li>the payload has a CRC-32C checksum of its own</li>
+ * </ul>
+ * A snapshot that is not valid is removed and the XML is parsed as usual.
+ * The snapshots that were used least recently are removed if the total size
+ * exceeds {@code ELAN.EAF.BinaryCacheMaxMB} megabytes (default 256).
+ * <p>
+ * The cache is active when a cache folder has been set, unless the system
+ * property {@code ELAN.EAF.BinaryCache} is {@code false}.
+ *
+ * @version Oct 2026
+ */
+public class EAFBinaryCache {
+	/** the name of the cache folder */
+	public static final String CACHE_DIR = "eafcache";
+	/** the extension of the snapshot files */
+	public static final String EXTENSION = ".ebin";
+	/** "EBIN", the first four bytes of a snapshot file */
+	private static final int MAGIC = 0x4542494E;
+	/** the version of the snapshot format, increase it after every change */
+	private static final int FORMAT_VERSION = 1;
+	private static final long DEFAULT_MAX_SIZE = 256L * 1024 * 1024;
+
+	private static volatile File cacheDirectory;
+	private static ThreadPoolExecutor writeExecutor;
+	/** the files that are waiting for a snapshot to be written */
+	private static final Set<File> pendingFiles = new HashSet<File>();
+
+	/**
+	 * Private constructor, all methods are static.
+	 */
+	private EAFBinaryCache() {
+	}
+
+	/**
+	 * Sets the folder of the snapshot files, it is created when the first
+	 * snapshot is written.
+	 *
+	 * @param directory the cache folder or {@code null} to deactivate the
+	 * cache
+	 */
+	public static void setCacheDirectory(File directory) {
+		cacheDirectory = directory;
+	}
+
+	/**
+	 * @return the cache folder or {@code null}
+	 */
+	public static File getCacheDirectory() {
+		return cacheDirectory;
+	}
+
+	/**
+	 * @return {@code true} if a cache folder has been set and the property
+	 * {@code ELAN.EAF.BinaryCache} is not {@code false}
+	 */
+	public static boolean isEnabled() {
+		return cacheDirectory != null &&
+				Boolean.parseBoolean(System.getProperty("ELAN.EAF.BinaryCache", "true"));
+	}
+
+	/**
+	 * Returns whether the records of a parser can be stored in a snapshot.
+	 *
+	 * @param parser the parser
+	 * @return {@code true} for the EAF parsers
+	 */
+	public static boolean isCacheableParser(Parser parser) {
+		return parser instanceof EAF30Parser || parser instanceof EAF28Parser ||
+				parser instanceof EAF27Parser || parser instanceof EAF26Parser;
+	}
+
+	/**
+	 * Returns a parser for the snapshot of an EAF file, if there is a valid
+	 * snapshot.
+	 *
+	 * @param eafPath the path or file URL of the EAF file
+	 * @return a parser that reads the snapshot or {@code null} if the cache
+	 * is not active or there is no valid snapshot of the file
+	 */
+	public static Parser getCachedParser(String eafPath) {
+		if (!isEnabled()) {
+			return null;
+		}
+		File eafFile = toLocalFile(eafPath);
+		if (eafFile == null) {
+			return null;
+		}
+		File cacheFile = getCacheFile(eafFile);
+		if (!cacheFile.isFile()) {
+			return null;
+		}
+
+		long start = System.currentTimeMillis();
+		try {
+			ByteBuffer payload = readPayload(eafFile, cacheFile);
+			if (payload != null) {
+				Parser parser = new EAFBinaryCacheParser(payload);
+				// the modification time of a snapshot is the time it was last used
+				cacheFile.setLastModified(System.currentTimeMillis());
+
+				if (ServerLogger.LOG.isLoggable(Level.FINE)) {
+					ServerLogger.LOG.fine(String.format("Read the snapshot of %s in %d ms", eafPath,
+							System.currentTimeMillis() - start));
+				}
+				return parser;
+			}
+			if (ServerLogger.LOG.isLoggable(Level.FINE)) {
+				ServerLogger.LOG.fine("The snapshot of " + eafPath + " is out of date");
+			}
+		} catch (IOException ioe) {
+			if (ServerLogger.LOG.isLoggable(Level.WARNING)) {
+				ServerLogger.LOG.warning("Could not read the snapshot of " + eafPath + ": " +
+						ioe.getMessage());
+			}
+		}
+		cacheFile.delete();
+
+		return null;
+	}
+
+	/**
+	 * Writes a snapshot of a file on a background thread, after it has been
+	 * opened in an editor or after it has been saved. Nothing is written if
+	 * the snapshot of the file is already up to date, e.g. because the file
+	 * was opened from the snapshot. The file is parsed
+	 * again by a separate parser, the records of the parser that built a
+	 * transcription are shared with the transcription and can be modified
+	 * by then. A file that has just been saved in the current EAF version is
+	 * parsed without validation, since it has been produced by the encoder.
+	 *
+	 * @param eafPath the path of the file
+	 */
+	public static void storeInBackground(final String eafPath) {
+		if (!isEnabled()) {
+			return;
+		}
+		final File eafFile = toLocalFile(eafPath);
+		if (eafFile == null) {
+			return;
+		}
+		synchronized (pendingFiles) {
+			if (!pendingFiles.add(eafFile)) {
+				// e.g. saved twice in a short time
+				return;
+			}
+		}
+
+		getWriteExecutor().execute(new Runnable() {
+			@Override
+			public void run() {
+				synchronized (pendingFiles) {
+					pendingFiles.remove(eafFile);
+				}
+				// determine the key before parsing, a later change invalidates the snapshot
+				FileKey key = FileKey.of(eafFile);
+				if (key == null || isCurrent(getCacheFile(eafFile), eafFile, key)) {
+					return;
+				}
+				int version = ACMTranscriptionStore.eafFileFormatTaster(eafPath);
+				Parser parser;
+				if (version == ParserFactory.EAF30) {
+					parser = new EAF30Parser(false);
+				} else {
+					parser = ParserFactory.getParser(version);
+				}
+				if (!isCacheableParser(parser)) {
+					return;
+				}
+				parser.getTierNames(eafPath);
+				writeSnapshot(parser, eafPath, eafFile, key);
+			}
+		});
+	}
+
+	/**
+	 * Writes a snapshot of the records of a parser to a file.
+	 *
+	 * @param parser the parser to read the records from
+	 * @param eafPath the path of the EAF file, as passed to the parser
+	 * @param eafFile the EAF file
+	 * @param key the key of the file when it was parsed
+	 * @param cacheFile the file to write to
+	 * @throws IOException if the records cannot be stored or the file
+	 * cannot be written
+	 */
+	static void write(Parser parser, String eafPath, File eafFile, FileKey key, File cacheFile)
+			throws IOException {
+		ByteArrayOutput payload = new ByteArrayOutput(1 << 20);
+		EAFBinaryCacheParser.encode(parser, eafPath, payload);
+		CRC32C payloadCrc = new CRC32C();
+		payloadCrc.update(payload.getBuffer(), 0, payload.size());
+		byte[] pathBytes = eafFile.getAbsolutePath().getBytes(StandardCharsets.UTF_8);
+
+		File dir = cacheFile.getParentFile();
+		if (!dir.isDirectory() && !dir.mkdirs()) {
+			throw new IOException("Could not create the cache folder " + dir);
+		}
+		// write to a temporary file first, a snapshot is either complete or absent
+		File tempFile = File.createTempFile("eaf", ".tmp", dir);
+		try {
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+					new FileOutputStream(tempFile), 1 << 16))) {
+				out.writeInt(MAGIC);
+				out.writeInt(FORMAT_VERSION);
+				out.writeInt(pathBytes.length);
+				out.write(pathBytes);
+				out.writeLong(key.length);
+				out.writeLong(key.lastModified);
+				out.writeLong(key.crc);
+				out.writeInt(payload.size());
+				out.writeLong(payloadCrc.getValue());
+				out.write(payload.getBuffer(), 0, payload.size());
+			}
+			Files.move(tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			tempFile.delete();
+		}
+	}
+
+	/**
+	 * Returns the snapshot file of an EAF file. The name is based on the
+	 * name of the EAF file and a checksum of its absolute path.
+	 *
+	 * @param eafFile the EAF file
+	 * @return the snapshot file in the cache folder
+	 */
+	static File getCacheFile(File eafFile) {
+		String path = eafFile.getAbsolutePath();
+		CRC32 crc = new CRC32();
+		crc.update(path.getBytes(StandardCharsets.UTF_8));
+
+		return new File(cacheDirectory, String.format("%s_%08x%s", eafFile.getName(),
+				crc.getValue(), EXTENSION));
+	}
+
+	/**
+	 * Converts a path or file URL to a local file.
+	 *
+	 * @param eafPath the path
+	 * @return the file or {@code null} if it is not an existing local file
+	 */
+	static File toLocalFile(String eafPath) {
+		if (eafPath == null) {
+			return null;
+		}
+		String path = eafPath;
+		if (path.toLowerCase().startsWith("file:")) {
+			path = FileUtility.urlToAbsPath(path);
+		}
+		File file = new File(path);
+
+		return file.isFile() ? file : null;
+	}
+
+	/**
+	 * Reads and checks a snapshot file.
+	 *
+	 * @return the payload or {@code null} if the snapshot is out of date
+	 * @throws IOException if the file cannot be read or is corrupt
+	 */
+	private static ByteBuffer readPayload(File eafFile, File cacheFile) throws IOException {
+		ByteBuffer buf;
+		try (FileChannel channel = FileChannel.open(cacheFile.toPath(), StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE) {
+				throw new IOException("The snapshot is too large");
+			}
+			buf = ByteBuffer.allocate((int) size);
+			while (buf.hasRemaining() && channel.read(buf) >= 0) {
+				// read the whole file
+			}
+			buf.flip();
+		}
+
+		try {
+			if (buf.getInt() != MAGIC) {
+				throw new IOException("Not a snapshot file");
+			}
+			if (buf.getInt() != FORMAT_VERSION) {
+				return null;
+			}
+			byte[] pathBytes = new byte[buf.getInt()];
+			buf.get(pathBytes);
+			long length = buf.getLong();
+			long lastModified = buf.getLong();
+			long crc = buf.getLong();
+			int payloadSize = buf.getInt();
+			long payloadCrc = buf.getLong();
+
+			if (!eafFile.getAbsolutePath().equals(new String(pathBytes, StandardCharsets.UTF_8)) ||
+					length != eafFile.length() || lastModified != eafFile.lastModified()) {
+				return null;
+			}
+			if (payloadSize != buf.remaining()) {
+				throw new IOException("The snapshot is incomplete");
+			}
+			ByteBuffer payload = buf.slice();
+			CRC32C checksum = new CRC32C();
+			checksum.update(payload.duplicate());
+			if (checksum.getValue() != payloadCrc) {
+				throw new IOException("The checksum of the snapshot is not correct");
+			}
+			// the modification time can stay the same after a quick change
+			if (crc != checksum(eafFile)) {
+				return null;
+			}
+
+			return payload;
+		} catch (RuntimeException re) {
+			throw new IOException("Invalid snapshot header", re);
+		}
+	}
+
+	/**
+	 * Reads the header of a snapshot file and checks whether it is the
+	 * snapshot of the current state of the EAF file. The payload is not
+	 * checked.
+	 *
+	 * @return {@code true} if the snapshot exists and its header matches
+	 * the file and its key
+	 */
+	private static boolean isCurrent(File cacheFile, File eafFile, FileKey key) {
+		if (!cacheFile.isFile()) {
+			return false;
+		}
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+				new FileInputStream(cacheFile), 4096))) {
+			if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+				return false;
+			}
+			byte[] pathBytes = new byte[in.readInt()];
+			in.readFully(pathBytes);
+
+			return eafFile.getAbsolutePath().equals(new String(pathBytes, StandardCharsets.UTF_8)) &&
+					in.readLong() == key.length && in.readLong() == key.lastModified &&
+					in.readLong() == key.crc;
+		} catch (IOException | RuntimeException ex) {
+			// e.g. a corrupt header, write a new snapshot
+			return false;
+		}
+	}
+
+	private static void writeSnapshot(Parser parser, String eafPath, File eafFile, FileKey key) {
+		long start = System.currentTimeMillis();
+		File cacheFile = getCacheFile(eafFile);
+		try {
+			write(parser, eafPath, eafFile, key, cacheFile);
+
+			if (ServerLogger.LOG.isLoggable(Level.FINE)) {
+				ServerLogger.LOG.fine(String.format("Wrote the snapshot of %s (%d bytes) in %d ms",
+						eafPath, cacheFile.length(), System.currentTimeMillis() - start));
+			}
+			removeLeastRecentlyUsed(cacheFile.getParentFile());
+		} catch (IOException | RuntimeException ex) {
+			// e.g. records the format does not support, the file will be parsed next time
+			cacheFile.delete();
+			if (ServerLogger.LOG.isLoggable(Level.INFO)) {
+				ServerLogger.LOG.info("Could not write the snapshot of " + eafPath + ": " + ex);
+			}
+		}
+	}
+
+	/**
+	 * Removes the least recently used snapshots until the total size is
+	 * below the maximum, as well as old temporary files.
+	 */
+	private static void removeLeastRecentlyUsed(File dir) {
+		long maxSize = DEFAULT_MAX_SIZE;
+		String prop = System.getProperty("ELAN.EAF.BinaryCacheMaxMB");
+		if (prop != null) {
+			try {
+				maxSize = Long.parseLong(prop) * 1024 * 1024;
+			} catch (NumberFormatException nfe) {
+				// use the default
+			}
+		}
+
+		File[] files = dir.listFiles();
+		if (files == null) {
+			return;
+		}
+		long total = 0;
+		long now = System.currentTimeMillis();
+		for (File f : files) {
+			if (f.getName().endsWith(EXTENSION)) {
+				total += f.length();
+			} else if (f.getName().endsWith(".tmp") && f.lastModified() < now - 60 * 60 * 1000L) {
+				// left behind by a write that was interrupted by the end of the application
+				f.delete();
+			}
+		}
+		if (total <= maxSize) {
+			return;
+		}
+
+		Arrays.sort(files, new Comparator<File>() {
+			@Override
+			public int compare(File f1, File f2) {
+				return Long.compare(f1.lastModified(), f2.lastModified());
+			}
+		});
+		for (int i = 0; i < files.length && total > maxSize; i++) {
+			if (files[i].getName().endsWith(EXTENSION)) {
+				long size = files[i].length();
+				if (files[i].delete()) {
+					total -= size;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Calculates the CRC-32C checksum of the content of a file.
+	 */
+	static long checksum(File file) throws IOException {
+		CRC32C crc = new CRC32C();
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			ByteBuffer buf = ByteBuffer.allocateDirect(1 << 16);
+			while (channel.read(buf) >= 0) {
+				buf.flip();
+				crc.update(buf);
+				buf.clear();
+			}
+		}
+		return crc.getValue();
+	}
+
+	private static synchronized ThreadPoolExecutor getWriteExecutor() {
+		if (writeExecutor == null) {
+			writeExecutor = new ThreadPoolExecutor(1, 1, 30L, TimeUnit.SECONDS,
+					new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+						@Override
+						public Thread newThread(Runnable r) {
+							Thread t = new Thread(r, "EAF-Snapshot-Writer");
+							t.setDaemon(true);
+							t.setPriority(Thread.MIN_PRIORITY);
+							return t;
+						}
+					});
+			writeExecutor.allowCoreThreadTimeOut(true);
+		}
+
+		return writeExecutor;
+	}
+
+	/**
+	 * The length, modification time and checksum of a file.
+	 */
+	static class FileKey {
+		final long length;
+		final long lastModified;
+		final long crc;
+
+		FileKey(long length, long lastModified, long crc) {
+			this.length = length;
+			this.lastModified = lastModified;
+			this.crc = crc;
+		}
+
+		/**
+		 * @return the key of the current state of the file or {@code null}
+		 * if the file cannot be read
+		 */
+		static FileKey of(File file) {
+			try {
+				long length = file.length();
+				long lastModified = file.lastModified();
+				return new FileKey(length, lastModified, checksum(file));
+			} catch (IOException ioe) {
+				return null;
+			}
+		}
+	}
+
+	/**
+	 * A byte array output stream that gives access to its buffer, to avoid
+	 * copying the payload before it is written.
+	 */
+	private static class ByteArrayOutput extends OutputStream {
+		private byte[] bytes;
+		private int count;
+
+		ByteArrayOutput(int initialSize) {
+			bytes = new byte[initialSize];
+		}
+
+		@Override
+		public void write(int b) {
+			ensureCapacity(count + 1);
+			bytes[count++] = (byte) b;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+			ensureCapacity(count + len);
+			System.arraycopy(b, off, bytes, count, len);
+			count += len;
+		}
+
+		byte[] getBuffer() {
+			return bytes;
+		}
+
+		int size() {
+			return count;
+		}
+
+		private void ensureCapacity(int minCapacity) {
+			if (minCapacity > bytes.length) {
+				bytes = Arrays.copyOf(bytes, Math.max(minCapacity, bytes.length * 2));
+			}
+		}
+	}
+}
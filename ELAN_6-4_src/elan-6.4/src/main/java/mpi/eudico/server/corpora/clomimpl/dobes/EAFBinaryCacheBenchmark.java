@@ -0,0 +1,261 @@
+package mpi.eudico.server.corpora.clomimpl.dobes;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import mpi.eudico.server.corpora.clom.Annotation;
+import mpi.eudico.server.corpora.clom.RefLink;
+import mpi.eudico.server.corpora.clomimpl.abstr.ExternalReferenceImpl;
+import mpi.eudico.server.corpora.clomimpl.abstr.LicenseRecord;
+import mpi.eudico.server.corpora.clomimpl.abstr.Parser;
+import mpi.eudico.server.corpora.clomimpl.abstr.ParserFactory;
+import mpi.eudico.server.corpora.clomimpl.abstr.TierImpl;
+import mpi.eudico.server.corpora.clomimpl.abstr.TranscriptionImpl;
+import mpi.eudico.server.corpora.clomimpl.reflink.CrossRefLink;
+import mpi.eudico.server.corpora.clomimpl.reflink.GroupRefLink;
+import mpi.eudico.server.corpora.clomimpl.reflink.RefLinkSet;
+import mpi.eudico.util.ControlledVocabulary;
+
+/**
+ * A simple benchmark for the binary snapshot cache of EAF files. A snapshot
+ * of the file is written to a temporary cache folder, then the file is
+ * opened a number of times from the XML and a number of times from the
+ * snapshot. The average times of creating the transcription are reported,
+ * as well as the time to create the parser only. The two transcriptions are
+ * compared tier by tier, including the controlled vocabularies, reference
+ * links and licenses, and the languages and external references of the two
+ * parsers are compared.
+ * <p>
+ * Validation of the XML can be turned off with
+ * {@code -DELAN.EAF.Validate=false} for a fair comparison with a file that
+ * is known to be valid.
+ * <p>
+ * Usage: {@code EAFBinaryCacheBenchmark <eaf file> [number of iterations]}
+ */
+public class EAFBinaryCacheBenchmark {
+
+	/**
+	 * Runs the benchmark.
+	 *
+	 * @param args the path to an eaf file and optionally the number of
+	 * iterations
+	 * @throws IOException if the snapshot cannot be written
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length == 0) {
+			System.out.println("Usage: EAFBinaryCacheBenchmark <eaf file> [number of iterations]");
+			return;
+		}
+		String path = new File(args[0]).getAbsolutePath();
+		int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+		File eafFile = new File(path);
+
+		File cacheDir = Files.createTempDirectory("eafcache").toFile();
+		EAFBinaryCache.setCacheDirectory(cacheDir);
+		File cacheFile = EAFBinaryCache.getCacheFile(eafFile);
+
+		long start = System.nanoTime();
+		Parser xmlParser = ParserFactory.getParser(ACMTranscriptionStore.eafFileFormatTaster(path));
+		xmlParser.getTierNames(path);
+		EAFBinaryCache.write(xmlParser, path, eafFile, EAFBinaryCache.FileKey.of(eafFile), cacheFile);
+		System.out.println(String.format("File: %s, %d bytes, snapshot %d bytes (written in %d ms)",
+				args[0], eafFile.length(), cacheFile.length(), (System.nanoTime() - start) / 1000000));
+		System.out.println("Validation: " + (EAFSchemaCache.isValidationEnabled() ?
+				(EAFSchemaCache.isBackgroundValidation() ? "background" : "inline") : "off") +
+				", iterations: " + iterations);
+
+		// warm up
+		TranscriptionImpl xmlTr = open(path, false);
+		TranscriptionImpl cacheTr = open(path, true);
+
+		long xmlNanos = 0;
+		long cacheNanos = 0;
+		long parserNanos = 0;
+		Parser cacheParser = null;
+		for (int i = 0; i < iterations; i++) {
+			start = System.nanoTime();
+			xmlTr = open(path, false);
+			xmlNanos += System.nanoTime() - start;
+
+			start = System.nanoTime();
+			cacheTr = open(path, true);
+			cacheNanos += System.nanoTime() - start;
+
+			start = System.nanoTime();
+			cacheParser = EAFBinaryCache.getCachedParser(path);
+			if (cacheParser == null) {
+				System.out.println("The snapshot is not valid");
+				return;
+			}
+			parserNanos += System.nanoTime() - start;
+		}
+
+		System.out.println(String.format("Open from XML:      %8.2f ms", xmlNanos / (iterations * 1000000.0)));
+		System.out.println(String.format("Open from snapshot: %8.2f ms (reading the snapshot %.2f ms)",
+				cacheNanos / (iterations * 1000000.0), parserNanos / (iterations * 1000000.0)));
+		System.out.println("Transcriptions equal: " + compare(xmlTr, cacheTr));
+		System.out.println("Languages and external references equal: " +
+				compare(xmlParser, cacheParser, path));
+
+		for (File f : cacheDir.listFiles()) {
+			f.delete();
+		}
+		cacheDir.delete();
+	}
+
+	private static TranscriptionImpl open(String path, boolean useCache) {
+		System.setProperty("ELAN.EAF.BinaryCache", String.valueOf(useCache));
+		return new TranscriptionImpl(path);
+	}
+
+	/**
+	 * Compares the tiers, time slots, annotations, controlled vocabularies,
+	 * reference link sets and licenses of two transcriptions.
+	 */
+	private static boolean compare(TranscriptionImpl tr1, TranscriptionImpl tr2) {
+		List<TierImpl> tiers1 = tr1.getTiers();
+		List<TierImpl> tiers2 = tr2.getTiers();
+		if (tiers1.size() != tiers2.size() ||
+				tr1.getTimeOrder().size() != tr2.getTimeOrder().size() ||
+				tr1.getLinguisticTypes().size() != tr2.getLinguisticTypes().size()) {
+			return false;
+		}
+		for (int i = 0; i < tiers1.size(); i++) {
+			TierImpl t1 = tiers1.get(i);
+			TierImpl t2 = tiers2.get(i);
+			if (!t1.getName().equals(t2.getName()) ||
+					(t1.getParentTier() == null) != (t2.getParentTier() == null) ||
+					!Objects.equals(t1.getLangRef(), t2.getLangRef()) ||
+					!Objects.equals(t1.getExtRef(), t2.getExtRef())) {
+				return false;
+			}
+			List<? extends Annotation> anns1 = t1.getAnnotations();
+			List<? extends Annotation> anns2 = t2.getAnnotations();
+			if (anns1.size() != anns2.size()) {
+				return false;
+			}
+			for (int j = 0; j < anns1.size(); j++) {
+				Annotation a1 = anns1.get(j);
+				Annotation a2 = anns2.get(j);
+				if (!a1.getId().equals(a2.getId()) || !a1.getValue().equals(a2.getValue()) ||
+						a1.getBeginTimeBoundary() != a2.getBeginTimeBoundary() ||
+						a1.getEndTimeBoundary() != a2.getEndTimeBoundary()) {
+					return false;
+				}
+			}
+		}
+
+		// the equals method of the CV compares the languages and the entries,
+		// including the external references of the entries
+		List<ControlledVocabulary> cvs1 = tr1.getControlledVocabularies();
+		List<ControlledVocabulary> cvs2 = tr2.getControlledVocabularies();
+		if (cvs1.size() != cvs2.size()) {
+			return false;
+		}
+		for (int i = 0; i < cvs1.size(); i++) {
+			if (!cvs1.get(i).equals(cvs2.get(i))) {
+				return false;
+			}
+		}
+
+		List<RefLinkSet> sets1 = tr1.getRefLinkSets();
+		List<RefLinkSet> sets2 = tr2.getRefLinkSets();
+		int numSets1 = sets1 != null ? sets1.size() : 0;
+		int numSets2 = sets2 != null ? sets2.size() : 0;
+		if (numSets1 != numSets2) {
+			return false;
+		}
+		for (int i = 0; i < numSets1; i++) {
+			RefLinkSet s1 = sets1.get(i);
+			RefLinkSet s2 = sets2.get(i);
+			if (!Objects.equals(s1.getLinksID(), s2.getLinksID()) ||
+					!Objects.equals(s1.getLinksName(), s2.getLinksName()) ||
+					!Objects.equals(s1.getExtRef(), s2.getExtRef()) ||
+					!Objects.equals(s1.getLangRef(), s2.getLangRef()) ||
+					!Objects.equals(s1.getCvRef(), s2.getCvRef()) ||
+					s1.getRefs().size() != s2.getRefs().size()) {
+				return false;
+			}
+			for (int j = 0; j < s1.getRefs().size(); j++) {
+				if (!compare(s1.getRefs().get(j), s2.getRefs().get(j))) {
+					return false;
+				}
+			}
+		}
+
+		List<LicenseRecord> lics1 = tr1.getLicenses();
+		List<LicenseRecord> lics2 = tr2.getLicenses();
+		if (lics1.size() != lics2.size()) {
+			return false;
+		}
+		for (int i = 0; i < lics1.size(); i++) {
+			if (!Objects.equals(lics1.get(i).getUrl(), lics2.get(i).getUrl()) ||
+					!Objects.equals(lics1.get(i).getText(), lics2.get(i).getText())) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Compares two reference links.
+	 */
+	private static boolean compare(RefLink rl1, RefLink rl2) {
+		if (rl1.getClass() != rl2.getClass() ||
+				!Objects.equals(rl1.getId(), rl2.getId()) ||
+				!Objects.equals(rl1.getRefName(), rl2.getRefName()) ||
+				!Objects.equals(rl1.getExtRef(), rl2.getExtRef()) ||
+				!Objects.equals(rl1.getLangRef(), rl2.getLangRef()) ||
+				!Objects.equals(rl1.getCveRef(), rl2.getCveRef()) ||
+				!Objects.equals(rl1.getRefType(), rl2.getRefType()) ||
+				!Objects.equals(rl1.getContent(), rl2.getContent())) {
+			return false;
+		}
+		if (rl1 instanceof CrossRefLink) {
+			CrossRefLink cr1 = (CrossRefLink) rl1;
+			CrossRefLink cr2 = (CrossRefLink) rl2;
+			return Objects.equals(cr1.getRef1(), cr2.getRef1()) &&
+					Objects.equals(cr1.getRef2(), cr2.getRef2()) &&
+					cr1.getDirectionality() == cr2.getDirectionality();
+		}
+		if (rl1 instanceof GroupRefLink) {
+			return Objects.equals(((GroupRefLink) rl1).getRefs(), ((GroupRefLink) rl2).getRefs());
+		}
+		return true;
+	}
+
+	/**
+	 * Compares the languages and the external references of the parser of
+	 * the XML file and of the snapshot parser. These are not all kept as such
+	 * in a transcription.
+	 */
+	private static boolean compare(Parser xmlParser, Parser cacheParser, String path) {
+		List<LanguageRecord> langs1 = xmlParser.getLanguages(path);
+		List<LanguageRecord> langs2 = cacheParser.getLanguages(path);
+		int size1 = langs1 != null ? langs1.size() : 0;
+		int size2 = langs2 != null ? langs2.size() : 0;
+		if (size1 != size2) {
+			return false;
+		}
+		for (int i = 0; i < size1; i++) {
+			LanguageRecord lr1 = langs1.get(i);
+			LanguageRecord lr2 = langs2.get(i);
+			if (!Objects.equals(lr1.getId(), lr2.getId()) ||
+					!Objects.equals(lr1.getDef(), lr2.getDef()) ||
+					!Objects.equals(lr1.getLabel(), lr2.getLabel())) {
+				return false;
+			}
+		}
+
+		Map<String, ExternalReferenceImpl> refs1 = xmlParser.getExternalReferences(path);
+		Map<String, ExternalReferenceImpl> refs2 = cacheParser.getExternalReferences(path);
+		if (refs1 == null || refs1.isEmpty()) {
+			return refs2 == null || refs2.isEmpty();
+		}
+		return refs1.equals(refs2);
+	}
+}
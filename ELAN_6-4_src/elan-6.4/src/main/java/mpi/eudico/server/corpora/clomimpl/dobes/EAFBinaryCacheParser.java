@@ -0,0 +1,927 @@
+package mpi.eudico.server.corpora.clomimpl.dobes;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import mpi.eudico.server.corpora.clom.Property;
+import mpi.eudico.server.corpora.clomimpl.abstr.ExternalReferenceImpl;
+import mpi.eudico.server.corpora.clomimpl.abstr.LicenseRecord;
+import mpi.eudico.server.corpora.clomimpl.abstr.LinkedFileDescriptor;
+import mpi.eudico.server.corpora.clomimpl.abstr.MediaDescriptor;
+import mpi.eudico.server.corpora.clomimpl.abstr.Parser;
+import mpi.eudico.server.corpora.clomimpl.abstr.PropertyImpl;
+import mpi.eudico.server.corpora.clomimpl.reflink.AbstractRefLinkRecord;
+import mpi.eudico.server.corpora.clomimpl.reflink.CrossRefLinkRecord;
+import mpi.eudico.server.corpora.clomimpl.reflink.GroupRefLinkRecord;
+import mpi.eudico.server.corpora.clomimpl.reflink.RefLinkSetRecord;
+
+/**
+ * A parser that reads the records of an EAF file from the binary snapshot
+ * written by {@link EAFBinaryCache}, instead of from the XML. The snapshot
+ * contains the result of all getters of an EAF parser, so the transcription
+ * store builds the same model from it.
+ * <p>
+ * The payload starts with a table of all distinct strings, every string in
+ * the rest of the payload is an index in this table ({@code -1} for
+ * {@code null}). Time slots are stored as an array of times, the annotations
+ * of a tier as a set of int columns, one per field of the annotation record.
+ * The {@code fileName} parameter of the getters is ignored, a parser
+ * represents one snapshot.
+ *
+ * @version Oct 2026
+ */
+public class EAFBinaryCacheParser extends Parser {
+	private static final int CROSS_REF_LINK = 0;
+	private static final int GROUP_REF_LINK = 1;
+
+	private final int fileFormat;
+	private final String mediaFile;
+	private final String author;
+	private final List<MediaDescriptor> mediaDescriptors;
+	private final List<LinkedFileDescriptor> linkedFileDescriptors;
+	private final List<Property> docProperties;
+	private final List<LingTypeRecord> linguisticTypes;
+	private final List<String> timeOrder;
+	private final Map<String, String> timeSlots;
+	private final List<String> tierNames;
+	private final Map<String, TierData> tiers;
+	private final Map<String, CVRecord> controlledVocabularies;
+	private final Map<String, ExternalReferenceImpl> extReferences;
+	private final Map<String, LexiconServiceRecord> lexiconServices;
+	private final List<LanguageRecord> languages;
+	private final List<LicenseRecord> licenses;
+	private final List<RefLinkSetRecord> refLinkSetList;
+
+	// read state
+	private final ByteBuffer buf;
+	private String[] strings;
+
+	/**
+	 * Creates a parser from a snapshot payload.
+	 *
+	 * @param payload the payload, from the current position to the limit;
+	 * a heap buffer is read without copying the strings first
+	 * @throws IOException if the payload is not a valid snapshot
+	 */
+	public EAFBinaryCacheParser(ByteBuffer payload) throws IOException {
+		buf = payload;
+
+		try {
+			readStrings();
+
+			fileFormat = buf.getInt();
+			mediaFile = str();
+			author = str();
+			mediaDescriptors = readMediaDescriptors();
+			linkedFileDescriptors = readLinkedFileDescriptors();
+			docProperties = readProperties();
+			linguisticTypes = readLinguisticTypes();
+
+			int numSlots = buf.getInt();
+			timeOrder = new ArrayList<String>(numSlots);
+			timeSlots = new HashMap<String, String>(numSlots * 4 / 3 + 1);
+			long[] times = new long[numSlots];
+			buf.asLongBuffer().get(times);
+			buf.position(buf.position() + numSlots * 8);
+			String[] slotIds = new String[numSlots];
+			for (int i = 0; i < numSlots; i++) {
+				slotIds[i] = "ts" + (i + 1);
+				timeOrder.add(slotIds[i]);
+				timeSlots.put(slotIds[i], String.valueOf(times[i]));
+			}
+
+			int numTiers = buf.getInt();
+			tierNames = new ArrayList<String>(numTiers);
+			tiers = new HashMap<String, TierData>(numTiers * 4 / 3 + 1);
+			for (int i = 0; i < numTiers; i++) {
+				TierData td = readTier(slotIds);
+				tierNames.add(td.name);
+				tiers.put(td.name, td);
+			}
+
+			controlledVocabularies = readControlledVocabularies();
+			extReferences = readExternalReferences();
+			lexiconServices = readLexiconServices();
+			languages = readLanguages();
+			licenses = readLicenses();
+			refLinkSetList = readRefLinkSets();
+		} catch (RuntimeException re) {
+			// buffer underflow, an index out of range etc.
+			throw new IOException("Invalid EAF snapshot: " + re, re);
+		} finally {
+			strings = null;
+		}
+
+		if (buf.hasRemaining()) {
+			throw new IOException("Invalid EAF snapshot: unexpected data at the end");
+		}
+	}
+
+	/**
+	 * Writes the records of a parser as a snapshot payload. All getters of
+	 * the source parser are called for the specified file.
+	 *
+	 * @param source the parser to read the records from, usually a parser
+	 * that has just parsed the file
+	 * @param fileName the file to pass to the getters of the source parser
+	 * @param out the stream to write to
+	 * @throws IOException if writing fails or if the records contain
+	 * something the snapshot format cannot represent
+	 */
+	public static void encode(Parser source, String fileName, OutputStream out) throws IOException {
+		new Encoder().encode(source, fileName, out);
+	}
+
+	private void readStrings() {
+		int n = buf.getInt();
+		strings = new String[n];
+		byte[] bytes = buf.hasArray() ? buf.array() : null;
+		int offset = buf.hasArray() ? buf.arrayOffset() : 0;
+
+		for (int i = 0; i < n; i++) {
+			int len = buf.getInt();
+			if (bytes != null) {
+				strings[i] = new String(bytes, offset + buf.position(), len, StandardCharsets.UTF_8);
+				buf.position(buf.position() + len);
+			} else {
+				byte[] copy = new byte[len];
+				buf.get(copy);
+				strings[i] = new String(copy, StandardCharsets.UTF_8);
+			}
+		}
+	}
+
+	private String str() {
+		int index = buf.getInt();
+		return index < 0 ? null : strings[index];
+	}
+
+	private String str(int index) {
+		return index < 0 ? null : strings[index];
+	}
+
+	private int[] ints(int n) {
+		int[] column = new int[n];
+		buf.asIntBuffer().get(column);
+		buf.position(buf.position() + n * 4);
+		return column;
+	}
+
+	private List<MediaDescriptor> readMediaDescriptors() {
+		int n = buf.getInt();
+		if (n < 0) {
+			return null;
+		}
+		List<MediaDescriptor> list = new ArrayList<MediaDescriptor>(n);
+		for (int i = 0; i < n; i++) {
+			MediaDescriptor md = new MediaDescriptor(str(), null);
+			md.relativeMediaURL = str();
+			md.mimeType = str();
+			md.timeOrigin = buf.getLong();
+			md.extractedFrom = str();
+			md.isValid = buf.get() != 0;
+			list.add(md);
+		}
+		return list;
+	}
+
+	private List<LinkedFileDescriptor> readLinkedFileDescriptors() {
+		int n = buf.getInt();
+		if (n < 0) {
+			return null;
+		}
+		List<LinkedFileDescriptor> list = new ArrayList<LinkedFileDescriptor>(n);
+		for (int i = 0; i < n; i++) {
+			LinkedFileDescriptor lfd = new LinkedFileDescriptor(str(), null);
+			lfd.relativeLinkURL = str();
+			lfd.mimeType = str();
+			lfd.timeOrigin = buf.getLong();
+			lfd.associatedWith = str();
+			lfd.configFile = str();
+			list.add(lfd);
+		}
+		return list;
+	}
+
+	private List<Property> readProperties() {
+		int n = buf.getInt();
+		if (n < 0) {
+			return null;
+		}
+		List<Property> list = new ArrayList<Property>(n);
+		for (int i = 0; i < n; i++) {
+			String name = str();
+			list.add(new PropertyImpl(name, str()));
+		}
+		return list;
+	}
+
+	private List<LingTypeRecord> readLinguisticTypes() {
+		int n = buf.getInt();
+		if (n < 0) {
+			return null;
+		}
+		List<LingTypeRecord> list = new ArrayList<LingTypeRecord>(n);
+		for (int i = 0; i < n; i++) {
+			LingTypeRecord ltr = new LingTypeRecord();
+			ltr.setLingTypeId(str());
+			ltr.setTimeAlignable(str());
+			ltr.setStereoType(str());
+			ltr.setControlledVocabulary(str());
+			ltr.setExtRefId(str());
+			ltr.setLexiconReference(str());
+			list.add(ltr);
+		}
+		return list;
+	}
+
+	private TierData readTier(String[] slotIds) {
+		TierData td = new TierData();
+		td.name = str();
+		td.participant = str();
+		td.annotator = str();
+		td.lingTypeId = str();
+		td.parent = str();
+		td.langRef = str();
+		td.extRef = str();
+		String language = str();
+		String country = str();
+		String variant = str();
+		if (language != null) {
+			td.locale = new Locale(language, country, variant);
+		}
+
+		int n = buf.getInt();
+		if (n < 0) {
+			return td;
+		}
+		int[] types = ints(n);
+		int[] ids = ints(n);
+		int[] begins = ints(n);
+		int[] ends = ints(n);
+		int[] refs = ints(n);
+		int[] prevs = ints(n);
+		int[] values = ints(n);
+		int[] extRefs = ints(n);
+		int[] cveRefs = ints(n);
+
+		td.annotations = new ArrayList<AnnotationRecord>(n);
+		for (int i = 0; i < n; i++) {
+			AnnotationRecord ar = new AnnotationRecord();
+			ar.setAnnotationType(str(types[i]));
+			ar.setAnnotationId(str(ids[i]));
+			ar.setBeginTimeSlotId(begins[i] < 0 ? null : slotIds[begins[i]]);
+			ar.setEndTimeSlotId(ends[i] < 0 ? null : slotIds[ends[i]]);
+			ar.setReferredAnnotId(str(refs[i]));
+			ar.setPreviousAnnotId(str(prevs[i]));
+			ar.setValue(str(values[i]));
+			ar.setExtRefId(str(extRefs[i]));
+			ar.setCvEntryId(str(cveRefs[i]));
+			td.annotations.add(ar);
+		}
+		return td;
+	}
+
+	private Map<String, CVRecord> readControlledVocabularies() {
+		int n = buf.getInt();
+		if (n < 0) {
+			return null;
+		}
+		Map<String, CVRecord> map = new LinkedHashMap<String, CVRecord>(n * 4 / 3 + 1);
+		for (int i = 0; i < n; i++) {
+			String key = str();
+			CVRecord cvr = new CVRecord(str());
+			cvr.setDescription(str());
+			cvr.setExtRefId(str());
+			int numDescriptions = buf.getInt();
+			for (int j = 0; j < numDescriptions; j++) {
+				CVDescriptionRecord cdr = new CVDescriptionRecord();
+				cdr.setLangRef(str());
+				cdr.setDescription(str());
+				cvr.addDescription(cdr);
+			}
+			int numEntries = buf.getInt();
+			for (int j = 0; j < numEntries; j++) {
+				cvr.addEntry(readEntry());
+			}
+			map.put(key, cvr);
+		}
+		return map;
+	}
+
+	private CVEntryRecord readEntry() {
+		CVEntryRecord cver = new CVEntryRecord();
+		cver.setDescription(str());
+		cver.setValue(str());
+		cver.setExtRefId(str());
+		cver.setId(str());
+		cver.setSubEntryLangRef(str());
+		int numSubEntries = buf.getInt();
+		for (int i = 0; i < numSubEntries; i++) {
+			cver.addSubEntry(readEntry());
+		}
+		return cver;
+	}
+
+	private Map<String, ExternalReferenceImpl> readExternalReferences() {
+		int n = buf.getInt();
+		if (n < 0) {
+			return null;
+		}
+		Map<String, ExternalReferenceImpl> map = new LinkedHashMap<String, ExternalReferenceImpl>(
+				n * 4 / 3 + 1);
+		for (int i = 0; i < n; i++) {
+			String key = str();
+			String value = str();
+			map.put(key, new ExternalReferenceImpl(value, buf.getInt()));
+		}
+		return map;
+	}
+
+	private Map<String, LexiconServiceRecord> readLexiconServices() {
+		int n = buf.getInt();
+		if (n < 0) {
+			return null;
+		}
+		Map<String, LexiconServiceRecord> map = new LinkedHashMap<String, LexiconServiceRecord>(
+				n * 4 / 3 + 1);
+		for (int i = 0; i < n; i++) {
+			String key = str();
+			LexiconServiceRecord lsr = new LexiconServiceRecord();
+			lsr.setName(str());
+			lsr.setLexiconId(str());
+			lsr.setLexiconName(str());
+			lsr.setType(str());
+			lsr.setDatcatId(str());
+			lsr.setDatcatName(str());
+			lsr.setUrl(str());
+			map.put(key, lsr);
+		}
+		return map;
+	}
+
+	private List<LanguageRecord> readLanguages() {
+		int n = buf.getInt();
+		if (n < 0) {
+			return null;
+		}
+		List<LanguageRecord> list = new ArrayList<LanguageRecord>(n);
+		for (int i = 0; i < n; i++) {
+			String id = str();
+			String def = str();
+			list.add(new LanguageRecord(id, def, str()));
+		}
+		return list;
+	}
+
+	private List<LicenseRecord> readLicenses() {
+		int n = buf.getInt();
+		if (n < 0) {
+			return null;
+		}
+		List<LicenseRecord> list = new ArrayList<LicenseRecord>(n);
+		for (int i = 0; i < n; i++) {
+			LicenseRecord lr = new LicenseRecord();
+			lr.setUrl(str());
+			lr.setText(str());
+			list.add(lr);
+		}
+		return list;
+	}
+
+	private List<RefLinkSetRecord> readRefLinkSets() {
+		int n = buf.getInt();
+		if (n < 0) {
+			return null;
+		}
+		List<RefLinkSetRecord> list = new ArrayList<RefLinkSetRecord>(n);
+		for (int i = 0; i < n; i++) {
+			RefLinkSetRecord rlsr = new RefLinkSetRecord();
+			rlsr.setLinksID(str());
+			rlsr.setLinksName(str());
+			rlsr.setExtRefID(str());
+			rlsr.setLangRef(str());
+			rlsr.setCvRef(str());
+			int numLinks = buf.getInt();
+			for (int j = 0; j < numLinks; j++) {
+				AbstractRefLinkRecord rlr;
+				if (buf.get() == CROSS_REF_LINK) {
+					rlr = new CrossRefLinkRecord();
+				} else {
+					rlr = new GroupRefLinkRecord();
+				}
+				rlr.setId(str());
+				rlr.setRefName(str());
+				rlr.setExtRefID(str());
+				rlr.setLangRef(str());
+				rlr.setCveRef(str());
+				rlr.setRefType(str());
+				rlr.setContent(str());
+				if (rlr instanceof CrossRefLinkRecord) {
+					CrossRefLinkRecord crlr = (CrossRefLinkRecord) rlr;
+					crlr.setRef1(str());
+					crlr.setRef2(str());
+					crlr.setDirectionality(str());
+				} else {
+					((GroupRefLinkRecord) rlr).setRefs(str());
+				}
+				rlsr.getRefLinks().add(rlr);
+			}
+			list.add(rlsr);
+		}
+		return list;
+	}
+
+	@Override
+	public String getMediaFile(String fileName) {
+		return mediaFile;
+	}
+
+	@Override
+	public List<MediaDescriptor> getMediaDescriptors(String fileName) {
+		return mediaDescriptors;
+	}
+
+	@Override
+	public List<LinkedFileDescriptor> getLinkedFileDescriptors(String fileName) {
+		return linkedFileDescriptors;
+	}
+
+	@Override
+	public String getAuthor(String fileName) {
+		return author;
+	}
+
+	@Override
+	public List<Property> getTranscriptionProperties(String fileName) {
+		return docProperties;
+	}
+
+	@Override
+	public List<LingTypeRecord> getLinguisticTypes(String fileName) {
+		return linguisticTypes;
+	}
+
+	@Override
+	public List<String> getTimeOrder(String fileName) {
+		return timeOrder;
+	}
+
+	@Override
+	public Map<String, String> getTimeSlots(String fileName) {
+		return timeSlots;
+	}
+
+	@Override
+	public Map<String, CVRecord> getControlledVocabularies(String fileName) {
+		return controlledVocabularies;
+	}
+
+	@Override
+	public Map<String, ExternalReferenceImpl> getExternalReferences(String fileName) {
+		return extReferences;
+	}
+
+	@Override
+	public Map<String, LexiconServiceRecord> getLexiconServices(String fileName) {
+		return lexiconServices;
+	}
+
+	@Override
+	public List<String> getTierNames(String fileName) {
+		return tierNames;
+	}
+
+	@Override
+	public String getParticipantOf(String tierName, String fileName) {
+		TierData td = tiers.get(tierName);
+		return td != null ? td.participant : "";
+	}
+
+	@Override
+	public String getAnnotatorOf(String tierName, String fileName) {
+		TierData td = tiers.get(tierName);
+		return td != null ? td.annotator : "";
+	}
+
+	@Override
+	public String getLinguisticTypeIDOf(String tierName, String fileName) {
+		TierData td = tiers.get(tierName);
+		return td != null ? td.lingTypeId : "";
+	}
+
+	@Override
+	public Locale getDefaultLanguageOf(String tierName, String fileName) {
+		TierData td = tiers.get(tierName);
+		return td != null ? td.locale : null;
+	}
+
+	@Override
+	public String getParentNameOf(String tierName, String fileName) {
+		TierData td = tiers.get(tierName);
+		return td != null ? td.parent : null;
+	}
+
+	@Override
+	public List<AnnotationRecord> getAnnotationsOf(String tierName, String fileName) {
+		TierData td = tiers.get(tierName);
+		return td != null ? td.annotations : new ArrayList<AnnotationRecord>(0);
+	}
+
+	@Override
+	public List<LanguageRecord> getLanguages(String fileName) {
+		return languages;
+	}
+
+	@Override
+	public int getFileFormat() {
+		return fileFormat;
+	}
+
+	@Override
+	public List<LicenseRecord> getLicenses(String fileName) {
+		return licenses;
+	}
+
+	@Override
+	public List<RefLinkSetRecord> getRefLinkSetList(String fileName) {
+		return refLinkSetList;
+	}
+
+	@Override
+	public String getLangRefOf(String tierName, String fileName) {
+		TierData td = tiers.get(tierName);
+		return td != null ? td.langRef : null;
+	}
+
+	@Override
+	public String getExtRefOf(String tierName, String fileName) {
+		TierData td = tiers.get(tierName);
+		return td != null ? td.extRef : null;
+	}
+
+	/**
+	 * The attributes and annotations of a tier.
+	 */
+	private static class TierData {
+		String name;
+		String participant;
+		String annotator;
+		String lingTypeId;
+		String parent;
+		String langRef;
+		String extRef;
+		Locale locale;
+		List<AnnotationRecord> annotations;
+	}
+
+	/**
+	 * Writes the records of a parser, collecting the strings in a table
+	 * while the body is written to a buffer.
+	 */
+	private static class Encoder {
+		private final Map<String, Integer> stringIndices = new HashMap<String, Integer>();
+		private final List<String> strings = new ArrayList<String>();
+		private DataOutputStream body;
+
+		void encode(Parser source, String fileName, OutputStream out) throws IOException {
+			ByteArrayOutputStream bodyBytes = new ByteArrayOutputStream(1 << 16);
+			body = new DataOutputStream(bodyBytes);
+
+			body.writeInt(source.getFileFormat());
+			str(source.getMediaFile(fileName));
+			str(source.getAuthor(fileName));
+			writeMediaDescriptors(source.getMediaDescriptors(fileName));
+			writeLinkedFileDescriptors(source.getLinkedFileDescriptors(fileName));
+			writeProperties(source.getTranscriptionProperties(fileName));
+			writeLinguisticTypes(source.getLinguisticTypes(fileName));
+
+			List<String> order = source.getTimeOrder(fileName);
+			Map<String, String> slots = source.getTimeSlots(fileName);
+			if (order == null) {
+				order = new ArrayList<String>(0);
+			}
+			Map<String, Integer> slotIndices = new HashMap<String, Integer>(order.size() * 4 / 3 + 1);
+			body.writeInt(order.size());
+			for (String slotId : order) {
+				slotIndices.put(slotId, slotIndices.size());
+				try {
+					body.writeLong(Long.parseLong(slots.get(slotId)));
+				} catch (NumberFormatException nfe) {
+					throw new IOException("Invalid time value of time slot " + slotId);
+				}
+			}
+
+			List<String> tierNames = source.getTierNames(fileName);
+			body.writeInt(tierNames.size());
+			for (String tierName : tierNames) {
+				writeTier(source, tierName, fileName, slotIndices);
+			}
+
+			writeControlledVocabularies(source.getControlledVocabularies(fileName));
+			writeExternalReferences(source.getExternalReferences(fileName));
+			writeLexiconServices(source.getLexiconServices(fileName));
+			writeLanguages(source.getLanguages(fileName));
+			writeLicenses(source.getLicenses(fileName));
+			writeRefLinkSets(source.getRefLinkSetList(fileName));
+			body.flush();
+
+			DataOutputStream dos = new DataOutputStream(out);
+			dos.writeInt(strings.size());
+			for (String s : strings) {
+				byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+				dos.writeInt(bytes.length);
+				dos.write(bytes);
+			}
+			bodyBytes.writeTo(dos);
+			dos.flush();
+		}
+
+		private int index(String s) {
+			if (s == null) {
+				return -1;
+			}
+			Integer index = stringIndices.get(s);
+			if (index == null) {
+				index = strings.size();
+				strings.add(s);
+				stringIndices.put(s, index);
+			}
+			return index;
+		}
+
+		private void str(String s) throws IOException {
+			body.writeInt(index(s));
+		}
+
+		private void size(Object collection, int size) throws IOException {
+			body.writeInt(collection == null ? -1 : size);
+		}
+
+		private void writeMediaDescriptors(List<MediaDescriptor> list) throws IOException {
+			size(list, list == null ? 0 : list.size());
+			if (list == null) {
+				return;
+			}
+			for (MediaDescriptor md : list) {
+				str(md.mediaURL);
+				str(md.relativeMediaURL);
+				str(md.mimeType);
+				body.writeLong(md.timeOrigin);
+				str(md.extractedFrom);
+				body.writeBoolean(md.isValid);
+			}
+		}
+
+		private void writeLinkedFileDescriptors(List<LinkedFileDescriptor> list) throws IOException {
+			size(list, list == null ? 0 : list.size());
+			if (list == null) {
+				return;
+			}
+			for (LinkedFileDescriptor lfd : list) {
+				str(lfd.linkURL);
+				str(lfd.relativeLinkURL);
+				str(lfd.mimeType);
+				body.writeLong(lfd.timeOrigin);
+				str(lfd.associatedWith);
+				str(lfd.configFile);
+			}
+		}
+
+		private void writeProperties(List<Property> list) throws IOException {
+			size(list, list == null ? 0 : list.size());
+			if (list == null) {
+				return;
+			}
+			for (Property p : list) {
+				if (p.getValue() != null && !(p.getValue() instanceof String)) {
+					throw new IOException("Unsupported value of property " + p.getName());
+				}
+				str(p.getName());
+				str((String) p.getValue());
+			}
+		}
+
+		private void writeLinguisticTypes(List<LingTypeRecord> list) throws IOException {
+			size(list, list == null ? 0 : list.size());
+			if (list == null) {
+				return;
+			}
+			for (LingTypeRecord ltr : list) {
+				str(ltr.getLingTypeId());
+				str(ltr.getTimeAlignable());
+				str(ltr.getStereoType());
+				str(ltr.getControlledVocabulary());
+				str(ltr.getExtRefId());
+				str(ltr.getLexiconReference());
+			}
+		}
+
+		private void writeTier(Parser source, String tierName, String fileName,
+				Map<String, Integer> slotIndices) throws IOException {
+			str(tierName);
+			str(source.getParticipantOf(tierName, fileName));
+			str(source.getAnnotatorOf(tierName, fileName));
+			str(source.getLinguisticTypeIDOf(tierName, fileName));
+			str(source.getParentNameOf(tierName, fileName));
+			str(source.getLangRefOf(tierName, fileName));
+			str(source.getExtRefOf(tierName, fileName));
+			Locale locale = source.getDefaultLanguageOf(tierName, fileName);
+			if (locale != null) {
+				str(locale.getLanguage());
+				str(locale.getCountry());
+				str(locale.getVariant());
+			} else {
+				str(null);
+				str(null);
+				str(null);
+			}
+
+			List<AnnotationRecord> records = source.getAnnotationsOf(tierName, fileName);
+			size(records, records == null ? 0 : records.size());
+			if (records == null) {
+				return;
+			}
+			int n = records.size();
+			int[][] columns = new int[9][n];
+			for (int i = 0; i < n; i++) {
+				AnnotationRecord ar = records.get(i);
+				columns[0][i] = index(ar.getAnnotationType());
+				columns[1][i] = index(ar.getAnnotationId());
+				columns[2][i] = slotIndex(slotIndices, ar.getBeginTimeSlotId());
+				columns[3][i] = slotIndex(slotIndices, ar.getEndTimeSlotId());
+				columns[4][i] = index(ar.getReferredAnnotId());
+				columns[5][i] = index(ar.getPreviousAnnotId());
+				columns[6][i] = index(ar.getValue());
+				columns[7][i] = index(ar.getExtRefId());
+				columns[8][i] = index(ar.getCvEntryId());
+			}
+			for (int[] column : columns) {
+				for (int value : column) {
+					body.writeInt(value);
+				}
+			}
+		}
+
+		private int slotIndex(Map<String, Integer> slotIndices, String slotId) throws IOException {
+			if (slotId == null) {
+				return -1;
+			}
+			Integer index = slotIndices.get(slotId);
+			if (index == null) {
+				throw new IOException("Reference to a time slot that does not exist: " + slotId);
+			}
+			return index;
+		}
+
+		private void writeControlledVocabularies(Map<String, CVRecord> map) throws IOException {
+			size(map, map == null ? 0 : map.size());
+			if (map == null) {
+				return;
+			}
+			for (Map.Entry<String, CVRecord> e : map.entrySet()) {
+				CVRecord cvr = e.getValue();
+				str(e.getKey());
+				str(cvr.getCv_id());
+				str(cvr.getDescription());
+				str(cvr.getExtRefId());
+				List<CVDescriptionRecord> descriptions = cvr.getDescriptions();
+				body.writeInt(descriptions == null ? 0 : descriptions.size());
+				if (descriptions != null) {
+					for (CVDescriptionRecord cdr : descriptions) {
+						str(cdr.getLangRef());
+						str(cdr.getDescription());
+					}
+				}
+				List<CVEntryRecord> entries = cvr.getEntries();
+				body.writeInt(entries == null ? 0 : entries.size());
+				if (entries != null) {
+					for (CVEntryRecord cver : entries) {
+						writeEntry(cver);
+					}
+				}
+			}
+		}
+
+		private void writeEntry(CVEntryRecord cver) throws IOException {
+			str(cver.getDescription());
+			str(cver.getValue());
+			str(cver.getExtRefId());
+			str(cver.getId());
+			str(cver.getSubEntryLangRef());
+			List<CVEntryRecord> subEntries = cver.getSubEntries();
+			size(subEntries, subEntries == null ? 0 : subEntries.size());
+			if (subEntries != null) {
+				for (CVEntryRecord sub : subEntries) {
+					writeEntry(sub);
+				}
+			}
+		}
+
+		private void writeExternalReferences(Map<String, ExternalReferenceImpl> map) throws IOException {
+			size(map, map == null ? 0 : map.size());
+			if (map == null) {
+				return;
+			}
+			for (Map.Entry<String, ExternalReferenceImpl> e : map.entrySet()) {
+				str(e.getKey());
+				str(e.getValue().getValue());
+				body.writeInt(e.getValue().getReferenceType());
+			}
+		}
+
+		private void writeLexiconServices(Map<String, LexiconServiceRecord> map) throws IOException {
+			size(map, map == null ? 0 : map.size());
+			if (map == null) {
+				return;
+			}
+			for (Map.Entry<String, LexiconServiceRecord> e : map.entrySet()) {
+				LexiconServiceRecord lsr = e.getValue();
+				str(e.getKey());
+				str(lsr.getName());
+				str(lsr.getLexiconId());
+				str(lsr.getLexiconName());
+				str(lsr.getType());
+				str(lsr.getDatcatId());
+				str(lsr.getDatcatName());
+				str(lsr.getUrl());
+			}
+		}
+
+		private void writeLanguages(List<LanguageRecord> list) throws IOException {
+			size(list, list == null ? 0 : list.size());
+			if (list == null) {
+				return;
+			}
+			for (LanguageRecord lr : list) {
+				str(lr.getId());
+				str(lr.getDef());
+				str(lr.getLabel());
+			}
+		}
+
+		private void writeLicenses(List<LicenseRecord> list) throws IOException {
+			size(list, list == null ? 0 : list.size());
+			if (list == null) {
+				return;
+			}
+			for (LicenseRecord lr : list) {
+				str(lr.getUrl());
+				str(lr.getText());
+			}
+		}
+
+		private void writeRefLinkSets(List<RefLinkSetRecord> list) throws IOException {
+			size(list, list == null ? 0 : list.size());
+			if (list == null) {
+				return;
+			}
+			for (RefLinkSetRecord rlsr : list) {
+				str(rlsr.getLinksID());
+				str(rlsr.getLinksName());
+				str(rlsr.getExtRefID());
+				str(rlsr.getLangRef());
+				str(rlsr.getCvRef());
+				List<AbstractRefLinkRecord> links = rlsr.getRefLinks();
+				body.writeInt(links == null ? 0 : links.size());
+				if (links == null) {
+					continue;
+				}
+				for (AbstractRefLinkRecord rlr : links) {
+					if (rlr instanceof CrossRefLinkRecord) {
+						body.writeByte(CROSS_REF_LINK);
+					} else if (rlr instanceof GroupRefLinkRecord) {
+						body.writeByte(GROUP_REF_LINK);
+					} else {
+						throw new IOException("Unsupported reference link: " + rlr.getClass().getName());
+					}
+					str(rlr.getId());
+					str(rlr.getRefName());
+					str(rlr.getExtRefID());
+					str(rlr.getLangRef());
+					str(rlr.getCveRef());
+					str(rlr.getRefType());
+					str(rlr.getContent());
+					if (rlr instanceof CrossRefLinkRecord) {
+						CrossRefLinkRecord crlr = (CrossRefLinkRecord) rlr;
+						str(crlr.getRef1());
+						str(crlr.getRef2());
+						str(crlr.getDirectionality());
+					} else {
+						str(((GroupRefLinkRecord) rlr).getRefs());
+					}
+				}
+			}
+		}
+	}
+}
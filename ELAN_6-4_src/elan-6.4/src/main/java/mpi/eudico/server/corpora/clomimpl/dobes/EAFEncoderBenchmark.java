@@ -0,0 +1,96 @@
+package mpi.eudico.server.corpora.clomimpl.dobes;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import mpi.eudico.server.corpora.clomimpl.abstr.TranscriptionImpl;
+
+/**
+ * A simple benchmark comparing the DOM based {@link EAF30Encoder} with the
+ * streaming {@link EAF30StreamEncoder}. For each encoder the file is saved a
+ * number of times, the average time, the size of the output and the increase
+ * in used heap memory during the first save are reported, as well as whether
+ * the output of both encoders is the same (ignoring the date of saving).
+ * <p>
+ * Usage: {@code EAFEncoderBenchmark <eaf file> [number of iterations]}
+ */
+public class EAFEncoderBenchmark {
+	private static final String DATE_ATT = "DATE=\"[^\"]*\"";
+
+	/**
+	 * Runs the benchmark.
+	 *
+	 * @param args the path to an eaf file and optionally the number of
+	 * iterations
+	 * @throws IOException if loading or saving fails
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length == 0) {
+			System.out.println("Usage: EAFEncoderBenchmark <eaf file> [number of iterations]");
+			return;
+		}
+		int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+		TranscriptionImpl transcription = new TranscriptionImpl(args[0]);
+		File domFile = File.createTempFile("bench-dom", ".eaf");
+		File streamFile = File.createTempFile("bench-stream", ".eaf");
+		domFile.deleteOnExit();
+		streamFile.deleteOnExit();
+
+		EAF30Encoder domEncoder = new EAF30Encoder();
+		EAF30Encoder streamEncoder = new EAF30StreamEncoder();
+
+		// warm up, the first run of each also reports memory use
+		long domMem = run(domEncoder, transcription, domFile, 1, true);
+		long streamMem = run(streamEncoder, transcription, streamFile, 1, true);
+
+		long domTime = run(domEncoder, transcription, domFile, iterations, false);
+		long streamTime = run(streamEncoder, transcription, streamFile, iterations, false);
+
+		byte[] domBytes = Files.readAllBytes(domFile.toPath());
+		byte[] streamBytes = Files.readAllBytes(streamFile.toPath());
+
+		System.out.println(String.format("File: %s, iterations: %d", args[0], iterations));
+		System.out.println(String.format("DOM:    %8.2f ms/save, %10d bytes, ~%6d KB heap",
+				domTime / (iterations * 1000000.0), domBytes.length, domMem / 1024));
+		System.out.println(String.format("Stream: %8.2f ms/save, %10d bytes, ~%6d KB heap",
+				streamTime / (iterations * 1000000.0), streamBytes.length, streamMem / 1024));
+		System.out.println(String.format("Throughput: DOM %.1f MB/s, Stream %.1f MB/s",
+				mbPerSecond(domBytes.length, domTime / iterations),
+				mbPerSecond(streamBytes.length, streamTime / iterations)));
+		// the DATE attribute of the document element is the time of saving
+		String domText = new String(domBytes, StandardCharsets.UTF_8).replaceFirst(DATE_ATT, "");
+		String streamText = new String(streamBytes, StandardCharsets.UTF_8).replaceFirst(DATE_ATT, "");
+		System.out.println("Identical output (apart from the DATE): " + domText.equals(streamText));
+	}
+
+	/**
+	 * Saves the transcription a number of times.
+	 *
+	 * @return the elapsed time in nanoseconds or, if {@code measureMemory} is
+	 * true, the increase of used heap memory in bytes (only meaningful for a
+	 * single iteration)
+	 */
+	private static long run(EAF30Encoder encoder, TranscriptionImpl transcription, File file,
+			int iterations, boolean measureMemory) throws IOException {
+		Runtime rt = Runtime.getRuntime();
+		System.gc();
+		long usedBefore = rt.totalMemory() - rt.freeMemory();
+		long start = System.nanoTime();
+		long maxUsed = usedBefore;
+
+		for (int i = 0; i < iterations; i++) {
+			encoder.encodeAndSave(transcription, null, null, file.getAbsolutePath());
+			maxUsed = Math.max(maxUsed, rt.totalMemory() - rt.freeMemory());
+		}
+
+		long elapsed = System.nanoTime() - start;
+		return measureMemory ? maxUsed - usedBefore : elapsed;
+	}
+
+	private static double mbPerSecond(long bytes, long nanos) {
+		return nanos > 0 ? (bytes / (1024.0 * 1024.0)) / (nanos / 1000000000.0) : 0;
+	}
+}
@@ -0,0 +1,119 @@
+package mpi.eudico.server.corpora.clomimpl.dobes;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import mpi.eudico.server.corpora.clomimpl.abstr.Parser;
+import mpi.eudico.server.corpora.clomimpl.abstr.ParserFactory;
+
+/**
+ * A simple benchmark for the EAF parsers. The file is parsed a number of
+ * times by the parser for its format version, the average parse time is
+ * reported as well as the heap memory retained by the parse result of one
+ * load. To show the effect of the string pool of the parsers, the number of
+ * annotation values, time slot references and controlled vocabulary entry
+ * references is compared with the number of distinct values and the number
+ * of distinct string instances.
+ * <p>
+ * Usage: {@code EAFParserBenchmark <eaf file> [number of iterations]}
+ */
+public class EAFParserBenchmark {
+
+	/**
+	 * Runs the benchmark.
+	 *
+	 * @param args the path to an eaf file and optionally the number of
+	 * iterations
+	 */
+	public static void main(String[] args) {
+		if (args.length == 0) {
+			System.out.println("Usage: EAFParserBenchmark <eaf file> [number of iterations]");
+			return;
+		}
+		String path = new File(args[0]).getAbsolutePath();
+		int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+		int version = ACMTranscriptionStore.eafFileFormatTaster(path);
+
+		// warm up
+		parse(version, path);
+
+		long totalNanos = 0;
+		for (int i = 0; i < iterations; i++) {
+			// the schema is loaded when the parser is created, this is not included
+			Parser parser = ParserFactory.getParser(version);
+			long start = System.nanoTime();
+			parser.getTierNames(path);
+			totalNanos += System.nanoTime() - start;
+		}
+
+		Runtime rt = Runtime.getRuntime();
+		Parser parser = ParserFactory.getParser(version);
+		gc();
+		long usedBefore = rt.totalMemory() - rt.freeMemory();
+		parser.getTierNames(path);
+		gc();
+		long retained = rt.totalMemory() - rt.freeMemory() - usedBefore;
+
+		System.out.println(String.format("File: %s (%s), %d bytes, iterations: %d", args[0],
+				parser.getClass().getSimpleName(), new File(path).length(), iterations));
+		System.out.println(String.format("Parse: %8.2f ms/load, retained heap ~%d KB",
+				totalNanos / (iterations * 1000000.0), retained / 1024));
+
+		Counter values = new Counter();
+		Counter slotRefs = new Counter();
+		Counter cveRefs = new Counter();
+		for (String tierName : parser.getTierNames(path)) {
+			List<AnnotationRecord> records = parser.getAnnotationsOf(tierName, path);
+			for (AnnotationRecord record : records) {
+				values.add(record.getValue());
+				slotRefs.add(record.getBeginTimeSlotId());
+				slotRefs.add(record.getEndTimeSlotId());
+				cveRefs.add(record.getCvEntryId());
+			}
+		}
+		values.print("Annotation values");
+		slotRefs.print("Time slot references");
+		cveRefs.print("CV entry references");
+		// keep the parse result reachable until the memory has been measured
+		parser.getTimeOrder(path);
+	}
+
+	private static Parser parse(int version, String path) {
+		Parser parser = ParserFactory.getParser(version);
+		parser.getTierNames(path);
+		return parser;
+	}
+
+	private static void gc() {
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+	}
+
+	/**
+	 * Counts strings, distinct values and distinct instances.
+	 */
+	private static class Counter {
+		private int count;
+		private final Set<String> distinct = new HashSet<String>();
+		private final Set<String> instances = Collections.newSetFromMap(
+				new IdentityHashMap<String, Boolean>());
+
+		void add(String s) {
+			if (s != null) {
+				count++;
+				distinct.add(s);
+				instances.add(s);
+			}
+		}
+
+		void print(String label) {
+			System.out.println(String.format("%-22s %9d, distinct values %9d, string instances %9d",
+					label + ":", count, distinct.size(), instances.size()));
+		}
+	}
+}
@@ -0,0 +1,181 @@
+package mpi.eudico.server.corpora.clomimpl.dobes;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+import javax.xml.XMLConstants;
+import javax.xml.transform.sax.SAXSource;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
+import javax.xml.validation.Validator;
+
+import mpi.eudico.server.corpora.util.ServerLogger;
+
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+/**
+ * A process wide cache of the compiled XML schemas of the EAF and ECV
+ * versions. Compiling a schema takes much longer than validating a typical
+ * file; a {@code Schema} is immutable and can be shared by any number of
+ * parsers and threads.
+ * <p>
+ * The class also determines how the EAF parsers validate:
+ * <ul>
+ * <li>{@code ELAN.EAF.Validate} (default {@code true}) turns validation
+ * on or off</li>
+ * <li>if {@code ELAN.EAF.ValidateInBackground} is {@code true} (default
+ * {@code false}), a file is validated by a separate thread while a
+ * non-validating parser builds the model; the validation messages are
+ * reported to the error handler of the parser, as with inline validation.
+ * Validation can also be left to the "Validate EAF" function, by turning it
+ * off altogether.</li>
+ * </ul>
+ *
+ * @version Oct 2026
+ */
+public class EAFSchemaCache {
+	/** schema resource path to compiled schema */
+	private static final Map<String, Schema> schemas = new HashMap<String, Schema>();
+	private static ThreadPoolExecutor validationExecutor;
+
+	/**
+	 * Private constructor, all methods are static.
+	 */
+	private EAFSchemaCache() {
+	}
+
+	/**
+	 * Returns the compiled schema for a schema resource, compiling it on
+	 * the first request.
+	 *
+	 * @param resource the path of the schema resource, e.g.
+	 * {@link EAF30#EAF30_SCHEMA_RESOURCE}
+	 * @return the schema
+	 * @throws SAXException if the resource does not exist or cannot be
+	 * compiled
+	 */
+	public static synchronized Schema getSchema(String resource) throws SAXException {
+		Schema schema = schemas.get(resource);
+
+		if (schema == null) {
+			URL url = EAFSchemaCache.class.getResource(resource);
+			if (url == null) {
+				throw new SAXException("The schema resource does not exist: " + resource);
+			}
+			SchemaFactory schemaFactory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
+			schema = schemaFactory.newSchema(url);
+			schemas.put(resource, schema);
+		}
+
+		return schema;
+	}
+
+	/**
+	 * @return {@code true} unless the property {@code ELAN.EAF.Validate} is
+	 * set to {@code false}
+	 */
+	public static boolean isValidationEnabled() {
+		return Boolean.parseBoolean(System.getProperty("ELAN.EAF.Validate", "true"));
+	}
+
+	/**
+	 * @return {@code true} if validation is enabled and the property
+	 * {@code ELAN.EAF.ValidateInBackground} is {@code true}
+	 */
+	public static boolean isBackgroundValidation() {
+		return isValidationEnabled() &&
+				Boolean.parseBoolean(System.getProperty("ELAN.EAF.ValidateInBackground", "false"));
+	}
+
+	/**
+	 * Validates a file against a schema on a separate thread. The method
+	 * returns immediately, errors and warnings are reported to the handler
+	 * from the validation thread.
+	 *
+	 * @param schema the schema to validate against
+	 * @param fileName the path or URL of the file
+	 * @param errorHandler the handler for validation errors, it must be
+	 * safe to call it from another thread
+	 */
+	public static void validateInBackground(final Schema schema, final String fileName,
+			final ErrorHandler errorHandler) {
+		getValidationExecutor().execute(new Runnable() {
+			@Override
+			public void run() {
+				long start = System.currentTimeMillis();
+				InputSource is = null;
+
+				try {
+					is = ACMTranscriptionStore.toInputSource(fileName);
+					Validator validator = schema.newValidator();
+					validator.setErrorHandler(errorHandler);
+					validator.validate(new SAXSource(is));
+
+					if (ServerLogger.LOG.isLoggable(Level.FINE)) {
+						ServerLogger.LOG.fine(String.format("Validated %s in %d ms", fileName,
+								System.currentTimeMillis() - start));
+					}
+				} catch (SAXException | IOException ex) {
+					// fatal errors are already reported to the handler
+					if (ServerLogger.LOG.isLoggable(Level.WARNING)) {
+						ServerLogger.LOG.warning("Could not validate " + fileName + ": " +
+								ex.getMessage());
+					}
+				} finally {
+					close(is);
+				}
+			}
+		});
+	}
+
+	private static synchronized ThreadPoolExecutor getValidationExecutor() {
+		if (validationExecutor == null) {
+			int numThreads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+			validationExecutor = new ThreadPoolExecutor(numThreads, numThreads, 30L,
+					TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+						private final AtomicInteger count = new AtomicInteger();
+
+						@Override
+						public Thread newThread(Runnable r) {
+							Thread t = new Thread(r, "EAF-Validator-" + count.incrementAndGet());
+							t.setDaemon(true);
+							t.setPriority(Thread.NORM_PRIORITY - 1);
+							return t;
+						}
+					});
+			validationExecutor.allowCoreThreadTimeOut(true);
+		}
+
+		return validationExecutor;
+	}
+
+	private static void close(InputSource is) {
+		if (is == null) {
+			return;
+		}
+		try {
+			InputStream stream = is.getByteStream();
+			if (stream != null) {
+				stream.close();
+			}
+			Reader reader = is.getCharacterStream();
+			if (reader != null) {
+				reader.close();
+			}
+		} catch (IOException ioe) {
+			// ignore
+		}
+	}
+}
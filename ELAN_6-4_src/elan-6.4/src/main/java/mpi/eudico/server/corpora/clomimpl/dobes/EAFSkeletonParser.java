@@ -14,7 +14,6 @@ import javax.xml.XMLConstants;
 import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
 import javax.xml.validation.Schema;
-import javax.xml.validation.SchemaFactory;
 
 import mpi.eudico.server.corpora.clomimpl.abstr.ExternalReferenceImpl;
 import mpi.eudico.server.corpora.clomimpl.abstr.LicenseRecord;
@@ -150,7 +149,7 @@ public class EAFSkeletonParser {
         this.strict = strict;
 
     	try {
-    		boolean validate = Boolean.parseBoolean(System.getProperty("ELAN.EAF.Validate", "true"));
+    		boolean validate = EAFSchemaCache.isValidationEnabled();
         	
 			// first create a parser factory
     		SAXParserFactory parserFactory = SAXParserFactory.newInstance();
@@ -159,9 +158,7 @@ public class EAFSkeletonParser {
 			
 			if (validate) {
 				// to get a validating parser, set the schema to the proper xsd schema
-				SchemaFactory schemaFactory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
-				Schema eafSchema = schemaFactory.newSchema(
-						this.getClass().getResource(ACMTranscriptionStore.getCurrentEAFSchemaLocal()));
+				Schema eafSchema = EAFSchemaCache.getSchema(ACMTranscriptionStore.getCurrentEAFSchemaLocal());
 				
 				parserFactory.setSchema(eafSchema);// the validating flag should be false (the default)
 			} else {
@@ -0,0 +1,621 @@
+package mpi.eudico.server.corpora.clomimpl.dobes;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+
+import mpi.eudico.server.corpora.clomimpl.abstr.ParseException;
+import mpi.eudico.server.corpora.clomimpl.util.TierSnapshot;
+import mpi.eudico.server.corpora.clomimpl.util.TranscriptionSnapshot;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Parses an eaf file (any version) into a {@link TranscriptionSnapshot},
+ * without creating tiers, annotations and time slots. Only the time order,
+ * the tiers with their annotations, the linguistic types and the controlled
+ * vocabularies are read; the parser does not validate.
+ * <p>
+ * While parsing, the annotations are collected per tier in growing primitive
+ * arrays, time slot id's are replaced by their index in the time order and
+ * values by their index in a pool of strings. After parsing the time of
+ * every annotation is calculated as the annotation would do in a loaded
+ * transcription:
+ * <ul>
+ * <li>unaligned time slots get a virtual time; per tier, a series of
+ * unaligned slots is spread evenly between the nearest slots with a (virtual)
+ * time, the parent tiers first. This corresponds to the times proposed by
+ * the {@code TimeProposer} for time subdivisions.</li>
+ * <li>symbolic associations have the times of their parent annotation</li>
+ * <li>a symbolic subdivision divides the interval of the parent annotation
+ * evenly over the annotations of the chain</li>
+ * </ul>
+ *
+ * @version Oct 2026
+ */
+public class EAFSnapshotParser {
+	private final String fileName;
+	private final SAXParser parser;
+
+	/** time slot id to index in the time order */
+	private final Map<String, Integer> slotIndexes = new HashMap<String, Integer>();
+	private long[] slotTimes = new long[256];
+	private int numSlots;
+
+	private final List<TierData> tierList = new ArrayList<TierData>();
+	private final Map<String, TierData> tierMap = new HashMap<String, TierData>();
+	/** linguistic type id to {CONSTRAINTS, CONTROLLED_VOCABULARY_REF} */
+	private final Map<String, String[]> typeMap = new LinkedHashMap<String, String[]>();
+	private final Map<String, CVData> cvMap = new LinkedHashMap<String, CVData>();
+
+	private final Map<String, Integer> poolMap = new HashMap<String, Integer>();
+	private final List<String> pool = new ArrayList<String>();
+
+	/**
+	 * Creates a new parser for a file.
+	 *
+	 * @param fileName the file to parse
+	 * @throws ParseException if the xml parser cannot be created
+	 * @throws NullPointerException if the file name is null
+	 */
+	public EAFSnapshotParser(String fileName) throws ParseException {
+		if (fileName == null) {
+			throw new NullPointerException();
+		}
+		this.fileName = fileName;
+
+		try {
+			SAXParserFactory parserFactory = SAXParserFactory.newInstance();
+			parserFactory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, false);
+			parserFactory.setNamespaceAware(true);
+			parserFactory.setValidating(false);
+			parser = parserFactory.newSAXParser();
+		} catch (Throwable thr) {
+			throw new ParseException(thr.getMessage(), thr);
+		}
+	}
+
+	/**
+	 * Parses the file and creates the snapshot.
+	 *
+	 * @return the snapshot of the transcription
+	 * @throws ParseException if the file cannot be read or parsed
+	 */
+	public TranscriptionSnapshot parse() throws ParseException {
+		try {
+			InputSource is = ACMTranscriptionStore.toInputSource(fileName);
+			if (is == null) {
+				throw new ParseException("Cannot read file: " + fileName);
+			}
+			parser.parse(is, new SnapshotHandler());
+		} catch (IOException ioe) {
+			throw new ParseException("IO error: " + ioe.getMessage(), ioe);
+		} catch (SAXException saex) {
+			throw new ParseException("Parsing error: " + saex.getMessage(), saex);
+		}
+
+		return createSnapshot();
+	}
+
+	/**
+	 * Calculates the times of the annotations, tier by tier, parent tiers
+	 * first, and creates the snapshot.
+	 */
+	private TranscriptionSnapshot createSnapshot() {
+		for (TierData td : tierList) {
+			td.parent = td.parentName != null ? tierMap.get(td.parentName) : null;
+			String[] type = typeMap.get(td.typeName);
+			if (type != null) {
+				td.stereotype = type[0];
+				td.cvName = type[1];
+			}
+		}
+		// a time for every slot, -1 if not yet known
+		long[] times = Arrays.copyOf(slotTimes, numSlots);
+		// annotation id to tier data and index in the tier, for references
+		Map<String, TierData> annTiers = new HashMap<String, TierData>();
+		Map<String, Integer> annIndexes = new HashMap<String, Integer>();
+		for (TierData td : tierList) {
+			for (int i = 0; i < td.size; i++) {
+				annTiers.put(td.ids[i], td);
+				annIndexes.put(td.ids[i], i);
+			}
+		}
+
+		for (TierData td : tierList) {
+			calculateTimes(td, times, annTiers, annIndexes);
+		}
+		List<TierSnapshot> snapTiers = new ArrayList<TierSnapshot>(tierList.size());
+		for (TierData td : tierList) {
+			snapTiers.add(createTier(td, annTiers, annIndexes));
+		}
+
+		Map<String, List<String>> cvValues = new LinkedHashMap<String, List<String>>();
+		for (CVData cv : cvMap.values()) {
+			cvValues.put(cv.id, cv.getValues());
+		}
+
+		return new TranscriptionSnapshot(fileName, snapTiers, pool.toArray(new String[pool.size()]),
+				new ArrayList<String>(typeMap.keySet()), cvValues);
+	}
+
+	/**
+	 * Creates the snapshot of a tier, after that of the parent tier.
+	 */
+	private TierSnapshot createTier(TierData td, Map<String, TierData> annTiers,
+			Map<String, Integer> annIndexes) {
+		if (td.snapshot == null) {
+			if (td.parent != null && !td.calculating) {
+				td.calculating = true;// guards against cyclic parent references
+				createTier(td.parent, annTiers, annIndexes);
+				td.calculating = false;
+			}
+			td.snapshot = td.createTier(tierList.indexOf(td.parent), annTiers, annIndexes);
+		}
+
+		return td.snapshot;
+	}
+
+	/**
+	 * Calculates the begin and end times of the annotations of a tier, after
+	 * calculating those of the parent tier.
+	 */
+	private void calculateTimes(TierData td, long[] times, Map<String, TierData> annTiers,
+			Map<String, Integer> annIndexes) {
+		if (td.begins != null || td.calculating) {
+			return;
+		}
+		td.calculating = true;
+		if (td.parent != null) {
+			calculateTimes(td.parent, times, annTiers, annIndexes);
+		}
+		td.begins = new long[td.size];
+		td.ends = new long[td.size];
+		td.chainPos = new int[td.size];
+
+		interpolateSlots(td, times);
+		// the symbolic subdivision annotations, grouped by parent annotation id
+		Map<String, List<Integer>> chains = null;
+
+		for (int i = 0; i < td.size; i++) {
+			if (td.slots1[i] >= 0) {
+				td.begins[i] = times[td.slots1[i]];
+				td.ends[i] = times[td.slots2[i]];
+			} else {
+				TierData refTier = annTiers.get(td.refs[i]);
+				if (refTier == null) {
+					continue;
+				}
+				if (refTier != td.parent) {
+					calculateTimes(refTier, times, annTiers, annIndexes);
+				}
+				int refIndex = annIndexes.get(td.refs[i]);
+				if (refTier.begins == null) {
+					continue;// cyclic reference
+				}
+				td.begins[i] = refTier.begins[refIndex];
+				td.ends[i] = refTier.ends[refIndex];
+
+				if ("Symbolic_Subdivision".equals(td.stereotype)) {
+					if (chains == null) {
+						chains = new LinkedHashMap<String, List<Integer>>();
+					}
+					List<Integer> chain = chains.get(td.refs[i]);
+					if (chain == null) {
+						chain = new ArrayList<Integer>();
+						chains.put(td.refs[i], chain);
+					}
+					chain.add(i);
+				}
+			}
+		}
+
+		if (chains != null) {
+			for (List<Integer> chain : chains.values()) {
+				divide(td, chain);
+			}
+		}
+		td.calculating = false;
+	}
+
+	/**
+	 * Gives every unaligned slot of the alignable annotations of a tier a
+	 * time. A series of slots without a time, in the order of the time order,
+	 * gets times evenly spread between the slots before and after the series.
+	 */
+	private void interpolateSlots(TierData td, long[] times) {
+		int[] slots = new int[td.size * 2];
+		int n = 0;
+
+		for (int i = 0; i < td.size; i++) {
+			if (td.slots1[i] >= 0) {
+				slots[n++] = td.slots1[i];
+				slots[n++] = td.slots2[i];
+			}
+		}
+		if (n == 0) {
+			return;
+		}
+		Arrays.sort(slots, 0, n);
+		// remove duplicates, slots are shared by adjacent annotations
+		int m = 1;
+		for (int j = 1; j < n; j++) {
+			if (slots[j] != slots[m - 1]) {
+				slots[m++] = slots[j];
+			}
+		}
+
+		boolean hasPrevious = false;
+		long previousTime = 0;
+		int seriesStart = -1;
+
+		for (int j = 0; j < m; j++) {
+			long t = times[slots[j]];
+			if (t < 0) {
+				if (seriesStart < 0) {
+					seriesStart = j;
+				}
+				continue;
+			}
+			if (seriesStart >= 0) {
+				fillSeries(times, slots, seriesStart, j, hasPrevious ? previousTime : t, t);
+				seriesStart = -1;
+			}
+			hasPrevious = true;
+			previousTime = t;
+		}
+
+		if (seriesStart >= 0) {
+			// no slot with a time after the series
+			fillSeries(times, slots, seriesStart, m, previousTime, previousTime);
+		}
+	}
+
+	/**
+	 * Assigns times to a series of slots without a time.
+	 *
+	 * @param times the times of all slots
+	 * @param slots the sorted slot indexes of a tier
+	 * @param from the first position of the series in {@code slots}
+	 * @param to the position after the series
+	 * @param beginTime the time before the series
+	 * @param endTime the time after the series
+	 */
+	private void fillSeries(long[] times, int[] slots, int from, int to, long beginTime, long endTime) {
+		long segmentDiff = (endTime - beginTime) / (to - from + 1);
+
+		for (int j = from; j < to; j++) {
+			times[slots[j]] = beginTime + ((j - from + 1) * segmentDiff);
+		}
+	}
+
+	/**
+	 * Divides the interval of a parent annotation over the annotations of a
+	 * symbolic subdivision, in the order of the chain of previous
+	 * annotations.
+	 */
+	private void divide(TierData td, List<Integer> siblings) {
+		int n = siblings.size();
+		List<Integer> ordered = new ArrayList<Integer>(n);
+		Map<String, Integer> next = new HashMap<String, Integer>();
+		Integer head = null;
+
+		for (Integer i : siblings) {
+			if (td.previous[i] == null) {
+				if (head == null) {
+					head = i;
+				}
+			} else {
+				next.put(td.previous[i], i);
+			}
+		}
+		for (Integer cur = head; cur != null && ordered.size() < n; cur = next.get(td.ids[cur])) {
+			ordered.add(cur);
+		}
+		if (ordered.size() < n) {
+			// a broken chain, fall back to the order in the file
+			ordered = siblings;
+		}
+
+		long parentBegin = td.begins[ordered.get(0)];
+		double durationPerAnnot = (td.ends[ordered.get(0)] - parentBegin) / (double) n;
+
+		for (int j = 0; j < n; j++) {
+			int i = ordered.get(j);
+			td.begins[i] = parentBegin + (long) (j * durationPerAnnot);
+			td.ends[i] = parentBegin + (long) ((j + 1) * durationPerAnnot);
+			// keep the chain order when sorting by time
+			td.chainPos[i] = j;
+		}
+	}
+
+	/**
+	 * The tier attributes and annotations collected while parsing.
+	 */
+	private class TierData {
+		String name;
+		String parentName;
+		String typeName;
+		String participant;
+		String annotator;
+		String langRef;
+		TierData parent;
+		String stereotype;
+		String cvName;
+
+		int size;
+		String[] ids = new String[16];
+		int[] slots1 = new int[16];
+		int[] slots2 = new int[16];
+		String[] refs = new String[16];
+		String[] previous = new String[16];
+		int[] valueIds = new int[16];
+		int[] chainPos;
+
+		long[] begins;
+		long[] ends;
+		boolean calculating;
+		/** the position of each annotation after sorting */
+		int[] sortedIndexes;
+		TierSnapshot snapshot;
+
+		void add(String id, int slot1, int slot2, String ref, String prev) {
+			if (size == ids.length) {
+				int newLength = size * 2;
+				ids = Arrays.copyOf(ids, newLength);
+				slots1 = Arrays.copyOf(slots1, newLength);
+				slots2 = Arrays.copyOf(slots2, newLength);
+				refs = Arrays.copyOf(refs, newLength);
+				previous = Arrays.copyOf(previous, newLength);
+				valueIds = Arrays.copyOf(valueIds, newLength);
+			}
+			ids[size] = id;
+			slots1[size] = slot1;
+			slots2[size] = slot2;
+			refs[size] = ref;
+			previous[size] = prev;
+			valueIds[size] = 0;
+			size++;
+		}
+
+		/**
+		 * Sorts the annotations by begin time and creates the tier snapshot.
+		 */
+		TierSnapshot createTier(int parentIndex, Map<String, TierData> annTiers,
+				Map<String, Integer> annIndexes) {
+			Integer[] order = new Integer[size];
+			for (int i = 0; i < size; i++) {
+				order[i] = i;
+			}
+			// stable sort, annotations with the same times stay in file order
+			Arrays.sort(order, new Comparator<Integer>() {
+				@Override
+				public int compare(Integer o1, Integer o2) {
+					int c = Long.compare(begins[o1], begins[o2]);
+					if (c == 0) {
+						c = Integer.compare(chainPos[o1], chainPos[o2]);
+					}
+					return c;
+				}
+			});
+
+			long[] sBegins = new long[size];
+			long[] sEnds = new long[size];
+			int[] sValues = new int[size];
+			int[] sParents = new int[size];
+			sortedIndexes = new int[size];
+
+			for (int j = 0; j < size; j++) {
+				int i = order[j];
+				sortedIndexes[i] = j;
+				sBegins[j] = begins[i];
+				sEnds[j] = ends[i];
+				sValues[j] = valueIds[i];
+				sParents[j] = findParent(i, annTiers, annIndexes);
+			}
+			// release the collected data
+			ids = null;
+			refs = null;
+			previous = null;
+
+			return new TierSnapshot(name, parentIndex, typeName, cvName, participant, annotator, langRef,
+					sBegins, sEnds, sValues, sParents);
+		}
+
+		/**
+		 * Returns the index of the parent annotation of an annotation, the
+		 * referred annotation or the annotation of the parent tier that
+		 * contains the annotation.
+		 */
+		private int findParent(int i, Map<String, TierData> annTiers, Map<String, Integer> annIndexes) {
+			if (parent == null || parent.sortedIndexes == null) {
+				return -1;
+			}
+			if (refs[i] != null) {
+				if (annTiers.get(refs[i]) != parent) {
+					return -1;
+				}
+				return parent.sortedIndexes[annIndexes.get(refs[i])];
+			}
+			// the parent tier has been sorted already, binary search on begin time
+			TierSnapshot pt = parent.snapshot;
+			int lo = 0;
+			int hi = pt.getNumberOfAnnotations() - 1;
+			int found = -1;
+			while (lo <= hi) {
+				int mid = (lo + hi) >>> 1;
+				if (pt.getBeginTime(mid) <= begins[i]) {
+					found = mid;
+					lo = mid + 1;
+				} else {
+					hi = mid - 1;
+				}
+			}
+			if (found >= 0 && pt.getEndTime(found) >= ends[i]) {
+				return found;
+			}
+			return -1;
+		}
+	}
+
+	/**
+	 * The entries of a controlled vocabulary; per entry the value in the
+	 * first language of the vocabulary.
+	 */
+	private static class CVData {
+		final String id;
+		boolean external;
+		String firstLanguage;
+		final List<String> values = new ArrayList<String>();
+
+		CVData(String id) {
+			this.id = id;
+		}
+
+		List<String> getValues() {
+			return external ? new ArrayList<String>() : values;
+		}
+	}
+
+	//#######################
+	// Content handler
+	//#######################
+	private class SnapshotHandler extends DefaultHandler {
+		private final StringBuilder content = new StringBuilder();
+		private boolean collectContent;
+		private TierData currentTier;
+		private CVData currentCV;
+		private String currentLangRef;
+		private boolean entryValueAdded;
+
+		@Override
+		public void characters(char[] ch, int start, int length) throws SAXException {
+			if (collectContent) {
+				content.append(ch, start, length);
+			}
+		}
+
+		@Override
+		public void startElement(String nameSpaceURI, String name, String rawName,
+				Attributes attributes) throws SAXException {
+			if (name.equals("TIME_SLOT")) {
+				addSlot(attributes.getValue("TIME_SLOT_ID"), attributes.getValue("TIME_VALUE"));
+			} else if (name.equals("TIER")) {
+				String tierId = attributes.getValue("TIER_ID");
+				currentTier = tierMap.get(tierId);
+				if (currentTier == null) {
+					currentTier = new TierData();
+					currentTier.name = tierId;
+					currentTier.parentName = attributes.getValue("PARENT_REF");
+					currentTier.typeName = attributes.getValue("LINGUISTIC_TYPE_REF");
+					// empty string if absent, like the tiers of a transcription
+					currentTier.participant = valueOrEmpty(attributes.getValue("PARTICIPANT"));
+					currentTier.annotator = valueOrEmpty(attributes.getValue("ANNOTATOR"));
+					currentTier.langRef = attributes.getValue("LANG_REF");
+					tierMap.put(tierId, currentTier);
+					tierList.add(currentTier);
+				}
+			} else if (name.equals("ALIGNABLE_ANNOTATION")) {
+				Integer s1 = slotIndexes.get(attributes.getValue("TIME_SLOT_REF1"));
+				Integer s2 = slotIndexes.get(attributes.getValue("TIME_SLOT_REF2"));
+				if (s1 == null || s2 == null) {
+					throw new SAXException("Unknown time slot in annotation: "
+							+ attributes.getValue("ANNOTATION_ID"));
+				}
+				currentTier.add(attributes.getValue("ANNOTATION_ID"), s1, s2, null, null);
+			} else if (name.equals("REF_ANNOTATION")) {
+				currentTier.add(attributes.getValue("ANNOTATION_ID"), -1, -1,
+						attributes.getValue("ANNOTATION_REF"), attributes.getValue("PREVIOUS_ANNOTATION"));
+			} else if (name.equals("ANNOTATION_VALUE")) {
+				startContent();
+			} else if (name.equals("LINGUISTIC_TYPE")) {
+				typeMap.put(attributes.getValue("LINGUISTIC_TYPE_ID"), new String[] {
+						attributes.getValue("CONSTRAINTS"), attributes.getValue("CONTROLLED_VOCABULARY_REF")});
+			} else if (name.equals("CONTROLLED_VOCABULARY")) {
+				currentCV = new CVData(attributes.getValue("CV_ID"));
+				currentCV.external = attributes.getValue("EXT_REF") != null;
+				cvMap.put(currentCV.id, currentCV);
+			} else if (name.equals("DESCRIPTION")) {// New in 2.8
+				if (currentCV != null && currentCV.firstLanguage == null) {
+					currentCV.firstLanguage = attributes.getValue("LANG_REF");
+				}
+			} else if (name.equals("CV_ENTRY")) {// Removed in 2.8
+				startContent();
+			} else if (name.equals("CV_ENTRY_ML")) {// New in 2.8
+				entryValueAdded = false;
+			} else if (name.equals("CVE_VALUE")) {// New in 2.8
+				currentLangRef = attributes.getValue("LANG_REF");
+				startContent();
+			}
+		}
+
+		@Override
+		public void endElement(String nameSpaceURI, String name, String rawName) throws SAXException {
+			if (name.equals("ANNOTATION_VALUE")) {
+				if (currentTier != null && currentTier.size > 0) {
+					currentTier.valueIds[currentTier.size - 1] = TranscriptionSnapshot.poolValue(
+							content.toString(), poolMap, pool);
+				}
+				collectContent = false;
+			} else if (name.equals("CV_ENTRY")) {
+				if (currentCV != null) {
+					currentCV.values.add(content.toString());
+				}
+				collectContent = false;
+			} else if (name.equals("CVE_VALUE")) {
+				if (currentCV != null && !entryValueAdded) {
+					if (currentCV.firstLanguage == null) {
+						currentCV.firstLanguage = currentLangRef;
+					}
+					if (currentCV.firstLanguage == null || currentCV.firstLanguage.equals(currentLangRef)) {
+						currentCV.values.add(content.toString());
+						entryValueAdded = true;
+					}
+				}
+				collectContent = false;
+			} else if (name.equals("TIER")) {
+				currentTier = null;
+			} else if (name.equals("CONTROLLED_VOCABULARY")) {
+				currentCV = null;
+			}
+		}
+
+		private void startContent() {
+			content.setLength(0);
+			collectContent = true;
+		}
+
+		private void addSlot(String id, String value) {
+			if (numSlots == slotTimes.length) {
+				slotTimes = Arrays.copyOf(slotTimes, numSlots * 2);
+			}
+			long time = -1;
+			if (value != null) {
+				try {
+					time = Long.parseLong(value);
+				} catch (NumberFormatException nfe) {
+					// treat as unaligned
+				}
+			}
+			slotTimes[numSlots] = time;
+			slotIndexes.put(id, numSlots);
+			numSlots++;
+		}
+
+		private String valueOrEmpty(String value) {
+			return value != null ? value : "";
+		}
+	}
+}
@@ -0,0 +1,288 @@
+package mpi.eudico.server.corpora.clomimpl.dobes;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+/**
+ * A minimal, forward only, UTF-8 XML writer for EAF documents. Elements are
+ * written as soon as they are available, so that the document never has to be
+ * completely present in memory.
+ * <p>
+ * The layout of the output is the same as that of the pretty-printing
+ * {@code LSSerializer} used by {@link mpi.eudico.util.IoUtil}: an indentation
+ * of 4 spaces per level, attributes in the order of the element's attribute
+ * map, text only elements on a single line and empty elements, or elements
+ * with only white space text, as {@code <X/>}. Character escaping is such that all characters, including
+ * tabs and new lines in attribute values, survive a round trip.
+ * <p>
+ * The start tag of an element can be written separately from its content
+ * with {@link #writeStartElement(Element)}, subtrees that are small enough to
+ * be created as a whole are written with {@link #writeElement(Element)}.
+ * <p>
+ * StAX's {@code XMLStreamWriter} is not used because it does not escape white
+ * space characters in attribute values, these are normalized to spaces by
+ * a parser.
+ */
+class EAFStreamWriter {
+	private static final String INDENT = "    ";
+	private final Writer out;
+	/** the names of the open elements */
+	private final List<String> openElements = new ArrayList<String>();
+	/** whether the last start tag has not been closed with a '>' yet */
+	private boolean startTagOpen = false;
+
+	/**
+	 * Creates a writer for the output stream. The stream is closed by
+	 * {@link #close()}.
+	 *
+	 * @param outputStream the stream to write to
+	 */
+	EAFStreamWriter(OutputStream outputStream) {
+		out = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8), 1 << 16);
+	}
+
+	/**
+	 * Writes the XML declaration.
+	 *
+	 * @throws IOException if writing fails
+	 */
+	void writeStartDocument() throws IOException {
+		out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+	}
+
+	/**
+	 * Writes the start tag of an element, including its attributes, but not
+	 * its children. The element has to be closed by
+	 * {@link #writeEndElement()}.
+	 *
+	 * @param element the element to open
+	 * @throws IOException if writing fails
+	 */
+	void writeStartElement(Element element) throws IOException {
+		beforeChild();
+		out.write('<');
+		out.write(element.getTagName());
+		writeAttributes(element);
+		startTagOpen = true;
+		openElements.add(element.getTagName());
+	}
+
+	/**
+	 * Closes the innermost open element.
+	 *
+	 * @throws IOException if writing fails
+	 */
+	void writeEndElement() throws IOException {
+		String name = openElements.remove(openElements.size() - 1);
+		if (startTagOpen) {
+			out.write("/>");
+			startTagOpen = false;
+		} else {
+			newLine(openElements.size());
+			out.write("</");
+			out.write(name);
+			out.write('>');
+		}
+		if (openElements.isEmpty()) {
+			out.write('\n');
+		}
+	}
+
+	/**
+	 * Writes an element and all its descendants.
+	 *
+	 * @param element the element to write
+	 * @throws IOException if writing fails
+	 */
+	void writeElement(Element element) throws IOException {
+		if (!hasChildElements(element)) {
+			beforeChild();
+			out.write('<');
+			out.write(element.getTagName());
+			writeAttributes(element);
+			String text = element.getTextContent();
+			if (text == null || isWhiteSpace(text)) {
+				// the LSSerializer drops white space only text when pretty-printing
+				out.write("/>");
+			} else {
+				out.write('>');
+				writeText(text);
+				out.write("</");
+				out.write(element.getTagName());
+				out.write('>');
+			}
+			if (openElements.isEmpty()) {
+				out.write('\n');
+			}
+			return;
+		}
+
+		writeStartElement(element);
+		for (Node n = element.getFirstChild(); n != null; n = n.getNextSibling()) {
+			if (n.getNodeType() == Node.ELEMENT_NODE) {
+				writeElement((Element) n);
+			}
+		}
+		writeEndElement();
+	}
+
+	/**
+	 * Writes all child elements of the specified element and then removes
+	 * them from the element.
+	 *
+	 * @param parent the element of which the children should be written
+	 * @throws IOException if writing fails
+	 */
+	void writeAndRemoveChildren(Element parent) throws IOException {
+		Node n = parent.getFirstChild();
+		while (n != null) {
+			Node next = n.getNextSibling();
+			if (n.getNodeType() == Node.ELEMENT_NODE) {
+				writeElement((Element) n);
+			}
+			parent.removeChild(n);
+			n = next;
+		}
+	}
+
+	/**
+	 * Flushes and closes the underlying stream.
+	 *
+	 * @throws IOException if flushing or closing fails
+	 */
+	void close() throws IOException {
+		out.close();
+	}
+
+	private void beforeChild() throws IOException {
+		if (startTagOpen) {
+			out.write('>');
+			startTagOpen = false;
+		}
+		if (!openElements.isEmpty()) {
+			newLine(openElements.size());
+		}
+	}
+
+	private void newLine(int depth) throws IOException {
+		out.write('\n');
+		for (int i = 0; i < depth; i++) {
+			out.write(INDENT);
+		}
+	}
+
+	/**
+	 * @return {@code true} if the text is empty or only contains XML white
+	 * space characters
+	 */
+	private boolean isWhiteSpace(String text) {
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private boolean hasChildElements(Element element) {
+		for (Node n = element.getFirstChild(); n != null; n = n.getNextSibling()) {
+			if (n.getNodeType() == Node.ELEMENT_NODE) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void writeAttributes(Element element) throws IOException {
+		NamedNodeMap atts = element.getAttributes();
+		for (int i = 0; i < atts.getLength(); i++) {
+			Attr att = (Attr) atts.item(i);
+			out.write(' ');
+			out.write(att.getName());
+			out.write("=\"");
+			writeEscaped(att.getValue(), true);
+			out.write('"');
+		}
+	}
+
+	private void writeText(String text) throws IOException {
+		writeEscaped(text, false);
+	}
+
+	/**
+	 * Writes a string, replacing markup characters by entities and control
+	 * and supplementary characters by character references.
+	 *
+	 * @param value the string to write
+	 * @param inAttribute if {@code true} double quotes, tabs and new line
+	 * characters are escaped as well
+	 * @throws IOException if writing fails
+	 */
+	private void writeEscaped(String value, boolean inAttribute) throws IOException {
+		int start = 0;
+		int len = value.length();
+		for (int i = 0; i < len; i++) {
+			char c = value.charAt(i);
+			String rep = null;
+			switch (c) {
+			case '<':
+				rep = "&lt;";
+				break;
+			case '>':
+				rep = "&gt;";
+				break;
+			case '&':
+				rep = "&amp;";
+				break;
+			case '"':
+				if (inAttribute) {
+					rep = "&quot;";
+				}
+				break;
+			case '\t':
+			case '\n':
+				if (inAttribute) {
+					rep = "&#" + (int) c + ";";
+				}
+				break;
+			default:
+				if (c < 0x20 || (!inAttribute && c >= 0x7F && c <= 0x9F)) {
+					rep = "&#" + (int) c + ";";
+				} else if (Character.isHighSurrogate(c) && i + 1 < len &&
+						Character.isLowSurrogate(value.charAt(i + 1))) {
+					// supplementary characters as character references, like the LSSerializer
+					rep = "&#" + Character.toCodePoint(c, value.charAt(i + 1)) + ";";
+					if (i > start) {
+						out.write(value, start, i - start);
+					}
+					out.write(rep);
+					i++;
+					start = i + 1;
+					continue;
+				}
+			}
+			if (rep != null) {
+				if (i > start) {
+					out.write(value, start, i - start);
+				}
+				out.write(rep);
+				start = i + 1;
+			}
+		}
+		if (start < len) {
+			out.write(value, start, len - start);
+		}
+	}
+}
@@ -10,7 +10,6 @@ import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
 import javax.xml.validation.Schema;
-import javax.xml.validation.SchemaFactory;
 
 import org.xml.sax.Attributes;
 import org.xml.sax.InputSource;
@@ -198,9 +197,7 @@ public class ECVStore {
 			parserFactory.setNamespaceAware(true);
 			
 			// to get a validating parser, set the schema to the proper xsd schema
-			SchemaFactory schemaFactory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
-			Schema eafSchema = schemaFactory.newSchema(ECVStore.class.getResource(
-					ACMTranscriptionStore.getCurrentEAFSchemaLocal()));
+			Schema eafSchema = EAFSchemaCache.getSchema(ACMTranscriptionStore.getCurrentEAFSchemaLocal());
 			
 			parserFactory.setSchema(eafSchema);
 			parser = parserFactory.newSAXParser();
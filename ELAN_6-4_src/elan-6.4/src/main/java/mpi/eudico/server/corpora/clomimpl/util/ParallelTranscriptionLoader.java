@@ -0,0 +1,419 @@
+package mpi.eudico.server.corpora.clomimpl.util;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import mpi.eudico.server.corpora.clomimpl.abstr.TranscriptionImpl;
+
+/**
+ * Loads the transcriptions of a list of files by a number of threads, for
+ * processes that handle multiple files one after the other. Parsing is by
+ * far the most time consuming part of most of these processes; while the
+ * calling thread processes one transcription, the next ones are loaded in
+ * parallel.
+ * <p>
+ * The number of transcriptions that are loaded but not yet processed is
+ * limited: a transcription counts as resident from the moment a thread
+ * starts loading it until the next call of {@link #next()}, which means the
+ * caller should not keep a reference to a transcription after it has been
+ * processed. The results are delivered either in the order of the files or
+ * in the order in which loading finished.
+ * <p>
+ * Usage:
+ * <pre>
+ * ParallelTranscriptionLoader loader = new ParallelTranscriptionLoader(paths);
+ * try {
+ *     for (int i = 0; i &lt; paths.size(); i++) {
+ *         ParallelTranscriptionLoader.Result result = loader.next();
+ *         try {
+ *             TranscriptionImpl t = result.getTranscription();
+ *             ...
+ *         } catch (Exception ex) {
+ *             // the file could not be loaded
+ *         }
+ *     }
+ * } finally {
+ *     loader.close();
+ * }
+ * </pre>
+ * Instead of transcriptions the loader can produce {@link TranscriptionSnapshot}s,
+ * for processes that only need the tiers and the times and values of the
+ * annotations; this takes much less memory and time.
+ * <p>
+ * The default number of threads is the number of processors, it can be
+ * changed with the system property {@code ELAN.Corpus.LoadThreads}. With a
+ * single thread the files are loaded by the calling thread in {@code next()},
+ * the same as loading them one by one. The loader uses its own threads, so
+ * that it can be used from a task of a thread pool without waiting for
+ * threads of that same pool.
+ *
+ * @version Oct 2026
+ */
+public class ParallelTranscriptionLoader {
+	private static final Logger LOG = Logger.getLogger(ParallelTranscriptionLoader.class.getName());
+
+	private final List<String> paths;
+	private final int numThreads;
+	private final boolean ordered;
+	private final boolean snapshots;
+	/** permits for the transcriptions that are loaded and not yet processed */
+	private final Semaphore resident;
+	/** the index of the next file to be loaded */
+	private final AtomicInteger nextToLoad = new AtomicInteger();
+	/** loaded results, by index in case of ordered delivery */
+	private final Map<Integer, Result> orderedResults = new HashMap<Integer, Result>();
+	private final ArrayDeque<Result> unorderedResults = new ArrayDeque<Result>();
+	private final List<Thread> threads = new ArrayList<Thread>();
+
+	private int numDelivered;
+	private boolean started;
+	private boolean previousHoldsPermit;
+	private volatile boolean closed;
+
+	/**
+	 * Creates a loader with the default number of threads, delivering the
+	 * transcriptions in the order of the files.
+	 *
+	 * @param paths the paths of the files to load, not null
+	 */
+	public ParallelTranscriptionLoader(List<String> paths) {
+		this(paths, false);
+	}
+
+	/**
+	 * Creates a loader with the default number of threads, delivering the
+	 * transcriptions or snapshots in the order of the files.
+	 *
+	 * @param paths the paths of the files to load, not null
+	 * @param snapshots if {@code true} snapshots are loaded instead of
+	 * transcriptions, see {@link Result#getSnapshot()}
+	 */
+	public ParallelTranscriptionLoader(List<String> paths, boolean snapshots) {
+		this(paths, getDefaultNumThreads(), 0, true, snapshots);
+	}
+
+	/**
+	 * Creates a loader.
+	 *
+	 * @param paths the paths of the files to load, not null
+	 * @param numThreads the number of threads loading files, if 1 or less
+	 * the files are loaded one by one in {@link #next()}
+	 * @param maxResident the maximum number of transcriptions that are
+	 * loaded (or being loaded) and not yet processed, if less than the
+	 * number of threads, twice the number of threads
+	 * @param ordered if {@code true} the transcriptions are delivered in the
+	 * order of the files, otherwise as soon as they are loaded
+	 */
+	public ParallelTranscriptionLoader(List<String> paths, int numThreads, int maxResident,
+			boolean ordered) {
+		this(paths, numThreads, maxResident, ordered, false);
+	}
+
+	/**
+	 * Creates a loader.
+	 *
+	 * @param paths the paths of the files to load, not null
+	 * @param numThreads the number of threads loading files, if 1 or less
+	 * the files are loaded one by one in {@link #next()}
+	 * @param maxResident the maximum number of transcriptions that are
+	 * loaded (or being loaded) and not yet processed, if less than the
+	 * number of threads, twice the number of threads
+	 * @param ordered if {@code true} the transcriptions are delivered in the
+	 * order of the files, otherwise as soon as they are loaded
+	 * @param snapshots if {@code true} snapshots are loaded instead of
+	 * transcriptions
+	 */
+	public ParallelTranscriptionLoader(List<String> paths, int numThreads, int maxResident,
+			boolean ordered, boolean snapshots) {
+		this.paths = paths;
+		this.numThreads = Math.max(1, Math.min(numThreads, paths.size()));
+		this.ordered = ordered;
+		this.snapshots = snapshots;
+		resident = new Semaphore(maxResident >= this.numThreads ? maxResident : 2 * this.numThreads);
+	}
+
+	/**
+	 * Returns the default number of threads.
+	 *
+	 * @return the value of the system property {@code ELAN.Corpus.LoadThreads}
+	 * or the number of processors
+	 */
+	public static int getDefaultNumThreads() {
+		String prop = System.getProperty("ELAN.Corpus.LoadThreads");
+
+		if (prop != null) {
+			try {
+				return Integer.parseInt(prop);
+			} catch (NumberFormatException nfe) {
+				LOG.warning("Invalid number of loading threads: " + prop);
+			}
+		}
+
+		return Runtime.getRuntime().availableProcessors();
+	}
+
+	/**
+	 * Loads a single transcription. Can be overridden to load in a different
+	 * way or to prepare the transcription, e.g. to switch off notification.
+	 * This method is called by multiple threads at the same time.
+	 *
+	 * @param path the path of the file
+	 * @return the transcription
+	 * @throws Exception if the file does not exist or could not be loaded
+	 */
+	protected TranscriptionImpl load(String path) throws Exception {
+		checkFile(path);
+
+		return new TranscriptionImpl(path);
+	}
+
+	/**
+	 * Loads a single snapshot, in case the loader has been created for
+	 * snapshots. This method is called by multiple threads at the same time.
+	 *
+	 * @param path the path of the eaf file
+	 * @return the snapshot
+	 * @throws Exception if the file does not exist or could not be parsed
+	 */
+	protected TranscriptionSnapshot loadSnapshot(String path) throws Exception {
+		checkFile(path);
+
+		return TranscriptionSnapshot.load(path);
+	}
+
+	private void checkFile(String path) throws FileNotFoundException {
+		if (path == null) {
+			throw new FileNotFoundException("No file specified");
+		}
+		// the TranscriptionImpl constructor creates an empty transcription
+		// for a file that does not exist
+		File file = new File(path);
+		if (!file.exists() || file.isDirectory()) {
+			throw new FileNotFoundException("Not a file: " + path);
+		}
+	}
+
+	/**
+	 * Returns the next transcription, waiting for it to be loaded if
+	 * necessary. The transcription delivered by the previous call is
+	 * considered to be processed.
+	 *
+	 * @return the result for the next file, or {@code null} if the results
+	 * for all files have been delivered. If the waiting thread is
+	 * interrupted the result contains an {@code InterruptedException}.
+	 */
+	public Result next() {
+		if (previousHoldsPermit) {
+			resident.release();
+			previousHoldsPermit = false;
+		}
+
+		if (numDelivered >= paths.size()) {
+			return null;
+		}
+
+		if (numThreads == 1) {
+			int index = numDelivered++;
+			return loadResult(index);
+		}
+
+		synchronized (this) {
+			if (!started) {
+				start();
+			}
+
+			try {
+				Result result;
+
+				if (ordered) {
+					while ((result = orderedResults.remove(numDelivered)) == null) {
+						wait();
+					}
+				} else {
+					while ((result = unorderedResults.poll()) == null) {
+						wait();
+					}
+				}
+
+				numDelivered++;
+				previousHoldsPermit = true;
+
+				return result;
+			} catch (InterruptedException ie) {
+				Thread.currentThread().interrupt();
+				return new Result(numDelivered, ordered ? paths.get(numDelivered) : null, null, null, ie);
+			}
+		}
+	}
+
+	/**
+	 * Stops loading files, files that are being loaded are finished but not
+	 * delivered. Should always be called, also if not all results have been
+	 * retrieved.
+	 */
+	public void close() {
+		closed = true;
+
+		synchronized (this) {
+			for (Thread t : threads) {
+				t.interrupt();
+			}
+			orderedResults.clear();
+			unorderedResults.clear();
+		}
+	}
+
+	private void start() {
+		started = true;
+
+		for (int i = 0; i < numThreads; i++) {
+			Thread t = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					loadFiles();
+				}
+			}, "ELAN-TranscriptionLoader-" + (i + 1));
+			t.setDaemon(true);
+			threads.add(t);
+			t.start();
+		}
+	}
+
+	/**
+	 * The loop of a loading thread: loads the next file as soon as the number
+	 * of resident transcriptions allows it.
+	 */
+	private void loadFiles() {
+		while (!closed) {
+			try {
+				resident.acquire();
+			} catch (InterruptedException ie) {
+				return;
+			}
+			// claim the index after acquiring the permit, so that in ordered
+			// mode the next file to deliver always holds a permit
+			int index = nextToLoad.getAndIncrement();
+
+			if (index >= paths.size() || closed) {
+				resident.release();
+				return;
+			}
+
+			Result result = loadResult(index);
+
+			synchronized (this) {
+				if (closed) {
+					return;
+				}
+				if (ordered) {
+					orderedResults.put(index, result);
+				} else {
+					unorderedResults.add(result);
+				}
+				notifyAll();
+			}
+		}
+	}
+
+	private Result loadResult(int index) {
+		String path = paths.get(index);
+
+		try {
+			if (snapshots) {
+				return new Result(index, path, null, loadSnapshot(path), null);
+			}
+			return new Result(index, path, load(path), null, null);
+		} catch (Throwable t) {// catch any, including parse errors and out of memory errors
+			if (LOG.isLoggable(Level.FINE)) {
+				LOG.fine("Could not load a transcription from file: " + path + ": " + t);
+			}
+
+			return new Result(index, path, null, null, t);
+		}
+	}
+
+	/**
+	 * The result of loading a file: a transcription or snapshot, or the
+	 * reason why it could not be loaded.
+	 */
+	public static class Result {
+		private final int index;
+		private final String path;
+		private final TranscriptionImpl transcription;
+		private final TranscriptionSnapshot snapshot;
+		private final Throwable error;
+
+		Result(int index, String path, TranscriptionImpl transcription,
+				TranscriptionSnapshot snapshot, Throwable error) {
+			this.index = index;
+			this.path = path;
+			this.transcription = transcription;
+			this.snapshot = snapshot;
+			this.error = error;
+		}
+
+		/**
+		 * @return the index of the file in the list of files
+		 */
+		public int getIndex() {
+			return index;
+		}
+
+		/**
+		 * @return the path of the file
+		 */
+		public String getPath() {
+			return path;
+		}
+
+		/**
+		 * Returns the transcription, or throws the exception that occurred
+		 * while loading it.
+		 *
+		 * @return the transcription, null if the loader loads snapshots
+		 * @throws Exception if the file could not be loaded
+		 */
+		public TranscriptionImpl getTranscription() throws Exception {
+			throwError();
+
+			return transcription;
+		}
+
+		/**
+		 * Returns the snapshot, or throws the exception that occurred while
+		 * loading it.
+		 *
+		 * @return the snapshot, null if the loader loads transcriptions
+		 * @throws Exception if the file could not be loaded
+		 */
+		public TranscriptionSnapshot getSnapshot() throws Exception {
+			throwError();
+
+			return snapshot;
+		}
+
+		private void throwError() throws Exception {
+			if (error instanceof Exception) {
+				throw (Exception) error;
+			} else if (error instanceof Error) {
+				throw (Error) error;
+			}
+		}
+
+		/**
+		 * @return the exception or error that occurred while loading, or null
+		 */
+		public Throwable getError() {
+			return error;
+		}
+	}
+}
@@ -0,0 +1,186 @@
+package mpi.eudico.server.corpora.clomimpl.util;
+
+/**
+ * The read-only, columnar representation of a tier in a
+ * {@link TranscriptionSnapshot}. The annotations are not objects, they are
+ * positions in a number of arrays: the begin and end times, the index of the
+ * value in the string pool of the transcription and the index of the parent
+ * annotation on the parent tier. The annotations are ordered by begin time.
+ * <p>
+ * The times are the time boundaries as they would be returned by the
+ * annotations of a loaded transcription, including the virtual times of
+ * annotations that are not aligned.
+ *
+ * @version Oct 2026
+ */
+public class TierSnapshot {
+	private final String name;
+	private final int parentTierIndex;
+	private final String linguisticTypeName;
+	private final String controlledVocabularyName;
+	private final String participant;
+	private final String annotator;
+	private final String langRef;
+	private final long[] beginTimes;
+	private final long[] endTimes;
+	private final int[] valueIds;
+	private final int[] parentAnnotations;
+	/** set when the tier is added to a transcription */
+	TranscriptionSnapshot transcription;
+
+	/**
+	 * Creates a tier. The arrays are not copied, they should all be of the
+	 * same length.
+	 *
+	 * @param name the name of the tier
+	 * @param parentTierIndex the index of the parent tier in the list of
+	 * tiers of the transcription, -1 for a top level tier
+	 * @param linguisticTypeName the name of the linguistic type
+	 * @param controlledVocabularyName the name of the controlled vocabulary of
+	 * the type, can be null
+	 * @param participant the participant, can be null
+	 * @param annotator the annotator, can be null
+	 * @param langRef the content language, can be null
+	 * @param beginTimes the begin times of the annotations
+	 * @param endTimes the end times of the annotations
+	 * @param valueIds the indexes of the annotation values in the string pool
+	 * @param parentAnnotations the indexes of the parent annotations on the
+	 * parent tier, -1 if unknown or for a top level tier
+	 */
+	public TierSnapshot(String name, int parentTierIndex, String linguisticTypeName,
+			String controlledVocabularyName, String participant, String annotator, String langRef,
+			long[] beginTimes, long[] endTimes, int[] valueIds, int[] parentAnnotations) {
+		this.name = name;
+		this.parentTierIndex = parentTierIndex;
+		this.linguisticTypeName = linguisticTypeName;
+		this.controlledVocabularyName = controlledVocabularyName;
+		this.participant = participant;
+		this.annotator = annotator;
+		this.langRef = langRef;
+		this.beginTimes = beginTimes;
+		this.endTimes = endTimes;
+		this.valueIds = valueIds;
+		this.parentAnnotations = parentAnnotations;
+	}
+
+	/**
+	 * @return the transcription this tier is part of
+	 */
+	public TranscriptionSnapshot getTranscription() {
+		return transcription;
+	}
+
+	/**
+	 * @return the name of the tier
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return the index of the parent tier, -1 for a top level tier
+	 */
+	public int getParentTierIndex() {
+		return parentTierIndex;
+	}
+
+	/**
+	 * @return the parent tier or null
+	 */
+	public TierSnapshot getParentTier() {
+		if (parentTierIndex < 0) {
+			return null;
+		}
+
+		return transcription.getTiers().get(parentTierIndex);
+	}
+
+	/**
+	 * @return the name of the linguistic type of the tier
+	 */
+	public String getLinguisticTypeName() {
+		return linguisticTypeName;
+	}
+
+	/**
+	 * @return the name of the controlled vocabulary of the linguistic type,
+	 * or null
+	 */
+	public String getControlledVocabularyName() {
+		return controlledVocabularyName;
+	}
+
+	/**
+	 * @return the participant or null
+	 */
+	public String getParticipant() {
+		return participant;
+	}
+
+	/**
+	 * @return the annotator or null
+	 */
+	public String getAnnotator() {
+		return annotator;
+	}
+
+	/**
+	 * @return the language reference or null
+	 */
+	public String getLangRef() {
+		return langRef;
+	}
+
+	/**
+	 * @return the number of annotations of the tier
+	 */
+	public int getNumberOfAnnotations() {
+		return beginTimes.length;
+	}
+
+	/**
+	 * @param index the index of the annotation
+	 * @return the begin time of the annotation
+	 */
+	public long getBeginTime(int index) {
+		return beginTimes[index];
+	}
+
+	/**
+	 * @param index the index of the annotation
+	 * @return the end time of the annotation
+	 */
+	public long getEndTime(int index) {
+		return endTimes[index];
+	}
+
+	/**
+	 * @param index the index of the annotation
+	 * @return the index of the value in the string pool of the transcription;
+	 * equal values have the same index
+	 */
+	public int getValueId(int index) {
+		return valueIds[index];
+	}
+
+	/**
+	 * @param index the index of the annotation
+	 * @return the value of the annotation, not null
+	 */
+	public String getValue(int index) {
+		return transcription.getPooledValue(valueIds[index]);
+	}
+
+	/**
+	 * @param index the index of the annotation
+	 * @return the index of the parent annotation on the parent tier, or -1
+	 */
+	public int getParentAnnotationIndex(int index) {
+		return parentAnnotations[index];
+	}
+
+	@Override
+	public String toString() {
+		return name;
+	}
+}
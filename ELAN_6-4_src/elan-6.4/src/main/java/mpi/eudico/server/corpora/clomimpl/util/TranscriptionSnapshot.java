@@ -0,0 +1,258 @@
+package mpi.eudico.server.corpora.clomimpl.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import mpi.eudico.server.corpora.clom.Annotation;
+import mpi.eudico.server.corpora.clomimpl.abstr.AbstractAnnotation;
+import mpi.eudico.server.corpora.clomimpl.abstr.ParseException;
+import mpi.eudico.server.corpora.clomimpl.abstr.TierImpl;
+import mpi.eudico.server.corpora.clomimpl.abstr.TranscriptionImpl;
+import mpi.eudico.server.corpora.clomimpl.dobes.EAFSnapshotParser;
+import mpi.eudico.server.corpora.clomimpl.type.LinguisticType;
+import mpi.eudico.util.ControlledVocabulary;
+import nl.mpi.util.FileUtility;
+
+/**
+ * An immutable, compact representation of the tiers and annotations of a
+ * transcription, for processes that analyze many files and only need the
+ * names and attributes of tiers and the times and values of annotations,
+ * like multiple file statistics, n-gram statistics and inter-annotator
+ * comparison.
+ * <p>
+ * There are no annotation, time slot or listener objects; per tier the
+ * annotations are stored in primitive arrays (see {@link TierSnapshot}) and
+ * the annotation values are stored once per transcription in a pool of
+ * strings. A snapshot can be read directly from an EAF file by
+ * {@link #load(String)}, without creating a {@link TranscriptionImpl}, or
+ * can be created from a transcription that is already loaded.
+ *
+ * @version Oct 2026
+ */
+public class TranscriptionSnapshot {
+	private final String name;
+	private final String fullPath;
+	private final List<TierSnapshot> tiers;
+	private final Map<String, TierSnapshot> tierMap;
+	private final String[] valuePool;
+	private final List<String> linguisticTypeNames;
+	private final Map<String, List<String>> cvValues;
+
+	/**
+	 * Creates a snapshot.
+	 *
+	 * @param filePath the path of the file, not null
+	 * @param tiers the tiers, the parent tier index of a tier refers to this
+	 * list
+	 * @param valuePool the annotation values, the value ids of the tiers are
+	 * indexes in this array
+	 * @param linguisticTypeNames the names of all linguistic types, including
+	 * those that are not used by any tier
+	 * @param cvValues a map of controlled vocabulary name to the values of the
+	 * entries in the default language, empty for an external CV that has not
+	 * been loaded
+	 */
+	public TranscriptionSnapshot(String filePath, List<TierSnapshot> tiers, String[] valuePool,
+			List<String> linguisticTypeNames, Map<String, List<String>> cvValues) {
+		name = FileUtility.fileNameFromPath(filePath);
+		fullPath = FileUtility.pathToURLString(filePath);
+		this.tiers = Collections.unmodifiableList(new ArrayList<TierSnapshot>(tiers));
+		this.valuePool = valuePool;
+		this.linguisticTypeNames = Collections.unmodifiableList(
+				new ArrayList<String>(linguisticTypeNames));
+		this.cvValues = cvValues;
+		tierMap = new HashMap<String, TierSnapshot>(tiers.size() * 2);
+
+		for (TierSnapshot t : tiers) {
+			t.transcription = this;
+			if (!tierMap.containsKey(t.getName())) {
+				tierMap.put(t.getName(), t);
+			}
+		}
+	}
+
+	/**
+	 * Reads a snapshot from an EAF file, without loading the transcription.
+	 *
+	 * @param filePath the path to the EAF file
+	 * @return the snapshot
+	 * @throws ParseException if the file cannot be read or parsed
+	 */
+	public static TranscriptionSnapshot load(String filePath) throws ParseException {
+		return new EAFSnapshotParser(filePath).parse();
+	}
+
+	/**
+	 * Creates a snapshot of a loaded transcription, e.g. of the transcription
+	 * of an open document.
+	 *
+	 * @param transcription the transcription, not null
+	 * @return the snapshot
+	 */
+	public static TranscriptionSnapshot create(TranscriptionImpl transcription) {
+		List<TierImpl> trTiers = transcription.getTiers();
+		List<TierSnapshot> snapTiers = new ArrayList<TierSnapshot>(trTiers.size());
+		Map<String, Integer> poolMap = new HashMap<String, Integer>();
+		List<String> pool = new ArrayList<String>();
+		// per tier the index of each annotation, for the parent annotation indexes
+		Map<TierImpl, Map<Annotation, Integer>> annIndexes = new HashMap<TierImpl, Map<Annotation, Integer>>();
+
+		for (TierImpl tier : trTiers) {
+			Map<Annotation, Integer> indexes = new IdentityHashMap<Annotation, Integer>();
+			List<AbstractAnnotation> annotations = tier.getAnnotations();
+			for (int i = 0; i < annotations.size(); i++) {
+				indexes.put(annotations.get(i), i);
+			}
+			annIndexes.put(tier, indexes);
+		}
+
+		for (TierImpl tier : trTiers) {
+			List<AbstractAnnotation> annotations = tier.getAnnotations();
+			int num = annotations.size();
+			long[] begins = new long[num];
+			long[] ends = new long[num];
+			int[] valueIds = new int[num];
+			int[] parents = new int[num];
+			TierImpl parentTier = tier.getParentTier();
+			Map<Annotation, Integer> parentIndexes = parentTier != null ? annIndexes.get(parentTier) : null;
+
+			for (int i = 0; i < num; i++) {
+				AbstractAnnotation aa = annotations.get(i);
+				begins[i] = aa.getBeginTimeBoundary();
+				ends[i] = aa.getEndTimeBoundary();
+				valueIds[i] = poolValue(aa.getValue(), poolMap, pool);
+				parents[i] = -1;
+				if (parentIndexes != null) {
+					Integer pi = parentIndexes.get(aa.getParentAnnotation());
+					if (pi != null) {
+						parents[i] = pi;
+					}
+				}
+			}
+
+			LinguisticType lt = tier.getLinguisticType();
+			snapTiers.add(new TierSnapshot(tier.getName(), parentTier != null ? trTiers.indexOf(parentTier) : -1,
+					lt != null ? lt.getLinguisticTypeName() : null,
+					lt != null ? lt.getControlledVocabularyName() : null,
+					tier.getParticipant(), tier.getAnnotator(), tier.getLangRef(),
+					begins, ends, valueIds, parents));
+		}
+
+		List<String> typeNames = new ArrayList<String>();
+		for (LinguisticType lt : transcription.getLinguisticTypes()) {
+			typeNames.add(lt.getLinguisticTypeName());
+		}
+
+		Map<String, List<String>> cvValues = new LinkedHashMap<String, List<String>>();
+		for (ControlledVocabulary cv : transcription.getControlledVocabularies()) {
+			List<String> values = new ArrayList<String>();
+			for (String v : cv.getValuesIterable(cv.getDefaultLanguageIndex())) {
+				values.add(v);
+			}
+			cvValues.put(cv.getName(), values);
+		}
+
+		String path = transcription.getPathName() != null ? transcription.getPathName() : transcription.getName();
+
+		return new TranscriptionSnapshot(path, snapTiers, pool.toArray(new String[pool.size()]),
+				typeNames, cvValues);
+	}
+
+	/**
+	 * Adds a value to a pool of strings, if it is not already there.
+	 *
+	 * @param value the value, null is treated as the empty string
+	 * @param poolMap a map of value to index in the pool
+	 * @param pool the pool
+	 * @return the index of the value in the pool
+	 */
+	public static int poolValue(String value, Map<String, Integer> poolMap, List<String> pool) {
+		if (value == null) {
+			value = "";
+		}
+		Integer id = poolMap.get(value);
+
+		if (id == null) {
+			id = pool.size();
+			pool.add(value);
+			poolMap.put(value, id);
+		}
+
+		return id;
+	}
+
+	/**
+	 * @return the name of the file
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return the location of the file as a URL string, like
+	 * {@link TranscriptionImpl#getFullPath()}
+	 */
+	public String getFullPath() {
+		return fullPath;
+	}
+
+	/**
+	 * @return the tiers in the order of the file, unmodifiable
+	 */
+	public List<TierSnapshot> getTiers() {
+		return tiers;
+	}
+
+	/**
+	 * @param tierName the name of a tier
+	 * @return the tier or null
+	 */
+	public TierSnapshot getTierWithId(String tierName) {
+		return tierMap.get(tierName);
+	}
+
+	/**
+	 * @return the names of all linguistic types, unmodifiable
+	 */
+	public List<String> getLinguisticTypeNames() {
+		return linguisticTypeNames;
+	}
+
+	/**
+	 * Returns the values of the entries of a controlled vocabulary, in the
+	 * default language of the vocabulary.
+	 *
+	 * @param cvName the name of the controlled vocabulary
+	 * @return the values or null if there is no vocabulary with that name
+	 */
+	public List<String> getControlledVocabularyValues(String cvName) {
+		List<String> values = cvValues.get(cvName);
+
+		return values != null ? Collections.unmodifiableList(values) : null;
+	}
+
+	/**
+	 * @return the number of distinct annotation values
+	 */
+	public int getNumberOfPooledValues() {
+		return valuePool.length;
+	}
+
+	/**
+	 * @param valueId the id of a value, see {@link TierSnapshot#getValueId(int)}
+	 * @return the value
+	 */
+	public String getPooledValue(int valueId) {
+		return valuePool[valueId];
+	}
+
+	@Override
+	public String toString() {
+		return name;
+	}
+}
@@ -4,9 +4,11 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 import mpi.eudico.util.multilangcv.LangInfo;
@@ -63,6 +65,13 @@ public class BasicControlledVocabulary implements Iterable<CVEntry>, Cloneable {
     private int numberOfLanguages;    
     private String preferenceLanguage;
     protected Map<String, CVEntry> idToEntry;
+    /** per language a map from value to the first entry with that value,
+     * created when needed, {@code null} when it has to be rebuilt */
+    private List<Map<String, CVEntry>> valueIndex;
+    /** the entries that are in the value index */
+    private Set<CVEntry> valueIndexEntries;
+    /** whether there were entries with the same value when the index was filled */
+    private boolean valueIndexHasDuplicates;
     
     private static final CVLangInfo defaultLangInfo = new CVLangInfo(DEFAULT_LANGUAGE_ID, DEFAULT_LANGUAGE_DEF, DEFAULT_LANGUAGE_LABEL, "");
 
@@ -123,6 +132,7 @@ public class BasicControlledVocabulary implements Iterable<CVEntry>, Cloneable {
     public void cloneStructure(BasicControlledVocabulary orig) {   	
     	setName(orig.getName());
     	entries.clear();
+    	invalidateValueIndex();
     	languages.clear();
     	numberOfLanguages = 0;
     	
@@ -145,6 +155,7 @@ public class BasicControlledVocabulary implements Iterable<CVEntry>, Cloneable {
     public void cloneEntries(BasicControlledVocabulary orig) {
     	initMode = true;
     	entries.clear();
+    	invalidateValueIndex();
     	for (CVEntry e : orig) {
     		addEntry(new CVEntry(this, e));
     	}
@@ -308,6 +319,7 @@ public class BasicControlledVocabulary implements Iterable<CVEntry>, Cloneable {
         for(int i=0; i< allEntries.length; i++){
         	entries.add(allEntries[i]);        	
         }
+        invalidateValueIndex();
         return allEntries;
     }
     
@@ -338,6 +350,7 @@ public class BasicControlledVocabulary implements Iterable<CVEntry>, Cloneable {
         for(int i=0; i< allEntries.length; i++){
         	entries.add(allEntries[i]);        	
         }
+        invalidateValueIndex();
         return allEntries;
     }
     
@@ -474,6 +487,12 @@ public class BasicControlledVocabulary implements Iterable<CVEntry>, Cloneable {
             return null;
         }
 
+        Map<String, CVEntry> index = getValueIndex(languageIndex);
+
+        if (index != null) {
+            return index.get(value);
+        }
+
         for (CVEntry entry : entries) {
             //ignore case ?
             if (entry.getValue(languageIndex).equals(value)) {
@@ -581,6 +600,10 @@ public class BasicControlledVocabulary implements Iterable<CVEntry>, Cloneable {
         	ensureIdIsUnique(entry);
         }
         entries.add(entry);
+        
+        if (valueIndex != null) {
+            addToValueIndex(entry);
+        }
 
         if (!initMode) {
             handleModified();
@@ -677,6 +700,7 @@ public class BasicControlledVocabulary implements Iterable<CVEntry>, Cloneable {
     public void clear() {
         entries.clear();
         idToEntry.clear();
+        invalidateValueIndex();
 
         if (!initMode) {
             handleModified();
@@ -732,6 +756,10 @@ public class BasicControlledVocabulary implements Iterable<CVEntry>, Cloneable {
         if (value == null) {
             return false;
         }
+        
+        if (!value.isEmpty() && getValueIndex(index) != null) {
+            return getValueIndex(index).containsKey(value);
+        }
 
         for (int i = 0; i < entries.size(); i++) {
             if (entries.get(i).getValue(index).equals(value)) { //ignore case??
@@ -881,6 +909,7 @@ loop:
         newEntry.setValue(langIndex, value);	// change the word
         int index = entries.indexOf(entry);
         entries.set(index, newEntry);
+        invalidateValueIndex();
         removeId(entry);						// forget the new id
         newEntry.setId(origId);					// set the original id
 
@@ -939,6 +968,7 @@ loop:
         for (CVEntry entry : entryArray) {
             boolean b = entries.remove(entry);
             idToEntry.remove(entry.getId());
+            invalidateValueIndex();
 
             if (b) {
                 removed = true;
@@ -964,6 +994,7 @@ loop:
         boolean b = entries.remove(entry);
 
         idToEntry.remove(entry.getId());
+        invalidateValueIndex();
         
         if (b && !initMode) {
             handleModified();
@@ -1011,6 +1042,7 @@ loop:
 
         if (removed) {
             idToEntry.remove(entry.getId());
+            invalidateValueIndex();
             if (!initMode) {
                 handleModified();
             }
@@ -1029,6 +1061,7 @@ loop:
 
         entries.clear();
         idToEntry.clear();
+        invalidateValueIndex();
 
         addAll(newEntries);
 
@@ -1064,6 +1097,7 @@ loop:
         }
 
         entries.set(index, newEntry);
+        invalidateValueIndex();
         
         // Update id map
         newEntry.internalSetId(oldEntry.getId());
@@ -1124,6 +1158,7 @@ loop:
         }
 
         if (moved) {
+            invalidateValueIndex();
             if (!initMode) {
                 handleModified();
             }
@@ -1160,6 +1195,7 @@ loop:
         }
 
         if (moved) {
+            invalidateValueIndex();
             if (!initMode) {
                 handleModified();
             }
@@ -1192,6 +1228,7 @@ loop:
         }
 
         if (moved) {
+            invalidateValueIndex();
             if (!initMode) {
                 handleModified();
             }
@@ -1228,6 +1265,7 @@ loop:
         }
 
         if (moved) {
+            invalidateValueIndex();
             if (!initMode) {
                 handleModified();
             }
@@ -1305,6 +1343,108 @@ loop:
     	}
     }
     
+    /**
+     * Returns the map from value to entry for a language, creating the maps
+     * for all languages if necessary. With large vocabularies (e.g. gloss
+     * lexicons) a linear search for every added entry or every annotation
+     * value takes quadratic time.
+     * 
+     * @param languageIndex the index of the language
+     * @return the map or {@code null} if the index is not a valid language index
+     */
+    private Map<String, CVEntry> getValueIndex(int languageIndex) {
+    	if (languageIndex < 0 || languageIndex >= numberOfLanguages) {
+    		return null;
+    	}
+    	
+    	if (valueIndex == null) {
+    		valueIndex = new ArrayList<Map<String, CVEntry>>(numberOfLanguages);
+    		for (int i = 0; i < numberOfLanguages; i++) {
+    			valueIndex.add(new HashMap<String, CVEntry>(Math.max(16, entries.size() * 2)));
+    		}
+    		valueIndexEntries = Collections.newSetFromMap(new IdentityHashMap<CVEntry, Boolean>(
+    				entries.size() * 2));
+    		valueIndexHasDuplicates = false;
+    		
+    		for (CVEntry entry : entries) {
+    			addToValueIndex(entry);
+    		}
+    	}
+    	
+    	return valueIndex.get(languageIndex);
+    }
+    
+    /**
+     * Adds the values of an entry that is at the end of the list to the
+     * value index. If another entry has the same value, that one stays in
+     * the index since it comes first in the list.
+     * 
+     * @param entry the entry to add
+     */
+    private void addToValueIndex(CVEntry entry) {
+    	valueIndexEntries.add(entry);
+    	
+    	for (int i = 0; i < numberOfLanguages; i++) {
+    		String value = entry.getValue(i);
+    		
+    		if (value != null && !value.isEmpty()) {
+    			CVEntry other = valueIndex.get(i).putIfAbsent(value, entry);
+    			if (other != null && other != entry) {
+    				valueIndexHasDuplicates = true;
+    			}
+    		}
+    	}
+    }
+    
+    /**
+     * Discards the value index, it will be recreated when it is needed.
+     * To be called when entries are removed, replaced or reordered.
+     */
+    protected void invalidateValueIndex() {
+    	valueIndex = null;
+    	valueIndexEntries = null;
+    }
+    
+    /**
+     * Call this method after the value of an entry has changed, so that the
+     * value index can be updated. Entries that are not part of this CV are
+     * ignored.
+     * 
+     * @param entry the entry of which the value changed
+     * @param languageIndex the index of the language of the value
+     * @param oldValue the previous value
+     */
+    protected void valueChanged(CVEntry entry, int languageIndex, String oldValue) {
+    	if (valueIndex == null || !valueIndexEntries.contains(entry)) {
+    		return;
+    	}
+    	if (languageIndex < 0 || languageIndex >= valueIndex.size()) {
+    		invalidateValueIndex();
+    		return;
+    	}
+    	
+    	Map<String, CVEntry> index = valueIndex.get(languageIndex);
+    	
+    	if (oldValue != null && !oldValue.isEmpty() && index.get(oldValue) == entry) {
+    		if (valueIndexHasDuplicates) {
+    			// another entry might have the same value
+    			invalidateValueIndex();
+    			return;
+    		}
+    		index.remove(oldValue);
+    	}
+    	
+    	String value = entry.getValue(languageIndex);
+    	
+    	if (value != null && !value.isEmpty()) {
+    		CVEntry other = index.putIfAbsent(value, entry);
+    		if (other != null && other != entry) {
+    			// it is not known which of the two comes first in the list
+    			invalidateValueIndex();
+    		}
+    	}
+    }
+    
     /**
      * Add a description of a new language.
      * Two ids are given: a short one and a long one.
@@ -1357,6 +1497,7 @@ loop:
     	
     	if (languages.size() > numberOfLanguages) {
     		setNumberOfLanguages(languages.size());
+    		invalidateValueIndex();
     	}
 
         if (!initMode) {
@@ -1423,6 +1564,7 @@ loop:
     		}
     		
     		numberOfLanguages--;
+    		invalidateValueIndex();
             if (!initMode) {
                 handleModified();
             }
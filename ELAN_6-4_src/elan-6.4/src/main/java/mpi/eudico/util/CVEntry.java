@@ -198,7 +198,12 @@ public class CVEntry implements Comparable<CVEntry>, Serializable {
      */
     public void setValue(int index, String s) {
     	ensureCapacity(index + 1);
+    	String oldValue = contents[index].getValue();
     	contents[index].setValue(s);
+    	
+    	if (parent != null) {
+    		parent.valueChanged(this, index, oldValue);
+    	}
     }
     
     /**
@@ -112,6 +112,7 @@ public class ControlledVocabulary extends BasicControlledVocabulary {
 
         entries.clear();
         idToEntry.clear();
+        invalidateValueIndex();
         
         addAllUndoRedo(newEntries);
 
@@ -295,6 +296,7 @@ public class ControlledVocabulary extends BasicControlledVocabulary {
             super.redo();
             entries.add(entry);
             addId(entry);
+            invalidateValueIndex();
         }
 
         /**
@@ -306,6 +308,7 @@ public class ControlledVocabulary extends BasicControlledVocabulary {
             super.undo();
             entries.remove(entry);
             removeId(entry);
+            invalidateValueIndex();
         }
     }
 
@@ -348,6 +351,7 @@ public class ControlledVocabulary extends BasicControlledVocabulary {
             entries.remove(index);
             entries.add(index, newEntry);
             replaceInIndex(oldEntry, newEntry);
+            invalidateValueIndex();
         }
 
         /**
@@ -362,6 +366,7 @@ public class ControlledVocabulary extends BasicControlledVocabulary {
             entries.remove(index);
             entries.add(index, oldEntry);
             replaceInIndex(oldEntry, newEntry);
+            invalidateValueIndex();
         }
     }
 
@@ -126,6 +126,7 @@ public class ExternalCV extends ControlledVocabulary {
 	public void cloneEntries(BasicControlledVocabulary orig) {
     	initMode = true;
     	entries.clear();
+    	invalidateValueIndex();
     	for (CVEntry e : orig) {
     		addEntry(new ExternalCVEntry(this, e));
     	}
@@ -144,6 +145,7 @@ public class ExternalCV extends ControlledVocabulary {
     public void cloneEntries(ExternalCV orig) {
     	initMode = true;
     	entries.clear();
+    	invalidateValueIndex();
     	for (CVEntry e : orig) {
     		addEntry(new ExternalCVEntry(this, (ExternalCVEntry)e));
     	}
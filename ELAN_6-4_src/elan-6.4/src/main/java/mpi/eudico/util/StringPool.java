@@ -0,0 +1,135 @@
+package mpi.eudico.util;
+
+/**
+ * A pool of strings for removing duplicates while reading a document, e.g.
+ * repeated annotation values or id references. A pool is meant to be used
+ * for a single load and then discarded; unlike {@link String#intern()} the
+ * strings are not kept after the pool is no longer referenced.
+ * <p>
+ * Character content can be looked up without creating a {@code String}
+ * first, a new string is only created for content that is not in the pool
+ * yet. This class is not thread safe.
+ *
+ * @version Oct 2026
+ */
+public class StringPool {
+	private static final int INITIAL_CAPACITY = 256;
+	/** open addressing table, the length is a power of 2 */
+	private String[] table;
+	private int size;
+	private long numLookups;
+
+	/**
+	 * Creates an empty pool.
+	 */
+	public StringPool() {
+		table = new String[INITIAL_CAPACITY];
+	}
+
+	/**
+	 * Returns the pooled string equal to the specified string, after adding
+	 * it if it is not in the pool yet.
+	 *
+	 * @param s the string, can be {@code null}
+	 * @return the pooled string or {@code null} if {@code s} is {@code null}
+	 */
+	public String get(String s) {
+		if (s == null) {
+			return null;
+		}
+		return get(s, s.hashCode(), s);
+	}
+
+	/**
+	 * Returns the pooled string with the current content of a character
+	 * sequence, e.g. a {@code StringBuilder} that is reused for every element.
+	 *
+	 * @param cs the character sequence, not {@code null}
+	 * @return the pooled string
+	 */
+	public String get(CharSequence cs) {
+		int h = 0;
+		for (int i = 0; i < cs.length(); i++) {
+			h = 31 * h + cs.charAt(i);
+		}
+		return get(cs, h, null);
+	}
+
+	/**
+	 * Returns the number of distinct strings in the pool.
+	 *
+	 * @return the number of strings
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the number of lookups, the number of duplicates that have been
+	 * replaced by a pooled string is this number minus the size.
+	 *
+	 * @return the number of calls of one of the {@code get} methods with
+	 * non-{@code null} input
+	 */
+	public long getLookupCount() {
+		return numLookups;
+	}
+
+	/**
+	 * Removes all strings from the pool.
+	 */
+	public void clear() {
+		table = new String[INITIAL_CAPACITY];
+		size = 0;
+		numLookups = 0;
+	}
+
+	/**
+	 * Finds or adds the string for a character sequence with a known hash
+	 * code. If {@code s} is not {@code null} it is added as is, otherwise a
+	 * string is created from the sequence.
+	 */
+	private String get(CharSequence cs, int h, String s) {
+		int mask = table.length - 1;
+		numLookups++;
+
+		for (int i = spread(h) & mask; ; i = (i + 1) & mask) {
+			String p = table[i];
+			if (p == null) {
+				return add(i, s != null ? s : cs.toString());
+			}
+			if (p == s || (p.length() == cs.length() && p.hashCode() == h &&
+					p.contentEquals(cs))) {
+				return p;
+			}
+		}
+	}
+
+	private String add(int index, String s) {
+		table[index] = s;
+		if (++size > table.length / 2) {
+			rehash();
+		}
+		return s;
+	}
+
+	private void rehash() {
+		String[] old = table;
+		table = new String[old.length * 2];
+		int mask = table.length - 1;
+
+		for (String s : old) {
+			if (s != null) {
+				int i = spread(s.hashCode()) & mask;
+				while (table[i] != null) {
+					i = (i + 1) & mask;
+				}
+				table[i] = s;
+			}
+		}
+	}
+
+	private static int spread(int h) {
+		return h ^ (h >>> 16);
+	}
+}
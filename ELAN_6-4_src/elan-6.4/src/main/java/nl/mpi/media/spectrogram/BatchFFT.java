@@ -0,0 +1,327 @@
+package nl.mpi.media.spectrogram;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Applies the Fourier transform to many overlapping windows of audio
+ * samples at once, writing the frequency bins to a two-dimensional output
+ * array.
+ * <p>
+ * The bit reversal permutation and the transform factors for the window
+ * size are calculated once, in the same way as in
+ * {@link FFT#jFFTLROpt(double[], boolean, boolean, boolean, boolean, boolean, boolean, boolean)},
+ * and the arrays for the real and imaginary parts are reused per thread.
+ * The results are identical to those of {@code jFFTLROpt} with
+ * {@code normalize}, {@code absolute}, {@code trim} and {@code divideBySize}
+ * set to {@code true} and {@code zeroPowerLimit} set to {@code false}.
+ * <p>
+ * An instance can be used by multiple threads at the same time. Large
+ * batches can be split over the threads of a {@link ForkJoinPool}.
+ *
+ * @version Oct 2026
+ */
+public class BatchFFT {
+	/** the minimal number of windows per parallel task */
+	private static final int MIN_WINDOWS_PER_TASK = 32;
+	/** from this step size on the butterflies of a group are processed in contiguous runs */
+	private static final int MIN_GROUP_SIZE = 8;
+
+	private final int windowSize;
+	private final int numBins;
+	private final double[] weightingWindow;
+	private final boolean power;
+	private final boolean rootPower;
+	/** the index of each sample after the bit reversal permutation */
+	private final int[] permutation;
+	/** the transform factors of all steps; the factors of step i start at i - 1 */
+	private final double[] factorsRe;
+	private final double[] factorsIm;
+	/** the real and imaginary parts per thread */
+	private final ThreadLocal<double[][]> scratch;
+
+	/**
+	 * Creates a batch transform for a window size.
+	 *
+	 * @param windowSize the number of samples per window, a power of 2
+	 * @param weightingWindow the weights applied to the samples of each
+	 * window, can be {@code null}
+	 * @param power if {@code true} the values are converted to the
+	 *        {@code 10 * Math.log10(n)} power value
+	 * @param rootPower if {@code true} the values are converted to the
+	 *        {@code 20 * Math.log10(n)} root power value. This overrules the
+	 *        {@code power} parameter.
+	 * @throws IllegalArgumentException if the window size is not a power of 2
+	 * or the weighting window has another size
+	 */
+	public BatchFFT(final int windowSize, double[] weightingWindow, boolean power,
+			boolean rootPower) {
+		if (windowSize <= 0 || (windowSize & windowSize - 1) != 0) {
+			throw new IllegalArgumentException("The window size is not a power of 2: " + windowSize);
+		}
+		if (weightingWindow != null && weightingWindow.length != windowSize) {
+			throw new IllegalArgumentException(String.format(
+					"The size of the weighting window (%d) differs from the window size (%d)",
+					weightingWindow.length, windowSize));
+		}
+		this.windowSize = windowSize;
+		this.numBins = windowSize / 2 + 1;
+		this.weightingWindow = weightingWindow;
+		this.power = power;
+		this.rootPower = rootPower;
+
+		permutation = new int[windowSize];
+		int t = 0;// target
+		for (int i = 0; i < windowSize; i++) {
+			permutation[i] = t;
+			int m = windowSize;
+			while ((t & (m >>= 1)) != 0) {
+				t &= ~m;
+			}
+			t |= m;
+		}
+
+		// the same trigonometric recurrence as FFT.performIP
+		factorsRe = new double[Math.max(1, windowSize - 1)];
+		factorsIm = new double[factorsRe.length];
+		final double pi = -Math.PI;
+		for (int i = 1; i < windowSize; i <<= 1) {
+			double delta = pi / (double) i;
+			double s = Math.sin(delta * 0.5d);
+			double multipre = -2.0d * s * s;
+			double multipim = Math.sin(delta);
+			double factre = 1.0d;
+			double factim = 0.0d;
+			for (int g = 0; g < i; g++) {
+				factorsRe[i - 1 + g] = factre;
+				factorsIm[i - 1 + g] = factim;
+				double factretemp = multipre * factre - multipim * factim;
+				double factimtemp = multipre * factim + multipim * factre;
+				factre = factretemp + factre;
+				factim = factimtemp + factim;
+			}
+		}
+
+		scratch = new ThreadLocal<double[][]>() {
+			@Override
+			protected double[][] initialValue() {
+				return new double[][] {new double[windowSize], new double[windowSize]};
+			}
+		};
+	}
+
+	/**
+	 * @return the number of samples per window
+	 */
+	public int getWindowSize() {
+		return windowSize;
+	}
+
+	/**
+	 * @return the number of frequency bins per window, half the window size
+	 * plus one
+	 */
+	public int getNumBins() {
+		return numBins;
+	}
+
+	/**
+	 * Transforms a number of windows on the calling thread. Window {@code w}
+	 * starts at sample {@code from + w * stride}.
+	 *
+	 * @param samples the audio samples
+	 * @param from the index of the first sample of the first window
+	 * @param stride the number of samples between the start of two windows
+	 * @param divisor the samples are divided by this value before the
+	 * weighting window is applied, e.g. the maximum sample value to
+	 * normalize the input; 0 for no division
+	 * @param dest the output array, rows that are {@code null} or have
+	 * another length than the number of bins are replaced by new arrays
+	 * @param destFrom the row of the output for the first window
+	 * @param numWindows the number of windows to transform
+	 * @throws IllegalArgumentException if the samples or the output array
+	 * are too short
+	 */
+	public void transform(int[] samples, int from, int stride, double divisor,
+			double[][] dest, int destFrom, int numWindows) {
+		checkBounds(samples, from, stride, dest, destFrom, numWindows);
+		double[][] reIm = scratch.get();
+
+		for (int w = 0; w < numWindows; w++) {
+			double[] out = dest[destFrom + w];
+			if (out == null || out.length != numBins) {
+				out = new double[numBins];
+				dest[destFrom + w] = out;
+			}
+			transformWindow(samples, from + w * stride, divisor, reIm[0], reIm[1], out);
+		}
+	}
+
+	/**
+	 * Transforms a number of windows on the threads of the common
+	 * {@code ForkJoinPool}.
+	 *
+	 * @see #transformParallel(int[], int, int, double, double[][], int, int, ForkJoinPool)
+	 */
+	public void transformParallel(int[] samples, int from, int stride, double divisor,
+			double[][] dest, int destFrom, int numWindows) {
+		transformParallel(samples, from, stride, divisor, dest, destFrom, numWindows,
+				ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Transforms a number of windows, the windows are divided in ranges
+	 * which are transformed in parallel by the threads of a pool. The call
+	 * returns when all windows have been transformed.
+	 *
+	 * @param samples the audio samples
+	 * @param from the index of the first sample of the first window
+	 * @param stride the number of samples between the start of two windows
+	 * @param divisor the samples are divided by this value, 0 for no division
+	 * @param dest the output array
+	 * @param destFrom the row of the output for the first window
+	 * @param numWindows the number of windows to transform
+	 * @param pool the pool to use
+	 * @throws IllegalArgumentException if the samples or the output array
+	 * are too short
+	 *
+	 * @see #transform(int[], int, int, double, double[][], int, int)
+	 */
+	public void transformParallel(int[] samples, int from, int stride, double divisor,
+			double[][] dest, int destFrom, int numWindows, ForkJoinPool pool) {
+		checkBounds(samples, from, stride, dest, destFrom, numWindows);
+		int threshold = Math.max(MIN_WINDOWS_PER_TASK,
+				numWindows / (4 * Math.max(1, pool.getParallelism())));
+
+		if (numWindows <= threshold) {
+			transform(samples, from, stride, divisor, dest, destFrom, numWindows);
+		} else {
+			pool.invoke(new TransformTask(samples, from, stride, divisor, dest, destFrom,
+					numWindows, threshold));
+		}
+	}
+
+	private void checkBounds(int[] samples, int from, int stride, double[][] dest,
+			int destFrom, int numWindows) {
+		if (numWindows <= 0) {
+			return;
+		}
+		if (from < 0 || stride <= 0 ||
+				from + (long) (numWindows - 1) * stride + windowSize > samples.length) {
+			throw new IllegalArgumentException(String.format(
+					"Not enough samples for %d windows of %d samples from %d, stride %d: %d",
+					numWindows, windowSize, from, stride, samples.length));
+		}
+		if (destFrom < 0 || destFrom + numWindows > dest.length) {
+			throw new IllegalArgumentException(String.format(
+					"The output array is too small for %d windows from %d: %d",
+					numWindows, destFrom, dest.length));
+		}
+	}
+
+	/**
+	 * Transforms one window. The loops operate on contiguous arrays without
+	 * branches depending on the data.
+	 */
+	private void transformWindow(int[] samples, int from, double divisor, double[] re,
+			double[] im, double[] out) {
+		// weighting and bit reversal in one pass
+		for (int k = 0; k < windowSize; k++) {
+			double d = divisor != 0 ? samples[from + k] / divisor : samples[from + k];
+			re[permutation[k]] = weightingWindow != null ? d * weightingWindow[k] : d;
+			im[k] = 0.0d;
+		}
+
+		for (int i = 1; i < windowSize; i <<= 1) {
+			final int j = i << 1;
+			if (i < MIN_GROUP_SIZE) {
+				// few factors, long runs per factor
+				for (int g = 0; g < i; g++) {
+					double factre = factorsRe[i - 1 + g];
+					double factim = factorsIm[i - 1 + g];
+					for (int p = g; p < windowSize; p += j) {
+						int mp = p + i;
+						double prodre = factre * re[mp] - factim * im[mp];
+						double prodim =  factre * im[mp] + factim * re[mp];
+						re[mp] = re[p] - prodre;
+						im[mp] = im[p] - prodim;
+						re[p] = re[p] + prodre;
+						im[p] = im[p] + prodim;
+					}
+				}
+				continue;
+			}
+			// contiguous runs over the factors of a group
+			for (int base = 0; base < windowSize; base += j) {
+				for (int g = 0; g < i; g++) {
+					int p = base + g;
+					int mp = p + i;
+					double factre = factorsRe[i - 1 + g];
+					double factim = factorsIm[i - 1 + g];
+					double prodre = factre * re[mp] - factim * im[mp];
+					double prodim =  factre * im[mp] + factim * re[mp];
+					re[mp] = re[p] - prodre;
+					im[mp] = im[p] - prodim;
+					re[p] = re[p] + prodre;
+					im[p] = im[p] + prodim;
+				}
+			}
+		}
+
+		final int size = numBins;
+		for (int i = 0; i < size; i++) {
+			out[i] = Math.sqrt(re[i] * re[i] + im[i] * im[i]);
+			out[i] = out[i] / (size - 1);
+		}
+		if (rootPower) {
+			for (int i = 0; i < size; i++) {
+				out[i] = 20 * Math.log10(out[i] + FFT.meps);
+			}
+		} else if (power) {
+			for (int i = 0; i < size; i++) {
+				out[i] = 10 * Math.log10(out[i] + FFT.meps);
+			}
+		}
+	}
+
+	/**
+	 * A task which splits a range of windows in two halves until the range
+	 * is smaller than the threshold.
+	 */
+	@SuppressWarnings("serial")
+	private class TransformTask extends RecursiveAction {
+		private final int[] samples;
+		private final int from;
+		private final int stride;
+		private final double divisor;
+		private final double[][] dest;
+		private final int destFrom;
+		private final int numWindows;
+		private final int threshold;
+
+		TransformTask(int[] samples, int from, int stride, double divisor,
+				double[][] dest, int destFrom, int numWindows, int threshold) {
+			this.samples = samples;
+			this.from = from;
+			this.stride = stride;
+			this.divisor = divisor;
+			this.dest = dest;
+			this.destFrom = destFrom;
+			this.numWindows = numWindows;
+			this.threshold = threshold;
+		}
+
+		@Override
+		protected void compute() {
+			if (numWindows <= threshold) {
+				transform(samples, from, stride, divisor, dest, destFrom, numWindows);
+				return;
+			}
+			int half = numWindows / 2;
+			invokeAll(new TransformTask(samples, from, stride, divisor, dest, destFrom,
+							half, threshold),
+					new TransformTask(samples, from + half * stride, stride, divisor, dest,
+							destFrom + half, numWindows - half, threshold));
+		}
+	}
+}
@@ -0,0 +1,181 @@
+package nl.mpi.media.spectrogram;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * A simple benchmark comparing the {@link BatchFFT} with the per window
+ * transform {@link FFT#jFFTLROpt(double[], boolean, boolean, boolean, boolean, boolean, boolean, boolean)}
+ * as it was used by the spectrogram. For a number of window sizes a series
+ * of overlapping windows of random 16 bit samples (a stride of 1/8 of the
+ * window size) is transformed, with a Hamming window, the normalized input
+ * and amplitude and power output. The per window path, the sequential batch
+ * path and the parallel batch path on the common pool are timed after a
+ * warm-up, and the largest difference between the results of the per window
+ * and the batch path is reported.
+ * <p>
+ * Usage: {@code BatchFFTBenchmark [window size]...}
+ *
+ * @version Oct 2026
+ */
+public class BatchFFTBenchmark {
+	private static final int NUM_WINDOWS = 20000;
+	private static final int WARM_UP_RUNS = 10;
+	private static final int MEASURED_RUNS = 5;
+	private static final double MAX_SAMPLE = 32768;
+
+	/**
+	 * Runs the benchmark.
+	 *
+	 * @param args optionally one or more window sizes, powers of 2
+	 */
+	public static void main(String[] args) {
+		int[] sizes = {256, 512, 1024, 2048};
+		if (args.length > 0) {
+			sizes = new int[args.length];
+			for (int i = 0; i < args.length; i++) {
+				sizes[i] = Integer.parseInt(args[i]);
+			}
+		}
+		System.out.println(String.format("%d windows, stride 1/8 window, %d threads in the common pool",
+				NUM_WINDOWS, ForkJoinPool.commonPool().getParallelism()));
+
+		for (int size : sizes) {
+			int stride = Math.max(1, size / 8);
+			int[] samples = createSamples((NUM_WINDOWS - 1) * stride + size);
+			double[] weightingWindow = WindowFunction.windowForName(
+					WindowFunction.WF_NAME.HAMMING, size);
+
+			for (boolean power : new boolean[] {false, true}) {
+				BatchFFT batch = new BatchFFT(size, weightingWindow, power, false);
+				double[][] perWindowOut = new double[NUM_WINDOWS][];
+				double[][] batchOut = new double[NUM_WINDOWS][];
+
+				double perWindow = time(new PerWindowRun(samples, stride, size, weightingWindow,
+						power, perWindowOut));
+				double sequential = time(new BatchRun(batch, samples, stride, batchOut, false));
+				double maxDiff = maxDifference(perWindowOut, batchOut);
+				double parallel = time(new BatchRun(batch, samples, stride, batchOut, true));
+
+				System.out.println(String.format("window size %d, %s output", size,
+						power ? "power" : "amplitude"));
+				System.out.println(String.format("  FFT.jFFTLROpt per window:   %10.1f ms", perWindow));
+				System.out.println(String.format("  BatchFFT.transform:         %10.1f ms (%.2fx)",
+						sequential, perWindow / sequential));
+				System.out.println(String.format("  BatchFFT.transformParallel: %10.1f ms (%.2fx)",
+						parallel, perWindow / parallel));
+				System.out.println(String.format("  largest difference:         %10.3g", maxDiff));
+			}
+		}
+	}
+
+	/**
+	 * Returns random 16 bit samples, with a fixed seed.
+	 */
+	private static int[] createSamples(int numSamples) {
+		Random random = new Random(1);
+		int[] samples = new int[numSamples];
+		for (int i = 0; i < numSamples; i++) {
+			samples[i] = random.nextInt(65536) - 32768;
+		}
+		return samples;
+	}
+
+	/**
+	 * Runs a transform a number of times and returns the average time of
+	 * the runs after the warm-up.
+	 *
+	 * @return the average time per run in ms
+	 */
+	private static double time(Runnable run) {
+		for (int i = 0; i < WARM_UP_RUNS; i++) {
+			run.run();
+		}
+		long start = System.nanoTime();
+		for (int i = 0; i < MEASURED_RUNS; i++) {
+			run.run();
+		}
+		return (System.nanoTime() - start) / (MEASURED_RUNS * 1000000.0);
+	}
+
+	/**
+	 * Returns the largest absolute difference between two results.
+	 */
+	private static double maxDifference(double[][] out1, double[][] out2) {
+		double max = 0;
+		for (int w = 0; w < out1.length; w++) {
+			for (int b = 0; b < out1[w].length; b++) {
+				double diff = Math.abs(out1[w][b] - out2[w][b]);
+				// the power of a bin without energy is -Infinity in both
+				if (!Double.isNaN(diff)) {
+					max = Math.max(max, diff);
+				}
+			}
+		}
+		return max;
+	}
+
+	/**
+	 * Transforms the windows one by one, the way the spectrogram did before
+	 * the batch transform was introduced.
+	 */
+	private static class PerWindowRun implements Runnable {
+		private final FFT fft = new FFT();
+		private final int[] samples;
+		private final int stride;
+		private final int size;
+		private final double[] weightingWindow;
+		private final boolean power;
+		private final double[][] out;
+
+		PerWindowRun(int[] samples, int stride, int size, double[] weightingWindow,
+				boolean power, double[][] out) {
+			this.samples = samples;
+			this.stride = stride;
+			this.size = size;
+			this.weightingWindow = weightingWindow;
+			this.power = power;
+			this.out = out;
+		}
+
+		@Override
+		public void run() {
+			for (int w = 0; w < out.length; w++) {
+				double[] ra = new double[size];
+				int from = w * stride;
+				for (int k = 0; k < size; k++) {
+					ra[k] = samples[from + k] / MAX_SAMPLE * weightingWindow[k];
+				}
+				out[w] = fft.jFFTLROpt(ra, true, true, true, true, power, false, false);
+			}
+		}
+	}
+
+	/**
+	 * Transforms all windows with the batch transform.
+	 */
+	private static class BatchRun implements Runnable {
+		private final BatchFFT batch;
+		private final int[] samples;
+		private final int stride;
+		private final double[][] out;
+		private final boolean parallel;
+
+		BatchRun(BatchFFT batch, int[] samples, int stride, double[][] out, boolean parallel) {
+			this.batch = batch;
+			this.samples = samples;
+			this.stride = stride;
+			this.out = out;
+			this.parallel = parallel;
+		}
+
+		@Override
+		public void run() {
+			if (parallel) {
+				batch.transformParallel(samples, 0, stride, MAX_SAMPLE, out, 0, out.length);
+			} else {
+				batch.transform(samples, 0, stride, MAX_SAMPLE, out, 0, out.length);
+			}
+		}
+	}
+}
@@ -2,6 +2,8 @@
  * 
  * Classes:
  * FFT: Fast Fourier Transform utilities
+ * BatchFFT: Fourier transform of many (overlapping) windows at once, optionally
+ * in parallel
  * SpectrogramSettings: a collection of settings relevant for the production of
  * spectrogram images
  * SpectrogramImageProducer: transforms arrays of frequency bins to image 